@@ -0,0 +1,271 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+// A front end that chooses how to assemble the reads in an input path: in the JVM,
+// with LocalAssembler, if the reads and their k-mers are estimated to fit in the 
+// memory limit, or otherwise with the Hadoop jobs of MRAssembler.  Small inputs then
+// avoid the startup of a sequence of Hadoop jobs.  Both engines have the same input
+// and output formats, so run() behaves like MRAssembler.run() either way, although
+// the engines discard errors by different rules (see LocalAssembler).
+//
+// The estimate comes from a sample of the start of the input: the number of bytes,
+// the number of reads and the number of distinct k-mers in the sample are scaled by
+// the ratio of the total input size to the sample size.  The number of distinct 
+// k-mers grows more slowly than the input (repeated coverage of the same sequence 
+// adds no new k-mers), so the scaling overestimates it, which errs on the side of 
+// using Hadoop.
+
+public class AutoAssembler {
+	
+	// The engines that can be chosen.
+	
+	public enum Engine { LOCAL, MAPREDUCE }
+	
+	// The estimated size of an input.
+	
+	public static class Estimate {
+		
+		public Estimate(long numBytes, long numReads, long numDistinctMers) {
+			this.numBytes = numBytes;
+			this.numReads = numReads;
+			this.numDistinctMers = numDistinctMers;
+		}
+		
+		// The total size of the input files.
+		
+		public long getNumBytes() {
+			return numBytes;
+		}
+		
+		public long getNumReads() {
+			return numReads;
+		}
+		
+		// The number of distinct k-mers (edges of the uncompressed graph).
+		
+		public long getNumDistinctMers() {
+			return numDistinctMers;
+		}
+		
+		// The memory LocalAssembler needs: the reads as Strings, and for each distinct
+		// k-mer, its count table entry and its vertex and edge in the graph.
+		
+		public long getMemory() {
+			return 2 * numBytes + BYTES_PER_READ * numReads + BYTES_PER_MER * numDistinctMers;
+		}
+		
+		private long numBytes;
+		private long numReads;
+		private long numDistinctMers;
+	}
+	
+	// Construct the assembler, with the arguments of MRAssembler.  The memory limit 
+	// defaults to half of the maximum heap size.
+	
+	public AutoAssembler(int vertexMerLength, int coverage) {
+		this.vertexMerLength = vertexMerLength;
+		this.coverage = coverage;
+		memoryLimit = Runtime.getRuntime().maxMemory() / 2;
+		sampleBytes = DEFAULT_SAMPLE_BYTES;
+	}
+	
+	// As with MRAssembler.setMultipleRepeats().
+	
+	public void setMultipleRepeats(boolean multipleRepeats) {
+		this.multipleRepeats = multipleRepeats;
+	}
+	
+	// As with MRAssembler.setTipsAndBubbles().
+	
+	public void setTipsAndBubbles(boolean tipsAndBubbles) {
+		this.tipsAndBubbles = tipsAndBubbles;
+	}
+	
+	// As with MRAssembler.setMinQuality().
+	
+	public void setMinQuality(int minQuality) {
+		this.minQuality = minQuality;
+	}
+	
+	// As with MRAssembler.setCollapseDuplicates().
+	
+	public void setCollapseDuplicates(boolean collapseDuplicates) {
+		this.collapseDuplicates = collapseDuplicates;
+	}
+	
+	// As with MRAssembler.setErrorCorrection().
+	
+	public void setErrorCorrection(boolean errorCorrection) {
+		this.errorCorrection = errorCorrection;
+	}
+	
+	// As with MRAssembler.setNormalization().
+	
+	public void setNormalization(int targetCoverage) {
+		this.targetCoverage = targetCoverage;
+	}
+	
+	// As with MRAssembler.setTmpPath(); used only if the MAPREDUCE engine is chosen.
+	// Without it, MRAssembler uses its default temporary directory, so AutoAssembler 
+	// runs that may overlap need it.
+	
+	public void setTmpPath(Path tmpPath) {
+		this.tmpPath = tmpPath;
+	}
+	
+	// Set the largest estimated memory, in bytes, for which LocalAssembler is chosen.
+	
+	public void setMemoryLimit(long memoryLimit) {
+		this.memoryLimit = memoryLimit;
+	}
+	
+	// Set the number of bytes at the start of the input that are sampled.
+	
+	public void setSampleBytes(int sampleBytes) {
+		this.sampleBytes = Math.max(1, sampleBytes);
+	}
+	
+	// Estimate the size of the input from a sample.
+	
+	public Estimate estimate(Path inputPath) throws IOException {
+		FileSystem fileSystem = FileSystem.get(new Configuration());
+		
+		ArrayList<Path> paths = LocalAssembler.getInputFiles(fileSystem, inputPath);
+		long numBytes = 0;
+		for (Path path : paths)
+			numBytes += fileSystem.getFileStatus(path).getLen();
+		
+		QualityFilter qualityFilter = new QualityFilter(minQuality);
+		IntIntMap mers = new IntIntMap(1024);
+		int merLength = Math.min(vertexMerLength + 1, 16);
+		long numSampledBytes = 0;
+		long numSampledReads = 0;
+		for (Path path : paths) {
+			if (numSampledBytes >= sampleBytes)
+				break;
+			BufferedReader reader = 
+					new BufferedReader(new InputStreamReader(fileSystem.open(path)));
+			try {
+				String line;
+				while ((numSampledBytes < sampleBytes) && ((line = reader.readLine()) != null)) {
+					numSampledBytes += line.length() + 1;
+					if (line.isEmpty())
+						continue;
+					numSampledReads++;
+					try {
+						for (String read : qualityFilter.split(line))
+							LocalAssembler.countMers(read, merLength, mers);
+					}
+					catch (IllegalArgumentException exception) {
+						throw new IOException("AutoAssembler.estimate(): " + exception.getMessage(),
+								exception);
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+		
+		if ((numSampledBytes == 0) || (numSampledBytes >= numBytes))
+			return new Estimate(numBytes, numSampledReads, mers.size());
+		
+		double scale = (double) numBytes / numSampledBytes;
+		long numMers = (long) Math.ceil(scale * mers.size());
+		if (merLength < 16)
+			numMers = Math.min(numMers, 1L << (2 * merLength));
+		return new Estimate(numBytes, (long) Math.ceil(scale * numSampledReads), numMers);
+	}
+	
+	// Returns the engine that run() would use for the input.  LocalAssembler can be 
+	// used only for a vertexMerLength of at most 15.
+	
+	public Engine choose(Path inputPath) throws IOException {
+		if ((vertexMerLength > 15) || (estimate(inputPath).getMemory() > memoryLimit))
+			return Engine.MAPREDUCE;
+		return Engine.LOCAL;
+	}
+	
+	// Assemble the reads in the inputPath, writing the sequences to the outputPath, 
+	// with the engine from choose().  Returns true on success.
+	
+	public boolean run(Path inputPath, Path outputPath) 
+			throws IOException, InterruptedException, ClassNotFoundException {
+		Engine engine = choose(inputPath);
+		System.out.println("sabe.AutoAssembler using the " + engine + " engine");
+		
+		if (engine == Engine.LOCAL) {
+			LocalAssembler assembler = new LocalAssembler(vertexMerLength, coverage);
+			assembler.setMultipleRepeats(multipleRepeats);
+			assembler.setTipsAndBubbles(tipsAndBubbles);
+			assembler.setMinQuality(minQuality);
+			assembler.setErrorCorrection(errorCorrection);
+			assembler.setNormalization(targetCoverage);
+			assembler.setCollapseDuplicates(collapseDuplicates);
+			return assembler.run(inputPath, outputPath);
+		}
+		else {
+			MRAssembler assembler = new MRAssembler(vertexMerLength, coverage);
+			assembler.setMultipleRepeats(multipleRepeats);
+			assembler.setTipsAndBubbles(tipsAndBubbles);
+			assembler.setMinQuality(minQuality);
+			assembler.setErrorCorrection(errorCorrection);
+			assembler.setNormalization(targetCoverage);
+			assembler.setCollapseDuplicates(collapseDuplicates);
+			if (tmpPath != null)
+				assembler.setTmpPath(tmpPath);
+			return assembler.run(inputPath, outputPath);
+		}
+	}
+	
+	//
+	
+	private static final int DEFAULT_SAMPLE_BYTES = 1 << 20;
+	
+	private static final long BYTES_PER_READ = 48;
+	private static final long BYTES_PER_MER = 96;
+	
+	private int vertexMerLength;
+	private int coverage;
+	private boolean multipleRepeats;
+	private boolean tipsAndBubbles;
+	private int minQuality;
+	private boolean errorCorrection;
+	private int targetCoverage;
+	private boolean collapseDuplicates;
+	private Path tmpPath;
+	private long memoryLimit;
+	private int sampleBytes;
+	
+}
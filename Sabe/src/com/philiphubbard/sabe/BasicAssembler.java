@@ -22,12 +22,8 @@
 
 package com.philiphubbard.sabe;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-
-import com.philiphubbard.digraph.BasicDigraph;
-import com.philiphubbard.digraph.Digraph;
-import com.philiphubbard.digraph.EulerPaths;
+import java.util.Arrays;
 
 // A class to assemble genomic sequences from a list of "reads".
 // The algorithm breaks each read string into substrings of length
@@ -39,8 +35,9 @@ import com.philiphubbard.digraph.EulerPaths;
 // By Euler tours.")  This implementation does not use Hadoop, and is
 // very basic in that it:
 // * does not handle errors;
-// * does not handle repeats (longer than k-1 base pairs);
-// * does not handle graphs that do not have a complete Euler tour.
+// * does not handle repeats (longer than k-1 base pairs).
+// A graph with more than one weakly-connected component produces more than
+// one sequence.
 
 public class BasicAssembler {
 	
@@ -49,83 +46,193 @@ public class BasicAssembler {
 	// vertexMerLength.
 	
 	public BasicAssembler(ArrayList<String> reads, int vertexMerLength) {
+		this(vertexMerLength);
+		addReads(reads);
+	}
+	
+	// Constructor for an assembler that is reused for many small assemblies: for each
+	// one, call addReads(), then assemble(), then reset().  The table from (k-1)-mers 
+	// to vertices covers all 4^(k-1) of them, but it is allocated only once, and 
+	// reset() clears only the entries for the (k-1)-mers that were added, so the cost 
+	// of each assembly is proportional to its reads.
+	
+	public BasicAssembler(int vertexMerLength) {
 		this.vertexMerLength = vertexMerLength;
-		int vertexCapacity = 0x1 << (2 * vertexMerLength);
-		
-		graph = new BasicDigraph(vertexCapacity, Digraph.EdgeMultiples.ENABLED);
-		populateGraph(reads);
+		numThreads = Runtime.getRuntime().availableProcessors();
+		merToVertex = new int[0x1 << (2 * vertexMerLength)];
+		Arrays.fill(merToVertex, -1);
+		vertexMers = new int[INITIAL_CAPACITY];
+		edgeFroms = new int[INITIAL_CAPACITY];
+		edgeTos = new int[INITIAL_CAPACITY];
+		edgeMultiples = new int[INITIAL_CAPACITY];
+		isPresent = new boolean[INITIAL_CAPACITY];
+		qualityFilter = new QualityFilter(0);
 	}
 	
-	// Assemble and return the sequence(s) from the graph built in the constructor.
+	// Add the edges of the reads to the graph.  A read may have qualities, as 
+	// described in QualityFilter, and then only the pieces that QualityFilter keeps
+	// make edges.
 	
-	public ArrayList<String> assemble() {
-		ArrayList<String> result = new ArrayList<String>();
-		
-		EulerPaths<BasicDigraph.Edge> euler = new EulerPaths<BasicDigraph.Edge>(graph);
-		ArrayList<ArrayDeque<Integer>> paths = euler.getPaths();
-		
-		for (ArrayDeque<Integer> path : paths) {			
-			if (addedSinkSourceEdge)
-				path.pollLast();
-			
-			String seq = new String();
-			for (int v : path) {
-				if (seq.length() == 0)
-					seq = Mer.fromInt(v, vertexMerLength);
+	public void addReads(ArrayList<String> reads) {
+		ArrayList<String> pieces = new ArrayList<String>();
+		CollapsedReads collapsed = collapseDuplicates ? new CollapsedReads() : null;
+		for (String line : reads) {
+			pieces.clear();
+			qualityFilter.split(line, pieces);
+			for (String read : pieces) {
+				if (collapsed != null)
+					collapsed.add(read, 1);
 				else
-					seq = seq.concat(Mer.fromInt(v, 1));
+					addRead(read, 1);
 			}
-			
-			result.add(seq);
 		}
 		
-		return result;
+		if (collapsed != null)
+			for (int i = 0; i < collapsed.size(); i++)
+				addRead(collapsed.getRead(i), collapsed.getCount(i));
 	}
 	
-	//
+	// Assemble and return the sequence(s) from the graph of the reads added so far.
+	// There is one sequence for each weakly-connected component of the graph that
+	// has an Euler path, and one for each unitig of a component that does not.
 	
-	private void populateGraph(ArrayList<String> reads) {
-		for (String read : reads) {
-			if (read.length() < vertexMerLength)
-				continue;
-			int prev = -1;
-			for (int i = 0; i < read.length() - vertexMerLength + 1; i++) {
-				String mer = read.substring(i, i + vertexMerLength);
-				int curr = Mer.toInt(mer);
-				if (prev != -1)
-					graph.addEdge(prev, new BasicDigraph.Edge(curr));
-				prev = curr;
+	public ArrayList<String> assemble() {
+		CompactDigraph graph = buildGraph();
+		return ComponentTours.run(graph, isPresent, new ComponentTours.Sequences() {
+			public void append(int vertex, boolean isFirst, StringBuilder seq) {
+				seq.append(Mer.fromInt(vertexMers[vertex], isFirst ? vertexMerLength : 1));
 			}
+		}, numThreads);
+	}
+	
+	// If collapseDuplicates is true, identical reads in each call to addReads() are 
+	// collapsed by CollapsedReads, so each distinct read is split into (k-1)-mers 
+	// once, with edges whose multiple is the read's count.  The graph is the same
+	// either way.  The default is false.
+	
+	public void setCollapseDuplicates(boolean collapseDuplicates) {
+		this.collapseDuplicates = collapseDuplicates;
+	}
+	
+	// Set the minimum quality of the bases that make edges, for the reads added after
+	// this call.  The default is 0, which ignores the qualities.
+	
+	public void setMinQuality(int minQuality) {
+		qualityFilter = new QualityFilter(minQuality);
+	}
+	
+	// Set the number of threads for assembling the weakly-connected components 
+	// concurrently.  The default is the number of available processors.
+	
+	public void setNumThreads(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+	
+	// Remove all the reads, keeping the buffers for the next assembly.  Only the
+	// entries of the (k-1)-mer table for the vertices in use are cleared.
+	
+	public void reset() {
+		for (int v = 0; v < numVertices; v++)
+			merToVertex[vertexMers[v]] = -1;
+		numVertices = 0;
+		numEdges = 0;
+	}
+	
+	// As with reset(), and also shrink the vertex and edge buffers back to their 
+	// initial capacity, so the memory of an unusually large assembly is not kept for 
+	// the small ones that follow it.
+	
+	public void resetAndShrink() {
+		reset();
+		if (vertexMers.length > INITIAL_CAPACITY)
+			vertexMers = new int[INITIAL_CAPACITY];
+		if (edgeFroms.length > INITIAL_CAPACITY) {
+			edgeFroms = new int[INITIAL_CAPACITY];
+			edgeTos = new int[INITIAL_CAPACITY];
+			edgeMultiples = new int[INITIAL_CAPACITY];
 		}
-		
-		int source = -1;
-		int sink = -1;
-		
-		boolean multipleSources = false;
-		boolean multipleSinks = false;
-		
-		for (int v = 0; v < graph.getVertexCapacity(); v++) {
-			if (graph.getInDegree(v) == 0) {
-				if (source != -1)
-					multipleSources = true;
-				source = v;
+		if (isPresent.length > INITIAL_CAPACITY)
+			isPresent = new boolean[INITIAL_CAPACITY];
+	}
+	
+	// Returns the bytes of the table from (k-1)-mers to vertices, which every 
+	// BasicAssembler allocates in full, for the specified vertexMerLength.
+	
+	public static long getTableBytes(int vertexMerLength) {
+		return 4L << (2 * vertexMerLength);
+	}
+	
+	//
+	
+	private void addRead(String read, int count) {
+		if (read.length() < vertexMerLength)
+			return;
+		int prev = -1;
+		for (int i = 0; i < read.length() - vertexMerLength + 1; i++) {
+			String mer = read.substring(i, i + vertexMerLength);
+			int curr = Mer.toInt(mer);
+			if (merToVertex[curr] < 0) {
+				if (numVertices == vertexMers.length)
+					vertexMers = Arrays.copyOf(vertexMers, 2 * numVertices);
+				merToVertex[curr] = numVertices;
+				vertexMers[numVertices++] = curr;
 			}
-			if (graph.getOutDegree(v) == 0) {
-				if (sink != -1)
-					multipleSinks = true;
-				sink = v;
+			if (prev != -1) {
+				if (numEdges == edgeFroms.length) {
+					edgeFroms = Arrays.copyOf(edgeFroms, 2 * numEdges);
+					edgeTos = Arrays.copyOf(edgeTos, 2 * numEdges);
+					edgeMultiples = Arrays.copyOf(edgeMultiples, 2 * numEdges);
+				}
+				edgeFroms[numEdges] = prev;
+				edgeTos[numEdges] = curr;
+				edgeMultiples[numEdges++] = count;
 			}
+			prev = curr;
 		}
+	}
+	
+	// Build the graph of the vertices in use.  The vertices are numbered in the order
+	// of their (k-1)-mers, as they would be in a graph over all 4^(k-1) of them, so 
+	// the result does not depend on the order of the reads.
+	
+	private CompactDigraph buildGraph() {
+		Arrays.sort(vertexMers, 0, numVertices);
+		for (int v = 0; v < numVertices; v++)
+			merToVertex[vertexMers[v]] = v;
+		
+		CompactDigraph.Builder builder = 
+				new CompactDigraph.Builder(Math.max(numVertices, 1), numEdges);
+		for (int e = 0; e < numEdges; e++)
+			builder.addEdge(merToVertex[edgeFroms[e]], merToVertex[edgeTos[e]], edgeMultiples[e]);
+		CompactDigraph graph = builder.build();
 		
-		assert (!multipleSources && !multipleSinks);
+		// A vertex with no edges at all is not part of the graph.
 		
-		addedSinkSourceEdge = ((source != -1) && (sink != -1));
-		if (addedSinkSourceEdge)
-			graph.addEdge(sink, new BasicDigraph.Edge(source));
+		if (isPresent.length < graph.getVertexCapacity())
+			isPresent = new boolean[graph.getVertexCapacity()];
+		Arrays.fill(isPresent, 0, graph.getVertexCapacity(), false);
+		for (int e = 0; e < graph.getNumEdges(); e++)
+			isPresent[graph.getEdgeTo(e)] = true;
+		for (int v = 0; v < numVertices; v++)
+			if (!graph.isSink(v))
+				isPresent[v] = true;
+		
+		return graph;
 	}
+	
+	private static final int INITIAL_CAPACITY = 64;
 
 	private int vertexMerLength;
-	private BasicDigraph graph;
-	boolean addedSinkSourceEdge;
+	private int[] merToVertex;
+	private int[] vertexMers;
+	private int numVertices;
+	private int[] edgeFroms;
+	private int[] edgeTos;
+	private int[] edgeMultiples;
+	private int numEdges;
+	private boolean[] isPresent;
+	private int numThreads;
+	private QualityFilter qualityFilter;
+	private boolean collapseDuplicates;
 	
 }
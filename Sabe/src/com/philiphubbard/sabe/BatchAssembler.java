@@ -0,0 +1,260 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// A service to assemble many independent small sets of reads ("samples") at once,
+// each with BasicAssembler, on a fixed number of threads.  Each thread reuses one
+// BasicAssembler (see BasicAssembler.reset()), so the table of 4^(k-1) entries is 
+// allocated once per thread rather than once per sample.
+//
+// The memory is bounded by a budget.  The (k-1)-mer tables of the threads are
+// charged against it first, and the rest bounds the memory of the samples in
+// progress.  Each sample's memory is estimated from the total length of its reads,
+// and the sample is started only when that much of the budget is free; a sample
+// larger than the whole budget waits until it can run alone.  A thread that has
+// assembled a sample larger than its share of the budget shrinks its
+// BasicAssembler's buffers afterwards, so the buffers kept between samples stay
+// within that share.  The budget is kept by the thread that called run(), which
+// starts the samples and takes their results, so it needs no synchronization.  The
+// jobs are pulled from an Iterator only as they are started, so a slow service
+// applies backpressure to the source of the jobs instead of buffering them.  The
+// results are passed to a Consumer as each sample finishes, on the thread that
+// called run(), so the Consumer need not be thread safe.
+
+public class BatchAssembler {
+	
+	// One sample to assemble.
+	
+	public static class Job {
+		
+		public Job(String sampleId, ArrayList<String> reads) {
+			this.sampleId = sampleId;
+			this.reads = reads;
+		}
+		
+		public String getSampleId() {
+			return sampleId;
+		}
+		
+		public ArrayList<String> getReads() {
+			return reads;
+		}
+		
+		private String sampleId;
+		private ArrayList<String> reads;
+	}
+	
+	// An interface for receiving the sequences ("contigs") of each sample.
+	
+	public interface Consumer {
+		void accept(String sampleId, ArrayList<String> contigs) throws IOException;
+	}
+	
+	// Construct the service, with the vertexMerLength for BasicAssembler, the number
+	// of threads, and the memory budget, in bytes.  Throws IllegalArgumentException if
+	// the budget is less than getTableBytes(), the memory of the threads' tables.
+	
+	public BatchAssembler(int vertexMerLength, int numThreads, long memoryBudget) 
+			throws IllegalArgumentException {
+		this.vertexMerLength = vertexMerLength;
+		this.numThreads = Math.max(1, numThreads);
+		long tableBytes = getTableBytes(vertexMerLength, this.numThreads);
+		if (memoryBudget < tableBytes)
+			throw new IllegalArgumentException("BatchAssembler(): the memory budget must be "
+					+ "at least " + tableBytes + " bytes for the (k-1)-mer tables");
+		sampleBudget = memoryBudget - tableBytes;
+	}
+	
+	// Returns the bytes of the (k-1)-mer tables of the BasicAssembler instances of the
+	// specified number of threads, which are charged against the memory budget.
+	
+	public static long getTableBytes(int vertexMerLength, int numThreads) {
+		return Math.max(1, numThreads) * BasicAssembler.getTableBytes(vertexMerLength);
+	}
+	
+	// As with BasicAssembler.setMinQuality(), for all the samples.
+	
+	public void setMinQuality(int minQuality) {
+		this.minQuality = minQuality;
+	}
+	
+	// As with BasicAssembler.setCollapseDuplicates(), for all the samples.
+	
+	public void setCollapseDuplicates(boolean collapseDuplicates) {
+		this.collapseDuplicates = collapseDuplicates;
+	}
+	
+	// Returns the estimated memory, in bytes, for assembling the reads.
+	
+	public static long estimateMemory(ArrayList<String> reads) {
+		long numBases = 0;
+		for (String read : reads)
+			numBases += read.length();
+		return BYTES_PER_READ * reads.size() + BYTES_PER_BASE * numBases;
+	}
+	
+	// Assemble the samples from the jobs, passing the results of each to the consumer
+	// as soon as it finishes (so not necessarily in the order of the jobs).  Returns
+	// the number of samples.  If the assembly of a sample fails (e.g., a read has
+	// characters other than "A", "C", "G" and "T"), no more samples are started and
+	// an IOException naming the sample is thrown.
+	
+	public int run(Iterator<Job> jobs, Consumer consumer) throws IOException {
+		final long threadShare = sampleBudget / numThreads;
+		final ThreadLocal<BasicAssembler> assemblers = new ThreadLocal<BasicAssembler>() {
+			protected BasicAssembler initialValue() {
+				BasicAssembler assembler = new BasicAssembler(vertexMerLength);
+				assembler.setNumThreads(1);
+				assembler.setMinQuality(minQuality);
+				assembler.setCollapseDuplicates(collapseDuplicates);
+				return assembler;
+			}
+		};
+		
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			CompletionService<Result> completion = new ExecutorCompletionService<Result>(executor);
+			int numInFlight = 0;
+			int numDone = 0;
+			Job pending = null;
+			long pendingMemory = 0;
+			long memoryInUse = 0;
+			
+			while (true) {
+				if ((pending == null) && jobs.hasNext()) {
+					pending = jobs.next();
+					pendingMemory = estimateMemory(pending.getReads());
+				}
+				
+				// Start the pending job if there is room for it (or if nothing else is
+				// running), and otherwise wait for a job in flight to finish, which frees
+				// its part of the budget.
+				
+				if ((pending != null) && (numInFlight < MAX_IN_FLIGHT_PER_THREAD * numThreads) 
+						&& ((numInFlight == 0) || (memoryInUse + pendingMemory <= sampleBudget))) {
+					final Job job = pending;
+					final long memory = pendingMemory;
+					completion.submit(new Callable<Result>() {
+						public Result call() {
+							BasicAssembler assembler = assemblers.get();
+							try {
+								assembler.addReads(job.getReads());
+								return new Result(job.getSampleId(), memory, assembler.assemble());
+							}
+							catch (RuntimeException exception) {
+								return new Result(job.getSampleId(), memory, exception);
+							}
+							finally {
+								if (memory > threadShare)
+									assembler.resetAndShrink();
+								else
+									assembler.reset();
+							}
+						}
+					});
+					memoryInUse += memory;
+					pending = null;
+					numInFlight++;
+					continue;
+				}
+				
+				if (numInFlight == 0)
+					break;
+				
+				// The budget of a sample is released only when its result is taken, so it
+				// also covers the results that are waiting for the consumer.
+				
+				Result result = completion.take().get();
+				numInFlight--;
+				memoryInUse -= result.memory;
+				if (result.exception != null)
+					throw new IOException("BatchAssembler.run(): sample " + result.sampleId 
+							+ " failed: " + result.exception.getMessage(), result.exception);
+				consumer.accept(result.sampleId, result.contigs);
+				numDone++;
+			}
+			
+			return numDone;
+		}
+		catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IOException("BatchAssembler.run(): interrupted", exception);
+		}
+		catch (ExecutionException exception) {
+			throw new IOException("BatchAssembler.run(): failed", exception.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	//
+	
+	private static class Result {
+		Result(String sampleId, long memory, ArrayList<String> contigs) {
+			this.sampleId = sampleId;
+			this.memory = memory;
+			this.contigs = contigs;
+			exception = null;
+		}
+		
+		Result(String sampleId, long memory, RuntimeException exception) {
+			this.sampleId = sampleId;
+			this.memory = memory;
+			contigs = null;
+			this.exception = exception;
+		}
+		
+		String sampleId;
+		long memory;
+		ArrayList<String> contigs;
+		RuntimeException exception;
+	}
+	
+	// The estimate of memory per base covers the read's characters, the vertex and 
+	// edge lists of BasicAssembler, and the CompactDigraph and its components.
+	
+	private static final long BYTES_PER_READ = 48;
+	private static final long BYTES_PER_BASE = 64;
+	
+	private static final int MAX_IN_FLIGHT_PER_THREAD = 2;
+	
+	private int vertexMerLength;
+	private int numThreads;
+	private long sampleBudget;
+	private int minQuality;
+	private boolean collapseDuplicates;
+	
+}
@@ -0,0 +1,231 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+
+import com.philiphubbard.digraph.MRVertex;
+
+// Chain compression of MRMerVertex instances by BspEngine, as an alternative to the
+// iterations of MRCompressMerChains.  The chain vertices are held in memory for all
+// the supersteps, so each round of merging is a barrier and an exchange of messages
+// rather than a MapReduce job that writes and reads the whole graph.
+//
+// The merging follows the randomized approach of MRCompressChains.  In each superstep
+// each vertex is a "head" or a "tail", from a hash of its ID and the superstep, which 
+// any vertex can compute for any other.  A tail whose predecessor in its chain is a 
+// head sends itself to that predecessor and is removed.  The predecessor merges it 
+// with MRVertex.compressChain(), which takes its edges and, through 
+// MRMerVertex.compressChainInternal(), merges its MerString.  The tail also tells its
+// successor that its predecessor is now the head.  A vertex with no predecessor in 
+// the chain votes to halt, and is woken by the messages of a merge.  So about a 
+// quarter of the links of each chain are merged in each superstep, and compression
+// takes a number of supersteps logarithmic in the length of the longest chain.
+
+public class BspCompressMerChains {
+	
+	// Compress the chains of the vertices, which are the chain vertices from 
+	// MRBuildMerVertices (i.e., each has at most one distinct successor and at most one
+	// predecessor).  Edges to vertices that are not in the list (branch vertices) are
+	// kept.  Returns the compressed vertices.
+	
+	public static ArrayList<MRMerVertex> compress(ArrayList<MRMerVertex> vertices, 
+			int numThreads) {
+		ArrayList<MRMerVertex> result = new ArrayList<MRMerVertex>();
+		compress(vertices, numThreads, result);
+		return result;
+	}
+	
+	// Read the vertices from the "part" files of the input directory, compress their 
+	// chains with as many threads as there are processors, and write the result to 
+	// one "part" file in the output directory, in the format of MRCompressMerChains.
+	// Returns the number of supersteps.
+	
+	public static int run(Configuration conf, FileSystem fileSystem, Path inputPath, 
+			Path outputPath) throws IOException {
+		ArrayList<MRMerVertex> vertices = new ArrayList<MRMerVertex>();
+		for (FileStatus status : fileSystem.listStatus(inputPath)) {
+			Path path = status.getPath();
+			if (!path.getName().startsWith("part"))
+				continue;
+			SequenceFile.Reader reader = 
+					new SequenceFile.Reader(conf, SequenceFile.Reader.file(path));
+			try {
+				IntWritable key = new IntWritable();
+				BytesWritable value = new BytesWritable();
+				while (reader.next(key, value))
+					vertices.add(new MRMerVertex(value, conf));
+			}
+			finally {
+				reader.close();
+			}
+		}
+		
+		ArrayList<MRMerVertex> compressed = new ArrayList<MRMerVertex>();
+		int numSupersteps = 
+				compress(vertices, Runtime.getRuntime().availableProcessors(), compressed);
+		
+		fileSystem.mkdirs(outputPath);
+		Path path = fileSystem.makeQualified(new Path(outputPath, "part-r-00000"));
+		SequenceFile.Writer writer = SequenceFile.createWriter(conf, 
+				SequenceFile.Writer.file(path),
+				SequenceFile.Writer.keyClass(IntWritable.class), 
+				SequenceFile.Writer.valueClass(BytesWritable.class));
+		try {
+			for (MRMerVertex vertex : compressed)
+				writer.append(new IntWritable(vertex.getId()), 
+						vertex.toWritable(MRVertex.EdgeFormat.EDGES_TO));
+		}
+		finally {
+			writer.close();
+		}
+		
+		return numSupersteps;
+	}
+	
+	//
+	
+	// Compress the vertices, putting the results in the compressed list.  Returns the 
+	// number of supersteps.
+	
+	private static int compress(ArrayList<MRMerVertex> vertices, int numThreads, 
+			ArrayList<MRMerVertex> compressed) {
+		BspEngine<Chain, Message> engine = 
+				new BspEngine<Chain, Message>(PARTITIONS_PER_THREAD * numThreads, numThreads);
+		for (MRMerVertex vertex : vertices)
+			engine.addVertex(vertex.getId(), new Chain(vertex));
+		
+		int numSupersteps = engine.run(new Computation(), Integer.MAX_VALUE);
+		
+		for (BspEngine.Vertex<Chain, Message> vertex : engine.getVertices())
+			compressed.add(vertex.getValue().vertex);
+		return numSupersteps;
+	}
+	
+	// The value of each vertex: the MRMerVertex, and the IDs of its predecessor and 
+	// successor in its chain.
+	
+	private static class Chain {
+		Chain(MRMerVertex vertex) {
+			this.vertex = vertex;
+			predecessor = MRVertex.NO_VERTEX;
+			MRVertex.AdjacencyIterator toIt = vertex.createToAdjacencyIterator();
+			successor = toIt.begin();
+		}
+		
+		MRMerVertex vertex;
+		int predecessor;
+		int successor;
+		boolean isJoin;
+	}
+	
+	// A message either gives a vertex its (new) predecessor, or carries a tail vertex 
+	// and its successor to be merged by its predecessor.
+	
+	private static class Message {
+		Message(int predecessor) {
+			this.predecessor = predecessor;
+			vertex = null;
+			successor = MRVertex.NO_VERTEX;
+		}
+		
+		Message(MRMerVertex vertex, int successor) {
+			predecessor = MRVertex.NO_VERTEX;
+			this.vertex = vertex;
+			this.successor = successor;
+		}
+		
+		int predecessor;
+		MRMerVertex vertex;
+		int successor;
+	}
+	
+	private static class Computation implements BspEngine.Computation<Chain, Message> {
+		public void compute(BspEngine.Vertex<Chain, Message> vertex, ArrayList<Message> messages) {
+			Chain chain = vertex.getValue();
+			int id = vertex.getId();
+			int superstep = vertex.getSuperstep();
+			
+			// In the first superstep, each vertex tells its successor that it is the 
+			// predecessor; a message to a branch vertex is dropped.
+			
+			if (superstep == 0) {
+				if ((chain.successor != MRVertex.NO_VERTEX) && (chain.successor != id))
+					vertex.sendMessage(chain.successor, new Message(id));
+				vertex.voteToHalt();
+				return;
+			}
+			
+			// A vertex with two predecessors in the chains should not occur, but if it 
+			// does, the vertex is never merged.
+			
+			int numPredecessors = 0;
+			for (Message message : messages) {
+				if (message.vertex != null) {
+					chain.vertex.compressChain(message.vertex);
+					chain.successor = message.successor;
+				}
+				else {
+					chain.predecessor = message.predecessor;
+					numPredecessors++;
+				}
+			}
+			if ((superstep == 1) && (numPredecessors > 1))
+				chain.isJoin = true;
+			
+			if (chain.isJoin || (chain.predecessor == MRVertex.NO_VERTEX) || 
+					(chain.predecessor == id)) {
+				vertex.voteToHalt();
+				return;
+			}
+			
+			if (isHead(chain.predecessor, superstep) && !isHead(id, superstep)) {
+				vertex.sendMessage(chain.predecessor, new Message(chain.vertex, chain.successor));
+				if (chain.successor != MRVertex.NO_VERTEX)
+					vertex.sendMessage(chain.successor, new Message(chain.predecessor));
+				vertex.remove();
+			}
+		}
+		
+		private static boolean isHead(int id, int superstep) {
+			int h = (id * 0x9e3779b9) ^ (superstep * 0x85ebca6b);
+			h ^= (h >>> 15);
+			h *= 0x2c1b3c6d;
+			h ^= (h >>> 12);
+			return ((h & 0x1) == 0);
+		}
+	}
+	
+	private static final int PARTITIONS_PER_THREAD = 4;
+
+}
@@ -0,0 +1,341 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// An in-process engine for vertex-centric graph algorithms in the "bulk synchronous
+// parallel" style of Pregel and Giraph, as an alternative to a sequence of MapReduce
+// jobs.  The vertices are divided among partitions by a hash of their IDs, and are 
+// held in memory for the whole run.  In each superstep, the Computation is called for
+// each active vertex with the messages sent to it in the previous superstep, and it
+// may send messages, vote to halt, or remove the vertex.  The partitions are 
+// processed concurrently by a pool of threads, with a barrier between supersteps.
+//
+// Each partition has its own outbox for each partition, so sending a message takes
+// no locks.  The outboxes are double-buffered: in superstep s, a partition collects 
+// the messages sent to it in superstep s-1 while the other partitions are filling the
+// outboxes of superstep s.  A halted vertex is made active again by a message.  The 
+// run ends when every vertex has halted and no messages are in flight.  Messages to
+// IDs that are not vertices are dropped.  Removed vertices are dropped from their 
+// partitions at the end of each superstep, so their values do not stay in memory for
+// the rest of the run.
+
+public class BspEngine<V, M> {
+	
+	// The algorithm, called for each active vertex in each superstep.  The messages
+	// list is valid only during the call.
+	
+	public interface Computation<V, M> {
+		public void compute(Vertex<V, M> vertex, ArrayList<M> messages);
+	}
+	
+	// A vertex, with its value and the operations available to the Computation.
+	
+	public static class Vertex<V, M> {
+		
+		public int getId() {
+			return id;
+		}
+		
+		public V getValue() {
+			return value;
+		}
+		
+		public void setValue(V value) {
+			this.value = value;
+		}
+		
+		// Returns the number of the current superstep, starting from zero.
+		
+		public int getSuperstep() {
+			return partition.superstep;
+		}
+		
+		// Send the message to the vertex with the specified ID, to be received in the
+		// next superstep.
+		
+		public void sendMessage(int to, M message) {
+			partition.send(to, message);
+		}
+		
+		// Make this vertex inactive until it receives a message.
+		
+		public void voteToHalt() {
+			isHalted = true;
+		}
+		
+		// Remove this vertex from the graph at the end of the current superstep.  
+		// Messages sent to it afterwards are dropped.
+		
+		public void remove() {
+			if (!isRemoved)
+				partition.numRemoved++;
+			isRemoved = true;
+			isHalted = true;
+		}
+		
+		//
+		
+		private Vertex(int id, V value, Partition<V, M> partition) {
+			this.id = id;
+			this.value = value;
+			this.partition = partition;
+			inbox = new ArrayList<M>();
+		}
+		
+		private int id;
+		private V value;
+		private Partition<V, M> partition;
+		private ArrayList<M> inbox;
+		private boolean isHalted;
+		private boolean isRemoved;
+	}
+	
+	// Construct an engine with the specified number of partitions, processed by the
+	// specified number of threads.
+	
+	public BspEngine(int numPartitions, int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+		partitions = new ArrayList<Partition<V, M>>();
+		numPartitions = Math.max(1, numPartitions);
+		for (int i = 0; i < numPartitions; i++)
+			partitions.add(new Partition<V, M>(this, i, numPartitions));
+	}
+	
+	// Add a vertex before the run.  Throws IllegalArgumentException if there is 
+	// already a vertex with the ID.
+	
+	public void addVertex(int id, V value) throws IllegalArgumentException {
+		Partition<V, M> partition = partitions.get(getPartition(id));
+		if (partition.index.containsKey(id))
+			throw new IllegalArgumentException("BspEngine.addVertex(): duplicate ID " + id);
+		partition.index.put(id, partition.vertices.size());
+		partition.vertices.add(new Vertex<V, M>(id, value, partition));
+	}
+	
+	// Run supersteps until every vertex has halted and no messages are in flight, or
+	// until maxSupersteps have run.  Returns the number of supersteps run.
+	
+	public int run(final Computation<V, M> computation, int maxSupersteps) {
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			int superstep = 0;
+			while (superstep < maxSupersteps) {
+				ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+				for (final Partition<V, M> partition : partitions) {
+					final int s = superstep;
+					tasks.add(new Callable<Void>() {
+						public Void call() {
+							partition.runSuperstep(computation, s);
+							return null;
+						}
+					});
+				}
+				
+				// The invokeAll() call is the barrier between supersteps.
+				
+				for (Future<Void> future : executor.invokeAll(tasks))
+					future.get();
+				superstep++;
+				
+				boolean isDone = true;
+				for (Partition<V, M> partition : partitions) {
+					numMessages += partition.numSent;
+					if ((partition.numActive > 0) || (partition.numSent > 0))
+						isDone = false;
+				}
+				if (isDone)
+					break;
+			}
+			return superstep;
+		}
+		catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("BspEngine.run(): interrupted", exception);
+		}
+		catch (ExecutionException exception) {
+			if (exception.getCause() instanceof RuntimeException)
+				throw (RuntimeException) exception.getCause();
+			throw new IllegalStateException("BspEngine.run(): failed", exception.getCause());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+	
+	// Returns the vertices that have not been removed, partition by partition.
+	
+	public ArrayList<Vertex<V, M>> getVertices() {
+		ArrayList<Vertex<V, M>> result = new ArrayList<Vertex<V, M>>();
+		for (Partition<V, M> partition : partitions)
+			for (Vertex<V, M> vertex : partition.vertices)
+				if (!vertex.isRemoved)
+					result.add(vertex);
+		return result;
+	}
+	
+	// Returns the total number of messages sent so far.
+	
+	public long getNumMessages() {
+		return numMessages;
+	}
+	
+	//
+	
+	private int getPartition(int id) {
+		int h = id * 0x9e3779b9;
+		h ^= (h >>> 16);
+		return (h & 0x7fffffff) % partitions.size();
+	}
+	
+	// The messages sent from one partition to another in one superstep, with the
+	// destination IDs in a primitive array.
+	
+	private static class Outbox<M> {
+		Outbox() {
+			tos = new int[16];
+			messages = new ArrayList<M>();
+		}
+		
+		void add(int to, M message) {
+			if (messages.size() == tos.length) {
+				int[] larger = new int[2 * tos.length];
+				System.arraycopy(tos, 0, larger, 0, tos.length);
+				tos = larger;
+			}
+			tos[messages.size()] = to;
+			messages.add(message);
+		}
+		
+		void clear() {
+			messages.clear();
+		}
+		
+		int[] tos;
+		ArrayList<M> messages;
+	}
+	
+	private static class Partition<V, M> {
+		Partition(BspEngine<V, M> engine, int number, int numPartitions) {
+			this.engine = engine;
+			this.number = number;
+			vertices = new ArrayList<Vertex<V, M>>();
+			index = new IntIntMap(INITIAL_CAPACITY);
+			outboxes = new ArrayList<ArrayList<Outbox<M>>>();
+			for (int i = 0; i < 2; i++) {
+				ArrayList<Outbox<M>> buffer = new ArrayList<Outbox<M>>();
+				for (int j = 0; j < numPartitions; j++)
+					buffer.add(new Outbox<M>());
+				outboxes.add(buffer);
+			}
+		}
+		
+		// Deliver the messages sent to this partition in the previous superstep, then
+		// compute each active vertex.
+		
+		void runSuperstep(Computation<V, M> computation, int superstep) {
+			this.superstep = superstep;
+			
+			int previous = (superstep + 1) % 2;
+			for (Partition<V, M> from : engine.partitions) {
+				Outbox<M> outbox = from.outboxes.get(previous).get(number);
+				for (int i = 0; i < outbox.messages.size(); i++) {
+					int j = index.get(outbox.tos[i]);
+					if (j == IntIntMap.NOT_FOUND)
+						continue;
+					Vertex<V, M> vertex = vertices.get(j);
+					if (!vertex.isRemoved) {
+						vertex.inbox.add(outbox.messages.get(i));
+						vertex.isHalted = false;
+					}
+				}
+				outbox.clear();
+			}
+			
+			current = outboxes.get(superstep % 2);
+			numSent = 0;
+			numActive = 0;
+			numRemoved = 0;
+			for (Vertex<V, M> vertex : vertices) {
+				if (vertex.isHalted)
+					continue;
+				computation.compute(vertex, vertex.inbox);
+				vertex.inbox.clear();
+				if (!vertex.isHalted)
+					numActive++;
+			}
+			
+			if (numRemoved > 0)
+				compact();
+		}
+		
+		// Drop the removed vertices, and their values, from the vertices and the index.
+		// Messages sent to them in this superstep are then dropped for want of an
+		// index entry, as they would have been for being removed.
+		
+		void compact() {
+			ArrayList<Vertex<V, M>> kept = 
+					new ArrayList<Vertex<V, M>>(vertices.size() - numRemoved);
+			index = new IntIntMap(Math.max(INITIAL_CAPACITY, vertices.size() - numRemoved));
+			for (Vertex<V, M> vertex : vertices) {
+				if (vertex.isRemoved) {
+					vertex.value = null;
+					continue;
+				}
+				index.put(vertex.id, kept.size());
+				kept.add(vertex);
+			}
+			vertices = kept;
+		}
+		
+		void send(int to, M message) {
+			current.get(engine.getPartition(to)).add(to, message);
+			numSent++;
+		}
+		
+		BspEngine<V, M> engine;
+		int number;
+		ArrayList<Vertex<V, M>> vertices;
+		IntIntMap index;
+		ArrayList<ArrayList<Outbox<M>>> outboxes;
+		ArrayList<Outbox<M>> current;
+		int superstep;
+		int numSent;
+		int numActive;
+		int numRemoved;
+	}
+	
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	private int numThreads;
+	private ArrayList<Partition<V, M>> partitions;
+	private long numMessages;
+	
+}
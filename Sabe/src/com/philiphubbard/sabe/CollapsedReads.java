@@ -0,0 +1,224 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.Arrays;
+import java.util.List;
+
+// A table of distinct reads and the number of times each occurs, so identical reads
+// (common in amplicon and PCR-heavy libraries) can be split into k-mers once, with
+// the count applied as the multiple of the edges.  Each read is stored packed with
+// two bits per base, as in Mer, 32 bases per long, and the table is hashed on the 
+// packed form, so a distinct read costs about a quarter of a byte per base and 
+// comparing two reads compares 32 bases at a time.
+//
+// Collapsed reads are written one per line, as the read and its count separated 
+// by a tab ("READ\tCOUNT"); see toLine(), parseRead() and parseCount().
+//
+// Instances are not thread safe.
+
+public class CollapsedReads {
+	
+	// Construct an empty table.
+	
+	public CollapsedReads() {
+		pool = new long[INITIAL_CAPACITY];
+		offsets = new int[INITIAL_CAPACITY];
+		lengths = new int[INITIAL_CAPACITY];
+		counts = new int[INITIAL_CAPACITY];
+		table = new int[2 * INITIAL_CAPACITY];
+		mask = table.length - 1;
+		scratch = new long[1];
+	}
+	
+	// Construct the table of the reads.  Throws IllegalArgumentException if a read 
+	// contains characters other than "A", "C", "G" and "T".
+	
+	public CollapsedReads(List<String> reads) throws IllegalArgumentException {
+		this();
+		for (String read : reads)
+			add(read, 1);
+	}
+	
+	// Add count occurrences of the read.  Empty reads are ignored.
+	
+	public void add(String read, int count) throws IllegalArgumentException {
+		int length = read.length();
+		if (length == 0)
+			return;
+		int numWords = (length + BASES_PER_WORD - 1) / BASES_PER_WORD;
+		if (scratch.length < numWords)
+			scratch = new long[numWords];
+		Arrays.fill(scratch, 0, numWords, 0L);
+		for (int i = 0; i < length; i++)
+			scratch[i / BASES_PER_WORD] |= 
+				(long) Mer.letterToInt(read.charAt(i)) << (2 * (i % BASES_PER_WORD));
+		
+		int h = hash(scratch, 0, numWords, length);
+		int slot = h & mask;
+		while (table[slot] != 0) {
+			int index = table[slot] - 1;
+			if (matches(index, scratch, numWords, length)) {
+				counts[index] += count;
+				numReads += count;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		
+		if (size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, 2 * size);
+			lengths = Arrays.copyOf(lengths, 2 * size);
+			counts = Arrays.copyOf(counts, 2 * size);
+		}
+		if (poolSize + numWords > pool.length)
+			pool = Arrays.copyOf(pool, Math.max(2 * pool.length, poolSize + numWords));
+		System.arraycopy(scratch, 0, pool, poolSize, numWords);
+		offsets[size] = poolSize;
+		lengths[size] = length;
+		counts[size] = count;
+		poolSize += numWords;
+		table[slot] = ++size;
+		numReads += count;
+		
+		if (2 * size > table.length)
+			rehash();
+	}
+	
+	// Add the read or collapsed read on the line.
+	
+	public void addLine(String line) throws IllegalArgumentException {
+		add(parseRead(line), parseCount(line));
+	}
+	
+	// Returns the number of distinct reads.
+	
+	public int size() {
+		return size;
+	}
+	
+	// Returns the total number of reads, counting each occurrence.
+	
+	public long getNumReads() {
+		return numReads;
+	}
+	
+	// Returns distinct read i, in the order in which the distinct reads were added.
+	
+	public String getRead(int i) {
+		char[] bases = new char[lengths[i]];
+		for (int j = 0; j < bases.length; j++) {
+			long word = pool[offsets[i] + j / BASES_PER_WORD];
+			bases[j] = BASES[(int) (word >>> (2 * (j % BASES_PER_WORD))) & 0x3];
+		}
+		return new String(bases);
+	}
+	
+	// Returns the number of occurrences of distinct read i.
+	
+	public int getCount(int i) {
+		return counts[i];
+	}
+	
+	// Returns the line for a collapsed read.
+	
+	public static String toLine(String read, int count) {
+		return read + "\t" + count;
+	}
+	
+	// Returns the read of a line that is a read or a collapsed read.
+	
+	public static String parseRead(String line) {
+		int tab = line.indexOf('\t');
+		return (tab < 0) ? line : line.substring(0, tab);
+	}
+	
+	// Returns the count of a line that is a read (1) or a collapsed read.  Throws 
+	// IllegalArgumentException if the count is not a positive integer.
+	
+	public static int parseCount(String line) throws IllegalArgumentException {
+		int tab = line.indexOf('\t');
+		if (tab < 0)
+			return 1;
+		int count;
+		try {
+			count = Integer.parseInt(line.substring(tab + 1));
+		}
+		catch (NumberFormatException exception) {
+			count = 0;
+		}
+		if (count < 1)
+			throw new IllegalArgumentException("CollapsedReads.parseCount(): bad count in \"" 
+					+ line + "\"");
+		return count;
+	}
+	
+	//
+	
+	private boolean matches(int index, long[] words, int numWords, int length) {
+		if (lengths[index] != length)
+			return false;
+		int offset = offsets[index];
+		for (int w = 0; w < numWords; w++)
+			if (pool[offset + w] != words[w])
+				return false;
+		return true;
+	}
+	
+	private static int hash(long[] words, int offset, int numWords, int length) {
+		long h = length;
+		for (int w = 0; w < numWords; w++) {
+			h = (h ^ words[offset + w]) * 0x9E3779B97F4A7C15L;
+			h ^= h >>> 29;
+		}
+		return (int) (h ^ (h >>> 32));
+	}
+	
+	private void rehash() {
+		table = new int[2 * table.length];
+		mask = table.length - 1;
+		for (int i = 0; i < size; i++) {
+			int numWords = (lengths[i] + BASES_PER_WORD - 1) / BASES_PER_WORD;
+			int slot = hash(pool, offsets[i], numWords, lengths[i]) & mask;
+			while (table[slot] != 0)
+				slot = (slot + 1) & mask;
+			table[slot] = i + 1;
+		}
+	}
+	
+	private static final int BASES_PER_WORD = 32;
+	private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private long[] pool;
+	private int poolSize;
+	private int[] offsets;
+	private int[] lengths;
+	private int[] counts;
+	private int size;
+	private long numReads;
+	private int[] table;
+	private int mask;
+	private long[] scratch;
+	
+}
@@ -0,0 +1,350 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.Arrays;
+
+import com.philiphubbard.digraph.BasicDigraph;
+import com.philiphubbard.digraph.Digraph;
+
+// A directed graph with edge multiples, stored in compressed sparse row (CSR)
+// form.  The distinct edges from vertex v have indices from getEdgeBegin(v) up
+// to but not including getEdgeEnd(v), in ascending order of the vertex they point
+// to.  Instead of one edge object per edge multiple, each distinct edge has an
+// entry in a parallel array of edge multiples.  The structure of the graph cannot
+// change after it is built, but the edge multiples can, so lowering an edge
+// multiple is a single array write.  An edge whose multiple is zero is treated as
+// absent.
+//
+// A CompactDigraph is built with a CompactDigraph.Builder, which accepts edges in
+// any order.
+
+public class CompactDigraph {
+	
+	// A class to accumulate the edges of a CompactDigraph before it is built.
+	
+	public static class Builder {
+		
+		// Construct a builder for a graph with vertex indices from 0 up to but not
+		// including vertexCapacity.
+		
+		public Builder(int vertexCapacity) {
+			this(vertexCapacity, INITIAL_EDGE_CAPACITY);
+		}
+		
+		// Construct a builder that can hold the expected number of calls to addEdge()
+		// without growing.
+		
+		public Builder(int vertexCapacity, int expectedEdges) {
+			this.vertexCapacity = vertexCapacity;
+			int capacity = Math.max(expectedEdges, 1);
+			froms = new int[capacity];
+			entries = new long[capacity];
+			size = 0;
+		}
+		
+		// Add one edge multiple from one vertex to another.
+		
+		public void addEdge(int from, int to) {
+			addEdge(from, to, 1);
+		}
+		
+		// Add the specified number of edge multiples from one vertex to another.
+		// Throws IllegalArgumentException if a vertex is out of range or the
+		// multiple is negative.
+		
+		public void addEdge(int from, int to, int multiple) throws IllegalArgumentException {
+			if ((from < 0) || (from >= vertexCapacity) || (to < 0) || (to >= vertexCapacity))
+				throw new IllegalArgumentException("CompactDigraph.Builder.addEdge(): " +
+						"vertex out of range");
+			if (multiple < 0)
+				throw new IllegalArgumentException("CompactDigraph.Builder.addEdge(): " +
+						"negative edge multiple");
+			
+			if (size == froms.length) {
+				froms = Arrays.copyOf(froms, 2 * size);
+				entries = Arrays.copyOf(entries, 2 * size);
+			}
+			froms[size] = from;
+			entries[size] = pack(to, multiple);
+			size++;
+		}
+		
+		// Build the graph.  Edges between the same pair of vertices are combined
+		// into one edge with the sum of their multiples.
+		
+		public CompactDigraph build() {
+			
+			// Counting sort of the edges by the vertex they come from.
+			
+			int[] begins = new int[vertexCapacity + 1];
+			for (int i = 0; i < size; i++)
+				begins[froms[i] + 1]++;
+			for (int v = 0; v < vertexCapacity; v++)
+				begins[v + 1] += begins[v];
+			
+			int[] next = Arrays.copyOf(begins, vertexCapacity);
+			long[] sorted = new long[size];
+			for (int i = 0; i < size; i++)
+				sorted[next[froms[i]]++] = entries[i];
+			
+			// Sort each vertex's edges by the vertex they point to, and combine the
+			// duplicates.
+			
+			int[] edgeBegins = new int[vertexCapacity + 1];
+			int n = 0;
+			for (int v = 0; v < vertexCapacity; v++) {
+				edgeBegins[v] = n;
+				Arrays.sort(sorted, begins[v], begins[v + 1]);
+				for (int i = begins[v]; i < begins[v + 1]; i++) {
+					if ((n > edgeBegins[v]) && (unpackTo(sorted[n - 1]) == unpackTo(sorted[i])))
+						sorted[n - 1] = pack(unpackTo(sorted[i]), 
+								unpackMultiple(sorted[n - 1]) + unpackMultiple(sorted[i]));
+					else
+						sorted[n++] = sorted[i];
+				}
+			}
+			edgeBegins[vertexCapacity] = n;
+			
+			int[] edgeTos = new int[n];
+			int[] edgeMultiples = new int[n];
+			for (int i = 0; i < n; i++) {
+				edgeTos[i] = unpackTo(sorted[i]);
+				edgeMultiples[i] = unpackMultiple(sorted[i]);
+			}
+			
+			return new CompactDigraph(edgeBegins, edgeTos, edgeMultiples);
+		}
+		
+		private static long pack(int to, int multiple) {
+			return (((long) to) << 32) | (multiple & 0xffffffffL);
+		}
+		
+		private static int unpackTo(long entry) {
+			return (int) (entry >>> 32);
+		}
+		
+		private static int unpackMultiple(long entry) {
+			return (int) entry;
+		}
+		
+		private static final int INITIAL_EDGE_CAPACITY = 16;
+		
+		private int vertexCapacity;
+		private int[] froms;
+		private long[] entries;
+		private int size;
+	}
+	
+	// Build a CompactDigraph with the same edges and edge multiples as a 
+	// digraph.BasicDigraph.
+	
+	public static CompactDigraph fromBasicDigraph(BasicDigraph graph) {
+		Builder builder = new Builder(graph.getVertexCapacity());
+		for (int v = 0; v < graph.getVertexCapacity(); v++) {
+			BasicDigraph.AdjacencyIterator it = graph.createAdjacencyIterator(v);
+			for (BasicDigraph.Edge edge = it.begin(); !it.done(); edge = it.next())
+				builder.addEdge(v, edge.getTo());
+		}
+		return builder.build();
+	}
+	
+	// Returns the number of vertices.
+	
+	public int getVertexCapacity() {
+		return edgeBegins.length - 1;
+	}
+	
+	// Returns the number of distinct edges (ignoring edge multiples).
+	
+	public int getNumEdges() {
+		return edgeTos.length;
+	}
+	
+	// The distinct edges from vertex v have indices from getEdgeBegin(v) up to but
+	// not including getEdgeEnd(v).
+	
+	public int getEdgeBegin(int v) {
+		return edgeBegins[v];
+	}
+	
+	public int getEdgeEnd(int v) {
+		return edgeBegins[v + 1];
+	}
+	
+	// Returns the vertex to which the edge with the specified index points.
+	
+	public int getEdgeTo(int edge) {
+		return edgeTos[edge];
+	}
+	
+	// Returns the multiple of the edge with the specified index.
+	
+	public int getEdgeMultiple(int edge) {
+		return edgeMultiples[edge];
+	}
+	
+	// Sets the multiple of the edge with the specified index.  A multiple of zero
+	// effectively removes the edge.
+	
+	public void setEdgeMultiple(int edge, int multiple) {
+		edgeMultiples[edge] = multiple;
+	}
+	
+	// Returns the index of the edge from one vertex to another, or -1 if there
+	// is no such edge.
+	
+	public int findEdge(int from, int to) {
+		int i = Arrays.binarySearch(edgeTos, edgeBegins[from], edgeBegins[from + 1], to);
+		return (i >= 0) ? i : -1;
+	}
+	
+	// Returns the number of edges from the vertex, counting edge multiples.
+	
+	public int getOutDegree(int v) {
+		int n = 0;
+		for (int e = edgeBegins[v]; e < edgeBegins[v + 1]; e++)
+			n += edgeMultiples[e];
+		return n;
+	}
+	
+	// Returns true if there are no edges from the vertex.
+	
+	public boolean isSink(int v) {
+		for (int e = edgeBegins[v]; e < edgeBegins[v + 1]; e++)
+			if (edgeMultiples[e] > 0)
+				return false;
+		return true;
+	}
+	
+	// Returns the transpose of the graph, with every edge reversed and having the
+	// same edge multiple it has in this graph.
+	
+	public CompactDigraph transpose() {
+		int vertexCapacity = getVertexCapacity();
+		
+		int[] begins = new int[vertexCapacity + 1];
+		for (int e = 0; e < edgeTos.length; e++)
+			begins[edgeTos[e] + 1]++;
+		for (int v = 0; v < vertexCapacity; v++)
+			begins[v + 1] += begins[v];
+		
+		// Visiting the vertices in ascending order leaves the edges of each vertex
+		// in the transpose in ascending order, too.
+		
+		int[] next = Arrays.copyOf(begins, vertexCapacity);
+		int[] tos = new int[edgeTos.length];
+		int[] multiples = new int[edgeTos.length];
+		for (int v = 0; v < vertexCapacity; v++) {
+			for (int e = edgeBegins[v]; e < edgeBegins[v + 1]; e++) {
+				int i = next[edgeTos[e]]++;
+				tos[i] = v;
+				multiples[i] = edgeMultiples[e];
+			}
+		}
+		
+		return new CompactDigraph(begins, tos, multiples);
+	}
+	
+	// Returns the subgraph with the vertices vertices[begin] through vertices[end - 1],
+	// where localIndices maps each of those vertices to its index in the subgraph
+	// (from 0 to end - begin - 1).  Edges to vertices outside the subgraph are omitted.
+	
+	public CompactDigraph subgraph(int[] vertices, int begin, int end, int[] localIndices) {
+		int numVertices = end - begin;
+		
+		int[] begins = new int[numVertices + 1];
+		int n = 0;
+		for (int i = begin; i < end; i++) {
+			int v = vertices[i];
+			for (int e = edgeBegins[v]; e < edgeBegins[v + 1]; e++)
+				if (isInSubgraph(edgeTos[e], vertices, begin, end, localIndices))
+					n++;
+			begins[i - begin + 1] = n;
+		}
+		
+		int[] tos = new int[n];
+		int[] multiples = new int[n];
+		n = 0;
+		for (int i = begin; i < end; i++) {
+			int v = vertices[i];
+			
+			// The local indices might not preserve the order of the vertices, so the
+			// edges of each vertex are sorted again.
+			
+			int first = n;
+			for (int e = edgeBegins[v]; e < edgeBegins[v + 1]; e++) {
+				int to = edgeTos[e];
+				if (isInSubgraph(to, vertices, begin, end, localIndices)) {
+					int j = n++;
+					int local = localIndices[to];
+					int multiple = edgeMultiples[e];
+					while ((j > first) && (tos[j - 1] > local)) {
+						tos[j] = tos[j - 1];
+						multiples[j] = multiples[j - 1];
+						j--;
+					}
+					tos[j] = local;
+					multiples[j] = multiple;
+				}
+			}
+		}
+		
+		return new CompactDigraph(begins, tos, multiples);
+	}
+	
+	// Build a digraph.BasicDigraph with the same edges.  If withMultiples is false,
+	// each distinct edge appears once, regardless of its multiple.
+	
+	public BasicDigraph toBasicDigraph(boolean withMultiples) {
+		BasicDigraph graph = new BasicDigraph(getVertexCapacity(), 
+				withMultiples ? Digraph.EdgeMultiples.ENABLED : Digraph.EdgeMultiples.DISABLED);
+		for (int v = 0; v < getVertexCapacity(); v++) {
+			for (int e = edgeBegins[v]; e < edgeBegins[v + 1]; e++) {
+				int n = withMultiples ? edgeMultiples[e] : Math.min(edgeMultiples[e], 1);
+				for (int i = 0; i < n; i++)
+					graph.addEdge(v, new BasicDigraph.Edge(edgeTos[e]));
+			}
+		}
+		return graph;
+	}
+	
+	//
+	
+	private static boolean isInSubgraph(int v, int[] vertices, int begin, int end, 
+			int[] localIndices) {
+		int local = localIndices[v];
+		return ((local >= 0) && (local < end - begin) && (vertices[begin + local] == v));
+	}
+	
+	private CompactDigraph(int[] edgeBegins, int[] edgeTos, int[] edgeMultiples) {
+		this.edgeBegins = edgeBegins;
+		this.edgeTos = edgeTos;
+		this.edgeMultiples = edgeMultiples;
+	}
+	
+	private int[] edgeBegins;
+	private int[] edgeTos;
+	private int[] edgeMultiples;
+	
+}
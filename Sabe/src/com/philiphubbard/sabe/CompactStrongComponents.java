@@ -0,0 +1,148 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+// The strongly-connected components or "strong components" of a CompactDigraph,
+// with the component of each vertex stored in an array of labels, so checking 
+// whether two vertices are in the same component is one comparison.  Edges whose
+// multiple is zero are ignored.
+//
+// The components are found by Tarjan's algorithm, which is linear in the size of
+// the graph.  The depth-first search of the algorithm is iterative, with its stacks 
+// in primitive arrays, so a long path (like those in a compressed graph with 
+// millions of vertices) cannot overflow the call stack.
+
+public class CompactStrongComponents {
+	
+	// Find the strong components of the graph.
+	
+	public CompactStrongComponents(CompactDigraph graph) {
+		int numVertices = graph.getVertexCapacity();
+		components = new int[numVertices];
+		numComponents = 0;
+		
+		// The order in which each vertex is first visited, or -1 for an unvisited 
+		// vertex, and the lowest order of a vertex on the component stack that is
+		// reachable from it.  A vertex is on the component stack if its component
+		// is -1 and its order is not -1.
+		
+		int[] orders = new int[numVertices];
+		int[] lows = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			orders[v] = -1;
+			components[v] = -1;
+		}
+		int order = 0;
+		
+		int[] componentStack = new int[numVertices];
+		int componentStackSize = 0;
+		
+		// The stack of the depth-first search, with the index of the next edge to
+		// process from each vertex.
+		
+		int[] searchVertices = new int[numVertices];
+		int[] searchCursors = new int[numVertices];
+		int searchStackSize = 0;
+		
+		for (int start = 0; start < numVertices; start++) {
+			if (orders[start] != -1)
+				continue;
+			
+			orders[start] = lows[start] = order++;
+			componentStack[componentStackSize++] = start;
+			searchVertices[searchStackSize] = start;
+			searchCursors[searchStackSize] = graph.getEdgeBegin(start);
+			searchStackSize++;
+			
+			while (searchStackSize > 0) {
+				int top = searchStackSize - 1;
+				int v = searchVertices[top];
+				int e = searchCursors[top];
+				
+				if (e < graph.getEdgeEnd(v)) {
+					searchCursors[top]++;
+					if (graph.getEdgeMultiple(e) == 0)
+						continue;
+					
+					int w = graph.getEdgeTo(e);
+					if (orders[w] == -1) {
+						orders[w] = lows[w] = order++;
+						componentStack[componentStackSize++] = w;
+						searchVertices[searchStackSize] = w;
+						searchCursors[searchStackSize] = graph.getEdgeBegin(w);
+						searchStackSize++;
+					}
+					else if (components[w] == -1) {
+						lows[v] = Math.min(lows[v], orders[w]);
+					}
+				}
+				else {
+					searchStackSize--;
+					
+					// A vertex that reaches no vertex visited before it is the root of 
+					// a component, which is all the vertices above it on the component
+					// stack.
+					
+					if (lows[v] == orders[v]) {
+						int w;
+						do {
+							w = componentStack[--componentStackSize];
+							components[w] = numComponents;
+						} while (w != v);
+						numComponents++;
+					}
+					
+					if (searchStackSize > 0) {
+						int parent = searchVertices[searchStackSize - 1];
+						lows[parent] = Math.min(lows[parent], lows[v]);
+					}
+				}
+			}
+		}
+	}
+	
+	// Returns the number of strong components.
+	
+	public int getNumComponents() {
+		return numComponents;
+	}
+	
+	// Returns the label of the strong component containing the vertex, from 0 up to
+	// but not including getNumComponents().
+	
+	public int getComponent(int v) {
+		return components[v];
+	}
+	
+	// Returns true if there is a path from v to w and a path from w to v.
+	
+	public boolean isStronglyReachable(int v, int w) {
+		return (components[v] == components[w]);
+	}
+	
+	//
+	
+	private int[] components;
+	private int numComponents;
+	
+}
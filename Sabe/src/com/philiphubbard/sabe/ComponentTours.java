@@ -0,0 +1,309 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Assembles the sequences of a CompactDigraph one weakly-connected component at a
+// time, with the components processed concurrently on a thread pool.  Real sets
+// of reads often produce several components (e.g., from separate molecules like
+// plasmids, or from gaps in coverage), and each can be assembled independently.
+//
+// For a component that has an Euler path (or Euler tour), the result is the one 
+// sequence from that path.  Otherwise, the result is the component's "unitigs", 
+// the sequences of its maximal paths whose interior vertices each have exactly
+// one edge in and one edge out.
+//
+// The caller supplies a Sequences instance that knows the sequence of each vertex,
+// and a Consumer that receives the results of each component as soon as that
+// component is done.  The Consumer is always called on the thread that called
+// run(), so it need not be thread safe.
+
+public class ComponentTours {
+	
+	// An interface for appending the sequence of a vertex to the sequence of a path.
+	// The first vertex of a path contributes its whole sequence, and later vertices
+	// contribute only what follows the overlap with the previous vertex.  The
+	// vertex is an index in the whole graph.  This function will be called on
+	// multiple threads at once.
+	
+	public interface Sequences {
+		void append(int vertex, boolean isFirst, StringBuilder seq);
+	}
+	
+	// An interface for receiving the sequences of a component.
+	
+	public interface Consumer {
+		void accept(int component, ArrayList<String> sequences) throws IOException;
+	}
+	
+	// Assemble all the components of the graph that contain vertices marked in 
+	// isPresent (or all vertices, if isPresent is null), using the specified number
+	// of threads.  Returns the number of components.
+	
+	public static int run(CompactDigraph graph, boolean[] isPresent, 
+			final Sequences sequences, int numThreads, Consumer consumer) 
+			throws IOException {
+		final WeakComponents components = new WeakComponents(graph, isPresent);
+		int n = components.getNumComponents();
+		
+		if ((numThreads <= 1) || (n <= 1)) {
+			for (int c = 0; c < n; c++)
+				consumer.accept(c, assembleComponent(components, c, sequences));
+			return n;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, n));
+		try {
+			CompletionService<Result> completion = new ExecutorCompletionService<Result>(executor);
+			for (int c = 0; c < n; c++) {
+				final int component = c;
+				completion.submit(new Callable<Result>() {
+					public Result call() {
+						return new Result(component, 
+								assembleComponent(components, component, sequences));
+					}
+				});
+			}
+			
+			for (int i = 0; i < n; i++) {
+				Result result = completion.take().get();
+				consumer.accept(result.component, result.sequences);
+			}
+		}
+		catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IOException("ComponentTours.run(): interrupted", exception);
+		}
+		catch (ExecutionException exception) {
+			if (exception.getCause() instanceof RuntimeException)
+				throw (RuntimeException) exception.getCause();
+			throw new IOException("ComponentTours.run(): failed", exception.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		
+		return n;
+	}
+	
+	// A convenience version of run() that returns the sequences of all the components,
+	// in the order of the components.
+	
+	public static ArrayList<String> run(CompactDigraph graph, boolean[] isPresent, 
+			Sequences sequences, int numThreads) {
+		final ArrayList<ArrayList<String>> byComponent = new ArrayList<ArrayList<String>>();
+		try {
+			run(graph, isPresent, sequences, numThreads, new Consumer() {
+				public void accept(int component, ArrayList<String> seqs) {
+					while (byComponent.size() <= component)
+						byComponent.add(null);
+					byComponent.set(component, seqs);
+				}
+			});
+		}
+		catch (IOException exception) {
+			throw new RuntimeException(exception);
+		}
+		
+		ArrayList<String> result = new ArrayList<String>();
+		for (ArrayList<String> seqs : byComponent)
+			result.addAll(seqs);
+		return result;
+	}
+	
+	//
+	
+	// Assemble one component.
+	
+	private static ArrayList<String> assembleComponent(WeakComponents components, int c,
+			Sequences sequences) {
+		ArrayList<String> result = new ArrayList<String>();
+		
+		CompactDigraph subgraph = components.createSubgraph(c);
+		int begin = components.getVertexBegin(c);
+		int numVertices = subgraph.getVertexCapacity();
+		
+		// A component with an Euler path has every vertex balanced (as many edges in
+		// as out) except for at most one with an extra edge out, where the path starts,
+		// and one with an extra edge in, where the path ends.
+		
+		int[] balances = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			for (int e = subgraph.getEdgeBegin(v); e < subgraph.getEdgeEnd(v); e++) {
+				balances[v] += subgraph.getEdgeMultiple(e);
+				balances[subgraph.getEdgeTo(e)] -= subgraph.getEdgeMultiple(e);
+			}
+		}
+		
+		int start = -1;
+		int end = -1;
+		boolean isEulerian = true;
+		for (int v = 0; (v < numVertices) && isEulerian; v++) {
+			if (balances[v] == 1) {
+				isEulerian = (start == -1);
+				start = v;
+			}
+			else if (balances[v] == -1) {
+				isEulerian = (end == -1);
+				end = v;
+			}
+			else if (balances[v] != 0) {
+				isEulerian = false;
+			}
+		}
+		isEulerian = isEulerian && ((start == -1) == (end == -1));
+		
+		if (isEulerian) {
+			
+			// Finding the path on the transpose, starting from the end, produces the
+			// vertices in forward order.  A tour can start (and end) anywhere.
+			
+			EulerTour tour = new EulerTour(subgraph.transpose());
+			PathWriter writer = new PathWriter(components, begin, sequences);
+			tour.visitPath((end != -1) ? end : 0, writer);
+			result.add(writer.finish());
+		}
+		else {
+			appendUnitigs(subgraph, components, begin, sequences, result);
+		}
+		
+		return result;
+	}
+	
+	// Append to the result the sequences of the unitigs of the subgraph of a component.
+	// Edge multiples are ignored, except that an edge whose multiple is zero is absent.
+	
+	private static void appendUnitigs(CompactDigraph subgraph, WeakComponents components,
+			int begin, Sequences sequences, ArrayList<String> result) {
+		int numVertices = subgraph.getVertexCapacity();
+		
+		int[] inDegrees = new int[numVertices];
+		int[] outDegrees = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			for (int e = subgraph.getEdgeBegin(v); e < subgraph.getEdgeEnd(v); e++) {
+				if (subgraph.getEdgeMultiple(e) > 0) {
+					outDegrees[v]++;
+					inDegrees[subgraph.getEdgeTo(e)]++;
+				}
+			}
+		}
+		
+		boolean[] wasUsed = new boolean[subgraph.getNumEdges()];
+		PathWriter writer = new PathWriter(components, begin, sequences);
+		
+		// Unitigs start at vertices that are not interior vertices.  A vertex with no
+		// edges at all is a unitig by itself.
+		
+		for (int v = 0; v < numVertices; v++) {
+			if ((inDegrees[v] == 1) && (outDegrees[v] == 1))
+				continue;
+			if ((inDegrees[v] == 0) && (outDegrees[v] == 0)) {
+				writer.visit(v);
+				result.add(writer.finish());
+				continue;
+			}
+			for (int e = subgraph.getEdgeBegin(v); e < subgraph.getEdgeEnd(v); e++) {
+				if (subgraph.getEdgeMultiple(e) > 0) {
+					writer.visit(v);
+					walkUnitig(subgraph, e, inDegrees, outDegrees, wasUsed, writer);
+					result.add(writer.finish());
+				}
+			}
+		}
+		
+		// Any edges not used yet are on cycles consisting only of interior vertices.
+		
+		for (int v = 0; v < numVertices; v++) {
+			for (int e = subgraph.getEdgeBegin(v); e < subgraph.getEdgeEnd(v); e++) {
+				if ((subgraph.getEdgeMultiple(e) > 0) && !wasUsed[e]) {
+					writer.visit(v);
+					walkUnitig(subgraph, e, inDegrees, outDegrees, wasUsed, writer);
+					result.add(writer.finish());
+				}
+			}
+		}
+	}
+	
+	// Follow a unitig from edge e, passing each vertex after the first to the writer.
+	
+	private static void walkUnitig(CompactDigraph subgraph, int e, int[] inDegrees, 
+			int[] outDegrees, boolean[] wasUsed, PathWriter writer) {
+		while ((e != -1) && !wasUsed[e]) {
+			wasUsed[e] = true;
+			int w = subgraph.getEdgeTo(e);
+			writer.visit(w);
+			
+			e = -1;
+			if ((inDegrees[w] == 1) && (outDegrees[w] == 1)) {
+				for (int f = subgraph.getEdgeBegin(w); f < subgraph.getEdgeEnd(w); f++)
+					if (subgraph.getEdgeMultiple(f) > 0)
+						e = f;
+			}
+		}
+	}
+	
+	// A EulerTour.Visitor that builds the sequence of a path of local vertex indices.
+	
+	private static class PathWriter implements EulerTour.Visitor {
+		
+		PathWriter(WeakComponents components, int begin, Sequences sequences) {
+			this.components = components;
+			this.begin = begin;
+			this.sequences = sequences;
+		}
+		
+		public void visit(int vertex) {
+			sequences.append(components.getVertex(begin + vertex), seq.length() == 0, seq);
+		}
+		
+		String finish() {
+			String result = seq.toString();
+			seq.setLength(0);
+			return result;
+		}
+		
+		private WeakComponents components;
+		private int begin;
+		private Sequences sequences;
+		private StringBuilder seq = new StringBuilder();
+	}
+	
+	private static class Result {
+		Result(int component, ArrayList<String> sequences) {
+			this.component = component;
+			this.sequences = sequences;
+		}
+		
+		int component;
+		ArrayList<String> sequences;
+	}
+	
+}
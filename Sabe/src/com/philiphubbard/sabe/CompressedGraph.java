@@ -0,0 +1,143 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+// A directed graph built from the vertices in an MRCompressedVertices, with its
+// repeats rectified, from which the final sequences are assembled.  The underlying
+// representation is a CompactDigraph whose vertex indices are the rows of the
+// MRCompressedVertices.  This is the last stage of both MRAssembler and 
+// LocalAssembler.
+
+public class CompressedGraph {
+	
+	// Construct the graph from the vertices, whose (k-1)-mers have the specified 
+	// length, and rectify its repeats given the specified coverage, unless isRectified
+	// is true, indicating the edge multiples have been rectified already.  Repeats 
+	// are rectified with Repeats.rectifyMultiple() if multipleRepeats is true, and 
+	// with Repeats.rectifySingleParallel() otherwise.
+	
+	public CompressedGraph(MRCompressedVertices vertices, int vertexMerLength, int coverage,
+			boolean isRectified, boolean multipleRepeats) {
+		this.vertices = vertices;
+		this.vertexMerLength = vertexMerLength;
+		
+		// The MRMerVertices have a wide range of IDs, since each ID is an encoding
+		// of a (k-1)-mer.  For the CompactDigraph, vertices will have IDs
+		// that are consecutive integers starting at 0.  These IDs are the rows
+		// of the MRCompressedVertices.  (Repeats.rectifySingleParallel() does not
+		// need the source to be at index 0, as Repeats.rectifySingle() prefers.)
+		
+		// The vertices need to have their edges remapped, too.  This IntIntMap maps
+		// from (k-1)-mer IDs to new CompactDigraph IDs to facilitate the
+		// new edges.
+		
+		IntIntMap merToIndex = new IntIntMap(vertices.size());
+		
+		// The Repeats class needs an array indicating what vertices are branches 
+		// (so it can avoid computing that status itself).
+		
+		boolean[] isBranch = new boolean[vertices.size()];
+		
+		for (int row = 0; row < vertices.size(); row++) {
+			merToIndex.put(vertices.getId(row), row);
+			isBranch[row] = vertices.getIsBranch(row);
+		}
+		
+		// Create the graph of the vertices with the new IDs.
+		
+		CompactDigraph.Builder builder = 
+				new CompactDigraph.Builder(vertices.size(), vertices.getNumEdges());
+		
+		for (int row = 0; row < vertices.size(); row++) {
+			
+			// Add the edges with the new IDs.
+			
+			for (int e = vertices.getEdgeBegin(row); e < vertices.getEdgeEnd(row); e++)
+				builder.addEdge(row, merToIndex.get(vertices.getEdgeTo(e)));
+		}
+		
+		graph = builder.build();
+		
+		if (!isRectified) {
+			if (multipleRepeats)
+				Repeats.rectifyMultiple(graph, coverage, isBranch);
+			else
+				Repeats.rectifySingleParallel(graph, coverage, isBranch,
+						Runtime.getRuntime().availableProcessors());
+		}
+	}
+	
+	// Assemble the final sequences, one for each weakly-connected component that
+	// has an Euler path, or one for each unitig of a component that does not, and
+	// return them.  There ought to be just one String, but the return value allows
+	// for the possibility of more than one.
+	
+	public ArrayList<String> assemble() {
+		return ComponentTours.run(graph, null, new MerSequences(), 
+				Runtime.getRuntime().availableProcessors());
+	}
+	
+	// Assemble the final sequences, with the weakly-connected components assembled
+	// concurrently, and pass the sequences of each component to the consumer as
+	// soon as that component is done.  Returns the number of components.
+	
+	public int assemble(ComponentTours.Consumer consumer) throws IOException {
+		return ComponentTours.run(graph, null, new MerSequences(), 
+				Runtime.getRuntime().availableProcessors(), consumer);
+	}
+	
+	//
+	
+	// The sequences of the vertices, for ComponentTours, whose vertex indices are the
+	// rows of the MRCompressedVertices.  The first vertex of a path
+	// contributes its whole sequence, and later vertices contribute only what 
+	// follows the (k-2)-character overlap with the sequence so far.
+	
+	private class MerSequences implements ComponentTours.Sequences {
+		
+		public void append(int row, boolean isFirst, StringBuilder seq) {
+			MerString merString = vertices.getMerString(row);
+			if (isFirst) {
+				if (merString != null) 
+					merString.appendDisplayString(seq, 0);
+				else
+					seq.append(Mer.fromInt(vertices.getId(row), vertexMerLength));
+			}
+			else {
+				if (merString != null)
+					merString.appendDisplayString(seq, vertexMerLength - 1);
+				else
+					seq.append(Mer.fromInt(vertices.getId(row), 1));
+			}
+		}
+	}
+	
+	private MRCompressedVertices vertices;
+	private int vertexMerLength;
+	private CompactDigraph graph;
+	
+}
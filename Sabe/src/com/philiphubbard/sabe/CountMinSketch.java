@@ -0,0 +1,131 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.Arrays;
+
+// A count-min sketch: an approximate table of counts for int keys, in a fixed 
+// amount of memory regardless of the number of distinct keys.  The sketch has 
+// "depth" rows of "width" counters, and each row hashes a key to one of its 
+// counters.  The estimate for a key is the minimum of its counters, which is never 
+// less than the key's true count, and exceeds it only when every row has a 
+// collision with other keys.
+//
+// Counts are added with the "conservative update" rule: only the counters equal to
+// the current minimum are incremented, which leaves the estimates of other keys
+// less inflated and does not change the estimate of the key itself.
+//
+// Instances are not thread safe.
+
+public class CountMinSketch {
+	
+	// Constructor.  The width is rounded up to a power of two.  Throws 
+	// IllegalArgumentException if the width or depth is not positive, if the
+	// width is greater than 2^30, or if the rounded width times the depth is 
+	// greater than Integer.MAX_VALUE, the most counters an array can hold.
+	
+	public CountMinSketch(int width, int depth) throws IllegalArgumentException {
+		if ((width < 1) || (width > (0x1 << 30)))
+			throw new IllegalArgumentException("CountMinSketch(): width must be from 1 to 2^30");
+		if (depth < 1)
+			throw new IllegalArgumentException("CountMinSketch(): depth must be positive");
+		
+		int w = 1;
+		while (w < width)
+			w <<= 1;
+		if ((long) w * depth > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("CountMinSketch(): width times depth must be at most 2^31 - 1");
+		this.width = w;
+		this.depth = depth;
+		mask = w - 1;
+		counts = new int[w * depth];
+	}
+	
+	// Add one to the count of the key.  A count that reaches Integer.MAX_VALUE stays 
+	// there.
+	
+	public void add(int key) {
+		int min = estimate(key);
+		if (min == Integer.MAX_VALUE)
+			return;
+		for (int row = 0; row < depth; row++) {
+			int i = index(key, row);
+			if (counts[i] == min)
+				counts[i] = min + 1;
+		}
+	}
+	
+	// Returns the estimated count of the key, which is at least the number of times
+	// add() has been called for it.
+	
+	public int estimate(int key) {
+		int min = Integer.MAX_VALUE;
+		for (int row = 0; row < depth; row++)
+			min = Math.min(min, counts[index(key, row)]);
+		return min;
+	}
+	
+	// Set all the counts to zero.
+	
+	public void clear() {
+		Arrays.fill(counts, 0);
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getDepth() {
+		return depth;
+	}
+	
+	// Returns the number of bytes used by the counters.
+	
+	public long getNumBytes() {
+		return 4L * counts.length;
+	}
+	
+	//
+	
+	// The counter for the key in the row.  Each row uses a different seed, and the 
+	// bits are mixed with the finalizer of the 32-bit MurmurHash3, so keys that differ
+	// only in their low bits (like adjacent k-mers) go to unrelated counters.
+	
+	private int index(int key, int row) {
+		int h = key ^ (SEED * (2 * row + 1));
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return row * width + (h & mask);
+	}
+	
+	private static final int SEED = 0x9e3779b9;
+	
+	private int width;
+	private int depth;
+	private int mask;
+	private int[] counts;
+	
+}
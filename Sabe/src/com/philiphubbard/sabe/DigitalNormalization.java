@@ -0,0 +1,166 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Digital normalization of reads, to cap the coverage of the reads that reach 
+// graph construction.  Each read is accepted or dropped in turn: a read is dropped
+// if the median of the counts of its k-mers, among the reads already accepted, is 
+// at least the target coverage; otherwise it is accepted and the counts of its 
+// k-mers are incremented.  Parts of the sequence covered more deeply than the target
+// thus contribute only about targetCoverage reads, and parts covered less deeply 
+// keep all their reads.  The counts are kept in a CountMinSketch, so the memory is
+// fixed, and the estimated counts can only be high, which errs toward dropping.
+//
+// With k the length of the edge k-mers, the edge multiples of the graph built from 
+// the accepted reads are about the smaller of the coverage and the target coverage, 
+// so that smaller value is the coverage to use for building the graph, as
+// getNormalizedCoverage() returns.  A repeat's k-mers also reach the target, though,
+// so the normalized edge multiples of repeats no longer show their copies, and 
+// repeats are rectified only where the coverage of the rest of the sequence is 
+// below the target.
+//
+// The filter is available as a local pre-filter, with accept() or filter(), and as
+// the job of MRDigitalNormalization.  Instances are not thread safe.
+
+public class DigitalNormalization {
+	
+	// The default width and depth of the CountMinSketch: four rows of 2^20 counters,
+	// or 16 MB.
+	
+	public static final int DEFAULT_SKETCH_WIDTH = 0x1 << 20;
+	public static final int DEFAULT_SKETCH_DEPTH = 4;
+	
+	// Constructor.  The merLength is the length of the k-mers that are counted, from 1
+	// to 16, and the targetCoverage is the coverage above which reads are dropped.  
+	// Throws IllegalArgumentException if an argument is out of range.
+	
+	public DigitalNormalization(int merLength, int targetCoverage) 
+			throws IllegalArgumentException {
+		this(merLength, targetCoverage, DEFAULT_SKETCH_WIDTH, DEFAULT_SKETCH_DEPTH);
+	}
+	
+	// Constructor, with the width and depth of the CountMinSketch.  A wider sketch 
+	// gives more accurate counts for more distinct k-mers.
+	
+	public DigitalNormalization(int merLength, int targetCoverage, int sketchWidth, 
+			int sketchDepth) throws IllegalArgumentException {
+		if ((merLength < 1) || (merLength > 16))
+			throw new IllegalArgumentException("DigitalNormalization(): merLength must be "
+					+ "from 1 to 16");
+		if (targetCoverage < 1)
+			throw new IllegalArgumentException("DigitalNormalization(): targetCoverage must "
+					+ "be positive");
+		this.merLength = merLength;
+		this.targetCoverage = targetCoverage;
+		sketch = new CountMinSketch(sketchWidth, sketchDepth);
+		mers = new int[0];
+		counts = new int[0];
+	}
+	
+	// Returns the coverage to use for building the graph from the accepted reads,
+	// given the coverage of all the reads.
+	
+	public static int getNormalizedCoverage(int coverage, int targetCoverage) {
+		return Math.min(coverage, targetCoverage);
+	}
+	
+	// Returns true if the read is accepted, and counts its k-mers.  A read shorter 
+	// than the k-mers is accepted, since it does not add to the graph.  Throws 
+	// IllegalArgumentException if the read contains characters other than "A", "C", 
+	// "G" and "T".
+	
+	public boolean accept(String read) throws IllegalArgumentException {
+		int n = read.length() - merLength + 1;
+		if (n <= 0) {
+			numAccepted++;
+			return true;
+		}
+		
+		if (mers.length < n) {
+			mers = new int[n];
+			counts = new int[n];
+		}
+		
+		int mask = (merLength == 16) ? -1 : (1 << (2 * merLength)) - 1;
+		int mer = 0;
+		for (int i = 0; i < read.length(); i++) {
+			mer = (mer << 2) | Mer.letterToInt(read.charAt(i));
+			if (i >= merLength - 1)
+				mers[i - merLength + 1] = mer & mask;
+		}
+		
+		for (int i = 0; i < n; i++)
+			counts[i] = sketch.estimate(mers[i]);
+		Arrays.sort(counts, 0, n);
+		if (counts[n / 2] >= targetCoverage) {
+			numDropped++;
+			return false;
+		}
+		
+		for (int i = 0; i < n; i++)
+			sketch.add(mers[i]);
+		numAccepted++;
+		return true;
+	}
+	
+	// Returns the accepted reads, in order.
+	
+	public ArrayList<String> filter(List<String> reads) throws IllegalArgumentException {
+		ArrayList<String> result = new ArrayList<String>();
+		for (String read : reads)
+			if (accept(read))
+				result.add(read);
+		return result;
+	}
+	
+	public int getMerLength() {
+		return merLength;
+	}
+	
+	public int getTargetCoverage() {
+		return targetCoverage;
+	}
+	
+	public long getNumAccepted() {
+		return numAccepted;
+	}
+	
+	public long getNumDropped() {
+		return numDropped;
+	}
+	
+	//
+	
+	private int merLength;
+	private int targetCoverage;
+	private CountMinSketch sketch;
+	private int[] mers;
+	private int[] counts;
+	private long numAccepted;
+	private long numDropped;
+	
+}
@@ -0,0 +1,224 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Correction of single-base substitutions in reads, using the "k-mer spectrum":
+// the k-mers whose counts over all the reads are at least ceiling(coverage / 2.0) 
+// are "solid", as with the edges kept by MRBuildMerVertices, and the others are
+// "weak."  A substitution at position p of a read makes weak the k-mers that cover 
+// p, a run of consecutive weak k-mers all of which contain p.  For each run of weak
+// k-mers in a read, each base at each position common to the k-mers of the run is
+// tried in turn, and if exactly one substitution makes solid all the k-mers that 
+// cover its position, the read is corrected with it.  A run with no such 
+// substitution, or more than one, is left as is, for the graph construction to 
+// discard as before.
+//
+// Corrected reads add no error vertices to the graph, so there are fewer vertices
+// to shuffle in vertex construction and fewer tips to stop chain compression.
+// The k-mers are the edge k-mers of the graph, with k from 1 to 16.
+//
+// The correction of a read does not change the instance, so reads can be 
+// corrected concurrently.  The static correct() function is a local multi-threaded
+// pass, and MRErrorCorrection is the MapReduce pass.
+
+public class ErrorCorrection {
+	
+	// Constructor.  The counts of the k-mers of length merLength, keyed by their
+	// encoding as in Mer.toInt(), determine the solid k-mers, those with counts of 
+	// at least minCount.  The counts must not change while the instance is in use.
+	
+	public ErrorCorrection(int merLength, IntIntMap counts, int minCount) 
+			throws IllegalArgumentException {
+		if ((merLength < 1) || (merLength > 16))
+			throw new IllegalArgumentException("ErrorCorrection(): merLength must be "
+					+ "from 1 to 16");
+		this.merLength = merLength;
+		this.counts = counts;
+		this.minCount = Math.max(1, minCount);
+		mask = (merLength == 16) ? -1 : (1 << (2 * merLength)) - 1;
+	}
+	
+	// Returns the count for solid k-mers for the specified coverage, the same as the
+	// minimum edge multiple of graph construction.
+	
+	public static int getMinCount(int coverage) {
+		return (int) Math.ceil(coverage / 2.0);
+	}
+	
+	// Correct the reads, using the counts of their own k-mers, with the specified 
+	// number of threads for counting and correcting.  Returns the corrected reads in
+	// the order of the input.  Throws IllegalArgumentException if a read contains 
+	// characters other than "A", "C", "G" and "T".
+	
+	public static ArrayList<String> correct(List<String> reads, int merLength, int coverage,
+			int numThreads) throws IllegalArgumentException {
+		IntIntMap counts = LocalAssembler.countMers(reads, merLength, numThreads);
+		ErrorCorrection correction = new ErrorCorrection(merLength, counts, getMinCount(coverage));
+		
+		String[] corrected = new String[reads.size()];
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			pool.invoke(new CorrectTask(correction, reads, 0, reads.size(), corrected));
+		}
+		finally {
+			pool.shutdown();
+		}
+		
+		return new ArrayList<String>(Arrays.asList(corrected));
+	}
+	
+	// Returns true if the k-mer is solid.
+	
+	public boolean isSolid(int mer) {
+		return counts.get(mer) >= minCount;
+	}
+	
+	// Returns the corrected read, or the read itself if no correction was made.  Throws
+	// IllegalArgumentException if the read contains characters other than "A", "C", 
+	// "G" and "T".
+	
+	public String correct(String read) throws IllegalArgumentException {
+		int n = read.length() - merLength + 1;
+		if (n <= 0)
+			return read;
+		
+		char[] bases = read.toCharArray();
+		boolean[] solid = new boolean[n];
+		int mer = 0;
+		for (int i = 0; i < bases.length; i++) {
+			mer = (mer << 2) | Mer.letterToInt(bases[i]);
+			if (i >= merLength - 1)
+				solid[i - merLength + 1] = isSolid(mer & mask);
+		}
+		
+		boolean changed = false;
+		int i = 0;
+		while (i < n) {
+			if (solid[i]) {
+				i++;
+				continue;
+			}
+			int j = i;
+			while ((j + 1 < n) && !solid[j + 1])
+				j++;
+			
+			// The positions common to the k-mers i through j.  A run longer than k has
+			// none, so it is not from a single substitution.  Since the k-mers that cover 
+			// the position include all those of the run, a correction leaves the run solid.
+			
+			int position = -1;
+			char base = 0;
+			boolean isUnique = true;
+			for (int p = j; p <= i + merLength - 1; p++) {
+				for (char c : BASES) {
+					if ((c != bases[p]) && isSolidWith(bases, p, c)) {
+						if (position != -1)
+							isUnique = false;
+						position = p;
+						base = c;
+					}
+				}
+			}
+			if ((position != -1) && isUnique) {
+				bases[position] = base;
+				changed = true;
+			}
+			
+			i = j + 1;
+		}
+		
+		return changed ? new String(bases) : read;
+	}
+	
+	public int getMerLength() {
+		return merLength;
+	}
+	
+	public int getMinCount() {
+		return minCount;
+	}
+	
+	//
+	
+	// Returns true if all the k-mers covering position p would be solid with base c at p.
+	
+	private boolean isSolidWith(char[] bases, int p, char c) {
+		int begin = Math.max(0, p - merLength + 1);
+		int end = Math.min(bases.length, p + merLength);
+		int mer = 0;
+		for (int q = begin; q < end; q++) {
+			mer = (mer << 2) | Mer.letterToInt((q == p) ? c : bases[q]);
+			if ((q >= begin + merLength - 1) && !isSolid(mer & mask))
+				return false;
+		}
+		return true;
+	}
+	
+	// A fork-join task that corrects a range of the reads, splitting the range in half
+	// until it is small.
+	
+	@SuppressWarnings("serial")
+	private static class CorrectTask extends RecursiveAction {
+		CorrectTask(ErrorCorrection correction, List<String> reads, int begin, int end, 
+				String[] corrected) {
+			this.correction = correction;
+			this.reads = reads;
+			this.begin = begin;
+			this.end = end;
+			this.corrected = corrected;
+		}
+		
+		protected void compute() {
+			if (end - begin <= MIN_TASK_READS) {
+				for (int r = begin; r < end; r++)
+					corrected[r] = correction.correct(reads.get(r));
+				return;
+			}
+			
+			int middle = begin + (end - begin) / 2;
+			invokeAll(new CorrectTask(correction, reads, begin, middle, corrected),
+					new CorrectTask(correction, reads, middle, end, corrected));
+		}
+		
+		private ErrorCorrection correction;
+		private List<String> reads;
+		private int begin;
+		private int end;
+		private String[] corrected;
+	}
+	
+	private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+	private static final int MIN_TASK_READS = 1024;
+	
+	private int merLength;
+	private IntIntMap counts;
+	private int minCount;
+	private int mask;
+	
+}
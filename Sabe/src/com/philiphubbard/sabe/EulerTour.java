@@ -0,0 +1,177 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+// An implementation of Hierholzer's algorithm for finding Euler paths in a
+// CompactDigraph, using only primitive arrays.  Each vertex has a cursor to
+// the next of its edges to be used, plus a count of how many multiples of that
+// edge have been used already, so an edge with multiple n is traversed n times
+// without the graph being modified.  The vertices of the path being explored are
+// kept on a stack of ints.
+//
+// The arrays are allocated once, when the EulerTour is constructed, and 
+// findPath() and visitPath() allocate nothing else (other than the array that
+// findPath() returns).  Each call continues with the edges that earlier calls
+// did not use, so after an initial path from the source, any edges that path
+// missed can be found with further calls starting at getUnusedStart().
+//
+// Hierholzer's algorithm finalizes the vertices of a path in reverse order.
+// The visitPath() function passes each vertex to a Visitor as soon as it is
+// finalized, so a caller that wants to consume a path in forward order without
+// storing it can use visitPath() on the transpose of the graph, starting at the
+// vertex where the path will end.
+
+public class EulerTour {
+	
+	// An interface for receiving the vertices of a path as they are finalized.
+	
+	public interface Visitor {
+		void visit(int vertex);
+	}
+	
+	// Construct the tour finder for the graph.  The graph's edge multiples must
+	// not change while the tour finder is in use.
+	
+	public EulerTour(CompactDigraph graph) {
+		this.graph = graph;
+		
+		int numVertices = graph.getVertexCapacity();
+		cursors = new int[numVertices];
+		used = new int[numVertices];
+		
+		long numEdges = 0;
+		for (int e = 0; e < graph.getNumEdges(); e++)
+			numEdges += graph.getEdgeMultiple(e);
+		if (numEdges >= Integer.MAX_VALUE)
+			throw new IllegalArgumentException("EulerTour(): too many edges");
+		stack = new int[(int) numEdges + 1];
+		
+		reset();
+	}
+	
+	// Make all the edges available again.
+	
+	public void reset() {
+		for (int v = 0; v < cursors.length; v++) {
+			cursors[v] = graph.getEdgeBegin(v);
+			used[v] = 0;
+		}
+		unusedStart = 0;
+		numEdgesUsed = 0;
+	}
+	
+	// Returns a path that starts at the specified vertex and uses every unused
+	// edge reachable from it, if such a path exists.  If the vertex has no unused
+	// edges, the path consists of just that vertex.
+	
+	public int[] findPath(int start) {
+		int n = explore(start, null);
+		
+		// The finalized vertices fill the end of the stack array backwards, so they
+		// are already in forward order.
+		
+		int[] path = new int[n];
+		System.arraycopy(stack, stack.length - n, path, 0, n);
+		return path;
+	}
+	
+	// Pass the vertices of the path that findPath() would return to the visitor,
+	// but in reverse order, as each vertex is finalized.  Returns the number of
+	// vertices visited.
+	
+	public int visitPath(int start, Visitor visitor) {
+		return explore(start, visitor);
+	}
+	
+	// Returns a vertex that still has unused edges, or -1 if all the edges have
+	// been used.
+	
+	public int getUnusedStart() {
+		while (unusedStart < cursors.length) {
+			if (nextEdge(unusedStart) != -1)
+				return unusedStart;
+			unusedStart++;
+		}
+		return -1;
+	}
+	
+	// Returns the number of edges (counting edge multiples) used by all the paths
+	// found since construction or the last reset().
+	
+	public int getNumEdgesUsed() {
+		return numEdgesUsed;
+	}
+	
+	//
+	
+	// Run Hierholzer's algorithm from the start vertex.  Finalized vertices are 
+	// passed to the visitor if there is one, or otherwise stored at the end of the
+	// stack array, filling it backwards.  Each push onto the stack uses an edge
+	// (except the push of the start vertex), and each finalized vertex was popped
+	// from the stack, so the height of the stack plus the number of finalized 
+	// vertices never exceeds (number of edges + 1), and the two never overlap.
+	
+	private int explore(int start, Visitor visitor) {
+		int top = 0;
+		int n = 0;
+		stack[top++] = start;
+		while (top > 0) {
+			int v = stack[top - 1];
+			int e = nextEdge(v);
+			if (e != -1) {
+				used[v]++;
+				numEdgesUsed++;
+				stack[top++] = graph.getEdgeTo(e);
+			}
+			else {
+				top--;
+				if (visitor != null)
+					visitor.visit(v);
+				else
+					stack[stack.length - 1 - n] = v;
+				n++;
+			}
+		}
+		return n;
+	}
+	
+	// Returns the index of the edge from v whose next multiple is unused, advancing
+	// the cursor past edges whose multiples are all used, or -1 if there is none.
+	
+	private int nextEdge(int v) {
+		int end = graph.getEdgeEnd(v);
+		while ((cursors[v] < end) && (used[v] >= graph.getEdgeMultiple(cursors[v]))) {
+			cursors[v]++;
+			used[v] = 0;
+		}
+		return (cursors[v] < end) ? cursors[v] : -1;
+	}
+	
+	private CompactDigraph graph;
+	private int[] cursors;
+	private int[] used;
+	private int[] stack;
+	private int unusedStart;
+	private int numEdgesUsed;
+	
+}
@@ -0,0 +1,158 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.Arrays;
+
+// A map from int keys to non-negative int values, stored in primitive arrays
+// with open addressing (linear probing), so neither the keys nor the values are
+// boxed.  It is intended for remapping the wide range of (k-1)-mer IDs to dense
+// indices, so values must be non-negative; a negative value marks an empty slot.
+// Entries cannot be removed.
+
+public class IntIntMap {
+	
+	// The value returned by get() for a key that is not in the map.
+	
+	public static final int NOT_FOUND = -1;
+	
+	// Construct a map that can hold the expected number of entries without growing.
+	
+	public IntIntMap(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2 * expectedSize)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+	
+	// Associate the value with the key, replacing any previous value.
+	// Throws IllegalArgumentException if the value is negative.
+	
+	public void put(int key, int value) throws IllegalArgumentException {
+		if (value < 0)
+			throw new IllegalArgumentException("IntIntMap.put(): value must be non-negative");
+		
+		int i = slot(key);
+		if (values[i] < 0) {
+			if (2 * (size + 1) > keys.length) {
+				grow();
+				i = slot(key);
+			}
+			keys[i] = key;
+			size++;
+		}
+		values[i] = value;
+	}
+	
+	// Add the amount to the value associated with the key, or associate the amount 
+	// with the key if there is no value.  Throws IllegalArgumentException if the 
+	// result is negative.
+	
+	public void add(int key, int amount) throws IllegalArgumentException {
+		int i = slot(key);
+		if (values[i] < 0) {
+			put(key, amount);
+		}
+		else {
+			if (values[i] + amount < 0)
+				throw new IllegalArgumentException("IntIntMap.add(): value must be non-negative");
+			values[i] += amount;
+		}
+	}
+	
+	// Returns the value associated with the key, or NOT_FOUND if there is none.
+	
+	public int get(int key) {
+		int i = slot(key);
+		return (values[i] < 0) ? NOT_FOUND : values[i];
+	}
+	
+	public boolean containsKey(int key) {
+		return (values[slot(key)] >= 0);
+	}
+	
+	// Returns the number of entries.
+	
+	public int size() {
+		return size;
+	}
+	
+	// Returns the keys of all the entries, in no particular order.
+	
+	public int[] getKeys() {
+		int[] result = new int[size];
+		int n = 0;
+		for (int i = 0; i < keys.length; i++)
+			if (values[i] >= 0)
+				result[n++] = keys[i];
+		return result;
+	}
+	
+	//
+	
+	// Returns the index of the slot that holds the key, or of the empty slot
+	// where the key would be put.
+	
+	private int slot(int key) {
+		int i = hash(key) & mask;
+		while ((values[i] >= 0) && (keys[i] != key))
+			i = (i + 1) & mask;
+		return i;
+	}
+	
+	// Spread the bits of the key, since (k-1)-mer IDs that differ only in their
+	// high bits would otherwise collide.
+	
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, -1);
+		mask = capacity - 1;
+	}
+	
+	private void grow() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(2 * oldKeys.length);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] >= 0) {
+				int j = slot(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+	
+	private static final int MIN_CAPACITY = 16;
+	
+	private int[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+	
+}
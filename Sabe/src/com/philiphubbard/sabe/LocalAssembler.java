@@ -0,0 +1,390 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+// A class to assemble genomic sequences from a list of "reads" with the same 
+// stages as MRAssembler, but in one JVM, without Hadoop jobs:
+// * Reads with qualities are trimmed and split by QualityFilter.  Optionally, the 
+//   reads are corrected by ErrorCorrection and then filtered by DigitalNormalization,
+//   and identical reads are collapsed by CollapsedReads.
+// * The k-mers of the reads are counted in primitive tables (IntIntMap instances, 
+//   keyed by the 2-bit encoding of each k-mer), by the tasks of a fork-join pool, 
+//   each counting a range of the reads.  Each k-mer is an edge between (k-1)-mers,
+//   and its count is the edge multiple.
+// * Edges with multiples less than ceiling(coverage / 2.0) are discarded as errors,
+//   and vertices left without edges disappear with them.  This differs from 
+//   MRBuildMerVertices, which through digraph.MRBuildVertices discards vertices 
+//   with low edge multiples: an error whose k-mer joins two correct (k-1)-mers 
+//   loses just its edge here.
+// * Chains are compressed by TipsAndBubbles.compress(), and then tips and bubbles
+//   are removed by TipsAndBubbles.simplify() if that option is set.
+// * Repeats are rectified, and the sequences are assembled from Euler tours of the
+//   weakly-connected components, by CompressedGraph.
+// This approach suits inputs whose k-mers fit in memory, and avoids the overhead of 
+// starting a job for each round of chain compression.  The output has the same 
+// format as that of MRAssembler, and the same sequences when the errors in the 
+// reads make only vertices whose edge multiples are all low, but it can differ 
+// when they do not, because of the different rule for discarding errors.  The 
+// vertex mer length (k-1) can be at most 15.
+
+public class LocalAssembler {
+	
+	// Constructor.  The vertexMerLength is the length of the (k-1)-mers that define 
+	// the graph vertices, and the coverage is the number of times each part of the 
+	// sequence is expected to be covered by the reads.
+	
+	public LocalAssembler(int vertexMerLength, int coverage) 
+			throws IllegalArgumentException {
+		if ((vertexMerLength < 1) || (vertexMerLength > 15))
+			throw new IllegalArgumentException("LocalAssembler(): vertexMerLength must be "
+					+ "from 1 to 15");
+		this.vertexMerLength = vertexMerLength;
+		this.coverage = coverage;
+		numThreads = Runtime.getRuntime().availableProcessors();
+	}
+	
+	// As with MRAssembler.setMultipleRepeats().
+	
+	public void setMultipleRepeats(boolean multipleRepeats) {
+		this.multipleRepeats = multipleRepeats;
+	}
+	
+	// As with MRAssembler.setTipsAndBubbles().
+	
+	public void setTipsAndBubbles(boolean tipsAndBubbles) {
+		this.tipsAndBubbles = tipsAndBubbles;
+	}
+	
+	// As with MRAssembler.setMinQuality().
+	
+	public void setMinQuality(int minQuality) {
+		this.minQuality = minQuality;
+	}
+	
+	// If collapseDuplicates is true, identical reads are collapsed in a CollapsedReads
+	// table just before the k-mers are counted, so the k-mers of each distinct read
+	// are found once and counted with the read's count.
+	
+	public void setCollapseDuplicates(boolean collapseDuplicates) {
+		this.collapseDuplicates = collapseDuplicates;
+	}
+	
+	// If errorCorrection is true, the reads are first corrected by the multi-threaded
+	// pass of ErrorCorrection.
+	
+	public void setErrorCorrection(boolean errorCorrection) {
+		this.errorCorrection = errorCorrection;
+	}
+	
+	// If targetCoverage is positive, the reads are first filtered by 
+	// DigitalNormalization, and the graph is built with the coverage that
+	// DigitalNormalization.getNormalizedCoverage() returns.  The default, 0, 
+	// disables normalization.
+	
+	public void setNormalization(int targetCoverage) {
+		this.targetCoverage = targetCoverage;
+	}
+	
+	// Set the number of threads for counting k-mers.  The 
+	// default is the number of available processors.
+	
+	public void setNumThreads(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+	
+	// Assemble and return the sequences from the reads, one read per String.  There 
+	// is one sequence for each weakly-connected component of the final graph that 
+	// has an Euler path, and one for each unitig of a component that does not.
+	// Throws IllegalArgumentException if a read contains characters other than "A",
+	// "C", "G" and "T".
+	
+	public ArrayList<String> assemble(List<String> reads) throws IllegalArgumentException {
+		return buildGraph(reads).assemble();
+	}
+	
+	// Assemble the sequences from the reads, and pass the sequences of each
+	// weakly-connected component to the consumer as soon as that component is done.
+	// Returns the number of components.
+	
+	public int assemble(List<String> reads, ComponentTours.Consumer consumer)
+			throws IllegalArgumentException, IOException {
+		return buildGraph(reads).assemble(consumer);
+	}
+	
+	// Assemble the reads in the inputPath, with the same contract as MRAssembler.run(): 
+	// the inputPath is a file or a directory of files with one read per line, and the
+	// sequences are written to the outputPath, one per line.  Files whose names start 
+	// with "_" or "." are skipped, as Hadoop does.  Returns true on success.
+	
+	public boolean run(Path inputPath, Path outputPath) throws IOException {
+		Configuration conf = new Configuration();
+		FileSystem fileSystem = FileSystem.get(conf);
+		
+		ArrayList<String> reads = new ArrayList<String>();
+		for (Path path : getInputFiles(fileSystem, inputPath)) {
+			BufferedReader reader = 
+					new BufferedReader(new InputStreamReader(fileSystem.open(path)));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null)
+					if (!line.isEmpty())
+						reads.add(line);
+			}
+			finally {
+				reader.close();
+			}
+		}
+		
+		final FSDataOutputStream out = fileSystem.create(outputPath);
+		try {
+			assemble(reads, new ComponentTours.Consumer() {
+				public void accept(int component, ArrayList<String> sequences) throws IOException {
+					for (String seq : sequences) {
+						out.writeBytes(seq);
+						out.writeBytes("\n");
+					}
+				}
+			});
+		}
+		catch (IllegalArgumentException exception) {
+			throw new IOException("LocalAssembler.run(): " + exception.getMessage(), exception);
+		}
+		finally {
+			out.close();
+		}
+		
+		return true;
+	}
+	
+	// Returns the files to read for the inputPath, which may be a file or a directory.
+	
+	static ArrayList<Path> getInputFiles(FileSystem fileSystem, Path inputPath) 
+			throws IOException {
+		ArrayList<Path> paths = new ArrayList<Path>();
+		for (FileStatus status : fileSystem.listStatus(inputPath)) {
+			String name = status.getPath().getName();
+			if (!status.isDirectory() && !name.startsWith("_") && !name.startsWith("."))
+				paths.add(status.getPath());
+		}
+		return paths;
+	}
+	
+	//
+	
+	private CompressedGraph buildGraph(List<String> reads) {
+		reads = new QualityFilter(minQuality).split(reads);
+		
+		if (errorCorrection)
+			reads = ErrorCorrection.correct(reads, vertexMerLength + 1, coverage, numThreads);
+		
+		int buildCoverage = coverage;
+		if (targetCoverage > 0) {
+			reads = new DigitalNormalization(vertexMerLength + 1, targetCoverage).filter(reads);
+			buildCoverage = DigitalNormalization.getNormalizedCoverage(coverage, targetCoverage);
+		}
+		
+		IntIntMap counts;
+		if (collapseDuplicates)
+			counts = countMers(new CollapsedReads(reads), vertexMerLength + 1, numThreads);
+		else
+			counts = countMers(reads, vertexMerLength + 1, numThreads);
+		
+		MRCompressedVertices vertices = compressVertices(counts, buildCoverage);
+		if (tipsAndBubbles)
+			vertices = TipsAndBubbles.simplify(vertices, vertexMerLength, buildCoverage);
+		
+		return new CompressedGraph(vertices, vertexMerLength, buildCoverage, false, 
+				multipleRepeats);
+	}
+	
+	// Build the uncompressed graph from the k-mers whose counts are high enough, with
+	// the vertices in order of (k-1)-mer ID so the result does not depend on the order
+	// in which the k-mers were counted, and return its compressed vertices.  The 
+	// uncompressed graph is a CompactDigraph, with one edge per distinct k-mer and the
+	// count as its multiple, so only the compressed result repeats each edge for its
+	// multiple.
+	
+	private MRCompressedVertices compressVertices(IntIntMap counts, int coverage) {
+		int minEdgeMultiple = (int) Math.ceil(coverage / 2.0);
+		int vertexMask = (1 << (2 * vertexMerLength)) - 1;
+		
+		int[] mers = counts.getKeys();
+		int numKept = 0;
+		for (int mer : mers)
+			if (counts.get(mer) >= minEdgeMultiple)
+				mers[numKept++] = mer;
+		
+		int[] ids = new int[2 * numKept];
+		for (int i = 0; i < numKept; i++) {
+			ids[2 * i] = mers[i] >>> 2;
+			ids[2 * i + 1] = mers[i] & vertexMask;
+		}
+		Arrays.sort(ids);
+		int numVertices = 0;
+		for (int i = 0; i < ids.length; i++)
+			if ((i == 0) || (ids[i] != ids[i - 1]))
+				ids[numVertices++] = ids[i];
+		
+		IntIntMap idToRow = new IntIntMap(numVertices);
+		for (int row = 0; row < numVertices; row++)
+			idToRow.put(ids[row], row);
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(numVertices, numKept);
+		for (int i = 0; i < numKept; i++)
+			builder.addEdge(idToRow.get(mers[i] >>> 2), idToRow.get(mers[i] & vertexMask), 
+					counts.get(mers[i]));
+		
+		return TipsAndBubbles.compress(builder.build(), ids, vertexMerLength);
+	}
+	
+	// Add the k-mers of length merLength in the read to the counts, using a rolling 
+	// 2-bit encoding.  For k = 16 the encoding uses all 32 bits, so the mask is all
+	// ones.  Throws IllegalArgumentException if the read contains characters other 
+	// than "A", "C", "G" and "T".
+	
+	static void countMers(String read, int merLength, IntIntMap counts) 
+			throws IllegalArgumentException {
+		countMers(read, merLength, counts, 1);
+	}
+	
+	// Add the k-mers of the read to the counts, each with the specified weight.
+	
+	static void countMers(String read, int merLength, IntIntMap counts, int weight) 
+			throws IllegalArgumentException {
+		int mask = (merLength == 16) ? -1 : (1 << (2 * merLength)) - 1;
+		int mer = 0;
+		for (int i = 0; i < read.length(); i++) {
+			mer = (mer << 2) | Mer.letterToInt(read.charAt(i));
+			if (i >= merLength - 1)
+				counts.add(mer & mask, weight);
+		}
+	}
+	
+	// Returns the counts of the k-mers of the reads, counted by the tasks of a fork-join
+	// pool with the specified number of threads.
+	
+	static IntIntMap countMers(List<String> reads, int merLength, int numThreads) 
+			throws IllegalArgumentException {
+		return countMers(reads, null, merLength, numThreads);
+	}
+	
+	// Returns the counts of the k-mers of the collapsed reads, each k-mer of a distinct
+	// read counted with that read's count.
+	
+	static IntIntMap countMers(CollapsedReads reads, int merLength, int numThreads) {
+		ArrayList<String> distinct = new ArrayList<String>(reads.size());
+		int[] weights = new int[reads.size()];
+		for (int i = 0; i < reads.size(); i++) {
+			distinct.add(reads.getRead(i));
+			weights[i] = reads.getCount(i);
+		}
+		return countMers(distinct, weights, merLength, numThreads);
+	}
+	
+	private static IntIntMap countMers(List<String> reads, int[] weights, int merLength, 
+			int numThreads) throws IllegalArgumentException {
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			return pool.invoke(new CountTask(reads, weights, 0, reads.size(), merLength));
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+	
+	// A fork-join task that counts the k-mers of a range of the reads, splitting the
+	// range in half until it is small, and merging the smaller table of counts into 
+	// the larger.  The k-mers of read r are counted weights[r] times, or once if 
+	// there are no weights.
+	
+	@SuppressWarnings("serial")
+	private static class CountTask extends RecursiveTask<IntIntMap> {
+		CountTask(List<String> reads, int[] weights, int begin, int end, int merLength) {
+			this.reads = reads;
+			this.weights = weights;
+			this.begin = begin;
+			this.end = end;
+			this.merLength = merLength;
+		}
+		
+		protected IntIntMap compute() {
+			if (end - begin <= MIN_TASK_READS)
+				return count();
+			
+			int middle = begin + (end - begin) / 2;
+			CountTask left = new CountTask(reads, weights, begin, middle, merLength);
+			CountTask right = new CountTask(reads, weights, middle, end, merLength);
+			left.fork();
+			IntIntMap rightCounts = right.compute();
+			IntIntMap leftCounts = left.join();
+			
+			IntIntMap larger = (leftCounts.size() >= rightCounts.size()) ? leftCounts : rightCounts;
+			IntIntMap smaller = (larger == leftCounts) ? rightCounts : leftCounts;
+			for (int mer : smaller.getKeys())
+				larger.add(mer, smaller.get(mer));
+			return larger;
+		}
+		
+		private IntIntMap count() {
+			IntIntMap counts = new IntIntMap(MIN_TASK_READS);
+			for (int r = begin; r < end; r++)
+				countMers(reads.get(r), merLength, counts, (weights == null) ? 1 : weights[r]);
+			return counts;
+		}
+		
+		private List<String> reads;
+		private int[] weights;
+		private int begin;
+		private int end;
+		private int merLength;
+	}
+	
+	private static final int MIN_TASK_READS = 1024;
+	
+	private int vertexMerLength;
+	private int coverage;
+	private boolean multipleRepeats;
+	private boolean tipsAndBubbles;
+	private int minQuality;
+	private boolean errorCorrection;
+	private int targetCoverage;
+	private boolean collapseDuplicates;
+	private int numThreads;
+	
+}
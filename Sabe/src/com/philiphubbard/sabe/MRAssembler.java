@@ -23,23 +23,15 @@
 package com.philiphubbard.sabe;
 
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
-import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.BytesWritable;
-import org.apache.hadoop.io.IntWritable;
-import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
-import com.philiphubbard.digraph.BasicDigraph;
-import com.philiphubbard.digraph.Digraph;
-import com.philiphubbard.digraph.EulerPaths;
 import com.philiphubbard.digraph.MRBuildVertices;
 import com.philiphubbard.digraph.MRCompressChains;
 import com.philiphubbard.digraph.MRVertex;
@@ -55,7 +47,9 @@ import com.philiphubbard.digraph.MRVertex;
 // linear chains of edges, which are expected to be very long in practice.  
 // The final sequence is assembled from the reduced graph by a sequential
 // algorithm to find the Euler tour, the tour that visits each edge exactly
-// once.  (Hence the name of the package, "Sequence Assembly By Euler tours.")
+// once, with the weakly-connected components of the graph (if there are more
+// than one) assembled concurrently.  (Hence the name of the package, 
+// "Sequence Assembly By Euler tours.")
 //
 // The implementation includes basic techniques to handle errors in the
 // initial reads and repeated substrings or "repeates" in the sequence.  Both 
@@ -77,6 +71,7 @@ public class MRAssembler {
 	public MRAssembler(int vertexMerLength, int coverage) {
 		this.vertexMerLength = vertexMerLength;
 		this.coverage = coverage;
+		tmpPath = new Path(TMP_PATH_NAME);
 	}
 	
 	// Run the MapReduce passes and sequential algorithms that perform the 
@@ -84,11 +79,150 @@ public class MRAssembler {
 	// contain read strings, one read per line (ending with "\n" character).
 	// The outputPath is a directory in which a file with the final assembled
 	// sequence will be created.  A temporary directory named "sabe.MRAssemblerTmp"
-	// will be created in the current working directory to hold intermediate
-	// results from the MapReduce passes.
+	// (or the path given to setTmpPath()) will be created in the current working 
+	// directory to hold intermediate results from the MapReduce passes.  If the run 
+	// fails, the temporary directory is kept so the run can be continued with resume().
 	
 	public boolean run(Path inputPath, Path outputPath) 
 			throws IOException, InterruptedException, ClassNotFoundException {
+		return runStages(new Path[] { inputPath }, new Path[] { outputPath }, false);
+	}
+	
+	// Run the assembly of several samples together, with the reads of sample i in 
+	// inputPaths[i] and its sequences written to outputPaths[i].  One job builds the 
+	// vertices of all the samples, with the index of the sample in the high bits of 
+	// each vertex ID (see MRBuildMerVertices), and one series of jobs compresses their 
+	// chains, so the overhead of each job is shared by all the samples.  The driver 
+	// then splits the compressed graph by sample, for the rectification of repeats and
+	// the Euler tours.  Throws IllegalArgumentException if the arrays differ in length
+	// or there are more samples than MRBuildMerVertices.getMaxSamples() allows.
+	
+	public boolean run(Path[] inputPaths, Path[] outputPaths) 
+			throws IOException, InterruptedException, ClassNotFoundException {
+		return runStages(inputPaths, outputPaths, false);
+	}
+	
+	// Continue a run that failed, using the manifest kept next to the temporary 
+	// directory (see MRAssemblerManifest) to skip the stages that completed.  Vertex construction is skipped if it completed,
+	// and chain compression restarts from the output of the last compression iteration
+	// that completed.  The arguments must be the same as for the failed run.  If there
+	// is no manifest, this function is equivalent to run().
+	
+	public boolean resume(Path inputPath, Path outputPath) 
+			throws IOException, InterruptedException, ClassNotFoundException {
+		return runStages(new Path[] { inputPath }, new Path[] { outputPath }, true);
+	}
+	
+	// Continue a multi-sample run that failed, as with resume() for one sample.
+	
+	public boolean resume(Path[] inputPaths, Path[] outputPaths) 
+			throws IOException, InterruptedException, ClassNotFoundException {
+		return runStages(inputPaths, outputPaths, true);
+	}
+	
+	// Set the temporary directory for intermediate results.  The default is the
+	// fixed "sabe.MRAssemblerTmp", so that resume() finds the directory of a failed 
+	// run without it, but runs that may overlap (e.g., from different processes) 
+	// need different temporary directories, and must set them with this function.
+	// The same goes for AutoAssembler.setTmpPath().
+	
+	public void setTmpPath(Path tmpPath) {
+		this.tmpPath = tmpPath;
+	}
+	
+	// If distributedRectification is true, the rectification of repeats is performed
+	// by the MapReduce jobs of MRRectifyRepeats, so the driver loads a graph whose 
+	// edge multiples are already rectified.  Otherwise (the default), the driver
+	// loads the compressed graph and rectifies it with Repeats.
+	
+	public void setDistributedRectification(boolean distributedRectification) {
+		this.distributedRectification = distributedRectification;
+	}
+	
+	// If multipleRepeats is true, the rectification of repeats estimates the number of
+	// copies of each repeat with Repeats.rectifyMultiple(), so repeats that occur 
+	// more than twice are assembled.  Otherwise (the default), only single repeats are
+	// recognized, with Repeats.rectifySingleParallel().  The MapReduce jobs of 
+	// MRRectifyRepeats recognize only single repeats, so multipleRepeats being true
+	// overrides distributedRectification.
+	
+	public void setMultipleRepeats(boolean multipleRepeats) {
+		this.multipleRepeats = multipleRepeats;
+	}
+	
+	// If tipsAndBubbles is true, the driver removes the tips and bubbles left by 
+	// sequencing errors from the compressed graph with TipsAndBubbles.simplify(), and
+	// compresses chains again, before rectifying repeats.
+	
+	public void setTipsAndBubbles(boolean tipsAndBubbles) {
+		this.tipsAndBubbles = tipsAndBubbles;
+	}
+	
+	// If distributedTipsAndBubbles is true, tips and bubbles are removed by the 
+	// MapReduce jobs of MRTipsAndBubbles, and the driver then compresses chains
+	// again with TipsAndBubbles.compress().  Repeats are then rectified by the driver,
+	// since MRRectifyRepeats takes its input from chain compression, so 
+	// distributedTipsAndBubbles being true overrides distributedRectification.
+	
+	public void setDistributedTipsAndBubbles(boolean distributedTipsAndBubbles) {
+		this.distributedTipsAndBubbles = distributedTipsAndBubbles;
+	}
+	
+	// If bspCompression is true, chains are compressed by BspCompressMerChains, which
+	// holds the chain vertices in memory in the driver for all the supersteps, instead 
+	// of by one MapReduce job per iteration of MRCompressMerChains.
+	
+	public void setBspCompression(boolean bspCompression) {
+		this.bspCompression = bspCompression;
+	}
+	
+	// Set the minimum Phred quality of the bases that make edges.  Reads with 
+	// qualities (see QualityFilter) have their low-quality tails trimmed, and are 
+	// split at the bases below minQuality, in the mappers of all the jobs that read
+	// reads.  The default is 0, which ignores the qualities.
+	
+	public void setMinQuality(int minQuality) {
+		this.minQuality = minQuality;
+	}
+	
+	// If errorCorrection is true, the reads are first corrected by the MapReduce jobs
+	// of MRErrorCorrection, which fix single-base substitutions using the k-mers whose
+	// counts are at least ceiling(coverage / 2.0), so fewer error vertices are built.
+	
+	public void setErrorCorrection(boolean errorCorrection) {
+		this.errorCorrection = errorCorrection;
+	}
+	
+	// If targetCoverage is positive, the reads are first filtered by the job of 
+	// MRDigitalNormalization, which drops reads from parts of the sequence already
+	// covered targetCoverage times.  Each sample is normalized as a whole, so every 
+	// sample gets the coverage that DigitalNormalization.getNormalizedCoverage() 
+	// returns, and the later stages use it.  The default, 0, disables normalization.
+	
+	public void setNormalization(int targetCoverage) {
+		this.targetCoverage = targetCoverage;
+	}
+	
+	// If collapseDuplicates is true, identical reads are collapsed by the job of 
+	// MRCollapseReads just before vertex construction, which then makes the vertices
+	// of each distinct read once, with its count as the multiple of its edges.
+	
+	public void setCollapseDuplicates(boolean collapseDuplicates) {
+		this.collapseDuplicates = collapseDuplicates;
+	}
+	
+	//
+	
+	private boolean runStages(Path[] inputPaths, Path[] outputPaths, boolean resume) 
+			throws IOException, InterruptedException, ClassNotFoundException {
+		if ((inputPaths.length == 0) || (inputPaths.length != outputPaths.length))
+			throw new IllegalArgumentException("MRAssembler.run(): there must be one output "
+					+ "path for each input path");
+		if (inputPaths.length > MRBuildMerVertices.getMaxSamples(vertexMerLength))
+			throw new IllegalArgumentException("MRAssembler.run(): at most " + 
+					MRBuildMerVertices.getMaxSamples(vertexMerLength) + " samples");
+		numSamples = inputPaths.length;
+		
 		Configuration conf = new Configuration();
 		
 		// Job.getInstance() copies the Configuration argument, so set its properties first.
@@ -97,259 +231,459 @@ public class MRAssembler {
 		conf.setBoolean(MRVertex.CONFIG_COMPRESS_CHAIN_MULTIPLES_MUST_MATCH, false);
 		conf.setInt(MRMerVertex.CONFIG_MER_LENGTH, vertexMerLength);
 		conf.setBoolean(MRBuildVertices.CONFIG_PARTITION_BRANCHES_CHAINS, true);
-		conf.setInt(MRBuildVertices.CONFIG_COVERAGE, coverage);
+		conf.setInt(QualityFilter.CONFIG_MIN_QUALITY, minQuality);
 		conf.setInt(MRCompressChains.CONFIG_TERMINATION_COUNT, 1);
 
-		Job buildJob = Job.getInstance(conf);
-		buildJob.setJobName("mrassemblerbuild");
+		FileSystem fileSystem = FileSystem.get(conf);
 		
-		Path buildInputPath = inputPath;
-		Path buildOutputPath = new Path("sabe.MRAssemblerTmp");
-
-		System.out.println("sabe.MRAssembler starting vertex construction");
+		Path buildOutputPath = tmpPath;
+		Path correctOutputPath = tmpPath.suffix(CORRECT_SUFFIX);
+		Path normalizeOutputPath = tmpPath.suffix(NORMALIZE_SUFFIX);
+		Path collapseOutputPath = tmpPath.suffix(COLLAPSE_SUFFIX);
 
-		MRBuildMerVertices.setupJob(buildJob, buildInputPath, buildOutputPath);	
+		// A fresh run starts by discarding anything left by an earlier run that failed.
 		
-		if (!buildJob.waitForCompletion(true))
-			return false;
+		MRAssemblerManifest manifest;
+		if (resume) {
+			manifest = MRAssemblerManifest.read(fileSystem, buildOutputPath);
+		}
+		else {
+			if (fileSystem.exists(buildOutputPath))
+				fileSystem.delete(buildOutputPath, true);
+			if (fileSystem.exists(correctOutputPath))
+				fileSystem.delete(correctOutputPath, true);
+			if (fileSystem.exists(normalizeOutputPath))
+				fileSystem.delete(normalizeOutputPath, true);
+			if (fileSystem.exists(collapseOutputPath))
+				fileSystem.delete(collapseOutputPath, true);
+			MRAssemblerManifest.delete(fileSystem, buildOutputPath);
+			manifest = new MRAssemblerManifest(fileSystem, buildOutputPath);
+		}
 		
 		//
 		
-		Path compressInputPath = new Path(buildOutputPath.toString() + "/chain");
-		Path compressOutputPath = new Path(buildOutputPath.toString() + "/chainCompress");
+		Path[] buildInputPaths = new Path[numSamples];
+		for (int i = 0; i < numSamples; i++)
+			buildInputPaths[i] = fileSystem.makeQualified(inputPaths[i]);
 		
-		int iter = 0;
-		boolean keepGoing = true;
-		MRCompressChains.beginIteration();
-		while (keepGoing) {
-			Job compressJob = Job.getInstance(conf);
-			compressJob.setJobName("mrassemblercompress");
+		// The corrected, normalized and collapsed reads are kept outside the temporary directory, 
+		// which vertex construction replaces, as is the manifest that records them.  They 
+		// are needed again only if vertex construction did not complete; after that, 
+		// their manifest entries alone let resume() skip them.
+		
+		if (errorCorrection) {
+			MRAssemblerManifest.Entry corrected = 
+					manifest.getLast(MRAssemblerManifest.Stage.CORRECT);
+			if ((corrected == null) || 
+					((manifest.getLast(MRAssemblerManifest.Stage.BUILD) == null) && 
+							!fileSystem.exists(corrected.getPath()))) {
+				System.out.println("sabe.MRAssembler starting error correction");
+				
+				conf.setInt(MRErrorCorrection.CONFIG_MIN_COUNT, ErrorCorrection.getMinCount(coverage));
+				Path correctedPath = 
+						MRErrorCorrection.run(conf, fileSystem, correctOutputPath, buildInputPaths);
+				if (correctedPath == null)
+					return false;
+				
+				manifest.record(MRAssemblerManifest.Stage.CORRECT, 0, correctedPath, null);
+				corrected = manifest.getLast(MRAssemblerManifest.Stage.CORRECT);
+			}
+			else {
+				System.out.println("sabe.MRAssembler resuming after error correction");
+			}
 			
-			System.out.println("sabe.MRAssembler starting compression iteration " + iter);
-
-			MRCompressMerChains.setupIterationJob(compressJob, compressInputPath, compressOutputPath);
+			for (int i = 0; i < numSamples; i++)
+				buildInputPaths[i] = 
+						MRErrorCorrection.getSampleOutputPath(corrected.getPath(), i);
+		}
+		
+		normalizedCoverage = coverage;
+		if (targetCoverage > 0) {
+			MRAssemblerManifest.Entry normalized = 
+					manifest.getLast(MRAssemblerManifest.Stage.NORMALIZE);
+			if ((normalized == null) || 
+					((manifest.getLast(MRAssemblerManifest.Stage.BUILD) == null) && 
+							!fileSystem.exists(normalized.getPath()))) {
+				System.out.println("sabe.MRAssembler starting digital normalization");
+				
+				conf.setInt(MRDigitalNormalization.CONFIG_TARGET_COVERAGE, targetCoverage);
+				Job normalizeJob = 
+						MRDigitalNormalization.run(conf, fileSystem, buildInputPaths, normalizeOutputPath);
+				if (normalizeJob == null)
+					return false;
+				
+				manifest.record(MRAssemblerManifest.Stage.NORMALIZE, 0, normalizeOutputPath, 
+						normalizeJob.getCounters());
+				normalized = manifest.getLast(MRAssemblerManifest.Stage.NORMALIZE);
+			}
+			else {
+				System.out.println("sabe.MRAssembler resuming after digital normalization");
+			}
 			
-			if (!compressJob.waitForCompletion(true))
-				System.exit(1);
+			for (int i = 0; i < numSamples; i++)
+				buildInputPaths[i] = 
+						MRDigitalNormalization.getSampleOutputPath(normalized.getPath(), i);
+			normalizedCoverage = 
+					DigitalNormalization.getNormalizedCoverage(coverage, targetCoverage);
 			
-			iter++;
-			keepGoing = MRCompressChains.continueIteration(compressJob, compressInputPath, compressOutputPath);
+			System.out.println("sabe.MRAssembler using coverage " + normalizedCoverage + 
+					" after digital normalization");
 		}
+		conf.setInt(MRBuildVertices.CONFIG_COVERAGE, normalizedCoverage);
 		
-		System.out.println("sabe.MRAssembler made " + iter + " compression iterations");
+		if (collapseDuplicates) {
+			MRAssemblerManifest.Entry collapsed = 
+					manifest.getLast(MRAssemblerManifest.Stage.COLLAPSE);
+			if ((collapsed == null) || 
+					((manifest.getLast(MRAssemblerManifest.Stage.BUILD) == null) && 
+							!fileSystem.exists(collapsed.getPath()))) {
+				System.out.println("sabe.MRAssembler starting collapsing of duplicate reads");
+				
+				Job collapseJob = 
+						MRCollapseReads.run(conf, fileSystem, buildInputPaths, collapseOutputPath);
+				if (collapseJob == null)
+					return false;
+				
+				manifest.record(MRAssemblerManifest.Stage.COLLAPSE, 0, collapseOutputPath, 
+						collapseJob.getCounters());
+				collapsed = manifest.getLast(MRAssemblerManifest.Stage.COLLAPSE);
+			}
+			else {
+				System.out.println("sabe.MRAssembler resuming after collapsing of duplicate reads");
+			}
+			
+			for (int i = 0; i < numSamples; i++)
+				buildInputPaths[i] = 
+						MRCollapseReads.getSampleOutputPath(collapsed.getPath(), i);
+			conf.setBoolean(MRCollapseReads.CONFIG_COUNTED_READS, true);
+		}
 		
 		//
 		
-		Path branchPath = new Path(buildOutputPath.toString() + "/branch");
-		Path chainPath = compressOutputPath;
+		if (manifest.getLast(MRAssemblerManifest.Stage.BUILD) == null) {
+			if (fileSystem.exists(buildOutputPath))
+				fileSystem.delete(buildOutputPath, true);
+			
+			Job buildJob = Job.getInstance(conf);
+			buildJob.setJobName("mrassemblerbuild");
+			
+			System.out.println("sabe.MRAssembler starting vertex construction");
+	
+			MRBuildMerVertices.setupJob(buildJob, buildInputPaths, buildOutputPath);	
+			
+			if (!buildJob.waitForCompletion(true))
+				return false;
+			
+			manifest.record(MRAssemblerManifest.Stage.BUILD, 0, buildOutputPath, 
+					buildJob.getCounters());
+		}
+		else {
+			System.out.println("sabe.MRAssembler resuming after vertex construction");
+		}
 		
-		FileSystem fileSystem = FileSystem.get(conf);
+		//
 		
-		Graph graph = buildCompressedGraph(conf, fileSystem, branchPath, chainPath);
-		if (graph != null) {
-			ArrayList<String> result = graph.assemble();
+		Path chainPath;
 		
-			FSDataOutputStream out = fileSystem.create(outputPath);
-			for (String seq : result) {
-				out.writeBytes(seq);
-				out.writeBytes("\n");
+		MRAssemblerManifest.Entry compressed = manifest.getLast(MRAssemblerManifest.Stage.COMPRESS);
+		if ((compressed != null) && fileSystem.exists(compressed.getPath())) {
+			chainPath = compressed.getPath();
+			System.out.println("sabe.MRAssembler resuming after " + compressed.getIteration() 
+					+ " compression iterations");
+		}
+		else {
+			Path compressInputPath = new Path(buildOutputPath.toString() + "/chain");
+			Path compressOutputPath = new Path(buildOutputPath.toString() + "/chainCompress");
+			
+			// When resuming, continue from the output of the last iteration that completed,
+			// if it has not been removed already by MRCompressChains.continueIteration().
+			// The output path gets a distinct name so it cannot collide with the
+			// intermediate outputs of the failed run.
+			
+			int iter = 0;
+			MRAssemblerManifest.Entry last = 
+					manifest.getLast(MRAssemblerManifest.Stage.COMPRESS_ITERATION);
+			if ((last != null) && fileSystem.exists(last.getPath())) {
+				iter = last.getIteration();
+				compressInputPath = last.getPath();
+				compressOutputPath = new Path(buildOutputPath.toString() + "/chainCompress.resume" + iter);
+				if (fileSystem.exists(compressOutputPath))
+					fileSystem.delete(compressOutputPath, true);
+				
+				System.out.println("sabe.MRAssembler resuming after " + iter 
+						+ " compression iterations");
+			}
+			
+			if (bspCompression) {
+				System.out.println("sabe.MRAssembler starting in-memory compression");
+				
+				if (fileSystem.exists(compressOutputPath))
+					fileSystem.delete(compressOutputPath, true);
+				int numSupersteps = 
+						BspCompressMerChains.run(conf, fileSystem, compressInputPath, compressOutputPath);
+				manifest.record(MRAssemblerManifest.Stage.COMPRESS, iter, compressOutputPath, null);
+				
+				System.out.println("sabe.MRAssembler made " + numSupersteps + " compression supersteps");
+			}
+			else {
+				boolean keepGoing = true;
+				MRCompressChains.beginIteration();
+				while (keepGoing) {
+					Job compressJob = Job.getInstance(conf);
+					compressJob.setJobName("mrassemblercompress");
+				
+					System.out.println("sabe.MRAssembler starting compression iteration " + iter);
+	
+					MRCompressMerChains.setupIterationJob(compressJob, compressInputPath, compressOutputPath);
+				
+					if (!compressJob.waitForCompletion(true))
+						return false;
+				
+					iter++;
+					keepGoing = MRCompressChains.continueIteration(compressJob, compressInputPath, compressOutputPath);
+				
+					if (keepGoing)
+						manifest.record(MRAssemblerManifest.Stage.COMPRESS_ITERATION, iter, 
+								FileOutputFormat.getOutputPath(compressJob), compressJob.getCounters());
+					else
+						manifest.record(MRAssemblerManifest.Stage.COMPRESS, iter, 
+								compressOutputPath, compressJob.getCounters());
+				}
+			
+				System.out.println("sabe.MRAssembler made " + iter + " compression iterations");
 			}
+			
+			chainPath = compressOutputPath;
+		}
+		
+		//
+		
+		Path branchPath = new Path(buildOutputPath.toString() + "/branch");
+		
+		ArrayList<Graph> graphs;
+		if (distributedTipsAndBubbles) {
+			Path simplifiedPath;
+			MRAssemblerManifest.Entry simplified = 
+					manifest.getLast(MRAssemblerManifest.Stage.TIPS_BUBBLES);
+			if ((simplified != null) && fileSystem.exists(simplified.getPath())) {
+				simplifiedPath = simplified.getPath();
+				System.out.println("sabe.MRAssembler resuming after removal of tips and bubbles");
+			}
+			else {
+				System.out.println("sabe.MRAssembler starting distributed removal of tips and bubbles");
+				
+				simplifiedPath = MRTipsAndBubbles.run(conf, fileSystem, 
+						new Path(buildOutputPath.toString() + "/tipsBubbles"), branchPath, chainPath);
+				if (simplifiedPath == null)
+					return false;
+				
+				manifest.record(MRAssemblerManifest.Stage.TIPS_BUBBLES, 0, simplifiedPath, null);
+			}
+			
+			graphs = buildSimplifiedGraph(conf, fileSystem, simplifiedPath);
+		}
+		else if (distributedRectification && !multipleRepeats) {
+			Path rectifiedPath;
+			MRAssemblerManifest.Entry rectified = manifest.getLast(MRAssemblerManifest.Stage.RECTIFY);
+			if ((rectified != null) && fileSystem.exists(rectified.getPath())) {
+				rectifiedPath = rectified.getPath();
+				System.out.println("sabe.MRAssembler resuming after rectification of repeats");
+			}
+			else {
+				System.out.println("sabe.MRAssembler starting distributed rectification of repeats");
+				
+				rectifiedPath = MRRectifyRepeats.run(conf, fileSystem, 
+						new Path(buildOutputPath.toString() + "/rectify"), branchPath, chainPath);
+				if (rectifiedPath == null)
+					return false;
+				
+				manifest.record(MRAssemblerManifest.Stage.RECTIFY, 0, rectifiedPath, null);
+			}
+			
+			graphs = buildRectifiedGraph(conf, fileSystem, rectifiedPath);
+		}
+		else {
+			graphs = buildCompressedGraph(conf, fileSystem, branchPath, chainPath);
+		}
+		
+		// The sequences of each weakly-connected component are written as soon as that
+		// component has been assembled, so they need not all be held in memory at once.
+		
+		for (int i = 0; i < numSamples; i++) {
+			final FSDataOutputStream out = fileSystem.create(outputPaths[i]);
+			graphs.get(i).assemble(new ComponentTours.Consumer() {
+				public void accept(int component, ArrayList<String> sequences) throws IOException {
+					for (String seq : sequences) {
+						out.writeBytes(seq);
+						out.writeBytes("\n");
+					}
+				}
+			});
+			out.close();
 		}
 		
 		//
 		
 		fileSystem.delete(buildOutputPath, true);
+		if (fileSystem.exists(correctOutputPath))
+			fileSystem.delete(correctOutputPath, true);
+		if (fileSystem.exists(normalizeOutputPath))
+			fileSystem.delete(normalizeOutputPath, true);
+		if (fileSystem.exists(collapseOutputPath))
+			fileSystem.delete(collapseOutputPath, true);
+		MRAssemblerManifest.delete(fileSystem, buildOutputPath);
 		
 		fileSystem.close();	
 
 		return true;
 	}
 	
-	// Build the graph after compressing chains.
+	// Build the graph after compressing chains.  The result has one Graph per sample.
 	
-	protected Graph buildCompressedGraph(Configuration conf, FileSystem fileSystem, 
+	protected ArrayList<Graph> buildCompressedGraph(Configuration conf, FileSystem fileSystem, 
 			Path branchPath, Path chainPath) 
 			throws IOException, InterruptedException {
 		System.out.println("sabe.MRAssembler starting graph construction");
 
-		ArrayList<MRMerVertex> vertices = new ArrayList<MRMerVertex>();
+		MRCompressedVertices vertices = 
+				MRCompressedVertices.read(conf, fileSystem, branchPath, chainPath);
+		if (tipsAndBubbles) {
+			int numVertices = vertices.size();
+			vertices = TipsAndBubbles.simplify(vertices, vertexMerLength, normalizedCoverage);
+			System.out.println("sabe.MRAssembler removal of tips and bubbles reduced " + 
+					numVertices + " vertices to " + vertices.size());
+		}
 		
-		FileStatus[] branchFiles = fileSystem.listStatus(branchPath);
-		for (FileStatus status : branchFiles) 
-			readVertices(status, vertices, conf);
+		return createGraphs(vertices, false);
+	}
+	
+	// Build the graph from the output of MRTipsAndBubbles, with one Graph per sample.
+	
+	protected ArrayList<Graph> buildSimplifiedGraph(Configuration conf, FileSystem fileSystem, 
+			Path simplifiedPath) throws IOException {
+		System.out.println("sabe.MRAssembler starting graph construction");
 		
-		FileStatus[] chainFiles = fileSystem.listStatus(chainPath);
-		for (FileStatus status : chainFiles)
-			readVertices(status, vertices, conf);
+		MRCompressedVertices vertices = 
+				MRCompressedVertices.readVertexRecords(conf, fileSystem, simplifiedPath);
+		vertices = TipsAndBubbles.compress(vertices, vertexMerLength);
 		
-		// Check for a malformed graph, that does not have exactly one source and sink.
-		// Return null in this case.
+		return createGraphs(vertices, false);
+	}
+	
+	// Build the graph from the output of MRRectifyRepeats, with one Graph per sample.
+	
+	protected ArrayList<Graph> buildRectifiedGraph(Configuration conf, FileSystem fileSystem, 
+			Path rectifiedPath) throws IOException {
+		System.out.println("sabe.MRAssembler starting graph construction");
 		
-		int numSources = 0;
-		int numSinks = 0;
-		for (MRMerVertex vertex : vertices) {
-			if (vertex.getIsSource()) 
-				numSources++;
-			if (vertex.getIsSink())
-				numSinks++;	
-		}
-		if ((numSources != 1) || (numSinks != 1)) {
-			System.out.println("Malformed graph: number of sources = " + numSources
-					+ ", number of sinks = " + numSinks);
-			return null;
-		}
+		MRCompressedVertices vertices = 
+				MRCompressedVertices.readVertexRecords(conf, fileSystem, rectifiedPath);
 		
-		return new Graph(vertices);
+		return createGraphs(vertices, true);
 	}
-
-	// Read values from the specified FileStatus, create MRMerVertex instances from the values
-	// and place them in the ArrayList.
-	
-	private void readVertices(FileStatus status, ArrayList<MRMerVertex> vertices, Configuration conf)
-			throws IOException {
-		Path path = status.getPath();
-		if (path.getName().startsWith("part")) {
-		    SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(path));
-		    IntWritable key = new IntWritable();
-		    BytesWritable value = new BytesWritable();
-		    while (reader.next(key, value))
-		    	vertices.add(new MRMerVertex(value, conf));
-		    reader.close();
+	
+	// Create the Graph of each sample from the vertices.  The samples' graphs have no
+	// edges between them, so removing tips and bubbles from all the samples at once 
+	// is the same as removing them from each sample.
+	
+	protected ArrayList<Graph> createGraphs(MRCompressedVertices vertices, boolean isRectified) {
+		ArrayList<MRCompressedVertices> samples;
+		if (numSamples == 1) {
+			samples = new ArrayList<MRCompressedVertices>();
+			samples.add(vertices);
 		}
+		else {
+			samples = vertices.splitSamples(vertexMerLength, numSamples);
+		}
+		
+		for (MRCompressedVertices sample : samples)
+			reportSourcesSinks(sample);
+		
+		if (!isRectified)
+			System.out.println("sabe.MRAssembler starting rectification of repeats");
+		
+		ArrayList<Graph> graphs = new ArrayList<Graph>();
+		for (MRCompressedVertices sample : samples)
+			graphs.add(new Graph(sample, isRectified));
+		return graphs;
 	}
 	
-	// A directed graph built from MRMerVertex instances.  The underlying representation
-	// is a digraph.BasicDigraph.
+	// The CompressedGraph of the vertices, with the options of this MRAssembler.
 	
-	protected class Graph {
+	protected class Graph extends CompressedGraph {
 		
 		// Construct the graph from the vertices.
 		
-		public Graph(ArrayList<MRMerVertex> vertices) {
-			
-			// The MRMerVertices have a wide range of IDs, since each ID is an encoding
-			// of a (k-1)-mer.  For the digraph.BasicDigraph, vertices will have IDs
-			// that are consecutive integers starting at 0.  These arrays map from
-			// those integers to the Mers and MerStrings (resulting from chain compression)
-			// for the vertices.
-			
-			mers = new int[vertices.size()];
-			merStrings = new MerString[vertices.size()];
-			
-			// The vertices need to have their edges remapped, too.  This HashMap maps
-			// from (k-1)-mer IDs to new digraph.BasicDigraph IDs to facilitate the
-			// new edges.
-			
-			HashMap<Integer, Integer> merToIndex = new HashMap<Integer, Integer>(vertices.size());
-			
-			// The Repeats class needs an array indicating what vertices are branches 
-			// (so it can avoid computing that status itself).
-			
-			boolean[] isBranch = new boolean[vertices.size()];
-			
-			MRMerVertex source = null;
-			MRMerVertex sink = null;
-
-			int i = 1;
-			for (MRMerVertex vertex : vertices) {
-				if (vertex.getIsSource()) {
-					
-					if (source == null)
-						source = vertex;
-				}
-				
-				if (vertex.getIsSink()) {
-					
-					if (sink == null)
-						sink = vertex;
-				}
-
-				// The digraph.EulerPaths class expects the source to have index 0.
-				int j = (vertex == source) ? 0 : i++;
-				
-				mers[j] = vertex.getId();
-				merStrings[j] = vertex.getMerString();
-				merToIndex.put(mers[j], j);
-				isBranch[j] = vertex.getIsBranch();
-			}
-			
-			// Create the graph of the vertices with the new IDs.
-			
-			graph = new BasicDigraph(vertices.size(), Digraph.EdgeMultiples.ENABLED);
-			
-			for (MRMerVertex vertex : vertices) {
-				int j = merToIndex.get(vertex.getId());
-				
-				// Add the edges with the new IDs.
-				
-				MRVertex.AdjacencyIterator it = vertex.createToAdjacencyIterator();
-				for (int to = it.begin(); !it.done(); to = it.next()) {
-					BasicDigraph.Edge edge = new BasicDigraph.Edge(merToIndex.get(to).intValue());
-					graph.addEdge(j, edge);
-				}
-			}
-			
-			System.out.println("sabe.MRAssembler starting rectification of repeats");
-			
-			Repeats.rectifySingle(graph, coverage, isBranch);
-
-			// There must be an edge from the sink to the source for
-			// digraph.EulerPaths to work correctly.
-			
-			addedSinkSourceEdge = false;
-			if ((source != null) && (sink != null)) {
-				int from = merToIndex.get(sink.getId()).intValue();
-				int to = merToIndex.get(source.getId()).intValue();
-				graph.addEdge(from, new BasicDigraph.Edge(to));
-				addedSinkSourceEdge = true;
-			}
+		public Graph(MRCompressedVertices vertices) {
+			this(vertices, false);
 		}
 		
-		// Assemble the final sequence and return it as a String.  There ought to be
-		// jus one String, but the return value allows for the possibility of more
-		// than one, just in case.
+		// Construct the graph from the vertices, whose edge multiples have already been
+		// rectified if isRectified is true.
+		
+		public Graph(MRCompressedVertices vertices, boolean isRectified) {
+			super(vertices, vertexMerLength, normalizedCoverage, isRectified, multipleRepeats);
+		}
 		
+		@Override
 		public ArrayList<String> assemble() {
 			System.out.println("sabe.MRAssembler starting final assembly");
-
-			ArrayList<String> result = new ArrayList<String>();
 			
-			EulerPaths<BasicDigraph.Edge> euler = new EulerPaths<BasicDigraph.Edge>(graph);
-			ArrayList<ArrayDeque<Integer>> paths = euler.getPaths();
+			return super.assemble();
+		}
+		
+		@Override
+		public int assemble(ComponentTours.Consumer consumer) throws IOException {
+			System.out.println("sabe.MRAssembler starting final assembly");
 			
-			for (ArrayDeque<Integer> path : paths) {			
-				if (addedSinkSourceEdge)
-					path.pollLast();
-				
-				String seq = new String();
-				for (int i : path) {
-					if (seq.length() == 0) {
-						if (merStrings[i] != null) 
-							seq = merStrings[i].toDisplayString();
-						else
-							seq = Mer.fromInt(mers[i], vertexMerLength);
-					}
-					else {
-						if (merStrings[i] != null)
-							seq += merStrings[i].toDisplayString().substring(vertexMerLength - 1);
-						else
-							seq += Mer.fromInt(mers[i], 1);
-					}
-				}
-				
-				result.add(seq);
-			}
+			int n = super.assemble(consumer);
+			
+			System.out.println("sabe.MRAssembler assembled " + n + " components");
 			
-			return result;			
+			return n;
 		}
+	}
+
+	// Report a graph that does not have exactly one source and one sink.
+	
+	private void reportSourcesSinks(MRCompressedVertices vertices) {
 		
-		private int[] mers;
-		private MerString[] merStrings;
-		private BasicDigraph graph;
-		private boolean addedSinkSourceEdge;
+		// A graph without exactly one source and one sink has more than one
+		// weakly-connected component, or has gaps in its coverage, so it will be
+		// assembled into more than one sequence.
+		
+		int numSources = 0;
+		int numSinks = 0;
+		for (int row = 0; row < vertices.size(); row++) {
+			if (vertices.getIsSource(row)) 
+				numSources++;
+			if (vertices.getIsSink(row))
+				numSinks++;	
+		}
+		if ((numSources != 1) || (numSinks != 1)) {
+			System.out.println("sabe.MRAssembler graph has " + numSources + " sources and "
+					+ numSinks + " sinks, so it may produce multiple sequences");
+		}
 	}
 
+	private static final String TMP_PATH_NAME = "sabe.MRAssemblerTmp";
+	private static final String CORRECT_SUFFIX = ".corrected";
+	private static final String NORMALIZE_SUFFIX = ".normalized";
+	private static final String COLLAPSE_SUFFIX = ".collapsed";
+
 	private int vertexMerLength;
 	private int coverage;
+	private boolean distributedRectification;
+	private boolean multipleRepeats;
+	private boolean tipsAndBubbles;
+	private boolean distributedTipsAndBubbles;
+	private boolean bspCompression;
+	private Path tmpPath;
+	private int numSamples;
+	private int minQuality;
+	private boolean errorCorrection;
+	private int targetCoverage;
+	private int normalizedCoverage;
+	private boolean collapseDuplicates;
 	
 }
@@ -0,0 +1,268 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Counters;
+
+// A record of the stages of an MRAssembler run that have completed, so that
+// a run that fails partway through can be resumed without repeating those
+// stages.  The manifest is stored as a small text file next to the temporary
+// directory of the run, not in it, since vertex construction replaces that 
+// directory, and a failure of vertex construction must not lose the stages 
+// before it, whose outputs are also kept next to the directory.  Each line is one
+// completed stage: the stage name, the iteration number, the path of the
+// stage's output, and the Hadoop counters of the stage's job.
+//
+// The manifest is rewritten in full after each stage (it is small, and HDFS
+// does not reliably support appending), first to a temporary file that is
+// then renamed, so a failure while writing never leaves a truncated manifest.
+// The rename cannot replace an existing file, so the old manifest is deleted
+// first, and a failure between the deletion and the rename leaves only the 
+// temporary file, which is complete.  So read() uses the temporary file when 
+// the manifest is missing.  The temporary file can be incomplete only if the 
+// failure was while writing it, and then the manifest is missing only if this 
+// was the first write, when there was nothing to lose.  A rename that fails 
+// throws IOException, so the run stops with the complete temporary file in place.
+
+public class MRAssemblerManifest {
+
+	// The suffix that the temporary directory's path takes for the manifest file.
+
+	public static final String SUFFIX = ".manifest";
+
+	// The stages that can be recorded.  CORRECT is the optional error correction
+	// of the reads; NORMALIZE is the optional digital normalization of the reads; 
+	// COLLAPSE is the optional collapsing of identical reads; BUILD is the construction of the
+	// uncompressed graph; COMPRESS_ITERATION is one iteration of chain
+	// compression that was not the last; COMPRESS is the last iteration of
+	// chain compression, after which the compressed chains are complete;
+	// RECTIFY is the optional distributed rectification of repeats; TIPS_BUBBLES
+	// is the optional distributed removal of tips and bubbles.
+
+	public enum Stage { CORRECT, NORMALIZE, COLLAPSE, BUILD, COMPRESS_ITERATION, COMPRESS, RECTIFY, TIPS_BUBBLES }
+
+	// One completed stage.
+
+	public static class Entry {
+
+		public Entry(Stage stage, int iteration, Path path, Map<String, Long> counters) {
+			this.stage = stage;
+			this.iteration = iteration;
+			this.path = path;
+			this.counters = new TreeMap<String, Long>(counters);
+		}
+
+		public Stage getStage() {
+			return stage;
+		}
+
+		public int getIteration() {
+			return iteration;
+		}
+
+		// The path of the output produced by the stage.
+
+		public Path getPath() {
+			return path;
+		}
+
+		// The counters of the stage's job, keyed by "group:name".
+
+		public Map<String, Long> getCounters() {
+			return counters;
+		}
+
+		private Stage stage;
+		private int iteration;
+		private Path path;
+		private TreeMap<String, Long> counters;
+	}
+
+	// Construct an empty manifest to be stored for the specified temporary directory.
+
+	public MRAssemblerManifest(FileSystem fileSystem, Path tmpPath) {
+		this.fileSystem = fileSystem;
+		this.manifestPath = getPath(tmpPath);
+		entries = new ArrayList<Entry>();
+	}
+
+	// Returns the path of the manifest file for the specified temporary directory.
+
+	public static Path getPath(Path tmpPath) {
+		return tmpPath.suffix(SUFFIX);
+	}
+
+	// Read the manifest stored for the specified temporary directory.  Returns
+	// an empty manifest if there is none.
+
+	public static MRAssemblerManifest read(FileSystem fileSystem, Path tmpPath)
+			throws IOException {
+		MRAssemblerManifest manifest = new MRAssemblerManifest(fileSystem, tmpPath);
+		if (fileSystem.exists(manifest.manifestPath)) {
+			manifest.read(manifest.manifestPath);
+		}
+		else {
+			Path writePath = manifest.manifestPath.suffix(".tmp");
+			if (fileSystem.exists(writePath)) {
+				try {
+					manifest.read(writePath);
+				}
+				catch (IOException exception) {
+					// An incomplete first write, so there is nothing to lose.
+					
+					manifest.entries.clear();
+				}
+			}
+		}
+
+		return manifest;
+	}
+
+	// Delete the manifest stored for the specified temporary directory, and its 
+	// temporary file, if they exist.
+
+	public static void delete(FileSystem fileSystem, Path tmpPath) throws IOException {
+		Path manifestPath = getPath(tmpPath);
+		if (fileSystem.exists(manifestPath))
+			fileSystem.delete(manifestPath, false);
+		Path writePath = manifestPath.suffix(".tmp");
+		if (fileSystem.exists(writePath))
+			fileSystem.delete(writePath, false);
+	}
+
+	// Record the completion of a stage, whose job had the specified counters, and
+	// write the updated manifest.
+
+	public void record(Stage stage, int iteration, Path path, Counters counters)
+			throws IOException {
+		TreeMap<String, Long> values = new TreeMap<String, Long>();
+		if (counters != null) {
+			for (CounterGroup group : counters) {
+				for (Counter counter : group)
+					values.put(group.getName() + ":" + counter.getName(), counter.getValue());
+			}
+		}
+
+		entries.add(new Entry(stage, iteration, fileSystem.makeQualified(path), values));
+		write();
+	}
+
+	// Returns the most recent entry for the specified stage, or null if that stage
+	// has not been recorded.
+
+	public Entry getLast(Stage stage) {
+		for (int i = entries.size() - 1; i >= 0; i--)
+			if (entries.get(i).stage == stage)
+				return entries.get(i);
+		return null;
+	}
+
+	// Returns all the entries, in the order they were recorded.
+
+	public ArrayList<Entry> getEntries() {
+		return entries;
+	}
+
+	//
+
+	private void read(Path path) throws IOException {
+		BufferedReader reader =
+				new BufferedReader(new InputStreamReader(fileSystem.open(path)));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty())
+				continue;
+			String[] fields = line.split("\t", -1);
+			try {
+				if (fields.length != 4)
+					throw new IllegalArgumentException();
+
+				TreeMap<String, Long> counters = new TreeMap<String, Long>();
+				if (!fields[3].isEmpty()) {
+					for (String counter : fields[3].split(",")) {
+						int i = counter.lastIndexOf('=');
+						counters.put(counter.substring(0, i), 
+								Long.parseLong(counter.substring(i + 1)));
+					}
+				}
+
+				entries.add(new Entry(Stage.valueOf(fields[0]), Integer.parseInt(fields[1]),
+						new Path(fields[2]), counters));
+			}
+			catch (RuntimeException exception) {
+				reader.close();
+				throw new IOException("MRAssemblerManifest.read(): malformed line \"" + line + "\"");
+			}
+		}
+		reader.close();
+	}
+
+	private void write() throws IOException {
+		Path writePath = manifestPath.suffix(".tmp");
+		FSDataOutputStream out = fileSystem.create(writePath, true);
+		for (Entry entry : entries) {
+			StringBuilder line = new StringBuilder();
+			line.append(entry.stage.name());
+			line.append('\t');
+			line.append(entry.iteration);
+			line.append('\t');
+			line.append(entry.path.toString());
+			line.append('\t');
+			boolean first = true;
+			for (Map.Entry<String, Long> counter : entry.counters.entrySet()) {
+				if (!first)
+					line.append(',');
+				line.append(counter.getKey());
+				line.append('=');
+				line.append(counter.getValue());
+				first = false;
+			}
+			line.append('\n');
+			out.writeBytes(line.toString());
+		}
+		out.close();
+
+		if (fileSystem.exists(manifestPath))
+			fileSystem.delete(manifestPath, false);
+		if (!fileSystem.rename(writePath, manifestPath))
+			throw new IOException("MRAssemblerManifest.write(): cannot rename " + writePath + 
+					" to " + manifestPath);
+	}
+
+	private FileSystem fileSystem;
+	private Path manifestPath;
+	private ArrayList<Entry> entries;
+
+}
@@ -28,7 +28,10 @@ import java.util.ArrayList;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 
 import com.philiphubbard.digraph.MRBuildVertices;
 import com.philiphubbard.digraph.MRVertex;
@@ -36,11 +39,21 @@ import com.philiphubbard.digraph.MRVertex;
 // A class derived from digraph.MRBuildVertices, specializing that class's
 // mapper to build instances of the MRMerVertex class, derived from MRVertex.
 // The input to the mapper is a set of "read" strings.
+//
+// The reads of several samples can be processed by one job, with one input path per
+// sample.  Then the ID of each vertex has the index of its sample above the bits of 
+// its (k-1)-mer, so the samples' graphs stay separate through the later jobs, and the
+// driver can split them apart with getSample() and getMer().
 
 public class MRBuildMerVertices extends MRBuildVertices {
 	
 	public static final String CONFIG_VERTEX_MER_LENGTH = "CONFIG_VERTEX_MER_LENGTH";
 	
+	// The property, set by setupJob(), with the qualified input paths of the samples
+	// in order, when there is more than one.
+	
+	public static final String CONFIG_SAMPLE_PATHS = "CONFIG_SAMPLE_PATHS";
+	
 	public static void setupJob(Job job, Path inputPath, Path outputPath) 
 			throws IOException {
 		MRBuildVertices.setupJob(job, inputPath, outputPath);
@@ -48,34 +61,134 @@ public class MRBuildMerVertices extends MRBuildVertices {
 		job.setMapperClass(MRBuildMerVertices.Mapper.class);
 	}
 	
+	// Set up a job for the reads of several samples, each in its own input path, which
+	// should be qualified (see FileSystem.makeQualified()).  Throws 
+	// IllegalArgumentException if there are more samples than getMaxSamples() allows.
+	
+	public static void setupJob(Job job, Path[] inputPaths, Path outputPath) 
+			throws IOException, IllegalArgumentException {
+		int vertexMerLength = job.getConfiguration().getInt(MRMerVertex.CONFIG_MER_LENGTH, 1);
+		if (inputPaths.length > getMaxSamples(vertexMerLength))
+			throw new IllegalArgumentException("MRBuildMerVertices.setupJob(): at most " + 
+					getMaxSamples(vertexMerLength) + " samples for a mer length of " + 
+					vertexMerLength);
+		
+		setupJob(job, inputPaths[0], outputPath);
+		for (int i = 1; i < inputPaths.length; i++)
+			FileInputFormat.addInputPath(job, inputPaths[i]);
+		
+		if (inputPaths.length > 1) {
+			String[] names = new String[inputPaths.length];
+			for (int i = 0; i < inputPaths.length; i++)
+				names[i] = inputPaths[i].toString();
+			job.getConfiguration().setStrings(CONFIG_SAMPLE_PATHS, names);
+		}
+	}
+	
+	// Returns the number of samples whose indices fit in a vertex ID, above the 
+	// 2 * vertexMerLength bits of the (k-1)-mer, keeping IDs non-negative.
+	
+	public static int getMaxSamples(int vertexMerLength) {
+		if (2 * vertexMerLength >= 31)
+			return 1;
+		return 0x1 << (31 - 2 * vertexMerLength);
+	}
+	
+	// Returns the index of the sample of the vertex with the specified ID.
+	
+	public static int getSample(int id, int vertexMerLength) {
+		return id >>> (2 * vertexMerLength);
+	}
+	
+	// Returns the (k-1)-mer of the vertex with the specified ID, without its sample.
+	
+	public static int getMer(int id, int vertexMerLength) {
+		return id & ((0x1 << (2 * vertexMerLength)) - 1);
+	}
+	
+	// Returns the index of the sample whose input path holds the input split, according 
+	// to the CONFIG_SAMPLE_PATHS property, or 0 if there is only one sample.
+	
+	static int findSample(Configuration config, InputSplit split) {
+		String[] samplePaths = config.getStrings(CONFIG_SAMPLE_PATHS);
+		if ((samplePaths != null) && (split instanceof FileSplit)) {
+			String file = ((FileSplit) split).getPath().toString();
+			for (int i = 0; i < samplePaths.length; i++) {
+				if (file.equals(samplePaths[i]) || file.startsWith(samplePaths[i] + "/"))
+					return i;
+			}
+		}
+		return 0;
+	}
+	
 	// The mapper simply overrides the verticesFromInputValue() function of the
 	// MRCollectVertices.Mapper class, to take input in the form of "read" strings.
-	// Each read should be a line of the input file, ending with "\n".
+	// Each read should be a line of the input file, ending with "\n".  A line may
+	// also have the qualities of the read, as described in QualityFilter, and then 
+	// only the pieces of the read that QualityFilter keeps make vertices.  With the
+	// MRCollapseReads.CONFIG_COUNTED_READS property, each line is instead a collapsed
+	// read from MRCollapseReads.
 	
 	public static class Mapper extends MRBuildVertices.Mapper {
 		
+		// Find the sample of this task's input split.
+		
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			super.setup(context);
+			
+			int vertexMerLength = context.getConfiguration().getInt(MRMerVertex.CONFIG_MER_LENGTH, 1);
+			int sample = findSample(context.getConfiguration(), context.getInputSplit());
+			sampleBits = sample << (2 * vertexMerLength);
+			
+			qualityFilter = 
+					new QualityFilter(context.getConfiguration().getInt(QualityFilter.CONFIG_MIN_QUALITY, 0));
+			countedReads = context.getConfiguration().getBoolean(MRCollapseReads.CONFIG_COUNTED_READS, false);
+		}
+		
 		@Override
 		protected ArrayList<MRVertex> verticesFromInputValue(Text value, Configuration config) {
 			ArrayList<MRVertex> result = new ArrayList<MRVertex>();
 			
 			int vertexMerLength = config.getInt(MRMerVertex.CONFIG_MER_LENGTH, 1);
 			
-			String s = value.toString();
+			// A collapsed read makes its vertices once, with each edge repeated for
+			// the count, as many identical reads would after the reducer merged them.
+			
+			if (countedReads) {
+				String line = value.toString();
+				if (!line.isEmpty())
+					addVertices(CollapsedReads.parseRead(line), CollapsedReads.parseCount(line),
+							vertexMerLength, config, result);
+			}
+			else {
+				for (String s : qualityFilter.split(value.toString()))
+					addVertices(s, 1, vertexMerLength, config, result);
+			}
+			
+			return result;
+		}
+		
+		private void addVertices(String s, int count, int vertexMerLength, Configuration config,
+				ArrayList<MRVertex> result) {
 			MRMerVertex prev = null;
 			for (int i = 0; i < s.length() - vertexMerLength + 1; i++) {
 				String mer = s.substring(i, i + vertexMerLength);
 				
-				int id = Mer.toInt(mer);
+				int id = Mer.toInt(mer) | sampleBits;
 				MRMerVertex curr = new MRMerVertex(id, config);
 				result.add(curr);
 				
 				if (prev != null)
-					prev.addEdgeTo(id);
+					for (int j = 0; j < count; j++)
+						prev.addEdgeTo(id);
 				prev = curr;
 			}
-			
-			return result;
 		}
+		
+		private int sampleBits;
+		private QualityFilter qualityFilter;
+		private boolean countedReads;
 
 	}
 	
@@ -0,0 +1,240 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+// A job that collapses identical reads into CollapsedReads lines ("READ\tCOUNT"),
+// for MRBuildMerVertices with CONFIG_COUNTED_READS set, which makes the vertices of
+// each distinct read once and applies the count as the multiple of its edges.  As
+// with MRDigitalNormalization, the input is read strings, one per line, from the 
+// input path of each sample (the pieces kept by QualityFilter, for lines with
+// qualities), and the collapsed reads of sample i are written to the directory 
+// getSampleOutputPath(outputPath, i).
+//
+// Each mapper collapses its reads in a CollapsedReads table before writing them,
+// and the keys of the shuffle are the reads packed with two bits per base, after 
+// the index of the sample, so each sample's reads are collapsed separately.
+
+public class MRCollapseReads {
+	
+	// The property that tells MRBuildMerVertices.Mapper its input is collapsed reads.
+	
+	public static final String CONFIG_COUNTED_READS = "CONFIG_COUNTED_READS";
+	
+	// The counters of reads read and distinct reads written.
+	
+	public enum Counter { READS, DISTINCT }
+	
+	// Run the job on the samples' input paths, which should be qualified (see 
+	// FileSystem.makeQualified()).  Returns the job, or null if it failed.
+	
+	public static Job run(Configuration conf, FileSystem fileSystem, Path[] inputPaths, 
+			Path outputPath) throws IOException, InterruptedException, ClassNotFoundException {
+		if (fileSystem.exists(outputPath))
+			fileSystem.delete(outputPath, true);
+		
+		Job job = Job.getInstance(conf);
+		job.setJobName("mrcollapsereads");
+		
+		setupJob(job, inputPaths, outputPath);
+		
+		if (!job.waitForCompletion(true))
+			return null;
+		
+		for (int i = 0; i < inputPaths.length; i++)
+			fileSystem.mkdirs(getSampleOutputPath(outputPath, i));
+		
+		System.out.println("sabe.MRCollapseReads collapsed " + 
+				job.getCounters().findCounter(Counter.READS).getValue() + " reads to " + 
+				job.getCounters().findCounter(Counter.DISTINCT).getValue());
+		
+		return job;
+	}
+	
+	public static void setupJob(Job job, Path[] inputPaths, Path outputPath) 
+			throws IOException {
+		job.setJarByClass(MRCollapseReads.class);
+		
+		job.setMapperClass(MRCollapseReads.Mapper.class);
+		job.setReducerClass(MRCollapseReads.Reducer.class);
+		
+		job.setMapOutputKeyClass(BytesWritable.class);
+		job.setMapOutputValueClass(IntWritable.class);
+		job.setOutputKeyClass(NullWritable.class);
+		job.setOutputValueClass(Text.class);
+		
+		job.setInputFormatClass(TextInputFormat.class);
+		LazyOutputFormat.setOutputFormatClass(job, TextOutputFormat.class);
+		
+		String[] names = new String[inputPaths.length];
+		for (int i = 0; i < inputPaths.length; i++) {
+			FileInputFormat.addInputPath(job, inputPaths[i]);
+			names[i] = inputPaths[i].toString();
+		}
+		if (inputPaths.length > 1)
+			job.getConfiguration().setStrings(MRBuildMerVertices.CONFIG_SAMPLE_PATHS, names);
+		
+		FileOutputFormat.setOutputPath(job, outputPath);
+	}
+	
+	// Returns the directory of the collapsed reads of the sample.
+	
+	public static Path getSampleOutputPath(Path outputPath, int sample) {
+		return new Path(outputPath, SAMPLE_PREFIX + sample);
+	}
+	
+	// The key for the read of the sample: the sample index and the read length, 
+	// four bytes each, and then the bases, four per byte.
+	
+	static byte[] toKey(int sample, String read) throws IllegalArgumentException {
+		int length = read.length();
+		byte[] key = new byte[8 + (length + 3) / 4];
+		writeInt(key, 0, sample);
+		writeInt(key, 4, length);
+		for (int i = 0; i < length; i++)
+			key[8 + i / 4] |= Mer.letterToInt(read.charAt(i)) << (2 * (i % 4));
+		return key;
+	}
+	
+	static int getSampleOfKey(byte[] key) {
+		return readInt(key, 0);
+	}
+	
+	static String getReadOfKey(byte[] key) {
+		char[] bases = new char[readInt(key, 4)];
+		for (int i = 0; i < bases.length; i++)
+			bases[i] = BASES[(key[8 + i / 4] >>> (2 * (i % 4))) & 0x3];
+		return new String(bases);
+	}
+	
+	// The mapper, which collapses the reads of its split in a table, and writes each 
+	// distinct read with its count when the table is full and at the end.
+	
+	public static class Mapper 
+	extends org.apache.hadoop.mapreduce.Mapper<LongWritable, Text, BytesWritable, IntWritable> {
+		
+		@Override
+		protected void setup(Context context) {
+			Configuration conf = context.getConfiguration();
+			sample = MRBuildMerVertices.findSample(conf, context.getInputSplit());
+			qualityFilter = new QualityFilter(conf.getInt(QualityFilter.CONFIG_MIN_QUALITY, 0));
+			reads = new CollapsedReads();
+		}
+		
+		@Override
+		protected void map(LongWritable key, Text value, Context context) 
+				throws IOException, InterruptedException {
+			for (String read : qualityFilter.split(value.toString())) {
+				reads.add(read, 1);
+				context.getCounter(Counter.READS).increment(1);
+			}
+			if (reads.size() >= FLUSH_SIZE)
+				flush(context);
+		}
+		
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			flush(context);
+		}
+		
+		private void flush(Context context) throws IOException, InterruptedException {
+			for (int i = 0; i < reads.size(); i++)
+				context.write(new BytesWritable(toKey(sample, reads.getRead(i))), 
+						new IntWritable(reads.getCount(i)));
+			reads = new CollapsedReads();
+		}
+		
+		private int sample;
+		private QualityFilter qualityFilter;
+		private CollapsedReads reads;
+	}
+	
+	// The reducer, which sums the counts of each read and writes it to the output of
+	// its sample.
+	
+	public static class Reducer 
+	extends org.apache.hadoop.mapreduce.Reducer<BytesWritable, IntWritable, NullWritable, Text> {
+		
+		@Override
+		protected void setup(Context context) {
+			outputs = new MultipleOutputs<NullWritable, Text>(context);
+		}
+		
+		@Override
+		protected void reduce(BytesWritable key, Iterable<IntWritable> values, Context context) 
+				throws IOException, InterruptedException {
+			int count = 0;
+			for (IntWritable value : values)
+				count += value.get();
+			
+			byte[] bytes = key.getBytes();
+			String line = CollapsedReads.toLine(getReadOfKey(bytes), count);
+			outputs.write(NullWritable.get(), new Text(line), 
+					SAMPLE_PREFIX + getSampleOfKey(bytes) + "/part");
+			context.getCounter(Counter.DISTINCT).increment(1);
+		}
+		
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			outputs.close();
+		}
+		
+		private MultipleOutputs<NullWritable, Text> outputs;
+	}
+	
+	//
+	
+	private static void writeInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+	
+	private static int readInt(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16) |
+				((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+	}
+	
+	private static final String SAMPLE_PREFIX = "sample";
+	private static final char[] BASES = { 'A', 'C', 'G', 'T' };
+	private static final int FLUSH_SIZE = 0x1 << 18;
+	
+}
@@ -0,0 +1,460 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+
+import com.philiphubbard.digraph.MRVertex;
+
+// A compact, read-only store of the MRMerVertex instances of a compressed graph,
+// as produced by MRBuildMerVertices and MRCompressMerChains.  Rather than keeping
+// an MRMerVertex object per vertex, the vertices are kept in columns of primitive
+// arrays, where a vertex is identified by its row:
+// * the ID of each vertex (the encoding of its (k-1)-mer);
+// * flags indicating whether each vertex is a source, sink or branch;
+// * the "to" edges of all the vertices, in compressed sparse row (CSR) form,
+//   with the edges of row i at indices getEdgeBegin(i) to getEdgeEnd(i) - 1;
+// * the bytes of the MerStrings of all the vertices, packed into one array.
+// 
+// The read() function loads the "part" files of a set of directories in parallel,
+// one file per task.  The readVertexRecords() function does the same for files of
+// MRRectifyRepeats.Vertex records, as produced by MRRectifyRepeats and 
+// MRTipsAndBubbles.  Each task decodes the vertices of its file into its own
+// columns, which are trimmed to their exact sizes when the task finishes, and then
+// concatenated one column at a time, with each column of the parts released as soon
+// as it has been copied.  So the peak memory is not much more than the final size,
+// plus the growth slack of the parts still being read.
+
+public class MRCompressedVertices {
+	
+	// Read the vertices from all the "part" files in the specified directories,
+	// using as many threads as there are processors.
+	
+	public static MRCompressedVertices read(Configuration conf, FileSystem fileSystem, 
+			Path... dirPaths) throws IOException {
+		return read(conf, fileSystem, false, dirPaths);
+	}
+	
+	// Read the vertices from all the "part" files in the specified directories, which
+	// contain MRRectifyRepeats.Vertex records.  Each edge appears as many times as its
+	// multiple.  The records produced by MRRectifyRepeats have rectified multiples.
+	// Those produced by MRTipsAndBubbles do not, and their chains have not been 
+	// compressed again after the removal of tips and bubbles (see 
+	// TipsAndBubbles.compress()).
+	
+	public static MRCompressedVertices readVertexRecords(Configuration conf, 
+			FileSystem fileSystem, Path... dirPaths) throws IOException {
+		return read(conf, fileSystem, true, dirPaths);
+	}
+	
+	// Returns the number of vertices.
+	
+	public int size() {
+		return size;
+	}
+	
+	// Returns the ID of the vertex at the specified row.
+	
+	public int getId(int row) {
+		return ids[row];
+	}
+	
+	public boolean getIsSource(int row) {
+		return ((flags[row] & IS_SOURCE) != 0);
+	}
+	
+	public boolean getIsSink(int row) {
+		return ((flags[row] & IS_SINK) != 0);
+	}
+	
+	public boolean getIsBranch(int row) {
+		return ((flags[row] & IS_BRANCH) != 0);
+	}
+	
+	// The "to" edges of the vertex at the specified row have indices from
+	// getEdgeBegin(row) up to but not including getEdgeEnd(row).
+	
+	public int getEdgeBegin(int row) {
+		return edgeBegins[row];
+	}
+	
+	public int getEdgeEnd(int row) {
+		return edgeBegins[row + 1];
+	}
+	
+	// Returns the ID of the vertex to which the edge with the specified index points.
+	
+	public int getEdgeTo(int edge) {
+		return edgeTos[edge];
+	}
+	
+	// Returns the total number of edges (including edge multiples).
+	
+	public int getNumEdges() {
+		return edgeBegins[size];
+	}
+	
+	// Returns a new MerString for the vertex at the specified row, or null if
+	// that vertex had no MerString.
+	
+	public MerString getMerString(int row) {
+		int begin = merBegins[row];
+		int n = merBegins[row + 1] - begin;
+		if (n == 0)
+			return null;
+		return new MerString(merBytes, begin, n);
+	}
+	
+	// Split the vertices of a multi-sample run (see MRBuildMerVertices) into one 
+	// MRCompressedVertices per sample, with the sample removed from the IDs of the 
+	// vertices and their edges.  The result has numSamples elements.
+	
+	public ArrayList<MRCompressedVertices> splitSamples(int vertexMerLength, int numSamples) {
+		int[] sizes = new int[numSamples];
+		for (int row = 0; row < size; row++)
+			sizes[MRBuildMerVertices.getSample(ids[row], vertexMerLength)]++;
+		
+		ArrayList<MRCompressedVertices> result = new ArrayList<MRCompressedVertices>();
+		for (int i = 0; i < numSamples; i++)
+			result.add(new MRCompressedVertices(Math.max(sizes[i], 1)));
+		
+		int[] edges = new int[INITIAL_CAPACITY];
+		for (int row = 0; row < size; row++) {
+			int numEdges = getEdgeEnd(row) - getEdgeBegin(row);
+			if (numEdges > edges.length)
+				edges = new int[numEdges];
+			for (int i = 0; i < numEdges; i++)
+				edges[i] = MRBuildMerVertices.getMer(edgeTos[getEdgeBegin(row) + i], vertexMerLength);
+			
+			MRCompressedVertices part = 
+					result.get(MRBuildMerVertices.getSample(ids[row], vertexMerLength));
+			part.add(MRBuildMerVertices.getMer(ids[row], vertexMerLength), getIsSource(row), 
+					getIsSink(row), getIsBranch(row), edges, numEdges, getMerString(row));
+		}
+		
+		return result;
+	}
+	
+	//
+	
+	// Construct an empty MRCompressedVertices, to be filled by add().
+	
+	MRCompressedVertices(int capacity) {
+		ids = new int[capacity];
+		flags = new byte[capacity];
+		edgeBegins = new int[capacity + 1];
+		edgeTos = new int[capacity];
+		merBegins = new int[capacity + 1];
+		merBytes = new byte[capacity];
+		size = 0;
+	}
+	
+	// Read the "part" files of the directories, in parallel if there is more than one.
+	
+	private static MRCompressedVertices read(final Configuration conf, FileSystem fileSystem, 
+			final boolean isRectified, Path... dirPaths) throws IOException {
+		ArrayList<Path> partPaths = new ArrayList<Path>();
+		for (Path dirPath : dirPaths) {
+			FileStatus[] files = fileSystem.listStatus(dirPath);
+			for (FileStatus status : files) {
+				Path path = status.getPath();
+				if (path.getName().startsWith("part"))
+					partPaths.add(path);
+			}
+		}
+		
+		ArrayList<MRCompressedVertices> parts = new ArrayList<MRCompressedVertices>();
+		if (partPaths.size() == 1) {
+			parts.add(readPart(partPaths.get(0), conf, isRectified));
+		}
+		else if (partPaths.size() > 1) {
+			int numThreads = Math.min(partPaths.size(), Runtime.getRuntime().availableProcessors());
+			ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+			try {
+				ArrayList<Future<MRCompressedVertices>> futures = 
+						new ArrayList<Future<MRCompressedVertices>>();
+				for (final Path path : partPaths) {
+					futures.add(executor.submit(new Callable<MRCompressedVertices>() {
+						public MRCompressedVertices call() throws IOException {
+							return readPart(path, conf, isRectified);
+						}
+					}));
+				}
+				for (Future<MRCompressedVertices> future : futures)
+					parts.add(future.get());
+			}
+			catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				throw new IOException("MRCompressedVertices.read(): interrupted", exception);
+			}
+			catch (ExecutionException exception) {
+				if (exception.getCause() instanceof IOException)
+					throw (IOException) exception.getCause();
+				throw new IOException("MRCompressedVertices.read(): failed", exception.getCause());
+			}
+			finally {
+				executor.shutdown();
+			}
+		}
+		
+		return concatenate(parts);
+	}
+	
+	// Decode the vertices of one "part" file into a new MRCompressedVertices.
+	// Each MRMerVertex (or MRRectifyRepeats.Vertex) is needed only long enough to 
+	// copy its data into the columns.
+	
+	private static MRCompressedVertices readPart(Path path, Configuration conf, 
+			boolean isRectified) throws IOException {
+		MRCompressedVertices part = new MRCompressedVertices(INITIAL_CAPACITY);
+		
+		SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(path));
+		try {
+			IntWritable key = new IntWritable();
+			BytesWritable value = new BytesWritable();
+			while (reader.next(key, value)) {
+				if (isRectified)
+					part.add(new MRRectifyRepeats.Vertex(value.getBytes(), value.getLength()));
+				else
+					part.add(new MRMerVertex(value, conf));
+			}
+		}
+		finally {
+			reader.close();
+		}
+		
+		part.trim();
+		return part;
+	}
+	
+	// Append the data from the vertex as a new row.
+	
+	private void add(MRMerVertex vertex) {
+		int numEdges = beginRow(vertex.getId(), 
+				vertex.getIsSource(), vertex.getIsSink(), vertex.getIsBranch());
+		
+		MRVertex.AdjacencyIterator it = vertex.createToAdjacencyIterator();
+		for (int to = it.begin(); !it.done(); to = it.next())
+			numEdges = addEdge(numEdges, to);
+		
+		endRow(numEdges, vertex.getMergedMerString());
+	}
+	
+	// Append a row with the specified data, where the first numEdges elements of the
+	// edges array are the IDs of the vertices to which the edges point, each repeated 
+	// as many times as its multiple.  The merString may be null.
+	
+	void add(int id, boolean isSource, boolean isSink, boolean isBranch, 
+			int[] edges, int numEdges, MerString merString) {
+		int n = beginRow(id, isSource, isSink, isBranch);
+		for (int i = 0; i < numEdges; i++)
+			n = addEdge(n, edges[i]);
+		endRow(n, merString);
+	}
+	
+	// Append the data from the rectified vertex as a new row, with each edge repeated
+	// as many times as its multiple.
+	
+	private void add(MRRectifyRepeats.Vertex vertex) {
+		int numEdges = beginRow(vertex.getId(), 
+				vertex.getIsSource(), vertex.getIsSink(), vertex.getIsBranch());
+		
+		for (int i = 0; i < vertex.getNumEdges(); i++)
+			for (int j = 0; j < vertex.getEdgeMultiple(i); j++)
+				numEdges = addEdge(numEdges, vertex.getEdgeTo(i));
+		
+		endRow(numEdges, vertex.getMerString());
+	}
+	
+	// Start a new row with the specified ID and flags, and return the index for its
+	// first edge.
+	
+	private int beginRow(int id, boolean isSource, boolean isSink, boolean isBranch) {
+		if (size == ids.length) {
+			int capacity = 2 * ids.length;
+			ids = Arrays.copyOf(ids, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+			edgeBegins = Arrays.copyOf(edgeBegins, capacity + 1);
+			merBegins = Arrays.copyOf(merBegins, capacity + 1);
+		}
+		
+		ids[size] = id;
+		
+		byte f = 0;
+		if (isSource)
+			f |= IS_SOURCE;
+		if (isSink)
+			f |= IS_SINK;
+		if (isBranch)
+			f |= IS_BRANCH;
+		flags[size] = f;
+		
+		return edgeBegins[size];
+	}
+	
+	// Add an edge at the specified index, and return the index for the next edge.
+	
+	private int addEdge(int numEdges, int to) {
+		if (numEdges == edgeTos.length)
+			edgeTos = Arrays.copyOf(edgeTos, 2 * edgeTos.length);
+		edgeTos[numEdges] = to;
+		return numEdges + 1;
+	}
+	
+	// Finish the new row, with the specified end of its edges and its MerString.
+	
+	private void endRow(int numEdges, MerString merString) {
+		edgeBegins[size + 1] = numEdges;
+		
+		int numMerBytes = merBegins[size];
+		if (merString != null) {
+			byte[] bytes = merString.toBytes();
+			if (numMerBytes + bytes.length > merBytes.length)
+				merBytes = Arrays.copyOf(merBytes, 
+						Math.max(2 * merBytes.length, numMerBytes + bytes.length));
+			System.arraycopy(bytes, 0, merBytes, numMerBytes, bytes.length);
+			numMerBytes += bytes.length;
+		}
+		merBegins[size + 1] = numMerBytes;
+		
+		size++;
+	}
+	
+	// Shrink the arrays to the exact sizes of their contents.
+	
+	private void trim() {
+		int numEdges = edgeBegins[size];
+		int numMerBytes = merBegins[size];
+		if (ids.length > size) {
+			ids = Arrays.copyOf(ids, size);
+			flags = Arrays.copyOf(flags, size);
+			edgeBegins = Arrays.copyOf(edgeBegins, size + 1);
+			merBegins = Arrays.copyOf(merBegins, size + 1);
+		}
+		if (edgeTos.length > numEdges)
+			edgeTos = Arrays.copyOf(edgeTos, numEdges);
+		if (merBytes.length > numMerBytes)
+			merBytes = Arrays.copyOf(merBytes, numMerBytes);
+	}
+	
+	// Concatenate the parts into one MRCompressedVertices with arrays of the exact size.
+	// The result is built one column at a time, and the parts' arrays for a column are
+	// released as soon as they have been copied, so the parts and the result are not 
+	// all live at once.  The parts are unusable afterwards.
+	
+	private static MRCompressedVertices concatenate(ArrayList<MRCompressedVertices> parts) {
+		if (parts.size() == 1)
+			return parts.get(0);
+		
+		int n = parts.size();
+		int[] rows = new int[n + 1];
+		int[] edges = new int[n + 1];
+		int[] merByteBegins = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			MRCompressedVertices part = parts.get(i);
+			rows[i + 1] = rows[i] + part.size;
+			edges[i + 1] = edges[i] + part.edgeBegins[part.size];
+			merByteBegins[i + 1] = merByteBegins[i] + part.merBegins[part.size];
+		}
+		
+		MRCompressedVertices result = new MRCompressedVertices(0);
+		result.size = rows[n];
+		
+		result.ids = new int[rows[n]];
+		for (int i = 0; i < n; i++) {
+			MRCompressedVertices part = parts.get(i);
+			System.arraycopy(part.ids, 0, result.ids, rows[i], part.size);
+			part.ids = null;
+		}
+		
+		result.flags = new byte[rows[n]];
+		for (int i = 0; i < n; i++) {
+			MRCompressedVertices part = parts.get(i);
+			System.arraycopy(part.flags, 0, result.flags, rows[i], part.size);
+			part.flags = null;
+		}
+		
+		result.edgeBegins = new int[rows[n] + 1];
+		for (int i = 0; i < n; i++) {
+			MRCompressedVertices part = parts.get(i);
+			for (int j = 1; j <= part.size; j++)
+				result.edgeBegins[rows[i] + j] = edges[i] + part.edgeBegins[j];
+			part.edgeBegins = null;
+		}
+		
+		result.edgeTos = new int[edges[n]];
+		for (int i = 0; i < n; i++) {
+			MRCompressedVertices part = parts.get(i);
+			System.arraycopy(part.edgeTos, 0, result.edgeTos, edges[i], edges[i + 1] - edges[i]);
+			part.edgeTos = null;
+		}
+		
+		result.merBegins = new int[rows[n] + 1];
+		for (int i = 0; i < n; i++) {
+			MRCompressedVertices part = parts.get(i);
+			for (int j = 1; j <= part.size; j++)
+				result.merBegins[rows[i] + j] = merByteBegins[i] + part.merBegins[j];
+			part.merBegins = null;
+		}
+		
+		result.merBytes = new byte[merByteBegins[n]];
+		for (int i = 0; i < n; i++) {
+			MRCompressedVertices part = parts.get(i);
+			System.arraycopy(part.merBytes, 0, result.merBytes, merByteBegins[i], 
+					merByteBegins[i + 1] - merByteBegins[i]);
+			part.merBytes = null;
+		}
+		
+		return result;
+	}
+	
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	private static final byte IS_SOURCE = 0x1;
+	private static final byte IS_SINK = 0x2;
+	private static final byte IS_BRANCH = 0x4;
+	
+	private int size;
+	private int[] ids;
+	private byte[] flags;
+	private int[] edgeBegins;
+	private int[] edgeTos;
+	private int[] merBegins;
+	private byte[] merBytes;
+	
+}
@@ -0,0 +1,227 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+// A job for the DigitalNormalization of reads before MRBuildMerVertices.
+// The input is read strings, one per line, from the input path of each sample, and
+// the accepted reads (the pieces kept by QualityFilter, for lines with qualities) 
+// are written one per line, those of sample i to the directory
+// getSampleOutputPath(outputPath, i), which is then an input path for 
+// MRBuildMerVertices.  The k-mers counted are the edge k-mers of the graph, with 
+// k = MRMerVertex.CONFIG_MER_LENGTH + 1.
+//
+// Each mapper keeps its own CountMinSketch, and caps the coverage of its own input 
+// split at the target.  When the reads are not sorted by position, the parts of the
+// sequence are spread across the splits, so that alone would leave about the target 
+// times the number of splits (up to the original coverage), which for deep coverage
+// split many ways drops almost nothing, and which would differ between samples with
+// different numbers of splits.  So the mappers only pre-filter the reads of their 
+// splits, and send the reads they accept to a reducer keyed by the sample, which 
+// filters all the reads of the sample with one CountMinSketch.  Every sample then 
+// ends at about the target (up to its original coverage), as 
+// DigitalNormalization.getNormalizedCoverage() gives.  A read the pre-filter drops 
+// has its k-mers already covered the target times by the other reads of its sample,
+// so the pre-filter does not lower the coverage the reducer can reach.  Scaling 
+// down the target of each mapper instead would leave too little coverage when the 
+// reads are sorted by position.
+
+public class MRDigitalNormalization {
+	
+	public static final String CONFIG_TARGET_COVERAGE = "CONFIG_NORMALIZATION_TARGET_COVERAGE";
+	public static final String CONFIG_SKETCH_WIDTH = "CONFIG_NORMALIZATION_SKETCH_WIDTH";
+	public static final String CONFIG_SKETCH_DEPTH = "CONFIG_NORMALIZATION_SKETCH_DEPTH";
+	
+	// The counters of reads accepted and dropped.
+	
+	public enum Counter { ACCEPTED, DROPPED }
+	
+	// Set up the job for the reads of the samples, each in its own input path, which 
+	// should be qualified (see FileSystem.makeQualified()).  The configuration must 
+	// have CONFIG_TARGET_COVERAGE and MRMerVertex.CONFIG_MER_LENGTH.
+	
+	public static void setupJob(Job job, Path[] inputPaths, Path outputPath) 
+			throws IOException {
+		job.setJarByClass(MRDigitalNormalization.class);
+		
+		job.setMapperClass(MRDigitalNormalization.Mapper.class);
+		
+		// Each sample gets its own reducer, as the default HashPartitioner sends the
+		// IntWritable key of sample i to partition i.
+		
+		job.setMapOutputKeyClass(IntWritable.class);
+		job.setMapOutputValueClass(Text.class);
+		job.setReducerClass(MRDigitalNormalization.Reducer.class);
+		job.setNumReduceTasks(inputPaths.length);
+		
+		job.setOutputKeyClass(NullWritable.class);
+		job.setOutputValueClass(Text.class);
+		
+		// The accepted reads go only to the per-sample outputs, so the default output 
+		// is made lazily, to avoid empty files.
+		
+		job.setInputFormatClass(TextInputFormat.class);
+		LazyOutputFormat.setOutputFormatClass(job, TextOutputFormat.class);
+		
+		String[] names = new String[inputPaths.length];
+		for (int i = 0; i < inputPaths.length; i++) {
+			FileInputFormat.addInputPath(job, inputPaths[i]);
+			names[i] = inputPaths[i].toString();
+		}
+		if (inputPaths.length > 1)
+			job.getConfiguration().setStrings(MRBuildMerVertices.CONFIG_SAMPLE_PATHS, names);
+		
+		FileOutputFormat.setOutputPath(job, outputPath);
+	}
+	
+	// Run the job, and create the output directory of any sample with no accepted 
+	// reads, so each is a valid input path.  Returns the job, or null if the job 
+	// failed.
+	
+	public static Job run(Configuration conf, FileSystem fileSystem, Path[] inputPaths, 
+			Path outputPath) throws IOException, InterruptedException, ClassNotFoundException {
+		if (fileSystem.exists(outputPath))
+			fileSystem.delete(outputPath, true);
+		
+		Job job = Job.getInstance(conf);
+		job.setJobName("mrdigitalnormalization");
+		
+		setupJob(job, inputPaths, outputPath);
+		
+		if (!job.waitForCompletion(true))
+			return null;
+		
+		for (int i = 0; i < inputPaths.length; i++)
+			fileSystem.mkdirs(getSampleOutputPath(outputPath, i));
+		
+		System.out.println("sabe.MRDigitalNormalization accepted " + 
+				job.getCounters().findCounter(Counter.ACCEPTED).getValue() + " reads and dropped " + 
+				job.getCounters().findCounter(Counter.DROPPED).getValue());
+		
+		return job;
+	}
+	
+	// Returns the directory of the accepted reads of the sample.
+	
+	public static Path getSampleOutputPath(Path outputPath, int sample) {
+		return new Path(outputPath, SAMPLE_PREFIX + sample);
+	}
+	
+	// Returns a DigitalNormalization for the k-mers, target and sketch size of the 
+	// configuration.  Each mapper uses one for its split, and each reducer one for 
+	// its sample.
+	
+	static DigitalNormalization createNormalization(Configuration conf) {
+		int merLength = conf.getInt(MRMerVertex.CONFIG_MER_LENGTH, 1) + 1;
+		return new DigitalNormalization(merLength, 
+				conf.getInt(CONFIG_TARGET_COVERAGE, 1),
+				conf.getInt(CONFIG_SKETCH_WIDTH, DigitalNormalization.DEFAULT_SKETCH_WIDTH),
+				conf.getInt(CONFIG_SKETCH_DEPTH, DigitalNormalization.DEFAULT_SKETCH_DEPTH));
+	}
+	
+	// The mapper, which sends each read its pre-filter accepts to the reducer of its
+	// sample.
+	
+	public static class Mapper 
+	extends org.apache.hadoop.mapreduce.Mapper<LongWritable, Text, IntWritable, Text> {
+		
+		@Override
+		protected void setup(Context context) {
+			Configuration conf = context.getConfiguration();
+			normalization = createNormalization(conf);
+			sample = new IntWritable(MRBuildMerVertices.findSample(conf, context.getInputSplit()));
+			qualityFilter = new QualityFilter(conf.getInt(QualityFilter.CONFIG_MIN_QUALITY, 0));
+		}
+		
+		@Override
+		protected void map(LongWritable key, Text value, Context context) 
+				throws IOException, InterruptedException {
+			for (String read : qualityFilter.split(value.toString())) {
+				if (normalization.accept(read))
+					context.write(sample, new Text(read));
+				else
+					context.getCounter(Counter.DROPPED).increment(1);
+			}
+		}
+		
+		private DigitalNormalization normalization;
+		private IntWritable sample;
+		private QualityFilter qualityFilter;
+	}
+	
+	// The reducer, which filters all the reads of a sample, as pre-filtered by the 
+	// mappers, with one DigitalNormalization, and writes the accepted reads to the 
+	// output of the sample.
+	
+	public static class Reducer 
+	extends org.apache.hadoop.mapreduce.Reducer<IntWritable, Text, NullWritable, Text> {
+		
+		@Override
+		protected void setup(Context context) {
+			outputs = new MultipleOutputs<NullWritable, Text>(context);
+		}
+		
+		@Override
+		protected void reduce(IntWritable key, Iterable<Text> values, Context context)
+				throws IOException, InterruptedException {
+			DigitalNormalization normalization = createNormalization(context.getConfiguration());
+			String baseOutputPath = SAMPLE_PREFIX + key.get() + "/part";
+			
+			for (Text value : values) {
+				if (normalization.accept(value.toString())) {
+					outputs.write(NullWritable.get(), value, baseOutputPath);
+					context.getCounter(Counter.ACCEPTED).increment(1);
+				}
+				else {
+					context.getCounter(Counter.DROPPED).increment(1);
+				}
+			}
+		}
+		
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			outputs.close();
+		}
+		
+		private MultipleOutputs<NullWritable, Text> outputs;
+	}
+	
+	private static final String SAMPLE_PREFIX = "sample";
+	
+}
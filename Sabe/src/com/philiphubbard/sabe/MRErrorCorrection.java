@@ -0,0 +1,318 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+import com.philiphubbard.digraph.MRBuildVertices;
+
+// The MapReduce pass of ErrorCorrection, for reads before MRBuildMerVertices.  The
+// first job counts the edge k-mers of the reads (with k = MRMerVertex.CONFIG_MER_LENGTH
+// + 1) and keeps the solid ones; the second, map-only job corrects the reads, with
+// each mapper loading the solid k-mers of its sample into an IntIntMap.  As with 
+// MRDigitalNormalization, the input is read strings, one per line, from the input 
+// path of each sample, and the corrected reads of sample i (the pieces kept by 
+// QualityFilter, for lines with qualities) are written to the directory 
+// getSampleOutputPath(outputPath, i).
+//
+// The counting mapper sums the counts of its k-mers in an IntIntMap before writing
+// them, so the shuffle carries about one record per distinct k-mer per mapper 
+// rather than one per k-mer of each read.  The keys of the counts have the index of
+// the sample in their high 32 bits, so each sample has its own spectrum.
+
+public class MRErrorCorrection {
+	
+	public static final String CONFIG_MIN_COUNT = "CONFIG_ERROR_CORRECTION_MIN_COUNT";
+	public static final String CONFIG_SOLID_PATH = "CONFIG_ERROR_CORRECTION_SOLID_PATH";
+	
+	// The counters of reads corrected and unchanged.
+	
+	public enum Counter { CORRECTED, UNCHANGED }
+	
+	// Run the two jobs on the samples' input paths, which should be qualified (see 
+	// FileSystem.makeQualified()), with the solid k-mers in a subdirectory of the 
+	// working directory.  The configuration must have MRMerVertex.CONFIG_MER_LENGTH 
+	// and MRBuildVertices.CONFIG_COVERAGE.  Returns the directory of the corrected 
+	// reads, or null if a job failed.
+	
+	public static Path run(Configuration conf, FileSystem fileSystem, Path workPath, 
+			Path[] inputPaths) throws IOException, InterruptedException, ClassNotFoundException {
+		if (fileSystem.exists(workPath))
+			fileSystem.delete(workPath, true);
+		Path solidPath = fileSystem.makeQualified(new Path(workPath, "solid"));
+		Path outputPath = fileSystem.makeQualified(new Path(workPath, "reads"));
+		
+		Job countJob = Job.getInstance(conf);
+		countJob.setJobName("mrerrorcorrectioncount");
+		
+		System.out.println("sabe.MRErrorCorrection starting k-mer counting");
+		
+		setupCountJob(countJob, inputPaths, solidPath);
+		
+		if (!countJob.waitForCompletion(true))
+			return null;
+		
+		Job correctJob = Job.getInstance(conf);
+		correctJob.setJobName("mrerrorcorrectioncorrect");
+		correctJob.getConfiguration().set(CONFIG_SOLID_PATH, solidPath.toString());
+		
+		System.out.println("sabe.MRErrorCorrection starting correction");
+		
+		setupCorrectJob(correctJob, inputPaths, outputPath);
+		
+		if (!correctJob.waitForCompletion(true))
+			return null;
+		
+		for (int i = 0; i < inputPaths.length; i++)
+			fileSystem.mkdirs(getSampleOutputPath(outputPath, i));
+		fileSystem.delete(solidPath, true);
+		
+		System.out.println("sabe.MRErrorCorrection corrected " + 
+				correctJob.getCounters().findCounter(Counter.CORRECTED).getValue() + " reads of " + 
+				(correctJob.getCounters().findCounter(Counter.CORRECTED).getValue() +
+						correctJob.getCounters().findCounter(Counter.UNCHANGED).getValue()));
+		
+		return outputPath;
+	}
+	
+	// Set up the job that counts the k-mers and writes the solid ones.
+	
+	public static void setupCountJob(Job job, Path[] inputPaths, Path outputPath) 
+			throws IOException {
+		job.setJarByClass(MRErrorCorrection.class);
+		
+		job.setMapperClass(MRErrorCorrection.CountMapper.class);
+		job.setReducerClass(MRErrorCorrection.CountReducer.class);
+		
+		job.setMapOutputKeyClass(LongWritable.class);
+		job.setMapOutputValueClass(IntWritable.class);
+		job.setOutputKeyClass(LongWritable.class);
+		job.setOutputValueClass(IntWritable.class);
+		
+		job.setInputFormatClass(TextInputFormat.class);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		
+		addInputPaths(job, inputPaths);
+		FileOutputFormat.setOutputPath(job, outputPath);
+	}
+	
+	// Set up the map-only job that corrects the reads, given the solid k-mers in the 
+	// path of the CONFIG_SOLID_PATH property.
+	
+	public static void setupCorrectJob(Job job, Path[] inputPaths, Path outputPath) 
+			throws IOException {
+		job.setJarByClass(MRErrorCorrection.class);
+		
+		job.setMapperClass(MRErrorCorrection.CorrectMapper.class);
+		job.setNumReduceTasks(0);
+		
+		job.setOutputKeyClass(NullWritable.class);
+		job.setOutputValueClass(Text.class);
+		
+		job.setInputFormatClass(TextInputFormat.class);
+		LazyOutputFormat.setOutputFormatClass(job, TextOutputFormat.class);
+		
+		addInputPaths(job, inputPaths);
+		FileOutputFormat.setOutputPath(job, outputPath);
+	}
+	
+	// Returns the directory of the corrected reads of the sample.
+	
+	public static Path getSampleOutputPath(Path outputPath, int sample) {
+		return new Path(outputPath, SAMPLE_PREFIX + sample);
+	}
+	
+	// The mapper that counts the k-mers of its reads.
+	
+	public static class CountMapper 
+	extends org.apache.hadoop.mapreduce.Mapper<LongWritable, Text, LongWritable, IntWritable> {
+		
+		@Override
+		protected void setup(Context context) {
+			Configuration conf = context.getConfiguration();
+			merLength = conf.getInt(MRMerVertex.CONFIG_MER_LENGTH, 1) + 1;
+			sample = MRBuildMerVertices.findSample(conf, context.getInputSplit());
+			qualityFilter = new QualityFilter(conf.getInt(QualityFilter.CONFIG_MIN_QUALITY, 0));
+			counts = new IntIntMap(FLUSH_SIZE);
+		}
+		
+		@Override
+		protected void map(LongWritable key, Text value, Context context) 
+				throws IOException, InterruptedException {
+			for (String read : qualityFilter.split(value.toString()))
+				LocalAssembler.countMers(read, merLength, counts);
+			if (counts.size() >= FLUSH_SIZE)
+				flush(context);
+		}
+		
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			flush(context);
+		}
+		
+		private void flush(Context context) throws IOException, InterruptedException {
+			for (int mer : counts.getKeys())
+				context.write(new LongWritable(toKey(sample, mer)), new IntWritable(counts.get(mer)));
+			counts = new IntIntMap(FLUSH_SIZE);
+		}
+		
+		private int merLength;
+		private int sample;
+		private QualityFilter qualityFilter;
+		private IntIntMap counts;
+	}
+	
+	// The reducer, which sums the counts of each k-mer and writes the solid ones.
+	
+	public static class CountReducer 
+	extends org.apache.hadoop.mapreduce.Reducer<LongWritable, IntWritable, LongWritable, IntWritable> {
+		
+		@Override
+		protected void setup(Context context) {
+			Configuration conf = context.getConfiguration();
+			minCount = conf.getInt(CONFIG_MIN_COUNT, 
+					ErrorCorrection.getMinCount(conf.getInt(MRBuildVertices.CONFIG_COVERAGE, 1)));
+		}
+		
+		@Override
+		protected void reduce(LongWritable key, Iterable<IntWritable> values, Context context) 
+				throws IOException, InterruptedException {
+			int count = 0;
+			for (IntWritable value : values)
+				count += value.get();
+			if (count >= minCount)
+				context.write(key, new IntWritable(count));
+		}
+		
+		private int minCount;
+	}
+	
+	// The mapper that corrects its reads, and writes them to the output of its sample.
+	
+	public static class CorrectMapper 
+	extends org.apache.hadoop.mapreduce.Mapper<LongWritable, Text, NullWritable, Text> {
+		
+		@Override
+		protected void setup(Context context) throws IOException {
+			Configuration conf = context.getConfiguration();
+			int merLength = conf.getInt(MRMerVertex.CONFIG_MER_LENGTH, 1) + 1;
+			int sample = MRBuildMerVertices.findSample(conf, context.getInputSplit());
+			
+			IntIntMap solid = readSolid(conf, new Path(conf.get(CONFIG_SOLID_PATH)), sample);
+			int minCount = conf.getInt(CONFIG_MIN_COUNT, 
+					ErrorCorrection.getMinCount(conf.getInt(MRBuildVertices.CONFIG_COVERAGE, 1)));
+			correction = new ErrorCorrection(merLength, solid, minCount);
+			
+			baseOutputPath = SAMPLE_PREFIX + sample + "/part";
+			qualityFilter = new QualityFilter(conf.getInt(QualityFilter.CONFIG_MIN_QUALITY, 0));
+			outputs = new MultipleOutputs<NullWritable, Text>(context);
+		}
+		
+		@Override
+		protected void map(LongWritable key, Text value, Context context) 
+				throws IOException, InterruptedException {
+			for (String read : qualityFilter.split(value.toString())) {
+				String corrected = correction.correct(read);
+				outputs.write(NullWritable.get(), new Text(corrected), baseOutputPath);
+				if (corrected != read)
+					context.getCounter(Counter.CORRECTED).increment(1);
+				else
+					context.getCounter(Counter.UNCHANGED).increment(1);
+			}
+		}
+		
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			outputs.close();
+		}
+		
+		private ErrorCorrection correction;
+		private String baseOutputPath;
+		private QualityFilter qualityFilter;
+		private MultipleOutputs<NullWritable, Text> outputs;
+	}
+	
+	//
+	
+	private static void addInputPaths(Job job, Path[] inputPaths) throws IOException {
+		String[] names = new String[inputPaths.length];
+		for (int i = 0; i < inputPaths.length; i++) {
+			FileInputFormat.addInputPath(job, inputPaths[i]);
+			names[i] = inputPaths[i].toString();
+		}
+		if (inputPaths.length > 1)
+			job.getConfiguration().setStrings(MRBuildMerVertices.CONFIG_SAMPLE_PATHS, names);
+	}
+	
+	private static long toKey(int sample, int mer) {
+		return ((long) sample << 32) | (mer & 0xffffffffL);
+	}
+	
+	// Read the solid k-mers of the sample, with their counts.
+	
+	private static IntIntMap readSolid(Configuration conf, Path solidPath, int sample) 
+			throws IOException {
+		IntIntMap solid = new IntIntMap(FLUSH_SIZE);
+		FileSystem fileSystem = solidPath.getFileSystem(conf);
+		for (FileStatus status : fileSystem.listStatus(solidPath)) {
+			Path path = status.getPath();
+			if (!path.getName().startsWith("part"))
+				continue;
+			SequenceFile.Reader reader = 
+					new SequenceFile.Reader(conf, SequenceFile.Reader.file(path));
+			try {
+				LongWritable key = new LongWritable();
+				IntWritable value = new IntWritable();
+				while (reader.next(key, value))
+					if ((int) (key.get() >>> 32) == sample)
+						solid.put((int) key.get(), value.get());
+			}
+			finally {
+				reader.close();
+			}
+		}
+		return solid;
+	}
+	
+	private static final String SAMPLE_PREFIX = "sample";
+	private static final int FLUSH_SIZE = 0x1 << 20;
+	
+}
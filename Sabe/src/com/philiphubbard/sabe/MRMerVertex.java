@@ -31,6 +31,13 @@ import com.philiphubbard.digraph.MRVertex;
 // assumption that the IDs of the vertices encode (k-1)-mers via the
 // Mer class, this class can specialize chain compression to keep
 // track of the resulting merged MerString.
+//
+// A vertex that has not been merged with any other has a MerString that is
+// just the (k-1)-mer of its ID, so it does not store one, and writes none to
+// the hadoop.io.BytesWritable.  The graph construction creates a vertex for
+// every occurrence of every (k-1)-mer in the reads, so this saves both the
+// allocations in the mappers and the bytes in the shuffle.  The MerString
+// is reconstructed from the ID when it is needed.
 
 public class MRMerVertex extends MRVertex {
 	
@@ -45,7 +52,7 @@ public class MRMerVertex extends MRVertex {
 	
 	public MRMerVertex(int id, Configuration config) {
 		super(id, config);
-		merString = new MerString(id, config.getInt(CONFIG_MER_LENGTH, 1));
+		merLength = config.getInt(CONFIG_MER_LENGTH, 1);
 	}
 	
 	// Construct a vertex from the hadoop.io.BytesWritable, assumed to
@@ -53,11 +60,26 @@ public class MRMerVertex extends MRVertex {
 	
 	public MRMerVertex(BytesWritable writable, Configuration config) {
 		super(writable, config);
+		merLength = config.getInt(CONFIG_MER_LENGTH, 1);
 	}
 	
-	// Get the MerString associated with this vertex.
+	// Get the MerString associated with this vertex.  If the vertex has not
+	// been merged, the MerString is reconstructed from the ID, and is not
+	// retained by the vertex.
 	
 	public MerString getMerString() {
+		if (merString != null)
+			return merString;
+		else
+			return new MerString(getId(), merLength);
+	}
+	
+	// Get the MerString associated with this vertex if it has been merged with
+	// other vertices, or null if it has not, in which case the MerString is just
+	// the (k-1)-mer of the ID.  Classes that copy the MerString into their own 
+	// records use this function, so they too can omit the unmerged ones.
+	
+	MerString getMergedMerString() {
 		return merString;
 	}
 	
@@ -67,7 +89,7 @@ public class MRMerVertex extends MRVertex {
 	public boolean equals(MRMerVertex other) {
 		if (!super.equals(other))
 			return false;
-		return (merString.equals(other.merString));
+		return (getMerString().equals(other.getMerString()));
 	}
 	
 	// Returns a displayable (human readable) string representation of
@@ -120,8 +142,6 @@ public class MRMerVertex extends MRVertex {
 		if (other instanceof MRMerVertex) {
 			MRMerVertex otherMer = (MRMerVertex) other;
 
-			int merLength = config.getInt(CONFIG_MER_LENGTH, 1);
-
 			if (merString == null)
 				merString = new MerString(getId(), merLength);
 			MerString otherMerString = otherMer.merString;
@@ -133,7 +153,7 @@ public class MRMerVertex extends MRVertex {
 	}
 	
 	// Specializes the virtual function from MRVertex to write out this vertex's
-	// MerString.
+	// MerString, if it has been merged.
 	
 	@Override
 	protected byte[] toWritableInternal() {
@@ -148,11 +168,13 @@ public class MRMerVertex extends MRVertex {
 	
 	@Override
 	protected void fromWritableInternal(byte[] array, int i, int n) {
-		merString = new MerString(array, i, n);
+		if (n > 0)
+			merString = new MerString(array, i, n);
 	}
 	
 	//
 	
 	private MerString merString;
+	private int merLength;
 
 }
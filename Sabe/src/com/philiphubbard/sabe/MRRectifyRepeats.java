@@ -0,0 +1,671 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+
+import com.philiphubbard.digraph.MRBuildVertices;
+
+// A distributed version of Repeats.rectifySingle(), as a sequence of MapReduce jobs
+// that run on the compressed graph before it is loaded into the MRAssembler driver.
+// The driver then receives a graph whose edge multiples are already one or two.
+//
+// The jobs follow the "bulk synchronous parallel" (BSP) style: each job is one
+// superstep, in which the mapper passes each vertex through and sends messages 
+// along its edges, and the reducer receives each vertex with its messages and 
+// updates it, with the scaffolding shared with MRTipsAndBubbles in Supersteps.  
+// Each vertex is stored as a Vertex record, which knows its edges in
+// both directions.  There are four phases:
+// * INIT converts the MRMerVertex instances into Vertex records.
+// * FORWARD and BACKWARD alternate to find the strong components: FORWARD gives
+//   each vertex the minimum ID of the vertices that reach it (its "color"), and 
+//   BACKWARD finds the vertices that reach the vertex whose ID is their color (a 
+//   "root"); those vertices are the root's strong component.  The next FORWARD
+//   labels them and removes them from further consideration.  A FORWARD superstep
+//   also removes vertices with no edges in from remaining vertices, each of which
+//   is a strong component by itself.
+// * CHAIN decides the edge multiples.  A path of edges from one branch to the next
+//   (a "chain") is a single repeat if all its edges have high enough multiples and
+//   join vertices in the same strong component.  The first CHAIN superstep
+//   checks each edge, and later supersteps combine the results along each chain.
+//
+// The number of supersteps grows with the length of the longest path through the
+// compressed graph, which chain compression keeps short.  The result matches that
+// of Repeats.rectifySingle() except on cycles with no branches, whose multiples
+// Repeats.rectifySingle() does not change.
+
+public class MRRectifyRepeats {
+	
+	// The phases of the supersteps.
+	
+	public enum Phase { INIT, FORWARD, BACKWARD, CHAIN }
+	
+	// The counters of each superstep: the number of vertices still without a strong
+	// component, and the number of vertices changed by the superstep.
+	
+	public enum Counter { ACTIVE, CHANGED }
+	
+	public static final String CONFIG_PHASE = "CONFIG_RECTIFY_PHASE";
+	public static final String CONFIG_IS_FIRST = "CONFIG_RECTIFY_IS_FIRST";
+	
+	// Run all the supersteps, on the MRMerVertex files in the input directories, with
+	// the outputs in subdirectories of the working directory.  The coverage comes 
+	// from the MRBuildVertices.CONFIG_COVERAGE property of the Configuration.  Returns
+	// the directory of the final Vertex records, or null if a job failed.
+	
+	public static Path run(Configuration conf, FileSystem fileSystem, Path workPath, 
+			Path... inputPaths) throws IOException, InterruptedException, ClassNotFoundException {
+		Schedule schedule = new Schedule();
+		Path[] stepInputPaths = inputPaths;
+		Path prevOutputPath = null;
+		
+		for (int step = 0; !schedule.isDone(); step++) {
+			Path outputPath = new Path(workPath, "superstep" + step);
+			if (fileSystem.exists(outputPath))
+				fileSystem.delete(outputPath, true);
+			
+			Job job = Job.getInstance(conf);
+			job.setJobName("mrrectifyrepeats" + step);
+			
+			System.out.println("sabe.MRRectifyRepeats starting superstep " + step + " (" 
+					+ schedule.getPhase() + ")");
+			
+			setupSuperstepJob(job, schedule.getPhase(), schedule.getIsFirst(), outputPath, 
+					stepInputPaths);
+			
+			if (!job.waitForCompletion(true))
+				return null;
+			
+			if (prevOutputPath != null)
+				fileSystem.delete(prevOutputPath, true);
+			prevOutputPath = outputPath;
+			stepInputPaths = new Path[] { outputPath };
+			
+			schedule.next(job.getCounters().findCounter(Counter.CHANGED).getValue(),
+					job.getCounters().findCounter(Counter.ACTIVE).getValue());
+		}
+		
+		return prevOutputPath;
+	}
+	
+	// Set up the job for one superstep.
+	
+	public static void setupSuperstepJob(Job job, Phase phase, boolean isFirst, 
+			Path outputPath, Path... inputPaths) throws IOException {
+		job.setJarByClass(MRRectifyRepeats.class);
+		
+		job.getConfiguration().set(CONFIG_PHASE, phase.name());
+		job.getConfiguration().setBoolean(CONFIG_IS_FIRST, isFirst);
+		
+		job.setMapperClass(MRRectifyRepeats.Mapper.class);
+		job.setReducerClass(MRRectifyRepeats.Reducer.class);
+		
+		job.setMapOutputKeyClass(IntWritable.class);
+		job.setMapOutputValueClass(BytesWritable.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(BytesWritable.class);
+		
+		job.setInputFormatClass(SequenceFileInputFormat.class);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		
+		for (Path inputPath : inputPaths)
+			FileInputFormat.addInputPath(job, inputPath);
+		FileOutputFormat.setOutputPath(job, outputPath);
+	}
+	
+	// The order of the supersteps.  After each superstep, next() is called with the
+	// values of its counters, and then getPhase() and getIsFirst() describe the next
+	// superstep (unless isDone() is true).
+	
+	public static class Schedule {
+		
+		public Schedule() {
+			phase = Phase.INIT;
+			isFirst = true;
+			isDone = false;
+		}
+		
+		public Phase getPhase() {
+			return phase;
+		}
+		
+		// Returns true if the superstep is the first of a run of supersteps in the 
+		// same phase.
+		
+		public boolean getIsFirst() {
+			return isFirst;
+		}
+		
+		public boolean isDone() {
+			return isDone;
+		}
+		
+		public void next(long numChanged, long numActive) {
+			switch (phase) {
+			case INIT:
+				begin(Phase.FORWARD);
+				break;
+			case FORWARD:
+				if (numChanged > 0)
+					isFirst = false;
+				else if (numActive == 0)
+					begin(Phase.CHAIN);
+				else
+					begin(Phase.BACKWARD);
+				break;
+			case BACKWARD:
+				if (numChanged > 0)
+					isFirst = false;
+				else
+					begin(Phase.FORWARD);
+				break;
+			case CHAIN:
+				if (isFirst || (numChanged > 0))
+					isFirst = false;
+				else
+					isDone = true;
+				break;
+			}
+		}
+		
+		private void begin(Phase phase) {
+			this.phase = phase;
+			isFirst = true;
+		}
+		
+		private Phase phase;
+		private boolean isFirst;
+		private boolean isDone;
+	}
+	
+	// A vertex of the compressed graph, with the state needed by the supersteps.  The
+	// edges to other vertices are distinct, each with a multiple, and the edges from
+	// other vertices are distinct too.  Both are sorted by vertex ID.
+	
+	public static class Vertex implements Supersteps.Record {
+		
+		// Construct a Vertex record from the MRMerVertex.
+		
+		public Vertex(MRMerVertex vertex) {
+			this(vertex.getId(), vertex.getIsSource(), vertex.getIsSink(), vertex.getIsBranch(),
+					Supersteps.edgesTo(vertex), vertex.getMergedMerString());
+		}
+		
+		// Construct a Vertex record with the specified edges, where an edge appears as
+		// many times as its multiple.  The merString may be null.
+		
+		public Vertex(int id, boolean isSource, boolean isSink, boolean isBranch, 
+				int[] edges, MerString merString) {
+			this.id = id;
+			
+			flags = IS_ACTIVE;
+			if (isSource)
+				flags |= IS_SOURCE;
+			if (isSink)
+				flags |= IS_SINK;
+			if (isBranch)
+				flags |= IS_BRANCH;
+			
+			color = id;
+			strongComponent = -1;
+			
+			Supersteps.Edges distinct = new Supersteps.Edges(edges);
+			tos = distinct.tos;
+			multiples = distinct.multiples;
+			isOks = new boolean[tos.length];
+			
+			froms = new int[0];
+			
+			merBytes = Supersteps.toMerBytes(merString);
+		}
+		
+		// Construct a Vertex record from the bytes produced by toBytes().
+		
+		public Vertex(byte[] bytes, int length) {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+			buffer.get();
+			
+			id = buffer.getInt();
+			flags = buffer.get();
+			color = buffer.getInt();
+			strongComponent = buffer.getInt();
+			
+			int n = buffer.getInt();
+			tos = new int[n];
+			multiples = new int[n];
+			isOks = new boolean[n];
+			for (int i = 0; i < n; i++) {
+				tos[i] = buffer.getInt();
+				multiples[i] = buffer.getInt();
+				isOks[i] = (buffer.get() != 0);
+			}
+			
+			froms = Supersteps.getInts(buffer);
+			
+			merBytes = new byte[buffer.getInt()];
+			buffer.get(merBytes);
+		}
+		
+		// Returns the bytes of the record, starting with a byte that distinguishes
+		// them from the bytes of a message.
+		
+		public byte[] toBytes() {
+			ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 1 + 4 + 4 + 4 + 9 * tos.length + 
+					4 + 4 * froms.length + 4 + merBytes.length);
+			buffer.put(Supersteps.TAG_VERTEX);
+			buffer.putInt(id);
+			buffer.put(flags);
+			buffer.putInt(color);
+			buffer.putInt(strongComponent);
+			buffer.putInt(tos.length);
+			for (int i = 0; i < tos.length; i++) {
+				buffer.putInt(tos[i]);
+				buffer.putInt(multiples[i]);
+				buffer.put(isOks[i] ? (byte) 1 : (byte) 0);
+			}
+			Supersteps.putInts(buffer, froms);
+			buffer.putInt(merBytes.length);
+			buffer.put(merBytes);
+			return buffer.array();
+		}
+		
+		public int getId() {
+			return id;
+		}
+		
+		// Vertex records are keyed by their own IDs.
+		
+		@Override
+		public int getKey() {
+			return id;
+		}
+		
+		public boolean getIsSource() {
+			return ((flags & IS_SOURCE) != 0);
+		}
+		
+		public boolean getIsSink() {
+			return ((flags & IS_SINK) != 0);
+		}
+		
+		public boolean getIsBranch() {
+			return ((flags & IS_BRANCH) != 0);
+		}
+		
+		// Returns the ID of the vertex's strong component (the lowest ID of the vertices
+		// in it), or -1 if it has not been found yet.
+		
+		public int getStrongComponent() {
+			return strongComponent;
+		}
+		
+		// The distinct edges to other vertices.
+		
+		public int getNumEdges() {
+			return tos.length;
+		}
+		
+		public int getEdgeTo(int i) {
+			return tos[i];
+		}
+		
+		public int getEdgeMultiple(int i) {
+			return multiples[i];
+		}
+		
+		// Returns the vertex's MerString, or null if it has none.
+		
+		public MerString getMerString() {
+			return Supersteps.toMerString(merBytes);
+		}
+		
+		// Returns true if the vertex's strong component has not been found yet.
+		
+		boolean isActive() {
+			return is(IS_ACTIVE);
+		}
+		
+		//
+		
+		private boolean is(byte flag) {
+			return ((flags & flag) != 0);
+		}
+		
+		private void set(byte flag, boolean value) {
+			if (value)
+				flags |= flag;
+			else
+				flags &= ~flag;
+		}
+		
+		// A vertex is interior to a chain if it has one edge in and one edge out, and 
+		// is not marked as a branch.
+		
+		private boolean isInterior() {
+			return (!is(IS_BRANCH) && (froms.length == 1) && (tos.length == 1));
+		}
+		
+		private void setIsOk(int i, boolean isOk) {
+			isOks[i] = isOk;
+			multiples[i] = Math.min(multiples[i], isOk ? 2 : 1);
+		}
+		
+		private static final byte IS_SOURCE = 0x1;
+		private static final byte IS_SINK = 0x2;
+		private static final byte IS_BRANCH = 0x4;
+		private static final byte IS_ACTIVE = 0x8;
+		private static final byte IS_REACHED = 0x10;
+		
+		private int id;
+		private byte flags;
+		private int color;
+		private int strongComponent;
+		private int[] tos;
+		private int[] multiples;
+		private boolean[] isOks;
+		private int[] froms;
+		private byte[] merBytes;
+	}
+	
+	// The mapper.  In the INIT phase its input is MRMerVertex instances, and in the
+	// other phases its input is Vertex records.
+	
+	public static class Mapper extends Supersteps.Mapper<Vertex, Message> {
+		
+		@Override
+		protected void setup(Context context) {
+			phase = Phase.valueOf(context.getConfiguration().get(CONFIG_PHASE));
+			isFirst = context.getConfiguration().getBoolean(CONFIG_IS_FIRST, false);
+		}
+		
+		@Override
+		protected boolean isInit() {
+			return (phase == Phase.INIT);
+		}
+		
+		@Override
+		protected Vertex createVertex(MRMerVertex vertex) {
+			return new Vertex(vertex);
+		}
+		
+		@Override
+		protected Vertex createVertex(byte[] bytes, int length) {
+			return new Vertex(bytes, length);
+		}
+		
+		@Override
+		protected boolean send(Vertex vertex, ArrayList<Message> messages) {
+			prepare(vertex, phase, isFirst);
+			MRRectifyRepeats.send(vertex, phase, isFirst, messages);
+			return true;
+		}
+		
+		private Phase phase;
+		private boolean isFirst;
+	}
+	
+	// The reducer, which updates each vertex with its messages.
+	
+	public static class Reducer extends Supersteps.Reducer<Vertex, Message> {
+		
+		@Override
+		protected void setup(Context context) {
+			Configuration conf = context.getConfiguration();
+			phase = Phase.valueOf(conf.get(CONFIG_PHASE));
+			isFirst = conf.getBoolean(CONFIG_IS_FIRST, false);
+			minEdgeMultiple = 2 * (int) Math.ceil(conf.getInt(MRBuildVertices.CONFIG_COVERAGE, 1) / 2.0);
+		}
+		
+		@Override
+		protected Vertex createVertex(byte[] bytes, int length) {
+			return new Vertex(bytes, length);
+		}
+		
+		@Override
+		protected Message createMessage(int to, byte[] bytes) {
+			return new Message(to, bytes);
+		}
+		
+		@Override
+		protected Supersteps.Record receive(Vertex vertex, ArrayList<Message> messages, 
+				Context context) {
+			if (MRRectifyRepeats.receive(vertex, phase, isFirst, messages, minEdgeMultiple))
+				context.getCounter(Counter.CHANGED).increment(1);
+			if (vertex.isActive())
+				context.getCounter(Counter.ACTIVE).increment(1);
+			return vertex;
+		}
+		
+		private Phase phase;
+		private boolean isFirst;
+		private int minEdgeMultiple;
+	}
+	
+	//
+	
+	// The kinds of messages.
+	
+	static final byte EDGE_FROM = 0;
+	static final byte COLOR = 1;
+	static final byte REACHED = 2;
+	static final byte STRONG_COMPONENT = 3;
+	static final byte FORWARD_OK = 4;
+	static final byte BACKWARD_OK = 5;
+	
+	// A message from one vertex to another.
+	
+	static class Message implements Supersteps.Record {
+		Message(int to, byte kind, int from, int value) {
+			this.to = to;
+			this.kind = kind;
+			this.from = from;
+			this.value = value;
+		}
+		
+		Message(int to, byte[] bytes) {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			buffer.get();
+			this.to = to;
+			kind = buffer.get();
+			from = buffer.getInt();
+			value = buffer.getInt();
+		}
+		
+		@Override
+		public int getKey() {
+			return to;
+		}
+		
+		@Override
+		public byte[] toBytes() {
+			ByteBuffer buffer = ByteBuffer.allocate(1 + 1 + 4 + 4);
+			buffer.put(Supersteps.TAG_MESSAGE);
+			buffer.put(kind);
+			buffer.putInt(from);
+			buffer.putInt(value);
+			return buffer.array();
+		}
+		
+		int to;
+		byte kind;
+		int from;
+		int value;
+	}
+	
+	// The part of a superstep that the mapper applies to a vertex before it sends
+	// messages.  The first FORWARD superstep gives the reached vertices their strong
+	// component, and resets the colors of the remaining vertices.  The first BACKWARD
+	// superstep marks the roots as reached.
+	
+	static void prepare(Vertex vertex, Phase phase, boolean isFirst) {
+		if (!isFirst)
+			return;
+		if (phase == Phase.FORWARD) {
+			if (vertex.is(Vertex.IS_ACTIVE) && vertex.is(Vertex.IS_REACHED)) {
+				vertex.strongComponent = vertex.color;
+				vertex.set(Vertex.IS_ACTIVE, false);
+			}
+			vertex.set(Vertex.IS_REACHED, false);
+			vertex.color = vertex.id;
+		}
+		else if (phase == Phase.BACKWARD) {
+			vertex.set(Vertex.IS_REACHED, vertex.is(Vertex.IS_ACTIVE) && (vertex.color == vertex.id));
+		}
+	}
+	
+	// The messages that the mapper sends from a vertex.
+	
+	static void send(Vertex vertex, Phase phase, boolean isFirst, ArrayList<Message> messages) {
+		switch (phase) {
+		case INIT:
+			for (int to : vertex.tos)
+				messages.add(new Message(to, EDGE_FROM, vertex.id, 0));
+			break;
+		case FORWARD:
+			if (vertex.is(Vertex.IS_ACTIVE))
+				for (int to : vertex.tos)
+					messages.add(new Message(to, COLOR, vertex.id, vertex.color));
+			break;
+		case BACKWARD:
+			if (vertex.is(Vertex.IS_ACTIVE) && vertex.is(Vertex.IS_REACHED))
+				for (int from : vertex.froms)
+					messages.add(new Message(from, REACHED, vertex.id, vertex.color));
+			break;
+		case CHAIN:
+			if (isFirst) {
+				for (int from : vertex.froms)
+					messages.add(new Message(from, STRONG_COMPONENT, vertex.id, vertex.strongComponent));
+			}
+			else {
+				for (int i = 0; i < vertex.tos.length; i++)
+					messages.add(new Message(vertex.tos[i], FORWARD_OK, vertex.id, 
+							vertex.isOks[i] ? 1 : 0));
+				if (vertex.isInterior())
+					messages.add(new Message(vertex.froms[0], BACKWARD_OK, vertex.id,
+							vertex.isOks[0] ? 1 : 0));
+			}
+			break;
+		}
+	}
+	
+	// The part of a superstep that the reducer applies to a vertex with its messages.
+	// Returns true if the vertex changed in a way that requires another superstep.
+	
+	static boolean receive(Vertex vertex, Phase phase, boolean isFirst, 
+			ArrayList<Message> messages, int minEdgeMultiple) {
+		boolean changed = false;
+		
+		switch (phase) {
+		case INIT: {
+			int[] froms = new int[messages.size()];
+			for (int i = 0; i < froms.length; i++)
+				froms[i] = messages.get(i).from;
+			Arrays.sort(froms);
+			vertex.froms = froms;
+			break;
+		}
+		case FORWARD: {
+			if (!vertex.is(Vertex.IS_ACTIVE))
+				break;
+			if (messages.isEmpty()) {
+				
+				// With no edges from remaining vertices, the vertex is a strong 
+				// component by itself.
+				
+				vertex.strongComponent = vertex.id;
+				vertex.set(Vertex.IS_ACTIVE, false);
+				changed = true;
+			}
+			for (Message message : messages) {
+				if (message.value < vertex.color) {
+					vertex.color = message.value;
+					changed = true;
+				}
+			}
+			break;
+		}
+		case BACKWARD: {
+			if (!vertex.is(Vertex.IS_ACTIVE) || vertex.is(Vertex.IS_REACHED))
+				break;
+			for (Message message : messages) {
+				if (message.value == vertex.color) {
+					vertex.set(Vertex.IS_REACHED, true);
+					changed = true;
+					break;
+				}
+			}
+			break;
+		}
+		case CHAIN: {
+			if (isFirst) {
+				boolean[] isOks = new boolean[vertex.tos.length];
+				for (Message message : messages) {
+					int i = Arrays.binarySearch(vertex.tos, message.from);
+					if (i >= 0)
+						isOks[i] = ((message.value == vertex.strongComponent) && 
+								(vertex.multiples[i] >= minEdgeMultiple));
+				}
+				for (int i = 0; i < isOks.length; i++)
+					vertex.setIsOk(i, isOks[i]);
+			}
+			else {
+				for (Message message : messages) {
+					if (message.value != 0)
+						continue;
+					if ((message.kind == FORWARD_OK) && vertex.isInterior()) {
+						if (vertex.isOks[0]) {
+							vertex.setIsOk(0, false);
+							changed = true;
+						}
+					}
+					else if (message.kind == BACKWARD_OK) {
+						int i = Arrays.binarySearch(vertex.tos, message.from);
+						if ((i >= 0) && vertex.isOks[i]) {
+							vertex.setIsOk(i, false);
+							changed = true;
+						}
+					}
+				}
+			}
+			break;
+		}
+		}
+		
+		return changed;
+	}
+	
+}
@@ -0,0 +1,566 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+
+import com.philiphubbard.digraph.MRBuildVertices;
+
+// A distributed version of the removal of tips and bubbles by TipsAndBubbles, as a
+// sequence of MapReduce jobs that run on the compressed graph before it is loaded 
+// into the MRAssembler driver.  The result is the same as that of 
+// TipsAndBubbles.simplify() except that chains are not compressed again; the driver
+// reads the result with MRCompressedVertices.readVertexRecords() and compresses it 
+// with TipsAndBubbles.compress().
+//
+// As in MRRectifyRepeats, each job is a superstep in the "bulk synchronous parallel"
+// style, where the mapper sends messages along the edges and the reducer updates
+// each vertex with its messages, with the scaffolding in Supersteps.  There are 
+// four supersteps:
+// * INIT converts the MRMerVertex instances into Vertex records and tells each 
+//   vertex its edges in.
+// * DECIDE sends to each vertex the tips and bubbles joined to it, and each vertex
+//   decides which of them are losers, to be removed.
+// * NOTIFY removes the edges between each vertex and its losers, and tells the losers.
+// * REMOVE removes the losers and the remaining edges to them, and writes each 
+//   remaining vertex as an MRRectifyRepeats.Vertex record.
+// The tip length limit is one more than the MRMerVertex.CONFIG_MER_LENGTH property of
+// the Configuration, and the coverage is the MRBuildVertices.CONFIG_COVERAGE property.
+
+public class MRTipsAndBubbles {
+	
+	// The phases of the supersteps, one superstep per phase.
+	
+	public enum Phase { INIT, DECIDE, NOTIFY, REMOVE }
+	
+	// The counter of the DECIDE superstep: the number of losers.
+	
+	public enum Counter { LOSERS }
+	
+	public static final String CONFIG_PHASE = "CONFIG_TIPS_BUBBLES_PHASE";
+	
+	// Run all the supersteps, on the MRMerVertex files in the input directories, with
+	// the outputs in subdirectories of the working directory.  Returns the directory 
+	// of the final MRRectifyRepeats.Vertex records, or null if a job failed.
+	
+	public static Path run(Configuration conf, FileSystem fileSystem, Path workPath, 
+			Path... inputPaths) throws IOException, InterruptedException, ClassNotFoundException {
+		Path[] stepInputPaths = inputPaths;
+		Path prevOutputPath = null;
+		
+		for (Phase phase : Phase.values()) {
+			Path outputPath = new Path(workPath, phase.name().toLowerCase());
+			if (fileSystem.exists(outputPath))
+				fileSystem.delete(outputPath, true);
+			
+			Job job = Job.getInstance(conf);
+			job.setJobName("mrtipsandbubbles" + phase.name().toLowerCase());
+			
+			System.out.println("sabe.MRTipsAndBubbles starting superstep " + phase);
+			
+			setupSuperstepJob(job, phase, outputPath, stepInputPaths);
+			
+			if (!job.waitForCompletion(true))
+				return null;
+			
+			if (phase == Phase.DECIDE)
+				System.out.println("sabe.MRTipsAndBubbles found " + 
+						job.getCounters().findCounter(Counter.LOSERS).getValue() + 
+						" tips and bubbles");
+			
+			if (prevOutputPath != null)
+				fileSystem.delete(prevOutputPath, true);
+			prevOutputPath = outputPath;
+			stepInputPaths = new Path[] { outputPath };
+		}
+		
+		return prevOutputPath;
+	}
+	
+	// Set up the job for one superstep.
+	
+	public static void setupSuperstepJob(Job job, Phase phase, Path outputPath, 
+			Path... inputPaths) throws IOException {
+		job.setJarByClass(MRTipsAndBubbles.class);
+		
+		job.getConfiguration().set(CONFIG_PHASE, phase.name());
+		
+		job.setMapperClass(MRTipsAndBubbles.Mapper.class);
+		job.setReducerClass(MRTipsAndBubbles.Reducer.class);
+		
+		job.setMapOutputKeyClass(IntWritable.class);
+		job.setMapOutputValueClass(BytesWritable.class);
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(BytesWritable.class);
+		
+		job.setInputFormatClass(SequenceFileInputFormat.class);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		
+		for (Path inputPath : inputPaths)
+			FileInputFormat.addInputPath(job, inputPath);
+		FileOutputFormat.setOutputPath(job, outputPath);
+	}
+	
+	// A vertex of the compressed graph, with the state needed by the supersteps.  The
+	// edges to other vertices are distinct, each with a multiple, and the edges from
+	// other vertices are distinct too.  Both are sorted by vertex ID.
+	
+	public static class Vertex implements Supersteps.Record {
+		
+		// Construct a Vertex record from the MRMerVertex.
+		
+		public Vertex(MRMerVertex vertex) {
+			this(vertex.getId(), Supersteps.edgesTo(vertex), vertex.getMergedMerString());
+		}
+		
+		// Construct a Vertex record with the specified edges, where an edge appears as
+		// many times as its multiple.  The merString may be null.
+		
+		public Vertex(int id, int[] edges, MerString merString) {
+			this.id = id;
+			isLoser = false;
+			
+			Supersteps.Edges distinct = new Supersteps.Edges(edges);
+			tos = distinct.tos;
+			multiples = distinct.multiples;
+			
+			froms = new int[0];
+			losers = new int[0];
+			
+			merBytes = Supersteps.toMerBytes(merString);
+		}
+		
+		// Construct a Vertex record from the bytes produced by toBytes().
+		
+		public Vertex(byte[] bytes, int length) {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+			buffer.get();
+			
+			id = buffer.getInt();
+			isLoser = (buffer.get() != 0);
+			
+			int n = buffer.getInt();
+			tos = new int[n];
+			multiples = new int[n];
+			for (int i = 0; i < n; i++) {
+				tos[i] = buffer.getInt();
+				multiples[i] = buffer.getInt();
+			}
+			
+			froms = Supersteps.getInts(buffer);
+			losers = Supersteps.getInts(buffer);
+			
+			merBytes = new byte[buffer.getInt()];
+			buffer.get(merBytes);
+		}
+		
+		// Returns the bytes of the record, starting with a byte that distinguishes
+		// them from the bytes of a message.
+		
+		public byte[] toBytes() {
+			ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 1 + 4 + 8 * tos.length + 
+					4 + 4 * froms.length + 4 + 4 * losers.length + 4 + merBytes.length);
+			buffer.put(Supersteps.TAG_VERTEX);
+			buffer.putInt(id);
+			buffer.put(isLoser ? (byte) 1 : (byte) 0);
+			buffer.putInt(tos.length);
+			for (int i = 0; i < tos.length; i++) {
+				buffer.putInt(tos[i]);
+				buffer.putInt(multiples[i]);
+			}
+			Supersteps.putInts(buffer, froms);
+			Supersteps.putInts(buffer, losers);
+			buffer.putInt(merBytes.length);
+			buffer.put(merBytes);
+			return buffer.array();
+		}
+		
+		// Returns the equivalent MRRectifyRepeats.Vertex, with its source, sink and 
+		// branch status from its current edges.
+		
+		public MRRectifyRepeats.Vertex toRecord() {
+			int numEdges = 0;
+			for (int multiple : multiples)
+				numEdges += multiple;
+			int[] edges = new int[numEdges];
+			int n = 0;
+			for (int i = 0; i < tos.length; i++)
+				for (int j = 0; j < multiples[i]; j++)
+					edges[n++] = tos[i];
+			
+			return new MRRectifyRepeats.Vertex(id, froms.length == 0, tos.length == 0, 
+					(froms.length > 1) || (tos.length > 1), edges, getMerString());
+		}
+		
+		public int getId() {
+			return id;
+		}
+		
+		// Vertex records are keyed by their own IDs.
+		
+		@Override
+		public int getKey() {
+			return id;
+		}
+		
+		// Returns true if the vertex is to be removed.
+		
+		public boolean getIsLoser() {
+			return isLoser;
+		}
+		
+		// Returns the vertex's MerString, or null if it has none.
+		
+		public MerString getMerString() {
+			return Supersteps.toMerString(merBytes);
+		}
+		
+		//
+		
+		// Returns the number of vertices compressed into this vertex.
+		
+		private int getLength(int vertexMerLength) {
+			if (merBytes.length == 0)
+				return 1;
+			return new MerString(merBytes).getLength() - vertexMerLength + 1;
+		}
+		
+		// A vertex that is the start of a tip has no edges in and one edge out, and a
+		// vertex that is the end of a tip has one edge in and no edges out.
+		
+		private boolean isTipStart(int maxLength, int vertexMerLength) {
+			return ((froms.length == 0) && (tos.length == 1) && (tos[0] != id) &&
+					(getLength(vertexMerLength) < maxLength));
+		}
+		
+		private boolean isTipEnd(int maxLength, int vertexMerLength) {
+			return ((tos.length == 0) && (froms.length == 1) && (froms[0] != id) &&
+					(getLength(vertexMerLength) < maxLength));
+		}
+		
+		// A vertex in a bubble has one edge in and one edge out, to a different vertex.
+		
+		private boolean isBubble() {
+			return ((froms.length == 1) && (tos.length == 1) && (froms[0] != id) && 
+					(tos[0] != id) && (froms[0] != tos[0]));
+		}
+		
+		// Remove the edges between this vertex and the specified vertex.
+		
+		private void removeEdges(int other) {
+			int i = Arrays.binarySearch(tos, other);
+			if (i >= 0) {
+				tos = remove(tos, i);
+				multiples = remove(multiples, i);
+			}
+			i = Arrays.binarySearch(froms, other);
+			if (i >= 0)
+				froms = remove(froms, i);
+		}
+		
+		private static int[] remove(int[] array, int i) {
+			int[] result = new int[array.length - 1];
+			System.arraycopy(array, 0, result, 0, i);
+			System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+			return result;
+		}
+		
+		private int id;
+		private boolean isLoser;
+		private int[] tos;
+		private int[] multiples;
+		private int[] froms;
+		private int[] losers;
+		private byte[] merBytes;
+	}
+	
+	// The mapper.  In the INIT phase its input is MRMerVertex instances, and in the
+	// other phases its input is Vertex records.  In the REMOVE phase, losers send 
+	// their messages but are not written.
+	
+	public static class Mapper extends Supersteps.Mapper<Vertex, Message> {
+		
+		@Override
+		protected void setup(Context context) {
+			Configuration conf = context.getConfiguration();
+			phase = Phase.valueOf(conf.get(CONFIG_PHASE));
+			vertexMerLength = conf.getInt(MRMerVertex.CONFIG_MER_LENGTH, 1);
+		}
+		
+		@Override
+		protected boolean isInit() {
+			return (phase == Phase.INIT);
+		}
+		
+		@Override
+		protected Vertex createVertex(MRMerVertex vertex) {
+			return new Vertex(vertex);
+		}
+		
+		@Override
+		protected Vertex createVertex(byte[] bytes, int length) {
+			return new Vertex(bytes, length);
+		}
+		
+		@Override
+		protected boolean send(Vertex vertex, ArrayList<Message> messages) {
+			MRTipsAndBubbles.send(vertex, phase, vertexMerLength, messages);
+			return ((phase != Phase.REMOVE) || !vertex.isLoser);
+		}
+		
+		private Phase phase;
+		private int vertexMerLength;
+	}
+	
+	// The reducer, which updates each vertex with its messages.  In the REMOVE phase,
+	// it writes MRRectifyRepeats.Vertex records.
+	
+	public static class Reducer extends Supersteps.Reducer<Vertex, Message> {
+		
+		@Override
+		protected void setup(Context context) {
+			Configuration conf = context.getConfiguration();
+			phase = Phase.valueOf(conf.get(CONFIG_PHASE));
+			coverage = conf.getInt(MRBuildVertices.CONFIG_COVERAGE, 1);
+		}
+		
+		@Override
+		protected Vertex createVertex(byte[] bytes, int length) {
+			return new Vertex(bytes, length);
+		}
+		
+		@Override
+		protected Message createMessage(int to, byte[] bytes) {
+			return new Message(to, bytes);
+		}
+		
+		@Override
+		protected Supersteps.Record receive(Vertex vertex, ArrayList<Message> messages, 
+				Context context) {
+			int numLosers = MRTipsAndBubbles.receive(vertex, phase, messages, coverage);
+			context.getCounter(Counter.LOSERS).increment(numLosers);
+			
+			if (phase == Phase.REMOVE)
+				return vertex.toRecord();
+			else
+				return vertex;
+		}
+		
+		private Phase phase;
+		private int coverage;
+	}
+	
+	//
+	
+	// The kinds of messages.
+	
+	static final byte EDGE_FROM = 0;
+	static final byte TIP_START = 1;
+	static final byte TIP_END = 2;
+	static final byte BUBBLE = 3;
+	static final byte LOSER = 4;
+	static final byte REMOVED = 5;
+	
+	// A message from one vertex to another.  For a BUBBLE message, the value is the 
+	// vertex at which the bubble starts.  The multiple is that of the edge between 
+	// the two vertices, for TIP_START, TIP_END and BUBBLE messages.
+	
+	static class Message implements Supersteps.Record {
+		Message(int to, byte kind, int from, int value, int multiple) {
+			this.to = to;
+			this.kind = kind;
+			this.from = from;
+			this.value = value;
+			this.multiple = multiple;
+		}
+		
+		Message(int to, byte[] bytes) {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			buffer.get();
+			this.to = to;
+			kind = buffer.get();
+			from = buffer.getInt();
+			value = buffer.getInt();
+			multiple = buffer.getInt();
+		}
+		
+		@Override
+		public int getKey() {
+			return to;
+		}
+		
+		@Override
+		public byte[] toBytes() {
+			ByteBuffer buffer = ByteBuffer.allocate(1 + 1 + 4 + 4 + 4);
+			buffer.put(Supersteps.TAG_MESSAGE);
+			buffer.put(kind);
+			buffer.putInt(from);
+			buffer.putInt(value);
+			buffer.putInt(multiple);
+			return buffer.array();
+		}
+		
+		int to;
+		byte kind;
+		int from;
+		int value;
+		int multiple;
+	}
+	
+	// The messages that the mapper sends from a vertex.  In the NOTIFY phase, the 
+	// vertex also removes its edges to its losers.
+	
+	static void send(Vertex vertex, Phase phase, int vertexMerLength, 
+			ArrayList<Message> messages) {
+		switch (phase) {
+		case INIT:
+			for (int to : vertex.tos)
+				messages.add(new Message(to, EDGE_FROM, vertex.id, 0, 0));
+			break;
+		case DECIDE:
+			if (vertex.isTipStart(vertexMerLength + 1, vertexMerLength))
+				messages.add(new Message(vertex.tos[0], TIP_START, vertex.id, 0, 
+						vertex.multiples[0]));
+			else if (vertex.isTipEnd(vertexMerLength + 1, vertexMerLength))
+				messages.add(new Message(vertex.froms[0], TIP_END, vertex.id, 0, 0));
+			else if (vertex.isBubble())
+				messages.add(new Message(vertex.tos[0], BUBBLE, vertex.id, vertex.froms[0], 
+						vertex.multiples[0]));
+			break;
+		case NOTIFY:
+			for (int loser : vertex.losers) {
+				messages.add(new Message(loser, LOSER, vertex.id, 0, 0));
+				vertex.removeEdges(loser);
+			}
+			vertex.losers = new int[0];
+			break;
+		case REMOVE:
+			if (vertex.isLoser) {
+				for (int to : vertex.tos)
+					messages.add(new Message(to, REMOVED, vertex.id, 0, 0));
+				for (int from : vertex.froms)
+					messages.add(new Message(from, REMOVED, vertex.id, 0, 0));
+			}
+			break;
+		}
+	}
+	
+	// The part of a superstep that the reducer applies to a vertex with its messages.
+	// Returns the number of losers the vertex found.
+	
+	static int receive(Vertex vertex, Phase phase, ArrayList<Message> messages, int coverage) {
+		switch (phase) {
+		case INIT: {
+			int[] froms = new int[messages.size()];
+			for (int i = 0; i < froms.length; i++)
+				froms[i] = messages.get(i).from;
+			Arrays.sort(froms);
+			vertex.froms = froms;
+			break;
+		}
+		case DECIDE: {
+			
+			// The multiple of a TIP_END message is the multiple of the edge to it.
+			
+			for (Message message : messages) {
+				if (message.kind == TIP_END) {
+					int i = Arrays.binarySearch(vertex.tos, message.from);
+					message.multiple = (i >= 0) ? vertex.multiples[i] : 0;
+				}
+			}
+			
+			ArrayList<Integer> losers = new ArrayList<Integer>();
+			findTipLosers(TIP_START, vertex.froms.length, messages, losers);
+			findTipLosers(TIP_END, vertex.tos.length, messages, losers);
+			
+			for (Message message : messages) {
+				if ((message.kind != BUBBLE) || (message.multiple >= coverage))
+					continue;
+				for (Message other : messages) {
+					if ((other.kind == BUBBLE) && (other.value == message.value) &&
+							(other.multiple > message.multiple)) {
+						losers.add(message.from);
+						break;
+					}
+				}
+			}
+			
+			vertex.losers = new int[losers.size()];
+			for (int i = 0; i < vertex.losers.length; i++)
+				vertex.losers[i] = losers.get(i);
+			return vertex.losers.length;
+		}
+		case NOTIFY: {
+			for (Message message : messages)
+				if (message.kind == LOSER)
+					vertex.isLoser = true;
+			break;
+		}
+		case REMOVE: {
+			for (Message message : messages)
+				if (message.kind == REMOVED)
+					vertex.removeEdges(message.from);
+			break;
+		}
+		}
+		
+		return 0;
+	}
+	
+	// Add to the losers the tips of the specified kind, unless all the vertex's edges
+	// in (or out) are tips, in which case the tip with the highest multiple (or the
+	// lowest ID, for equal multiples) is kept.
+	
+	private static void findTipLosers(byte kind, int numEdges, ArrayList<Message> messages,
+			ArrayList<Integer> losers) {
+		int numTips = 0;
+		Message best = null;
+		for (Message message : messages) {
+			if (message.kind != kind)
+				continue;
+			numTips++;
+			if ((best == null) || (message.multiple > best.multiple) || 
+					((message.multiple == best.multiple) && (message.from < best.from)))
+				best = message;
+		}
+		for (Message message : messages)
+			if ((message.kind == kind) && ((numTips < numEdges) || (message != best)))
+				losers.add(message.from);
+	}
+	
+}
@@ -82,4 +82,23 @@ public class Mer {
 		return builder.toString();
 	}
 	
+	// Returns the two bits for one character of a read, as in toInt().  Throws
+	// IllegalArgumentException if the character is not "A", "C", "G" or "T".
+	
+	static int letterToInt(char c) throws IllegalArgumentException {
+		switch (c) {
+		case 'A':
+			return 0x0;
+		case 'C':
+			return 0x1;
+		case 'G':
+			return 0x2;
+		case 'T':
+			return 0x3;
+		default:
+			throw new IllegalArgumentException("Mer: read contains illegal "
+					+ "character \'" + c + "\' [" + (int) c + "]");
+		}
+	}
+	
 }
@@ -114,6 +114,12 @@ public class MerString {
 		bytes = result;
 	}
 	
+	// Returns the number of letters in this MerString.
+	
+	public int getLength() {
+		return length;
+	}
+	
 	// Returns the byte array that contains the encoded representation of
 	// this MerString.
 	
@@ -146,6 +152,28 @@ public class MerString {
 		return new String(array);
 	}
 	
+	// Appends the human-readable characters of the MerString to the StringBuilder,
+	// starting with the character at index begin.
+	
+	public void appendDisplayString(StringBuilder builder, int begin) {
+		for (int i = begin; i < length; i++) {
+			int letter = get(bytes, i);
+			switch (letter) {
+			case A:
+				builder.append('A');
+				break;
+			case C:
+				builder.append('C');
+				break;
+			case G:
+				builder.append('G');
+				break;
+			default:
+				builder.append('T');
+			}
+		}
+	}
+	
 	// Returns true if the values (not the references) of two MerStrings are equivalent.
 	
 	public boolean equals(MerString other) {
@@ -0,0 +1,168 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Quality-aware ingestion of reads.  A read line may be a plain read string, or a 
+// read string and its base qualities separated by a tab ("SEQ\tQUAL"), with one 
+// Phred quality per base in the FASTQ encoding (the character with code 33 plus the
+// quality).  A line holds a whole record, so the files can be split by Hadoop, as
+// four-line FASTQ records cannot; convertFastq() converts FASTQ files to this form.
+//
+// For a line with qualities, split() first trims the low-quality tail of the read, 
+// with the rule of BWA's "-q" option: the tail is cut at the point that maximizes 
+// the sum of (minQuality - quality) over the bases cut, so an isolated good base 
+// does not stop the trimming.  It then splits the rest of the read at each base of
+// quality below minQuality, so no k-mer containing such a base becomes an edge, and
+// returns the pieces as separate reads.  A plain line is returned as is.
+
+public class QualityFilter {
+	
+	// The property for the minimum quality of the mappers that read reads.
+	
+	public static final String CONFIG_MIN_QUALITY = "CONFIG_MIN_QUALITY";
+	
+	// The offset of the FASTQ encoding of qualities.
+	
+	public static final int PHRED_OFFSET = 33;
+	
+	// Constructor.  Bases with quality below minQuality are skipped.  With a 
+	// minQuality of 0, the qualities are ignored.
+	
+	public QualityFilter(int minQuality) {
+		this.minQuality = minQuality;
+	}
+	
+	public int getMinQuality() {
+		return minQuality;
+	}
+	
+	// Returns the pieces of the read on the line.  Throws IllegalArgumentException if
+	// the qualities and the read differ in length.
+	
+	public ArrayList<String> split(String line) throws IllegalArgumentException {
+		ArrayList<String> result = new ArrayList<String>();
+		split(line, result);
+		return result;
+	}
+	
+	// Returns the pieces of the reads on all the lines, in order.
+	
+	public ArrayList<String> split(List<String> lines) throws IllegalArgumentException {
+		ArrayList<String> result = new ArrayList<String>(lines.size());
+		for (String line : lines)
+			split(line, result);
+		return result;
+	}
+	
+	// Add the pieces of the read on the line to the result.
+	
+	public void split(String line, List<String> result) throws IllegalArgumentException {
+		int tab = line.indexOf('\t');
+		if (tab < 0) {
+			if (!line.isEmpty())
+				result.add(line);
+			return;
+		}
+		
+		int length = tab;
+		if (line.length() - tab - 1 != length)
+			throw new IllegalArgumentException("QualityFilter.split(): read has " + length + 
+					" bases but " + (line.length() - tab - 1) + " qualities");
+		
+		if (minQuality <= 0) {
+			if (length > 0)
+				result.add(line.substring(0, length));
+			return;
+		}
+		
+		int end = trimmedLength(line, tab);
+		int begin = 0;
+		for (int i = 0; i <= end; i++) {
+			if ((i == end) || (quality(line, tab, i) < minQuality)) {
+				if (i > begin)
+					result.add(line.substring(begin, i));
+				begin = i + 1;
+			}
+		}
+	}
+	
+	// Convert the four-line records of a FASTQ file to "SEQ\tQUAL" lines.  Returns the 
+	// number of records.  Throws IOException if the input is not well formed.
+	
+	public static long convertFastq(BufferedReader in, Writer out) throws IOException {
+		long numRecords = 0;
+		String header;
+		while ((header = in.readLine()) != null) {
+			if (header.isEmpty())
+				continue;
+			String seq = in.readLine();
+			String separator = in.readLine();
+			String qual = in.readLine();
+			if (!header.startsWith("@") || (seq == null) || (separator == null) || 
+					!separator.startsWith("+") || (qual == null) || 
+					(qual.length() != seq.length()))
+				throw new IOException("QualityFilter.convertFastq(): malformed record \"" + 
+						header + "\"");
+			
+			out.write(seq);
+			out.write('\t');
+			out.write(qual);
+			out.write('\n');
+			numRecords++;
+		}
+		return numRecords;
+	}
+	
+	//
+	
+	// The length of the read after trimming its tail.
+	
+	private int trimmedLength(String line, int tab) {
+		int sum = 0;
+		int maxSum = 0;
+		int end = tab;
+		for (int i = tab - 1; i >= 0; i--) {
+			sum += minQuality - quality(line, tab, i);
+			if (sum < 0)
+				break;
+			if (sum > maxSum) {
+				maxSum = sum;
+				end = i;
+			}
+		}
+		return end;
+	}
+	
+	private static int quality(String line, int tab, int i) {
+		return line.charAt(tab + 1 + i) - PHRED_OFFSET;
+	}
+	
+	private int minQuality;
+	
+}
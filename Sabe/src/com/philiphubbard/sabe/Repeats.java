@@ -23,11 +23,11 @@
 package com.philiphubbard.sabe;
 
 import java.lang.Math;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.philiphubbard.digraph.BasicDigraph;
-import com.philiphubbard.digraph.StrongComponents;
 
 // A class to clean up or rectify a digraph.BasicDigraph with edge multiples that 
 // represents Euler paths with repetitive sections, also known as "repeats".
@@ -36,7 +36,8 @@ import com.philiphubbard.digraph.StrongComponents;
 // path A -> X -> Y -> Z -> B -> X -> Y -> Z -> C, the single repeat is the section
 // X -> Y -> Z.  The graph containing this single repeat will have edge multiples, 
 // two edges from X to Y and from Y to Z.  Note that a graph can contain multiple 
-// distinct single repeats.
+// distinct single repeats.  The rectifyMultiple() function also handles repeats with
+// more than two instances, by estimating the number of instances from the coverage.
 //
 // Rectification of single repeats may be necessary in a graph that has both a 
 // coverage greater than one and the possibility of errors.  "Coverage" refers to the 
@@ -65,62 +66,202 @@ public class Repeats {
 	
 	// Rectify the specified graph with the specified coverage.  The boolean array 
 	// should have a true value at the index of each branch vertex.
+	//
+	// A digraph.BasicDigraph stores each edge multiple as a separate edge, and 
+	// lowering a multiple means calling digraph.BasicDigraph.removeEdge() once per
+	// surplus edge, each a search of an adjacency list.  So the rectification itself 
+	// is performed on a CompactDigraph copy, where an edge multiple is a single count
+	// that is set in one step, and the surplus edges are removed from the original
+	// graph only once, at the end.
 	
 	public static void rectifySingle(BasicDigraph graph, int coverage, boolean[] isBranch) {
+		CompactDigraph compact = CompactDigraph.fromBasicDigraph(graph);
+		
+		int[] edgeMultiples = new int[compact.getNumEdges()];
+		for (int e = 0; e < edgeMultiples.length; e++)
+			edgeMultiples[e] = compact.getEdgeMultiple(e);
+		
+		rectifySingle(compact, coverage, isBranch);
+		
+		for (int v = 0; v < compact.getVertexCapacity(); v++) {
+			for (int e = compact.getEdgeBegin(v); e < compact.getEdgeEnd(v); e++) {
+				int n = edgeMultiples[e] - compact.getEdgeMultiple(e);
+				for (int i = 0; i < n; i++)
+					graph.removeEdge(v, compact.getEdgeTo(e));
+			}
+		}
+	}
+	
+	// Rectify the specified CompactDigraph with the specified coverage.  The boolean
+	// array should have a true value at the index of each branch vertex.  Forcing an
+	// edge multiple is a single write to the graph's array of edge multiples, so the
+	// processing time does not depend on the coverage.
+	//
+	// The graph need not have a single source and a single sink.  The traversal starts
+	// at vertex 0, then at each other source, and then at any vertex with edges that
+	// is still unvisited (e.g., on a weakly-connected component that is a cycle).
+	
+	public static void rectifySingle(CompactDigraph graph, int coverage, boolean[] isBranch) {
 		
 		// The algorithm identifies pairs of branch vertices, B1 and B2, that have
 		// sufficient edge multiples on the path from B1 to B2 that the path could be
 		// a single repeat.  But to really be a single repeat, there must be another
 		// path the "loops back" from B2 to B1 to start the repeat.  So there must be 
 		// both a path from B1 to B2 and from B2 to B1, and thus B1 and B2 must be in 
-		// the same strong component.  So start by finding all the strong components.
+		// the same strong component.  So start by finding all the strong components,
+		// labeled so that checking two vertices is one comparison.
 		
-		StrongComponents<BasicDigraph.Edge> strongComps = 
-				new StrongComponents<BasicDigraph.Edge>(graph);
+		CompactStrongComponents strongComps = new CompactStrongComponents(graph);
 		
 		// The algorithm is based on depth-first search, so we need to keep track of
 		// whether a vertex was visited, to avoid cycling endlessly.
 		
-		boolean[] wasVisited = new boolean[graph.getVertexCapacity()];
-		for (int i = 0; i < wasVisited.length; i++)
-			wasVisited[i] = false;
+		int numVertices = graph.getVertexCapacity();
+		boolean[] wasVisited = new boolean[numVertices];
+		boolean[] hasEdgeIn = new boolean[numVertices];
+		for (int e = 0; e < graph.getNumEdges(); e++)
+			hasEdgeIn[graph.getEdgeTo(e)] = true;
 		
-		// The State class keeps track of information about a vertex that we need to
+		// The Stack keeps track of information about each vertex that we need to
 		// determine if it is part of a single repeat.  As the depth-first search
-		// proceeds, the stack of State instances keeps track of vertices that have
-		// been visited but are not fully processed.  The stack must be implemented
-		// with a deque because part of the checking for a single repeat involves
-		// stepping back through elements still on the stack, and only a deque supports
-		// that operation.
+		// proceeds, the stack keeps track of vertices that have been visited but are 
+		// not fully processed.  Part of the checking for a single repeat involves
+		// stepping back through elements still on the stack, which the Stack supports
+		// by indexing.  A vertex stays on the stack only if it had not been visited
+		// before, so the stack never holds more than the graph's vertices plus the
+		// initial vertex 0 (which is not marked as visited) plus one transient vertex.
+		
+		Stack stack = new Stack(graph, numVertices + 2);
+		
+		if (numVertices > 0)
+			rectifyFrom(0, graph, coverage, isBranch, strongComps, wasVisited, stack);
+		for (int v = 1; v < numVertices; v++)
+			if (!hasEdgeIn[v] && !wasVisited[v] && (graph.getOutDegree(v) > 0))
+				rectifyFrom(v, graph, coverage, isBranch, strongComps, wasVisited, stack);
+		for (int v = 1; v < numVertices; v++) {
+			if (!wasVisited[v] && (graph.getOutDegree(v) > 0)) {
+				wasVisited[v] = true;
+				rectifyFrom(v, graph, coverage, isBranch, strongComps, wasVisited, stack);
+			}
+		}
+	}
+	
+	// Rectify the specified CompactDigraph with the specified coverage, as with 
+	// rectifySingle() but using the specified number of threads.
+	//
+	// The decision to force edge multiples to one or two is made separately for 
+	// each "chain", a path that starts at a branch (or at a source) and continues
+	// through non-branch vertices until it reaches the next branch (or a sink).  A 
+	// chain can be a single repeat only if its start and end are branches in the same
+	// strong component, and no two chains share an edge, so the chains can be 
+	// rectified concurrently.  They are divided among the threads of a fork-join pool 
+	// by the vertex index of their starts.  The result matches that of rectifySingle()
+	// when isBranch is true exactly for the vertices with more than one edge in or out.
+	
+	public static void rectifySingleParallel(CompactDigraph graph, int coverage, 
+			boolean[] isBranch, int numThreads) {
+		CompactStrongComponents strongComps = new CompactStrongComponents(graph);
+		
+		int numVertices = graph.getVertexCapacity();
+		int[] inDegrees = new int[numVertices];
+		int[] outDegrees = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			for (int e = graph.getEdgeBegin(v); e < graph.getEdgeEnd(v); e++) {
+				if (graph.getEdgeMultiple(e) > 0) {
+					outDegrees[v]++;
+					inDegrees[graph.getEdgeTo(e)]++;
+				}
+			}
+		}
+		
+		Chains chains = new Chains(graph, coverage, isBranch, strongComps, 
+				inDegrees, outDegrees);
+		
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, numThreads));
+		try {
+			pool.invoke(new ChainTask(chains, 0, numVertices));
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+	
+	// Rectify the specified CompactDigraph with the specified coverage by estimating
+	// the number of copies of each chain (as described for rectifySingleParallel()), 
+	// which need not be one or two.  Each edge multiple of the chain is set to its 
+	// estimated copy number, so a repeat that occurs n times is traversed n times by 
+	// an Euler path, and higher-copy repeats need not be resolved by assembling again 
+	// with a longer mer length.  Chains that are cycles through non-branch vertices are
+	// estimated in the same way.  Returns the number of chains.
+	//
+	// The first estimate for a chain is its mean edge multiple divided by the coverage,
+	// rounded to the nearest integer but no less than one.  Rounding can leave a vertex
+	// whose chains in and out have different total copy numbers, which cannot be part 
+	// of an Euler path, so a second pass visits each vertex once and moves the copy 
+	// numbers of its chains one at a time toward balance, each time changing the chain 
+	// whose estimate moves least far from its mean edge multiple divided by the coverage.
+	// A change made to balance one vertex can unbalance the chain's other end if that 
+	// end was visited earlier, so this pass repairs rounding errors but does not 
+	// guarantee a balanced graph when the coverage is very uneven.  Both passes have 
+	// processing time that is linear in the size of the graph.
+	
+	public static int rectifyMultiple(CompactDigraph graph, int coverage, boolean[] isBranch) {
+		int numVertices = graph.getVertexCapacity();
+		int[] inDegrees = new int[numVertices];
+		int[] outDegrees = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			for (int e = graph.getEdgeBegin(v); e < graph.getEdgeEnd(v); e++) {
+				if (graph.getEdgeMultiple(e) > 0) {
+					outDegrees[v]++;
+					inDegrees[graph.getEdgeTo(e)]++;
+				}
+			}
+		}
+		
+		CopyNumbers copies = new CopyNumbers(graph, coverage, isBranch, 
+				inDegrees, outDegrees);
+		copies.findChains();
+		copies.estimate();
+		copies.balance();
 		
-		ArrayDeque<State> stack = new ArrayDeque<State>();
+		for (int e = 0; e < graph.getNumEdges(); e++)
+			if (copies.edgeChains[e] >= 0)
+				graph.setEdgeMultiple(e, copies.copyNumbers[copies.edgeChains[e]]);
+		
+		return copies.numChains;
+	}
+	
+	//
+	
+	// The depth-first search of rectifySingle(), from one start vertex.
+	
+	private static void rectifyFrom(int start, CompactDigraph graph, int coverage, 
+			boolean[] isBranch, CompactStrongComponents strongComps,
+			boolean[] wasVisited, Stack stack) {
 		
-		// Start the search with the initial source vertex.  Mark it as a possible end
-		// of a single repeat.
+		// Start the search with the start vertex.  Mark it as a possible end of a 
+		// single repeat.
 		
-		stack.push(new State(graph, 0, 0));
-		stack.peek().isEnd = true;
+		stack.push(start, -1);
+		stack.isEnds[stack.top()] = true;
 		
 		while (!stack.isEmpty()) {
 			
-			// Get the current vertex state from the stack, but do not remove it.  We
+			// Get the current vertex from the stack, but do not remove it.  We
 			// remove it only when we are done iterating over all its edges.
 			
-			State state = stack.peek();
-			
-			ArrayList<BasicDigraph.Edge> edges = state.next();
-			if (!state.done()) {
+			int edge = stack.next();
+			if (edge != -1) {
 				
 				// If we have not finished iterating over all the edges from the current
 				// vertex, get the next one.
 				
-				int vertex = edges.get(0).getTo();
+				int vertex = graph.getEdgeTo(edge);
 				
-				// Go ahead and add to the stack a State instance for the vertex pointed to
-				// by the edge.  That way, the checking for a single repeat need only process
-				// vertices on the stack.
+				// Go ahead and push the vertex pointed to by the edge.  That way, the 
+				// checking for a single repeat need only process vertices on the stack.
 				
-				stack.push(new State(graph, vertex, edges.size()));
+				stack.push(vertex, edge);
 				
 				if (isBranch[vertex]) {
 					
@@ -144,13 +285,13 @@ public class Repeats {
 					
 					// The current vertex now is the new possible end of a single repeat.
 					
-					stack.peek().isEnd = true;
+					stack.isEnds[stack.top()] = true;
 				}
 				else if (graph.isSink(vertex)) {
 					
-					// If the current vertex is not a branch but is the final sink, then the
-					// path back to the last vertex marked as an end is not a single repeat,
-					// and the edge multiples on that path should be one.
+					// If the current vertex is not a branch but is a sink, then the
+					// path back to the last vertex marked as an end is not a single 
+					// repeat, and the edge multiples on that path should be one.
 					
 					forceEdgeMultiple(1, stack, graph);
 				}
@@ -174,13 +315,11 @@ public class Repeats {
 		}
 	}
 	
-	//
-	
 	// Returns true if the path from the top of the stack back to the last vertex marked
 	// as an end consists of edges consistent with a single repeat.
 	
-	private static boolean isRepeat(ArrayDeque<State> stack, boolean[] isBranch,
-			StrongComponents<BasicDigraph.Edge> strongComps, int coverage) {
+	private static boolean isRepeat(Stack stack, boolean[] isBranch,
+			CompactStrongComponents strongComps, int coverage) {
 		
 		// For a specified coverage, there must be ceiling(coverage / 2.0) edges to 
 		// indicate no error for this edge.  A single repeat corresponds to two
@@ -191,10 +330,10 @@ public class Repeats {
 		// Remember the vertex at the top of the stack, so we can compare it to the other
 		// vertices as we walk back through the stack.
 		
-		int vertex = stack.peek().vertex;
-		for (State state : stack) {
+		int vertex = stack.vertices[stack.top()];
+		for (int i = stack.top(); i >= 0; i--) {
 			
-			if (state.isEnd) {
+			if (stack.isEnds[i]) {
 				
 				// If the other vertex in the stack is marked as a possible end of a
 				// single repeat, then the path back to it is actually a single repeat
@@ -204,10 +343,10 @@ public class Repeats {
 				// again.  We don't need to consider the edge multiples on that
 				// looping-back path because it is not itself part of the repeat.
 				
-				return (isBranch[state.vertex] && 
-						strongComps.isStronglyReachable(vertex, state.vertex));
+				return (isBranch[stack.vertices[i]] && 
+						strongComps.isStronglyReachable(vertex, stack.vertices[i]));
 			}
-			else if (state.edgeMultiple < minEdgeMultiple) {
+			else if (stack.graph.getEdgeMultiple(stack.edges[i]) < minEdgeMultiple) {
 				
 				// If at any point in walking back through the stack we find edge multiples
 				// that are too low to be part of a single repeat, then we can stop and
@@ -221,59 +360,383 @@ public class Repeats {
 	}
 	
 	// Force the path from the top of the stack back to the last vertex marked as an end
-	// to have the specified edge multiple.
+	// to have the specified edge multiple.  Each vertex on the stack has the index of 
+	// the edge that led to it, so no search for the edge is needed.
 	
-	private static void forceEdgeMultiple(int edgeMultiple, ArrayDeque<State> stack, 
-			BasicDigraph graph) {		
-		State prev = null;
-		for (State curr : stack) {
-			if (prev != null) {
-				if (prev.edgeMultiple > edgeMultiple) {
-					int n = prev.edgeMultiple - edgeMultiple;
-					for (int i = 0; i < n; i++)
-						graph.removeEdge(curr.vertex, prev.vertex);
-				}				
-			}
-			prev = curr;
-			if (curr.isEnd)
-				break;
+	private static void forceEdgeMultiple(int edgeMultiple, Stack stack, 
+			CompactDigraph graph) {
+		for (int i = stack.top(); (i >= 0) && !stack.isEnds[i]; i--) {
+			if (graph.getEdgeMultiple(stack.edges[i]) > edgeMultiple)
+				graph.setEdgeMultiple(stack.edges[i], edgeMultiple);
 		}
 	}
 	
-	// The state of the processing of a vertex, to be stored on the stack.
+	// The state shared by the tasks of rectifySingleParallel(), which is not modified
+	// except for the edge multiples of the graph.  A chain interior vertex has one
+	// edge in and one edge out, and all other vertices with edges out are chain starts.
 	
-	private static class State {
-		State(BasicDigraph graph, int vertex, int edgeMultiple) {
-			this.vertex = vertex;
-			this.edgeMultiple = edgeMultiple;
+	private static class Chains {
+		Chains(CompactDigraph graph, int coverage, boolean[] isBranch, 
+				CompactStrongComponents strongComps, int[] inDegrees, 
+				int[] outDegrees) {
 			this.graph = graph;
-			isEnd = false;
+			this.isBranch = isBranch;
+			this.strongComps = strongComps;
+			this.inDegrees = inDegrees;
+			this.outDegrees = outDegrees;
+			minEdgeMultiple = 2 * (int) Math.ceil(coverage / 2.0);
+		}
+		
+		boolean isInterior(int v) {
+			return (!isBranch[v] && (inDegrees[v] == 1) && (outDegrees[v] == 1));
+		}
+		
+		// Rectify all the chains that start at vertices from begin up to but not
+		// including end.
+		
+		void rectify(int begin, int end) {
+			for (int v = begin; v < end; v++) {
+				if ((outDegrees[v] == 0) || isInterior(v))
+					continue;
+				for (int e = graph.getEdgeBegin(v); e < graph.getEdgeEnd(v); e++)
+					if (graph.getEdgeMultiple(e) > 0)
+						rectifyChain(v, e);
+			}
+		}
+		
+		// Rectify the chain that starts with the specified edge from the specified
+		// vertex.  The first pass finds the end and whether the edge multiples are
+		// high enough for a single repeat, and the second forces the multiples.
+		
+		void rectifyChain(int start, int firstEdge) {
+			boolean isHigh = true;
+			int e = firstEdge;
+			int vertex = graph.getEdgeTo(e);
+			while (true) {
+				isHigh = isHigh && (graph.getEdgeMultiple(e) >= minEdgeMultiple);
+				if (!isInterior(vertex))
+					break;
+				e = nextEdge(vertex);
+				vertex = graph.getEdgeTo(e);
+			}
+			
+			boolean isRepeat = (isHigh && isBranch[start] && isBranch[vertex] &&
+					strongComps.isStronglyReachable(vertex, start));
+			int edgeMultiple = isRepeat ? 2 : 1;
+			
+			e = firstEdge;
+			vertex = graph.getEdgeTo(e);
+			while (true) {
+				if (graph.getEdgeMultiple(e) > edgeMultiple)
+					graph.setEdgeMultiple(e, edgeMultiple);
+				if (!isInterior(vertex))
+					break;
+				e = nextEdge(vertex);
+				vertex = graph.getEdgeTo(e);
+			}
 		}
 		
-		// Returns true if the iteration over the vertex's edges is done.
+		// Returns the one edge with a nonzero multiple from an interior vertex.
 		
-		boolean done() {
-			return ((it != null) && it.done());
+		int nextEdge(int vertex) {
+			int e = graph.getEdgeBegin(vertex);
+			while (graph.getEdgeMultiple(e) == 0)
+				e++;
+			return e;
 		}
 		
-		// Returns the next step of the iteration over the vertex's edges.
-		// The result is a list of edges pointing to a common vertex.
+		CompactDigraph graph;
+		boolean[] isBranch;
+		CompactStrongComponents strongComps;
+		int[] inDegrees;
+		int[] outDegrees;
+		int minEdgeMultiple;
+	}
+	
+	// A fork-join task that rectifies the chains starting in a range of vertices, 
+	// splitting the range in half until it is small.
+	
+	@SuppressWarnings("serial")
+	private static class ChainTask extends RecursiveAction {
+		ChainTask(Chains chains, int begin, int end) {
+			this.chains = chains;
+			this.begin = begin;
+			this.end = end;
+		}
 		
-		ArrayList<BasicDigraph.Edge> next() {
-			if (it == null) {
-				it = graph.createAdjacencyMultipleIterator(vertex);
-				return it.begin();
+		protected void compute() {
+			if (end - begin <= MIN_TASK_VERTICES) {
+				chains.rectify(begin, end);
 			}
 			else {
-				return it.next();
+				int middle = begin + (end - begin) / 2;
+				invokeAll(new ChainTask(chains, begin, middle), 
+						new ChainTask(chains, middle, end));
+			}
+		}
+		
+		private Chains chains;
+		private int begin;
+		private int end;
+	}
+	
+	private static final int MIN_TASK_VERTICES = 4096;
+	
+	// The state of rectifyMultiple().  Chains are numbered in the order they are 
+	// found; for each chain there is its start and end vertex, its mean edge multiple
+	// divided by the coverage, and its estimated copy number, and for each edge there 
+	// is the chain containing it (or -1 for edges with a multiple of zero).
+	
+	private static class CopyNumbers {
+		CopyNumbers(CompactDigraph graph, int coverage, boolean[] isBranch,
+				int[] inDegrees, int[] outDegrees) {
+			this.graph = graph;
+			this.coverage = coverage;
+			this.isBranch = isBranch;
+			this.inDegrees = inDegrees;
+			this.outDegrees = outDegrees;
+			
+			int numEdges = graph.getNumEdges();
+			edgeChains = new int[numEdges];
+			Arrays.fill(edgeChains, -1);
+			
+			// No chain is empty, so there are no more chains than edges.
+			
+			starts = new int[numEdges];
+			ends = new int[numEdges];
+			means = new double[numEdges];
+			copyNumbers = new int[numEdges];
+			numChains = 0;
+		}
+		
+		boolean isInterior(int v) {
+			return (!isBranch[v] && (inDegrees[v] == 1) && (outDegrees[v] == 1));
+		}
+		
+		// Find the chains that start at branches, sources and sinks, and then the 
+		// remaining chains, which are cycles of interior vertices.
+		
+		void findChains() {
+			int numVertices = graph.getVertexCapacity();
+			for (int v = 0; v < numVertices; v++) {
+				if ((outDegrees[v] == 0) || isInterior(v))
+					continue;
+				for (int e = graph.getEdgeBegin(v); e < graph.getEdgeEnd(v); e++)
+					if (graph.getEdgeMultiple(e) > 0)
+						addChain(v, e);
+			}
+			for (int v = 0; v < numVertices; v++) {
+				for (int e = graph.getEdgeBegin(v); e < graph.getEdgeEnd(v); e++)
+					if ((graph.getEdgeMultiple(e) > 0) && (edgeChains[e] == -1))
+						addChain(v, e);
+			}
+		}
+		
+		// Add the chain that starts with the specified edge from the specified vertex,
+		// and that ends at the next vertex that is not interior, or at the start again 
+		// for a cycle.
+		
+		void addChain(int start, int firstEdge) {
+			int chain = numChains++;
+			long sum = 0;
+			int length = 0;
+			int e = firstEdge;
+			int vertex;
+			while (true) {
+				edgeChains[e] = chain;
+				sum += graph.getEdgeMultiple(e);
+				length++;
+				vertex = graph.getEdgeTo(e);
+				if (!isInterior(vertex))
+					break;
+				e = nextEdge(vertex);
+				if (edgeChains[e] != -1)
+					break;
+			}
+			
+			starts[chain] = start;
+			ends[chain] = vertex;
+			means[chain] = sum / ((double) length * coverage);
+		}
+		
+		void estimate() {
+			for (int c = 0; c < numChains; c++)
+				copyNumbers[c] = Math.max(1, (int) Math.round(means[c]));
+		}
+		
+		// Visit each vertex with chains both in and out, and change copy numbers until
+		// the totals in and out are equal.  A chain that starts and ends at the same 
+		// vertex does not affect the balance there, so it is not considered.
+		
+		void balance() {
+			int numVertices = graph.getVertexCapacity();
+			int[] inOffsets = new int[numVertices + 1];
+			int[] outOffsets = new int[numVertices + 1];
+			for (int c = 0; c < numChains; c++) {
+				if (starts[c] != ends[c]) {
+					inOffsets[ends[c] + 1]++;
+					outOffsets[starts[c] + 1]++;
+				}
+			}
+			for (int v = 0; v < numVertices; v++) {
+				inOffsets[v + 1] += inOffsets[v];
+				outOffsets[v + 1] += outOffsets[v];
+			}
+			int[] inChains = new int[inOffsets[numVertices]];
+			int[] outChains = new int[outOffsets[numVertices]];
+			int[] inCursors = Arrays.copyOf(inOffsets, numVertices);
+			int[] outCursors = Arrays.copyOf(outOffsets, numVertices);
+			for (int c = 0; c < numChains; c++) {
+				if (starts[c] != ends[c]) {
+					inChains[inCursors[ends[c]]++] = c;
+					outChains[outCursors[starts[c]]++] = c;
+				}
+			}
+			
+			for (int v = 0; v < numVertices; v++) {
+				int inBegin = inOffsets[v];
+				int inEnd = inOffsets[v + 1];
+				int outBegin = outOffsets[v];
+				int outEnd = outOffsets[v + 1];
+				if ((inBegin == inEnd) || (outBegin == outEnd))
+					continue;
+				
+				int imbalance = 0;
+				for (int i = inBegin; i < inEnd; i++)
+					imbalance += copyNumbers[inChains[i]];
+				for (int i = outBegin; i < outEnd; i++)
+					imbalance -= copyNumbers[outChains[i]];
+				
+				// With more copies in than out, either a chain out gains a copy or
+				// a chain in loses one, and vice versa.
+				
+				while (imbalance != 0) {
+					int[] gainChains = (imbalance > 0) ? outChains : inChains;
+					int gainBegin = (imbalance > 0) ? outBegin : inBegin;
+					int gainEnd = (imbalance > 0) ? outEnd : inEnd;
+					int[] loseChains = (imbalance > 0) ? inChains : outChains;
+					int loseBegin = (imbalance > 0) ? inBegin : outBegin;
+					int loseEnd = (imbalance > 0) ? inEnd : outEnd;
+					
+					int best = -1;
+					int bestChange = 0;
+					double bestCost = Double.MAX_VALUE;
+					for (int i = gainBegin; i < gainEnd; i++) {
+						double cost = changeCost(gainChains[i], 1);
+						if (cost < bestCost) {
+							best = gainChains[i];
+							bestChange = 1;
+							bestCost = cost;
+						}
+					}
+					for (int i = loseBegin; i < loseEnd; i++) {
+						if (copyNumbers[loseChains[i]] <= 1)
+							continue;
+						double cost = changeCost(loseChains[i], -1);
+						if (cost < bestCost) {
+							best = loseChains[i];
+							bestChange = -1;
+							bestCost = cost;
+						}
+					}
+					
+					copyNumbers[best] += bestChange;
+					imbalance += (imbalance > 0) ? -1 : 1;
+				}
 			}
 		}
 		
-		int vertex;
-		int edgeMultiple;
-		boolean isEnd;
+		// The increase in the distance of the specified chain's copy number from its 
+		// mean edge multiple divided by the coverage, if the copy number is changed by 
+		// the specified amount.
+		
+		double changeCost(int chain, int change) {
+			return (Math.abs(copyNumbers[chain] + change - means[chain]) - 
+					Math.abs(copyNumbers[chain] - means[chain]));
+		}
+		
+		// Returns the one edge with a nonzero multiple from an interior vertex.
+		
+		int nextEdge(int vertex) {
+			int e = graph.getEdgeBegin(vertex);
+			while (graph.getEdgeMultiple(e) == 0)
+				e++;
+			return e;
+		}
+		
+		CompactDigraph graph;
+		int coverage;
+		boolean[] isBranch;
+		int[] inDegrees;
+		int[] outDegrees;
+		
+		int[] edgeChains;
+		int[] starts;
+		int[] ends;
+		double[] means;
+		int[] copyNumbers;
+		int numChains;
+	}
+	
+	// The stack of the depth-first search, as parallel arrays so that pushing a vertex 
+	// allocates nothing.  For each position on the stack, the vertex is the vertex
+	// being processed, the edge is the index of the edge that led to the vertex (or -1 
+	// for the start vertex), the cursor is the index of the next edge from the vertex 
+	// to be processed, and isEnd indicates whether the vertex is a possible end of a
+	// single repeat.
+	
+	private static class Stack {
+		Stack(CompactDigraph graph, int capacity) {
+			this.graph = graph;
+			vertices = new int[capacity];
+			edges = new int[capacity];
+			cursors = new int[capacity];
+			isEnds = new boolean[capacity];
+			size = 0;
+		}
+		
+		boolean isEmpty() {
+			return (size == 0);
+		}
+		
+		// The position of the top of the stack.
+		
+		int top() {
+			return size - 1;
+		}
+		
+		void push(int vertex, int edge) {
+			vertices[size] = vertex;
+			edges[size] = edge;
+			cursors[size] = graph.getEdgeBegin(vertex);
+			isEnds[size] = false;
+			size++;
+		}
+		
+		void pop() {
+			size--;
+		}
+		
+		// Returns the index of the next edge from the vertex at the top of the stack, 
+		// skipping edges whose multiple is zero, or -1 if the iteration over the 
+		// vertex's edges is done.
+		
+		int next() {
+			int i = size - 1;
+			int end = graph.getEdgeEnd(vertices[i]);
+			int cursor = cursors[i];
+			while ((cursor < end) && (graph.getEdgeMultiple(cursor) == 0))
+				cursor++;
+			cursors[i] = (cursor < end) ? cursor + 1 : end;
+			return (cursor < end) ? cursor : -1;
+		}
+		
+		int[] vertices;
+		int[] edges;
+		int[] cursors;
+		boolean[] isEnds;
+		int size;
 		
-		BasicDigraph graph;
-		BasicDigraph.AdjacencyMultipleIterator it;
+		CompactDigraph graph;
 	}
 }
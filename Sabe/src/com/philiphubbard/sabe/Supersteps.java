@@ -0,0 +1,215 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+
+import com.philiphubbard.digraph.MRVertex;
+
+// The pieces shared by the MapReduce jobs that run "bulk synchronous parallel" 
+// (BSP) supersteps on the compressed graph, MRRectifyRepeats and MRTipsAndBubbles.
+// Each superstep is a job whose mapper passes each vertex record through and sends
+// messages along its edges, and whose reducer receives each vertex record with its
+// messages and updates it.  Vertex records and messages are both BytesWritable 
+// values keyed by a vertex ID, and the first byte of each tells them apart.  The 
+// jobs define their own records and messages, and extend the Mapper and Reducer
+// here with the work of each superstep.
+
+class Supersteps {
+	
+	// The first byte of the bytes of a vertex record, and of a message.
+	
+	static final byte TAG_VERTEX = 0;
+	static final byte TAG_MESSAGE = 1;
+	
+	// A vertex record or a message, written with the ID of the vertex that receives 
+	// it as the key.
+	
+	interface Record {
+		
+		// Returns the ID of the vertex to which the record goes.
+		
+		int getKey();
+		
+		// Returns the bytes of the record, starting with TAG_VERTEX or TAG_MESSAGE.
+		
+		byte[] toBytes();
+	}
+	
+	// The distinct edges to other vertices, sorted by vertex ID, each with a 
+	// multiple, from edges in which each edge appears as many times as its multiple.
+	
+	static class Edges {
+		Edges(int[] edges) {
+			edges = edges.clone();
+			Arrays.sort(edges);
+			
+			int numDistinct = 0;
+			for (int i = 0; i < edges.length; i++)
+				if ((i == 0) || (edges[i] != edges[i - 1]))
+					numDistinct++;
+			
+			tos = new int[numDistinct];
+			multiples = new int[numDistinct];
+			int j = -1;
+			for (int i = 0; i < edges.length; i++) {
+				if ((i == 0) || (edges[i] != edges[i - 1]))
+					tos[++j] = edges[i];
+				multiples[j]++;
+			}
+		}
+		
+		int[] tos;
+		int[] multiples;
+	}
+	
+	// Returns the edges to other vertices of the MRVertex, where an edge appears as 
+	// many times as its multiple.
+	
+	static int[] edgesTo(MRVertex vertex) {
+		int numEdges = 0;
+		int[] edges = new int[4];
+		MRVertex.AdjacencyIterator it = vertex.createToAdjacencyIterator();
+		for (int to = it.begin(); !it.done(); to = it.next()) {
+			if (numEdges == edges.length)
+				edges = Arrays.copyOf(edges, 2 * numEdges);
+			edges[numEdges++] = to;
+		}
+		return Arrays.copyOf(edges, numEdges);
+	}
+	
+	// Read an array of ints written by putInts().
+	
+	static int[] getInts(ByteBuffer buffer) {
+		int[] result = new int[buffer.getInt()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = buffer.getInt();
+		return result;
+	}
+	
+	// Write an array of ints, preceded by its length.
+	
+	static void putInts(ByteBuffer buffer, int[] values) {
+		buffer.putInt(values.length);
+		for (int value : values)
+			buffer.putInt(value);
+	}
+	
+	// The bytes of a record's MerString, which are empty if there is none.
+	
+	static byte[] toMerBytes(MerString merString) {
+		return (merString != null) ? merString.toBytes() : new byte[0];
+	}
+	
+	// Returns the MerString of a record's bytes from toMerBytes(), or null if there
+	// is none.
+	
+	static MerString toMerString(byte[] merBytes) {
+		if (merBytes.length == 0)
+			return null;
+		return new MerString(merBytes, 0, merBytes.length);
+	}
+	
+	// The mapper of a superstep.  In the first superstep its input is MRMerVertex 
+	// instances, and in the others its input is vertex records.
+	
+	static abstract class Mapper<V extends Record, M extends Record> 
+	extends org.apache.hadoop.mapreduce.Mapper<IntWritable, BytesWritable, IntWritable, BytesWritable> {
+		
+		@Override
+		protected void map(IntWritable key, BytesWritable value, Context context) 
+				throws IOException, InterruptedException {
+			V vertex;
+			if (isInit())
+				vertex = createVertex(new MRMerVertex(value, context.getConfiguration()));
+			else
+				vertex = createVertex(value.getBytes(), value.getLength());
+			
+			ArrayList<M> messages = new ArrayList<M>();
+			if (send(vertex, messages))
+				write(vertex, context);
+			for (M message : messages)
+				write(message, context);
+		}
+		
+		// Returns true if the input is MRMerVertex instances.
+		
+		protected abstract boolean isInit();
+		
+		protected abstract V createVertex(MRMerVertex vertex);
+		
+		protected abstract V createVertex(byte[] bytes, int length);
+		
+		// Add the messages from the vertex, which may also change.  Returns false 
+		// if the vertex is not to be written.
+		
+		protected abstract boolean send(V vertex, ArrayList<M> messages);
+		
+		private void write(Record record, Context context) 
+				throws IOException, InterruptedException {
+			context.write(new IntWritable(record.getKey()), new BytesWritable(record.toBytes()));
+		}
+	}
+	
+	// The reducer of a superstep, which updates each vertex record with its messages.
+	// Messages for a vertex that does not exist (e.g., one that was removed) are 
+	// dropped.
+	
+	static abstract class Reducer<V extends Record, M extends Record> 
+	extends org.apache.hadoop.mapreduce.Reducer<IntWritable, BytesWritable, IntWritable, BytesWritable> {
+		
+		@Override
+		protected void reduce(IntWritable key, Iterable<BytesWritable> values, Context context)
+				throws IOException, InterruptedException {
+			V vertex = null;
+			ArrayList<M> messages = new ArrayList<M>();
+			for (BytesWritable value : values) {
+				if (value.getBytes()[0] == TAG_VERTEX)
+					vertex = createVertex(value.getBytes(), value.getLength());
+				else
+					messages.add(createMessage(key.get(), value.getBytes()));
+			}
+			
+			if (vertex == null)
+				return;
+			
+			Record result = receive(vertex, messages, context);
+			context.write(key, new BytesWritable(result.toBytes()));
+		}
+		
+		protected abstract V createVertex(byte[] bytes, int length);
+		
+		protected abstract M createMessage(int to, byte[] bytes);
+		
+		// Updates the vertex with its messages, and returns the record to write for it.
+		
+		protected abstract Record receive(V vertex, ArrayList<M> messages, Context context);
+	}
+	
+}
@@ -0,0 +1,401 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.util.Arrays;
+
+// A class to remove from a compressed graph the parts that come from sequencing 
+// errors that survived the elimination of edges with low multiples, and then to 
+// compress the chains again.  There are two kinds of such parts:
+// * A "tip" is a short path that ends at a source or a sink, joined to the rest of 
+//   the graph at a branch.  An error near the end of a read makes a tip of fewer 
+//   than k vertices (where k - 1 is the vertex mer length).
+// * A "bubble" is one of several paths with one interior vertex from the same vertex
+//   to the same vertex.  An error in the middle of a read makes a bubble whose 
+//   edge multiples are lower than those of the correct path.
+// Tips and bubbles make extra branches, which prevent the chains through those
+// branches from being compressed, and tips make extra sources and sinks, so the 
+// graph is assembled into more than one sequence.
+//
+// The decisions are made for all the tips and bubbles at once, from the graph as it 
+// was before any were removed, so the result matches that of the MapReduce jobs of
+// MRTipsAndBubbles.  A vertex with several tips keeps the tip with the highest 
+// edge multiple if all its edges in (or out) are tips, so removing tips never makes
+// a new source or sink.  A bubble is removed only if its edge multiple is less than 
+// the coverage and less than that of another bubble between the same vertices.
+// The processing time is linear in the size of the graph.
+
+public class TipsAndBubbles {
+	
+	// Returns a copy of the vertices without tips shorter than k vertices, where k is
+	// one more than the specified vertex mer length, and without bubbles with low
+	// edge multiples, and with chains compressed again.
+	
+	public static MRCompressedVertices simplify(MRCompressedVertices vertices, 
+			int vertexMerLength, int coverage) {
+		Rows rows = new Rows(vertices, vertexMerLength);
+		rows.findTips(vertexMerLength + 1);
+		rows.findBubbles(coverage);
+		rows.removeLosers();
+		return rows.compress();
+	}
+	
+	// Returns a copy of the vertices with each chain of vertices compressed into one
+	// vertex, whose MerString is the merger of the MerStrings of the chain.  A chain
+	// here is a path through vertices with one edge in from a vertex with one edge out
+	// (regardless of whether the vertices are marked as branches).
+	
+	public static MRCompressedVertices compress(MRCompressedVertices vertices, 
+			int vertexMerLength) {
+		return new Rows(vertices, vertexMerLength).compress();
+	}
+	
+	// Returns the compressed vertices of an uncompressed graph, whose vertex v has 
+	// the ID ids[v], and whose edge multiples are those of the graph.  Only the 
+	// compressed result has each edge repeated as many times as its multiple, so 
+	// the memory for the uncompressed graph is proportional to its number of 
+	// distinct edges rather than the sum of their multiples.
+	
+	static MRCompressedVertices compress(CompactDigraph graph, int[] ids, 
+			int vertexMerLength) {
+		return new Rows(graph, ids, vertexMerLength).compress();
+	}
+	
+	//
+	
+	// The vertices as a CompactDigraph whose vertex indices are the rows, with the
+	// degrees (counting only edges with nonzero multiples) of each row.  Rows that
+	// are to be removed are the "losers".  The IDs and MerStrings of the rows come 
+	// from the MRCompressedVertices, or if there is none, the IDs come from an array
+	// and the MerStrings are the (k-1)-mers of the IDs.
+	
+	private static class Rows {
+		Rows(MRCompressedVertices vertices, int vertexMerLength) {
+			this.vertices = vertices;
+			this.vertexMerLength = vertexMerLength;
+			
+			numRows = vertices.size();
+			IntIntMap idToRow = new IntIntMap(numRows);
+			for (int row = 0; row < numRows; row++)
+				idToRow.put(getId(row), row);
+			
+			CompactDigraph.Builder builder = 
+					new CompactDigraph.Builder(numRows, vertices.getNumEdges());
+			for (int row = 0; row < numRows; row++)
+				for (int e = vertices.getEdgeBegin(row); e < vertices.getEdgeEnd(row); e++)
+					builder.addEdge(row, idToRow.get(vertices.getEdgeTo(e)));
+			setGraph(builder.build());
+		}
+		
+		Rows(CompactDigraph graph, int[] ids, int vertexMerLength) {
+			this.ids = ids;
+			this.vertexMerLength = vertexMerLength;
+			
+			numRows = graph.getVertexCapacity();
+			setGraph(graph);
+		}
+		
+		// Set the graph, and compute its transpose and the degrees of the rows.
+		
+		private void setGraph(CompactDigraph graph) {
+			this.graph = graph;
+			transpose = graph.transpose();
+			
+			inDegrees = new int[numRows];
+			outDegrees = new int[numRows];
+			for (int row = 0; row < numRows; row++) {
+				for (int e = graph.getEdgeBegin(row); e < graph.getEdgeEnd(row); e++) {
+					outDegrees[row]++;
+					inDegrees[graph.getEdgeTo(e)]++;
+				}
+			}
+			
+			isLosers = new boolean[numRows];
+		}
+		
+		// Mark as losers the tips with fewer than maxLength vertices.  The decisions 
+		// are made by the branch to which each tip is joined.
+		
+		void findTips(int maxLength) {
+			for (int row = 0; row < numRows; row++) {
+				int numIns = 0;
+				int numTipIns = 0;
+				int bestTip = -1;
+				for (int e = transpose.getEdgeBegin(row); e < transpose.getEdgeEnd(row); e++) {
+					int from = transpose.getEdgeTo(e);
+					numIns++;
+					if ((inDegrees[from] == 0) && (outDegrees[from] == 1) && 
+							(getLength(from) < maxLength)) {
+						numTipIns++;
+						bestTip = better(bestTip, from, row);
+					}
+				}
+				markTips(row, numIns, numTipIns, bestTip, maxLength, true);
+				
+				int numOuts = 0;
+				int numTipOuts = 0;
+				bestTip = -1;
+				for (int e = graph.getEdgeBegin(row); e < graph.getEdgeEnd(row); e++) {
+					int to = graph.getEdgeTo(e);
+					numOuts++;
+					if ((outDegrees[to] == 0) && (inDegrees[to] == 1) && 
+							(getLength(to) < maxLength)) {
+						numTipOuts++;
+						bestTip = better(bestTip, to, row);
+					}
+				}
+				markTips(row, numOuts, numTipOuts, bestTip, maxLength, false);
+			}
+		}
+		
+		// Mark as losers the bubbles whose edge multiples are less than the coverage
+		// and than those of another bubble with the same ends.  The decisions are made
+		// by the vertex at which the bubbles end.
+		
+		void findBubbles(int coverage) {
+			int[] bubbles = new int[4];
+			int[] starts = new int[4];
+			int[] multiples = new int[4];
+			for (int row = 0; row < numRows; row++) {
+				if (inDegrees[row] < 2)
+					continue;
+				
+				int numBubbles = 0;
+				for (int e = transpose.getEdgeBegin(row); e < transpose.getEdgeEnd(row); e++) {
+					int from = transpose.getEdgeTo(e);
+					if ((inDegrees[from] != 1) || (outDegrees[from] != 1))
+						continue;
+					int start = transpose.getEdgeTo(transpose.getEdgeBegin(from));
+					if ((start == from) || (start == row) || (from == row))
+						continue;
+					if (numBubbles == bubbles.length) {
+						bubbles = Arrays.copyOf(bubbles, 2 * numBubbles);
+						starts = Arrays.copyOf(starts, 2 * numBubbles);
+						multiples = Arrays.copyOf(multiples, 2 * numBubbles);
+					}
+					bubbles[numBubbles] = from;
+					starts[numBubbles] = start;
+					multiples[numBubbles] = transpose.getEdgeMultiple(e);
+					numBubbles++;
+				}
+				
+				// The number of bubbles at one vertex is small, so a quadratic 
+				// comparison is fine.
+				
+				for (int i = 0; i < numBubbles; i++) {
+					if (multiples[i] >= coverage)
+						continue;
+					for (int j = 0; j < numBubbles; j++) {
+						if ((j != i) && (starts[j] == starts[i]) && (multiples[j] > multiples[i])) {
+							isLosers[bubbles[i]] = true;
+							break;
+						}
+					}
+				}
+			}
+		}
+		
+		// Remove the edges to and from the losers.
+		
+		void removeLosers() {
+			for (int row = 0; row < numRows; row++) {
+				for (int e = graph.getEdgeBegin(row); e < graph.getEdgeEnd(row); e++) {
+					int to = graph.getEdgeTo(e);
+					if ((isLosers[row] || isLosers[to]) && (graph.getEdgeMultiple(e) > 0)) {
+						graph.setEdgeMultiple(e, 0);
+						outDegrees[row]--;
+						inDegrees[to]--;
+					}
+				}
+			}
+		}
+		
+		// Returns the compressed vertices, without the losers.  The first pass starts
+		// a chain at each row that does not continue the chain of the row before it,
+		// and the second pass handles the remaining rows, which are in cycles.
+		
+		MRCompressedVertices compress() {
+			MRCompressedVertices result = new MRCompressedVertices(Math.max(numRows, 1));
+			boolean[] isDone = new boolean[numRows];
+			int[] edges = new int[16];
+			
+			for (int row = 0; row < numRows; row++) {
+				if (!isLosers[row] && !continuesChain(row))
+					edges = addChain(row, result, isDone, edges);
+			}
+			for (int row = 0; row < numRows; row++) {
+				if (!isLosers[row] && !isDone[row])
+					edges = addChain(row, result, isDone, edges);
+			}
+			
+			return result;
+		}
+		
+		//
+		
+		// Mark the tips joined to the specified row, in (if isIn is true) or out.
+		
+		private void markTips(int row, int numEdges, int numTips, int bestTip, 
+				int maxLength, boolean isIn) {
+			if (numTips == 0)
+				return;
+			int first = isIn ? transpose.getEdgeBegin(row) : graph.getEdgeBegin(row);
+			int last = isIn ? transpose.getEdgeEnd(row) : graph.getEdgeEnd(row);
+			for (int e = first; e < last; e++) {
+				int tip = isIn ? transpose.getEdgeTo(e) : graph.getEdgeTo(e);
+				boolean isTip = isIn ? 
+						((inDegrees[tip] == 0) && (outDegrees[tip] == 1)) :
+						((outDegrees[tip] == 0) && (inDegrees[tip] == 1));
+				if (isTip && (getLength(tip) < maxLength) && 
+						((numTips < numEdges) || (tip != bestTip)))
+					isLosers[tip] = true;
+			}
+		}
+		
+		// Returns whichever of the two tips joined to the specified row has the higher
+		// edge multiple, or the lower ID for equal multiples.  The first may be -1.
+		
+		private int better(int tip0, int tip1, int row) {
+			if (tip0 == -1)
+				return tip1;
+			int multiple0 = getMultiple(tip0, row);
+			int multiple1 = getMultiple(tip1, row);
+			if ((multiple1 > multiple0) || ((multiple1 == multiple0) && (getId(tip1) < getId(tip0))))
+				return tip1;
+			return tip0;
+		}
+		
+		// Returns the multiple of the edge between the two rows, in either direction.
+		
+		private int getMultiple(int row0, int row1) {
+			int e = graph.findEdge(row0, row1);
+			if (e != -1)
+				return graph.getEdgeMultiple(e);
+			return graph.getEdgeMultiple(graph.findEdge(row1, row0));
+		}
+		
+		// Returns the number of vertices compressed into the specified row.
+		
+		private int getLength(int row) {
+			MerString merString = getMerString(row);
+			if (merString == null)
+				return 1;
+			return merString.getLength() - vertexMerLength + 1;
+		}
+		
+		// Returns true if the specified row has one edge in, from a row with one edge 
+		// out, so it continues that row's chain.
+		
+		private boolean continuesChain(int row) {
+			if (inDegrees[row] != 1)
+				return false;
+			int from = getOnlyFrom(row);
+			return ((from != row) && (outDegrees[from] == 1));
+		}
+		
+		// Add the chain starting at the specified row to the result, and return the 
+		// edges array, which may have grown.
+		
+		private int[] addChain(int start, MRCompressedVertices result, boolean[] isDone, 
+				int[] edges) {
+			isDone[start] = true;
+			MerString merString = getMerString(start);
+			int last = start;
+			while (outDegrees[last] == 1) {
+				int next = getOnlyTo(last);
+				if ((next == start) || isDone[next] || (inDegrees[next] != 1))
+					break;
+				if (merString == null)
+					merString = new MerString(getId(start), vertexMerLength);
+				MerString nextMerString = getMerString(next);
+				if (nextMerString == null)
+					nextMerString = new MerString(getId(next), vertexMerLength);
+				merString.merge(nextMerString, vertexMerLength - 1);
+				isDone[next] = true;
+				last = next;
+			}
+			
+			int numEdges = 0;
+			for (int e = graph.getEdgeBegin(last); e < graph.getEdgeEnd(last); e++) {
+				for (int i = 0; i < graph.getEdgeMultiple(e); i++) {
+					if (numEdges == edges.length)
+						edges = Arrays.copyOf(edges, 2 * numEdges);
+					edges[numEdges++] = getId(graph.getEdgeTo(e));
+				}
+			}
+			
+			boolean isBranch = ((inDegrees[start] > 1) || (outDegrees[last] > 1));
+			result.add(getId(start), inDegrees[start] == 0, outDegrees[last] == 0,
+					isBranch, edges, numEdges, merString);
+			
+			return edges;
+		}
+		
+		// Returns the ID of the specified row.
+		
+		private int getId(int row) {
+			return (vertices != null) ? vertices.getId(row) : ids[row];
+		}
+		
+		// Returns the MerString of the specified row, or null if it is just the 
+		// (k-1)-mer of the ID.
+		
+		private MerString getMerString(int row) {
+			return (vertices != null) ? vertices.getMerString(row) : null;
+		}
+		
+		// Returns the row with an edge with a nonzero multiple to the specified row,
+		// which has one such edge in.
+		
+		private int getOnlyFrom(int row) {
+			for (int e = transpose.getEdgeBegin(row); e < transpose.getEdgeEnd(row); e++) {
+				int from = transpose.getEdgeTo(e);
+				if (graph.getEdgeMultiple(graph.findEdge(from, row)) > 0)
+					return from;
+			}
+			return -1;
+		}
+		
+		// Returns the row to which the specified row, which has one edge out with a
+		// nonzero multiple, has that edge.
+		
+		private int getOnlyTo(int row) {
+			for (int e = graph.getEdgeBegin(row); e < graph.getEdgeEnd(row); e++)
+				if (graph.getEdgeMultiple(e) > 0)
+					return graph.getEdgeTo(e);
+			return -1;
+		}
+		
+		private MRCompressedVertices vertices;
+		private int[] ids;
+		private int numRows;
+		private int vertexMerLength;
+		private CompactDigraph graph;
+		private CompactDigraph transpose;
+		private int[] inDegrees;
+		private int[] outDegrees;
+		private boolean[] isLosers;
+	}
+	
+}
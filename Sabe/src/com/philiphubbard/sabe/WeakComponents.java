@@ -0,0 +1,165 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+// The weakly-connected components of a CompactDigraph: vertices V and W are in
+// the same weakly-connected component if there is a path between them when the
+// directions of the edges are ignored.  The components are found with a
+// union-find structure over an int array, in time nearly linear in the size of
+// the graph.
+//
+// Components are numbered from 0 in the order of their lowest vertex.  The
+// vertices of each component are stored contiguously, in ascending order, with
+// the vertices of component c at getVertex(i) for i from getVertexBegin(c) up to
+// but not including getVertexEnd(c).  The position of a vertex within its 
+// component is its local index, which is its index in the subgraph returned by
+// createSubgraph().
+
+public class WeakComponents {
+	
+	// Find the components of the graph.  If isPresent is not null, only vertices
+	// with a true value in isPresent are included in components (and edges to or
+	// from other vertices are ignored); otherwise, all vertices are included.
+	
+	public WeakComponents(CompactDigraph graph, boolean[] isPresent) {
+		this.graph = graph;
+		int numVertices = graph.getVertexCapacity();
+		
+		// Union-find, with path halving and union by index.
+		
+		int[] parents = new int[numVertices];
+		for (int v = 0; v < numVertices; v++)
+			parents[v] = v;
+		for (int v = 0; v < numVertices; v++) {
+			if ((isPresent != null) && !isPresent[v])
+				continue;
+			for (int e = graph.getEdgeBegin(v); e < graph.getEdgeEnd(v); e++) {
+				int w = graph.getEdgeTo(e);
+				if ((graph.getEdgeMultiple(e) == 0) || ((isPresent != null) && !isPresent[w]))
+					continue;
+				int rv = find(parents, v);
+				int rw = find(parents, w);
+				if (rv < rw)
+					parents[rw] = rv;
+				else if (rw < rv)
+					parents[rv] = rw;
+			}
+		}
+		
+		// Since a root is the lowest vertex in its set, visiting the vertices in
+		// ascending order numbers the components in order of their lowest vertex.
+		
+		components = new int[numVertices];
+		int numPresent = 0;
+		numComponents = 0;
+		for (int v = 0; v < numVertices; v++) {
+			if ((isPresent != null) && !isPresent[v]) {
+				components[v] = -1;
+				continue;
+			}
+			int root = find(parents, v);
+			components[v] = (root == v) ? numComponents++ : components[root];
+			numPresent++;
+		}
+		
+		// Counting sort of the vertices by component.
+		
+		vertexBegins = new int[numComponents + 1];
+		for (int v = 0; v < numVertices; v++)
+			if (components[v] != -1)
+				vertexBegins[components[v] + 1]++;
+		for (int c = 0; c < numComponents; c++)
+			vertexBegins[c + 1] += vertexBegins[c];
+		
+		vertices = new int[numPresent];
+		localIndices = parents;
+		int[] next = new int[numComponents];
+		for (int v = 0; v < numVertices; v++) {
+			int c = components[v];
+			if (c != -1) {
+				localIndices[v] = next[c];
+				vertices[vertexBegins[c] + next[c]++] = v;
+			}
+			else {
+				localIndices[v] = -1;
+			}
+		}
+	}
+	
+	// Returns the number of components.
+	
+	public int getNumComponents() {
+		return numComponents;
+	}
+	
+	// Returns the component containing vertex v, or -1 if v is not present.
+	
+	public int getComponent(int v) {
+		return components[v];
+	}
+	
+	// The vertices of component c are getVertex(i) for i from getVertexBegin(c) up
+	// to but not including getVertexEnd(c).
+	
+	public int getVertexBegin(int c) {
+		return vertexBegins[c];
+	}
+	
+	public int getVertexEnd(int c) {
+		return vertexBegins[c + 1];
+	}
+	
+	public int getVertex(int i) {
+		return vertices[i];
+	}
+	
+	// Returns the index of vertex v within its component, or -1 if v is not present.
+	
+	public int getLocalIndex(int v) {
+		return localIndices[v];
+	}
+	
+	// Returns the subgraph of component c, whose vertex indices are the local indices.
+	
+	public CompactDigraph createSubgraph(int c) {
+		return graph.subgraph(vertices, vertexBegins[c], vertexBegins[c + 1], localIndices);
+	}
+	
+	//
+	
+	private static int find(int[] parents, int v) {
+		while (parents[v] != v) {
+			parents[v] = parents[parents[v]];
+			v = parents[v];
+		}
+		return v;
+	}
+	
+	private CompactDigraph graph;
+	private int numComponents;
+	private int[] components;
+	private int[] vertexBegins;
+	private int[] vertices;
+	private int[] localIndices;
+	
+}
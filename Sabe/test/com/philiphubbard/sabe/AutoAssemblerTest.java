@@ -0,0 +1,117 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+
+// Confidence tests for the AutoAssembler class, which also cover LocalAssembler.run().
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class AutoAssemblerTest {
+
+	public static void test() {
+		System.out.println("Testing AutoAssembler:");
+		
+		try {
+			FileSystem fileSystem = FileSystem.get(new Configuration());
+			
+			Path dirPath = new Path("sabe.AutoAssemblerTest");
+			if (fileSystem.exists(dirPath))
+				fileSystem.delete(dirPath, true);
+			Path inputPath = new Path(dirPath, "in");
+			Path outputPath = new Path(dirPath, "out");
+			
+			// The reads of MRAssemblerTest2, and a file that Hadoop would skip.
+			
+			int numBytes = 0;
+			int numReads = 0;
+			FSDataOutputStream out = fileSystem.create(new Path(inputPath, "part-00000"));
+			for (Text read : MRAssemblerTest2.getReads()) {
+				byte[] bytes = read.copyBytes();
+				out.write(bytes);
+				numBytes += bytes.length;
+				if (read.toString().endsWith("\n"))
+					numReads++;
+			}
+			out.close();
+			out = fileSystem.create(new Path(inputPath, "_SUCCESS"));
+			out.writeBytes("NNNN\n");
+			out.close();
+			
+			AutoAssembler assembler = 
+					new AutoAssembler(MRAssemblerTest2.MER_LENGTH, MRAssemblerTest2.COVERAGE);
+			
+			// The whole input fits in the sample, so the estimate is exact.
+			
+			AutoAssembler.Estimate estimate = assembler.estimate(inputPath);
+			assert (estimate.getNumBytes() == numBytes);
+			assert (estimate.getNumReads() == numReads);
+			assert (estimate.getNumDistinctMers() > 0);
+			assert (estimate.getMemory() > numBytes);
+			
+			// A small sample is scaled up to the size of the input.
+			
+			assembler.setSampleBytes(100);
+			AutoAssembler.Estimate scaled = assembler.estimate(inputPath);
+			assert (scaled.getNumBytes() == numBytes);
+			assert (scaled.getNumReads() > 0);
+			assert (scaled.getNumDistinctMers() > 0);
+			assembler.setSampleBytes(1 << 20);
+			
+			assert (assembler.choose(inputPath) == AutoAssembler.Engine.LOCAL);
+			assembler.setMemoryLimit(estimate.getMemory() - 1);
+			assert (assembler.choose(inputPath) == AutoAssembler.Engine.MAPREDUCE);
+			assembler.setMemoryLimit(Long.MAX_VALUE);
+			assert (new AutoAssembler(16, MRAssemblerTest2.COVERAGE).choose(inputPath) == 
+					AutoAssembler.Engine.MAPREDUCE);
+			
+			// The in-JVM run writes the same output as MRAssembler.
+			
+			assert (assembler.run(inputPath, outputPath));
+			BufferedReader reader = 
+					new BufferedReader(new InputStreamReader(fileSystem.open(outputPath)));
+			assert (reader.readLine().equals(MRAssemblerTest2.EXPECTED));
+			assert (reader.readLine() == null);
+			reader.close();
+			
+			fileSystem.delete(dirPath, true);
+		}
+		catch (Exception exception) {
+			System.out.println(exception.getMessage());
+			assert (false);
+		}
+		
+		System.out.println("AutoAssembler passed.");
+	}
+
+}
@@ -52,6 +52,40 @@ public class BasicAssemblerTest {
 		System.out.println(seq);
 		
 		assert ((seq.equals("ATGGCGTGCA")) || (seq.equals("ATGCGTGGCA")));
+		
+		// One assembler reused, with reset() between assemblies, gives the same results
+		// as a new assembler for each, with nothing left from the earlier reads.
+		
+		ArrayList<String> others = new ArrayList<String>();
+		others.add("CCTTGCTG");
+		others.add("TGCTGTGTC");
+		others.add("GTGTCCA");
+		
+		BasicAssembler reused = new BasicAssembler(2);
+		for (int i = 0; i < 3; i++) {
+			reused.addReads(reads);
+			assert (reused.assemble().equals(results));
+			reused.reset();
+			
+			reused.addReads(others);
+			assert (reused.assemble().equals(new BasicAssembler(others, 2).assemble()));
+			reused.reset();
+		}
+		
+		reused.addReads(new ArrayList<String>());
+		assert (reused.assemble().isEmpty());
+		
+		// After an assembly whose edges grow the buffers, resetAndShrink() leaves the
+		// assembler as good as new.
+		
+		ArrayList<String> large = new ArrayList<String>();
+		for (int i = 0; i < 50; i++)
+			large.add("ACGTACGTAC");
+		reused.addReads(large);
+		assert (reused.assemble().equals(new BasicAssembler(large, 2).assemble()));
+		reused.resetAndShrink();
+		reused.addReads(reads);
+		assert (reused.assemble().equals(results));
 
 		System.out.println("BasicAssembler passed.");
 	}
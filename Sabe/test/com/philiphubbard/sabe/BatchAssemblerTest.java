@@ -0,0 +1,204 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+// Confidence tests for the BatchAssembler class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class BatchAssemblerTest {
+
+	public static void test() {
+		System.out.println("Testing BatchAssembler:");
+		
+		test1();
+		test2();
+		test3();
+		test4();
+		
+		System.out.println("BatchAssembler passed.");
+	}
+	
+	private static final int NUM_JOBS = 40;
+	
+	// The reads of a sample: every third one is a different sequence.
+	
+	private static ArrayList<String> reads(int i) {
+		ArrayList<String> reads = new ArrayList<String>();
+		if (i % 3 == 0) {
+			reads.add("CCTTGCTG");
+			reads.add("TGCTGTGTC");
+			reads.add("GTGTCCA");
+		}
+		else {
+			reads.add("ATG");
+			reads.add("TGG");
+			reads.add("GGC");
+			reads.add("GCA");
+		}
+		return reads;
+	}
+	
+	// An iterator over the jobs that records how many jobs have been taken but not
+	// yet returned to the consumer.
+	
+	private static class Jobs implements Iterator<BatchAssembler.Job> {
+		public boolean hasNext() {
+			return (next < NUM_JOBS);
+		}
+		
+		public BatchAssembler.Job next() {
+			BatchAssembler.Job job = new BatchAssembler.Job("sample" + next, reads(next));
+			next++;
+			maxOutstanding = Math.max(maxOutstanding, next - numAccepted);
+			return job;
+		}
+		
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		int next;
+		int numAccepted;
+		int maxOutstanding;
+	}
+	
+	// Each sample gives the same result as a BasicAssembler of its own.
+	
+	private static void test1() {
+		final ArrayList<String> expected0 = new BasicAssembler(reads(0), 2).assemble();
+		final ArrayList<String> expected1 = new BasicAssembler(reads(1), 2).assemble();
+		final HashMap<String, ArrayList<String>> results = new HashMap<String, ArrayList<String>>();
+		
+		BatchAssembler batch = new BatchAssembler(2, 4, 1 << 20);
+		try {
+			int n = batch.run(new Jobs(), new BatchAssembler.Consumer() {
+				public void accept(String sampleId, ArrayList<String> contigs) {
+					assert (!results.containsKey(sampleId));
+					results.put(sampleId, contigs);
+				}
+			});
+			assert (n == NUM_JOBS);
+		}
+		catch (IOException exception) {
+			assert (false);
+		}
+		
+		assert (results.size() == NUM_JOBS);
+		for (int i = 0; i < NUM_JOBS; i++) {
+			ArrayList<String> contigs = results.get("sample" + i);
+			assert (contigs.equals((i % 3 == 0) ? expected0 : expected1));
+		}
+	}
+	
+	// With a budget that leaves less than any sample after the (k-1)-mer tables, the 
+	// samples run one at a time, and at most one more job is taken from the iterator 
+	// while one is running.
+	
+	private static void test2() {
+		final Jobs jobs = new Jobs();
+		BatchAssembler batch = new BatchAssembler(2, 4, BatchAssembler.getTableBytes(2, 4) + 1);
+		try {
+			int n = batch.run(jobs, new BatchAssembler.Consumer() {
+				public void accept(String sampleId, ArrayList<String> contigs) {
+					jobs.numAccepted++;
+				}
+			});
+			assert (n == NUM_JOBS);
+		}
+		catch (IOException exception) {
+			assert (false);
+		}
+		assert (jobs.maxOutstanding <= 2);
+	}
+	
+	// A sample with an illegal character fails the run with its ID in the message.
+	
+	private static void test3() {
+		ArrayList<BatchAssembler.Job> jobs = new ArrayList<BatchAssembler.Job>();
+		jobs.add(new BatchAssembler.Job("good", reads(1)));
+		ArrayList<String> bad = new ArrayList<String>();
+		bad.add("ACNGT");
+		jobs.add(new BatchAssembler.Job("bad", bad));
+		
+		BatchAssembler batch = new BatchAssembler(2, 1, 1 << 20);
+		boolean threw = false;
+		try {
+			batch.run(jobs.iterator(), new BatchAssembler.Consumer() {
+				public void accept(String sampleId, ArrayList<String> contigs) {
+				}
+			});
+		}
+		catch (IOException exception) {
+			threw = exception.getMessage().contains("bad");
+		}
+		assert (threw);
+	}
+	
+	// A budget that does not cover the (k-1)-mer tables of the threads is rejected, and
+	// samples larger than a thread's share of the budget give the same results as 
+	// the small ones that follow them, after the thread's buffers are shrunk.
+	
+	private static void test4() {
+		assert (BatchAssembler.getTableBytes(15, 4) == 4 * (4L << 30));
+		
+		boolean threw = false;
+		try {
+			new BatchAssembler(2, 4, BatchAssembler.getTableBytes(2, 4) - 1);
+		}
+		catch (IllegalArgumentException exception) {
+			threw = true;
+		}
+		assert (threw);
+		
+		final ArrayList<String> expected0 = new BasicAssembler(reads(0), 2).assemble();
+		final ArrayList<String> expected1 = new BasicAssembler(reads(1), 2).assemble();
+		final HashMap<String, ArrayList<String>> results = new HashMap<String, ArrayList<String>>();
+		
+		BatchAssembler batch = new BatchAssembler(2, 2, BatchAssembler.getTableBytes(2, 2) + 
+				BatchAssembler.estimateMemory(reads(1)));
+		try {
+			int n = batch.run(new Jobs(), new BatchAssembler.Consumer() {
+				public void accept(String sampleId, ArrayList<String> contigs) {
+					results.put(sampleId, contigs);
+				}
+			});
+			assert (n == NUM_JOBS);
+		}
+		catch (IOException exception) {
+			assert (false);
+		}
+		
+		for (int i = 0; i < NUM_JOBS; i++) {
+			ArrayList<String> contigs = results.get("sample" + i);
+			assert (contigs.equals((i % 3 == 0) ? expected0 : expected1));
+		}
+	}
+
+}
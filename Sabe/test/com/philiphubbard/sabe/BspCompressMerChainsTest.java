@@ -0,0 +1,172 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+
+import com.philiphubbard.digraph.MRVertex;
+
+// Confidence tests for the BspCompressMerChains class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class BspCompressMerChainsTest {
+
+	public static void test() {
+		System.out.println("Testing BspCompressMerChains:");
+		
+		for (int numThreads = 1; numThreads <= 3; numThreads++) {
+			test1(numThreads);
+			test2(numThreads);
+		}
+		test3();
+		
+		System.out.println("BspCompressMerChains passed.");
+	}
+	
+	private static final String SEQUENCE = "CTTGCTGTGTCCACCCCATCGGACTGGCATTT";
+	private static final int MER_LENGTH = 4;
+	
+	// The chain vertices of the sequence, whose 4-mers are all distinct, with the last
+	// 4-mer pointing to the branch vertex "TTTA", which is not in the list.
+	
+	private static ArrayList<MRMerVertex> chain(Configuration config, String sequence) {
+		ArrayList<MRMerVertex> vertices = new ArrayList<MRMerVertex>();
+		for (int i = 0; i + MER_LENGTH <= sequence.length(); i++) {
+			MRMerVertex vertex = 
+					new MRMerVertex(Mer.toInt(sequence.substring(i, i + MER_LENGTH)), config);
+			if (i + MER_LENGTH < sequence.length())
+				vertex.addEdgeTo(Mer.toInt(sequence.substring(i + 1, i + 1 + MER_LENGTH)));
+			vertices.add(vertex);
+		}
+		return vertices;
+	}
+	
+	private static Configuration config() {
+		Configuration config = new Configuration();
+		config.setInt(MRMerVertex.CONFIG_MER_LENGTH, MER_LENGTH);
+		return config;
+	}
+	
+	// A linear chain compresses to one vertex with the whole sequence, keeping its 
+	// edge to the branch vertex.
+	
+	private static void test1(int numThreads) {
+		ArrayList<MRMerVertex> vertices = chain(config(), SEQUENCE + "A");
+		int tail = vertices.size() - 1;
+		vertices.remove(tail);
+		
+		ArrayList<MRMerVertex> compressed = BspCompressMerChains.compress(vertices, numThreads);
+		assert (compressed.size() == 1);
+		MRMerVertex vertex = compressed.get(0);
+		assert (vertex.getId() == Mer.toInt(SEQUENCE.substring(0, MER_LENGTH)));
+		assert (vertex.getMerString().toDisplayString().equals(SEQUENCE));
+		MRVertex.AdjacencyIterator toIt = vertex.createToAdjacencyIterator();
+		assert (toIt.begin() == Mer.toInt("TTTA"));
+		assert (toIt.next() == MRVertex.NO_VERTEX);
+	}
+	
+	// A cycle of chain vertices compresses to one vertex with an edge to itself, and 
+	// two chains remain separate.
+	
+	private static void test2(int numThreads) {
+		Configuration config = config();
+		String cycle = SEQUENCE.substring(0, 20);
+		ArrayList<MRMerVertex> vertices = 
+				chain(config, cycle + cycle.substring(0, MER_LENGTH));
+		vertices.remove(vertices.size() - 1);
+		vertices.addAll(chain(config, "AAAAC"));
+		
+		ArrayList<MRMerVertex> compressed = BspCompressMerChains.compress(vertices, numThreads);
+		assert (compressed.size() == 2);
+		for (MRMerVertex vertex : compressed) {
+			String mers = vertex.getMerString().toDisplayString();
+			if (mers.equals("AAAAC"))
+				continue;
+			assert (mers.length() == cycle.length() + MER_LENGTH - 1);
+			assert ((cycle + cycle + cycle).contains(mers));
+			MRVertex.AdjacencyIterator toIt = vertex.createToAdjacencyIterator();
+			assert (toIt.begin() == vertex.getId());
+		}
+	}
+	
+	// The vertices are read from "part" files and written to one "part" file that 
+	// MRCompressedVertices can read.
+	
+	private static void test3() {
+		try {
+			Configuration config = config();
+			FileSystem fileSystem = FileSystem.getLocal(config);
+			
+			Path dirPath = new Path("sabe.BspCompressMerChainsTest");
+			if (fileSystem.exists(dirPath))
+				fileSystem.delete(dirPath, true);
+			Path inputPath = new Path(dirPath, "chain");
+			Path outputPath = new Path(dirPath, "chainCompress");
+			
+			ArrayList<MRMerVertex> vertices = chain(config, SEQUENCE);
+			int half = vertices.size() / 2;
+			writePart(fileSystem, config, new Path(inputPath, "part-r-00000"), 
+					vertices.subList(0, half));
+			writePart(fileSystem, config, new Path(inputPath, "part-r-00001"), 
+					vertices.subList(half, vertices.size()));
+			
+			int numSupersteps = 
+					BspCompressMerChains.run(config, fileSystem, inputPath, outputPath);
+			assert (numSupersteps > 1);
+			
+			MRCompressedVertices compressed = MRCompressedVertices.read(config, fileSystem, outputPath);
+			assert (compressed.size() == 1);
+			assert (compressed.getMerString(0).toDisplayString().equals(SEQUENCE));
+			
+			fileSystem.delete(dirPath, true);
+		}
+		catch (IOException exception) {
+			System.out.println(exception.getMessage());
+			assert (false);
+		}
+	}
+	
+	private static void writePart(FileSystem fileSystem, Configuration config, Path path, 
+			List<MRMerVertex> vertices) throws IOException {
+		SequenceFile.Writer writer = SequenceFile.createWriter(config, 
+				SequenceFile.Writer.file(fileSystem.makeQualified(path)),
+				SequenceFile.Writer.keyClass(IntWritable.class), 
+				SequenceFile.Writer.valueClass(BytesWritable.class));
+		for (MRMerVertex vertex : vertices)
+			writer.append(new IntWritable(vertex.getId()), 
+					vertex.toWritable(MRVertex.EdgeFormat.EDGES_TO));
+		writer.close();
+	}
+
+}
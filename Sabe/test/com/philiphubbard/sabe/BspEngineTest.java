@@ -0,0 +1,146 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+// Confidence tests for the BspEngine class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class BspEngineTest {
+
+	public static void test() {
+		System.out.println("Testing BspEngine:");
+		
+		for (int numThreads = 1; numThreads <= 3; numThreads++) {
+			test1(numThreads);
+			test2(numThreads);
+		}
+		
+		System.out.println("BspEngine passed.");
+	}
+	
+	// Label the connected components of an undirected graph by propagating the minimum
+	// ID, with each vertex halting until a smaller label arrives.  The edges are 
+	// 0-1, 1-2, 2-3 and 10-11, 11-12, plus an edge from 3 to 99, which is not a vertex,
+	// so its messages are dropped.
+	
+	private static void test1(int numThreads) {
+		final HashMap<Integer, int[]> neighbors = new HashMap<Integer, int[]>();
+		neighbors.put(0, new int[] { 1 });
+		neighbors.put(1, new int[] { 0, 2 });
+		neighbors.put(2, new int[] { 1, 3 });
+		neighbors.put(3, new int[] { 2, 99 });
+		neighbors.put(10, new int[] { 11 });
+		neighbors.put(11, new int[] { 10, 12 });
+		neighbors.put(12, new int[] { 11 });
+		
+		BspEngine<Integer, Integer> engine = new BspEngine<Integer, Integer>(3, numThreads);
+		for (int id : neighbors.keySet())
+			engine.addVertex(id, id);
+		
+		boolean threw = false;
+		try {
+			engine.addVertex(0, 0);
+		}
+		catch (IllegalArgumentException exception) {
+			threw = true;
+		}
+		assert (threw);
+		
+		int numSupersteps = engine.run(new BspEngine.Computation<Integer, Integer>() {
+			public void compute(BspEngine.Vertex<Integer, Integer> vertex, 
+					ArrayList<Integer> messages) {
+				int label = vertex.getValue();
+				for (int message : messages)
+					label = Math.min(label, message);
+				if ((vertex.getSuperstep() == 0) || (label < vertex.getValue())) {
+					vertex.setValue(label);
+					for (int to : neighbors.get(vertex.getId()))
+						vertex.sendMessage(to, label);
+				}
+				vertex.voteToHalt();
+			}
+		}, 100);
+		
+		// The longest path, from 3 to 0, takes three supersteps, plus one to send 
+		// to 3 and one in which nothing changes.
+		
+		assert (numSupersteps == 5);
+		
+		ArrayList<BspEngine.Vertex<Integer, Integer>> vertices = engine.getVertices();
+		assert (vertices.size() == 7);
+		for (BspEngine.Vertex<Integer, Integer> vertex : vertices) {
+			if (vertex.getId() < 10)
+				assert (vertex.getValue() == 0);
+			else
+				assert (vertex.getValue() == 10);
+		}
+		assert (engine.getNumMessages() > 0);
+	}
+	
+	// Vertices that remove themselves do not receive messages, and do not keep their
+	// values, and a run stops after maxSupersteps even if vertices are still active.
+	
+	private static void test2(int numThreads) {
+		BspEngine<Integer, Integer> engine = new BspEngine<Integer, Integer>(4, numThreads);
+		for (int id = 0; id < 20; id++)
+			engine.addVertex(id, 0);
+		
+		final List<BspEngine.Vertex<Integer, Integer>> removed = 
+				Collections.synchronizedList(new ArrayList<BspEngine.Vertex<Integer, Integer>>());
+		
+		BspEngine.Computation<Integer, Integer> computation = 
+				new BspEngine.Computation<Integer, Integer>() {
+			public void compute(BspEngine.Vertex<Integer, Integer> vertex, 
+					ArrayList<Integer> messages) {
+				vertex.setValue(vertex.getValue() + messages.size());
+				if ((vertex.getSuperstep() == 0) && (vertex.getId() % 2 == 1)) {
+					vertex.remove();
+					removed.add(vertex);
+				}
+				else
+					vertex.sendMessage(vertex.getId() ^ 1, 1);
+			}
+		};
+		
+		assert (engine.run(computation, 3) == 3);
+		
+		ArrayList<BspEngine.Vertex<Integer, Integer>> vertices = engine.getVertices();
+		assert (vertices.size() == 10);
+		for (BspEngine.Vertex<Integer, Integer> vertex : vertices) {
+			assert (vertex.getId() % 2 == 0);
+			assert (vertex.getValue() == 0);
+		}
+		
+		assert (removed.size() == 10);
+		for (BspEngine.Vertex<Integer, Integer> vertex : removed)
+			assert (vertex.getValue() == null);
+	}
+
+}
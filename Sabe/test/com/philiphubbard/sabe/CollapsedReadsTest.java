@@ -0,0 +1,157 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+
+import org.apache.hadoop.io.Text;
+
+// Confidence tests for the CollapsedReads and MRCollapseReads classes.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class CollapsedReadsTest {
+
+	public static void test() {
+		System.out.println("Testing CollapsedReads:");
+		
+		test1();
+		test2();
+		test3();
+		
+		System.out.println("CollapsedReads passed.");
+	}
+	
+	// Identical reads are collapsed, and reads that differ only in length are not, 
+	// even though "A" packs to zero bits.
+	
+	private static void test1() {
+		String longRead = "ACGTTGCAACGTTGCAACGTTGCAACGTTGCAGGT";
+		ArrayList<String> reads = new ArrayList<String>();
+		reads.add("ACGT");
+		reads.add("A");
+		reads.add("AA");
+		reads.add("ACGT");
+		reads.add(longRead);
+		reads.add("");
+		reads.add(longRead);
+		reads.add("ACGT");
+		
+		CollapsedReads collapsed = new CollapsedReads(reads);
+		assert (collapsed.size() == 4);
+		assert (collapsed.getNumReads() == 7);
+		assert (collapsed.getRead(0).equals("ACGT"));
+		assert (collapsed.getCount(0) == 3);
+		assert (collapsed.getRead(1).equals("A"));
+		assert (collapsed.getCount(1) == 1);
+		assert (collapsed.getRead(2).equals("AA"));
+		assert (collapsed.getCount(2) == 1);
+		assert (collapsed.getRead(3).equals(longRead));
+		assert (collapsed.getCount(3) == 2);
+		
+		// Enough distinct reads to make the table grow several times.
+		
+		CollapsedReads many = new CollapsedReads();
+		int n = 1000;
+		for (int r = 0; r < 3; r++)
+			for (int i = 0; i < n; i++)
+				many.add(Mer.fromInt(i, 6) + longRead, 1);
+		assert (many.size() == n);
+		assert (many.getNumReads() == 3 * n);
+		for (int i = 0; i < n; i++) {
+			assert (many.getRead(i).equals(Mer.fromInt(i, 6) + longRead));
+			assert (many.getCount(i) == 3);
+		}
+		
+		boolean threw = false;
+		try {
+			collapsed.add("ACGTN", 1);
+		}
+		catch (IllegalArgumentException exception) {
+			threw = true;
+		}
+		assert (threw);
+	}
+	
+	// The line format, and the keys of MRCollapseReads.
+	
+	private static void test2() {
+		String line = CollapsedReads.toLine("ACGTT", 12);
+		assert (line.equals("ACGTT\t12"));
+		assert (CollapsedReads.parseRead(line).equals("ACGTT"));
+		assert (CollapsedReads.parseCount(line) == 12);
+		assert (CollapsedReads.parseRead("ACGTT").equals("ACGTT"));
+		assert (CollapsedReads.parseCount("ACGTT") == 1);
+		
+		CollapsedReads collapsed = new CollapsedReads();
+		collapsed.addLine(line);
+		collapsed.addLine("ACGTT");
+		assert (collapsed.size() == 1);
+		assert (collapsed.getCount(0) == 13);
+		
+		boolean threw = false;
+		try {
+			CollapsedReads.parseCount("ACGTT\t0");
+		}
+		catch (IllegalArgumentException exception) {
+			threw = true;
+		}
+		assert (threw);
+		
+		for (String read : new String[] { "", "G", "ACGTA", "TTTTTTTTGCA" }) {
+			byte[] key = MRCollapseReads.toKey(7, read);
+			assert (MRCollapseReads.getSampleOfKey(key) == 7);
+			assert (MRCollapseReads.getReadOfKey(key).equals(read));
+		}
+	}
+	
+	// Collapsing gives the same sequences from LocalAssembler and BasicAssembler.
+	
+	private static void test3() {
+		StringBuilder input = new StringBuilder();
+		for (Text piece : MRAssemblerTest2.getReads())
+			input.append(piece.toString());
+		ArrayList<String> reads = new ArrayList<String>();
+		for (String read : input.toString().split("\n"))
+			reads.add(read);
+		
+		LocalAssembler local = 
+				new LocalAssembler(MRAssemblerTest2.MER_LENGTH, MRAssemblerTest2.COVERAGE);
+		local.setCollapseDuplicates(true);
+		ArrayList<String> result = local.assemble(reads);
+		assert (result.size() == 1);
+		assert (result.get(0).equals(MRAssemblerTest2.EXPECTED));
+		
+		ArrayList<String> basicReads = new ArrayList<String>();
+		basicReads.add("CCTTGCTG");
+		basicReads.add("TGCTGTGTC");
+		basicReads.add("CCTTGCTG");
+		basicReads.add("GTGTCCA");
+		ArrayList<String> expected = new BasicAssembler(basicReads, 2).assemble();
+		BasicAssembler basic = new BasicAssembler(2);
+		basic.setCollapseDuplicates(true);
+		basic.addReads(basicReads);
+		assert (basic.assemble().equals(expected));
+	}
+
+}
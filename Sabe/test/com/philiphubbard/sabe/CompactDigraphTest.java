@@ -0,0 +1,119 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import com.philiphubbard.digraph.BasicDigraph;
+import com.philiphubbard.digraph.Digraph;
+
+// Confidence tests for the CompactDigraph class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class CompactDigraphTest {
+
+	public static void test() {
+		System.out.println("Testing CompactDigraph:");
+		
+		// Edges added out of order, with edge multiples added both one at a time
+		// and several at once.
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(5, 2);
+		builder.addEdge(2, 4);
+		builder.addEdge(0, 3);
+		builder.addEdge(0, 1);
+		builder.addEdge(0, 3, 4);
+		builder.addEdge(3, 0);
+		builder.addEdge(0, 1);
+		builder.addEdge(2, 1, 3);
+		CompactDigraph graph = builder.build();
+		
+		assert (graph.getVertexCapacity() == 5);
+		assert (graph.getNumEdges() == 5);
+		
+		assert (graph.getEdgeEnd(0) - graph.getEdgeBegin(0) == 2);
+		int e01 = graph.getEdgeBegin(0);
+		int e03 = e01 + 1;
+		assert (graph.getEdgeTo(e01) == 1);
+		assert (graph.getEdgeMultiple(e01) == 2);
+		assert (graph.getEdgeTo(e03) == 3);
+		assert (graph.getEdgeMultiple(e03) == 5);
+		assert (graph.getOutDegree(0) == 7);
+		
+		assert (graph.getEdgeBegin(1) == graph.getEdgeEnd(1));
+		assert (graph.isSink(1));
+		assert (graph.isSink(4));
+		
+		assert (graph.findEdge(0, 3) == e03);
+		assert (graph.findEdge(2, 4) != -1);
+		assert (graph.getEdgeMultiple(graph.findEdge(2, 1)) == 3);
+		assert (graph.findEdge(2, 3) == -1);
+		assert (graph.findEdge(1, 0) == -1);
+		
+		graph.setEdgeMultiple(graph.findEdge(3, 0), 0);
+		assert (graph.isSink(3));
+		assert (graph.getOutDegree(3) == 0);
+		
+		// The transpose has the reversed edges, with the same edge multiples.
+		
+		CompactDigraph transpose = graph.transpose();
+		assert (transpose.getNumEdges() == 5);
+		assert (transpose.getEdgeMultiple(transpose.findEdge(3, 0)) == 5);
+		assert (transpose.getEdgeMultiple(transpose.findEdge(1, 0)) == 2);
+		assert (transpose.getEdgeMultiple(transpose.findEdge(1, 2)) == 3);
+		assert (transpose.getEdgeMultiple(transpose.findEdge(0, 3)) == 0);
+		assert (transpose.getEdgeTo(transpose.getEdgeBegin(1)) == 0);
+		assert (transpose.isSink(2));
+		
+		// Conversion to and from digraph.BasicDigraph.
+		
+		BasicDigraph basic = graph.toBasicDigraph(true);
+		assert (basic.getOutDegree(0) == 7);
+		
+		BasicDigraph distinct = graph.toBasicDigraph(false);
+		assert (distinct.getOutDegree(0) == 2);
+		
+		BasicDigraph other = new BasicDigraph(3, Digraph.EdgeMultiples.ENABLED);
+		other.addEdge(0, new BasicDigraph.Edge(2));
+		other.addEdge(0, new BasicDigraph.Edge(1));
+		other.addEdge(0, new BasicDigraph.Edge(2));
+		other.addEdge(1, new BasicDigraph.Edge(2));
+		CompactDigraph converted = CompactDigraph.fromBasicDigraph(other);
+		assert (converted.getNumEdges() == 3);
+		assert (converted.getEdgeMultiple(converted.findEdge(0, 2)) == 2);
+		assert (converted.getEdgeMultiple(converted.findEdge(0, 1)) == 1);
+		assert (converted.getEdgeMultiple(converted.findEdge(1, 2)) == 1);
+		assert (converted.isSink(2));
+		
+		boolean threw = false;
+		try {
+			builder.addEdge(0, 5);
+		}
+		catch (IllegalArgumentException exception) {
+			threw = true;
+		}
+		assert (threw);
+		
+		System.out.println("CompactDigraph passed.");
+	}
+
+}
@@ -0,0 +1,118 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.Random;
+
+import com.philiphubbard.digraph.BasicDigraph;
+import com.philiphubbard.digraph.Digraph;
+import com.philiphubbard.digraph.StrongComponents;
+
+// Confidence tests for the CompactStrongComponents class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class CompactStrongComponentsTest {
+
+	public static void test() {
+		System.out.println("Testing CompactStrongComponents:");
+		
+		test1();
+		test2();
+		test3();
+		
+		System.out.println("CompactStrongComponents passed.");
+	}
+	
+	private static void test1() {
+		
+		// Components {0}, {1, 2, 3}, {4, 5} and {6}, where 6 is reachable only by an
+		// edge whose multiple is zero.
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(7);
+		builder.addEdge(0, 1);
+		builder.addEdge(1, 2);
+		builder.addEdge(2, 3);
+		builder.addEdge(3, 1);
+		builder.addEdge(3, 4);
+		builder.addEdge(4, 5);
+		builder.addEdge(5, 4);
+		builder.addEdge(5, 6);
+		builder.addEdge(6, 5);
+		CompactDigraph graph = builder.build();
+		graph.setEdgeMultiple(graph.findEdge(5, 6), 0);
+		
+		CompactStrongComponents components = new CompactStrongComponents(graph);
+		assert (components.getNumComponents() == 4);
+		assert (components.isStronglyReachable(1, 2));
+		assert (components.isStronglyReachable(1, 3));
+		assert (components.isStronglyReachable(4, 5));
+		assert (!components.isStronglyReachable(0, 1));
+		assert (!components.isStronglyReachable(3, 4));
+		assert (!components.isStronglyReachable(5, 6));
+	}
+	
+	private static void test2() {
+		
+		// A long path whose end loops back to its start, deep enough that a recursive
+		// search would overflow the call stack.
+		
+		int n = 1000000;
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(n + 1, n + 1);
+		for (int v = 0; v < n; v++)
+			builder.addEdge(v, v + 1);
+		builder.addEdge(n - 1, 1);
+		CompactDigraph graph = builder.build();
+		
+		CompactStrongComponents components = new CompactStrongComponents(graph);
+		assert (components.getNumComponents() == 3);
+		assert (components.isStronglyReachable(1, n - 1));
+		assert (!components.isStronglyReachable(0, 1));
+		assert (!components.isStronglyReachable(n - 1, n));
+	}
+	
+	private static void test3() {
+		
+		// A random graph, with the same results as digraph.StrongComponents.
+		
+		int n = 200;
+		Random random = new Random(7);
+		BasicDigraph basic = new BasicDigraph(n, Digraph.EdgeMultiples.ENABLED);
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(n);
+		for (int i = 0; i < 300; i++) {
+			int from = random.nextInt(n);
+			int to = random.nextInt(n);
+			basic.addEdge(from, new BasicDigraph.Edge(to));
+			builder.addEdge(from, to);
+		}
+		CompactDigraph graph = builder.build();
+		
+		CompactStrongComponents components = new CompactStrongComponents(graph);
+		StrongComponents<BasicDigraph.Edge> expected = 
+				new StrongComponents<BasicDigraph.Edge>(basic);
+		for (int v = 0; v < n; v++)
+			for (int w = 0; w < n; w++)
+				assert (components.isStronglyReachable(v, w) == expected.isStronglyReachable(v, w));
+	}
+
+}
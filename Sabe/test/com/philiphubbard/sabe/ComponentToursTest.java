@@ -0,0 +1,91 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+
+// Confidence tests for the ComponentTours class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class ComponentToursTest {
+
+	public static void test() {
+		System.out.println("Testing ComponentTours:");
+		
+		test1();
+		test2();
+		
+		System.out.println("ComponentTours passed.");
+	}
+	
+	// Each vertex's sequence is its index as a letter, so the sequence of a path is
+	// the letters of its vertices.
+	
+	private static class Letters implements ComponentTours.Sequences {
+		public void append(int vertex, boolean isFirst, StringBuilder seq) {
+			seq.append((char) ('a' + vertex));
+		}
+	}
+	
+	private static void test1() {
+		
+		// Two components with Euler paths, a path a -> b -> c and a cycle d -> e -> d,
+		// and one vertex f with no edges.  The results are in the order of the
+		// components, no matter how many threads are used.
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(6);
+		builder.addEdge(0, 1);
+		builder.addEdge(1, 2);
+		builder.addEdge(3, 4);
+		builder.addEdge(4, 3);
+		CompactDigraph graph = builder.build();
+		
+		for (int numThreads = 1; numThreads <= 4; numThreads++) {
+			ArrayList<String> result = ComponentTours.run(graph, null, new Letters(), numThreads);
+			assert (result.size() == 3);
+			assert (result.get(0).equals("abc"));
+			assert (result.get(1).equals("ded"));
+			assert (result.get(2).equals("f"));
+		}
+	}
+	
+	private static void test2() {
+		
+		// A component with no Euler path: a -> b, and b branching to c and d.  Its 
+		// unitigs are "ab", "bc" and "bd".
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(4);
+		builder.addEdge(0, 1);
+		builder.addEdge(1, 2);
+		builder.addEdge(1, 3);
+		CompactDigraph graph = builder.build();
+		
+		ArrayList<String> result = ComponentTours.run(graph, null, new Letters(), 2);
+		assert (result.size() == 3);
+		assert (result.contains("ab"));
+		assert (result.contains("bc"));
+		assert (result.contains("bd"));
+	}
+
+}
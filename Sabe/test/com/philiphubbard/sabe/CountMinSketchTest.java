@@ -0,0 +1,89 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+// Confidence tests for the CountMinSketch class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class CountMinSketchTest {
+
+	public static void test() {
+		System.out.println("Testing CountMinSketch:");
+		
+		CountMinSketch sketch = new CountMinSketch(1000, 4);
+		assert (sketch.getWidth() == 1024);
+		assert (sketch.getDepth() == 4);
+		assert (sketch.getNumBytes() == 4 * 1024 * 4);
+		assert (sketch.estimate(0) == 0);
+		
+		// With few keys in a wide sketch, the counts are exact.
+		
+		for (int i = 0; i < 10; i++)
+			for (int j = 0; j <= i; j++)
+				sketch.add(i << 20);
+		for (int i = 0; i < 10; i++)
+			assert (sketch.estimate(i << 20) == i + 1);
+		
+		// With many more keys than counters, the estimates are never low.
+		
+		CountMinSketch small = new CountMinSketch(16, 2);
+		int n = 1000;
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < i % 5; j++)
+				small.add(i);
+		for (int i = 0; i < n; i++)
+			assert (small.estimate(i) >= i % 5);
+		
+		small.clear();
+		for (int i = 0; i < n; i++)
+			assert (small.estimate(i) == 0);
+		
+		boolean threw = false;
+		try {
+			new CountMinSketch(0, 1);
+		}
+		catch (IllegalArgumentException exception) {
+			threw = true;
+		}
+		assert (threw);
+		
+		// Sizes whose number of counters would overflow an int are rejected, after
+		// the width is rounded up.
+		
+		int[][] sizes = { { 0x1 << 30, 4 }, { 0x1 << 30, 2 }, { (0x1 << 29) + 1, 2 } };
+		for (int[] size : sizes) {
+			threw = false;
+			try {
+				new CountMinSketch(size[0], size[1]);
+			}
+			catch (IllegalArgumentException exception) {
+				threw = true;
+			}
+			assert (threw);
+		}
+		
+		System.out.println("CountMinSketch passed.");
+	}
+
+}
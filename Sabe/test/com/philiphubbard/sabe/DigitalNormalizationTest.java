@@ -0,0 +1,210 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+
+// Confidence tests for the DigitalNormalization and MRDigitalNormalization classes.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class DigitalNormalizationTest {
+
+	public static void test() {
+		System.out.println("Testing DigitalNormalization:");
+		
+		test1();
+		test2();
+		test3();
+		test4();
+		
+		System.out.println("DigitalNormalization passed.");
+	}
+	
+	// Deep coverage of the sequence of TipsAndBubblesTest is cut to the target.
+	
+	private static void test1() {
+		String seq = TipsAndBubblesTest.SEQUENCE;
+		int merLength = TipsAndBubblesTest.VERTEX_MER_LENGTH + 1;
+		
+		ArrayList<String> reads = new ArrayList<String>();
+		for (int i = 0; i < 40; i++)
+			reads.add(seq);
+		DigitalNormalization normalization = new DigitalNormalization(merLength, 5);
+		assert (normalization.filter(reads).size() == 5);
+		assert (normalization.getNumAccepted() == 5);
+		assert (normalization.getNumDropped() == 35);
+		
+		// Overlapping reads, each covering half of the sequence: the reads of the 
+		// first half stop being accepted at the target, while the reads of the second
+		// half are still accepted until they reach it too.
+		
+		reads.clear();
+		String first = seq.substring(0, seq.length() / 2 + merLength);
+		String second = seq.substring(seq.length() / 2);
+		for (int i = 0; i < 20; i++)
+			reads.add(first);
+		for (int i = 0; i < 20; i++)
+			reads.add(second);
+		normalization = new DigitalNormalization(merLength, 3);
+		ArrayList<String> accepted = normalization.filter(reads);
+		int numFirst = 0;
+		int numSecond = 0;
+		for (String read : accepted) {
+			if (read.equals(first))
+				numFirst++;
+			else
+				numSecond++;
+		}
+		assert (numFirst == 3);
+		assert (numSecond == 3);
+	}
+	
+	// With normalization, LocalAssembler uses the normalized coverage, so deep 
+	// coverage gives the sequence even with the errors of TipsAndBubblesTest.  
+	// Without normalization, the same reads give the same sequence.
+	
+	private static void test2() {
+		ArrayList<String> reads = new ArrayList<String>();
+		for (int i = 0; i < 10; i++)
+			reads.addAll(TipsAndBubblesTest.errorReads());
+		int coverage = 10 * TipsAndBubblesTest.COVERAGE;
+		
+		LocalAssembler assembler = 
+				new LocalAssembler(TipsAndBubblesTest.VERTEX_MER_LENGTH, coverage);
+		assembler.setTipsAndBubbles(true);
+		ArrayList<String> result = assembler.assemble(reads);
+		assert (result.size() == 1);
+		assert (result.get(0).equals(TipsAndBubblesTest.SEQUENCE));
+		
+		assembler.setNormalization(TipsAndBubblesTest.COVERAGE);
+		result = assembler.assemble(reads);
+		assert (result.size() == 1);
+		assert (result.get(0).equals(TipsAndBubblesTest.SEQUENCE));
+		
+		assert (DigitalNormalization.getNormalizedCoverage(coverage, 4) == 4);
+		assert (DigitalNormalization.getNormalizedCoverage(3, 4) == 3);
+	}
+	
+	// Short reads are accepted, and bad characters are rejected.
+	
+	private static void test3() {
+		DigitalNormalization normalization = new DigitalNormalization(5, 1);
+		assert (normalization.accept("ACGT"));
+		assert (normalization.accept("ACGT"));
+		assert (normalization.accept("ACGTACGTACGTACGTACGT"));
+		assert (!normalization.accept("ACGTACGTACGTACGTACGT"));
+		
+		boolean threw = false;
+		try {
+			normalization.accept("ACGTNACGT");
+		}
+		catch (IllegalArgumentException exception) {
+			threw = true;
+		}
+		assert (threw);
+	}
+	
+	// Two samples with unequal numbers of splits, filtered as MRDigitalNormalization
+	// does: each split by the DigitalNormalization of a mapper, then all of the reads
+	// of each sample by the DigitalNormalization of its reducer.  Both samples end 
+	// near the target, so the edges of both are kept by the cutoff of the normalized
+	// coverage, and the sample of many splits at deep coverage is cut to about the 
+	// target, not the target times its number of splits.
+	
+	private static void test4() {
+		int vertexMerLength = 9;
+		int merLength = vertexMerLength + 1;
+		int readLength = 40;
+		int target = 20;
+		
+		Random random = new Random(7);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+			builder.append("ACGT".charAt(random.nextInt(4)));
+		String seq = builder.toString();
+		
+		Configuration conf = new Configuration();
+		conf.setInt(MRMerVertex.CONFIG_MER_LENGTH, vertexMerLength);
+		conf.setInt(MRDigitalNormalization.CONFIG_TARGET_COVERAGE, target);
+		conf.setInt(MRDigitalNormalization.CONFIG_SKETCH_WIDTH, 0x1 << 16);
+		
+		// Sample 0 has 10 splits of coverage 20, and sample 1 one split of 
+		// coverage 30.
+		
+		int[] numSplits = { 10, 1 };
+		int[] splitCoverage = { 20, 30 };
+		ArrayList<HashMap<String, Integer>> counts = new ArrayList<HashMap<String, Integer>>();
+		int[] numAccepted = new int[numSplits.length];
+		for (int sample = 0; sample < numSplits.length; sample++) {
+			ArrayList<String> preFiltered = new ArrayList<String>();
+			for (int split = 0; split < numSplits[sample]; split++) {
+				ArrayList<String> reads = new ArrayList<String>();
+				int numReads = splitCoverage[sample] * seq.length() / readLength;
+				for (int i = 0; i < numReads; i++) {
+					int start = random.nextInt(seq.length() - readLength + 1);
+					reads.add(seq.substring(start, start + readLength));
+				}
+				preFiltered.addAll(MRDigitalNormalization.createNormalization(conf).filter(reads));
+			}
+			ArrayList<String> accepted = 
+					MRDigitalNormalization.createNormalization(conf).filter(preFiltered);
+			numAccepted[sample] = accepted.size();
+			
+			HashMap<String, Integer> sampleCounts = new HashMap<String, Integer>();
+			for (String read : accepted) {
+				for (int i = 0; i + merLength <= read.length(); i++) {
+					String mer = read.substring(i, i + merLength);
+					Integer count = sampleCounts.get(mer);
+					sampleCounts.put(mer, (count == null) ? 1 : count + 1);
+				}
+			}
+			counts.add(sampleCounts);
+		}
+		
+		int normalizedCoverage = DigitalNormalization.getNormalizedCoverage(200, target);
+		assert (normalizedCoverage == target);
+		for (int sample = 0; sample < numSplits.length; sample++)
+			assert (numAccepted[sample] * readLength <= 2 * target * seq.length());
+		
+		// Check only the k-mers away from the ends of the sequence, which fewer reads cover.
+		
+		int cutoff = (normalizedCoverage + 1) / 2;
+		for (HashMap<String, Integer> sampleCounts : counts) {
+			int numMers = 0;
+			int numKept = 0;
+			for (int i = readLength; i + merLength <= seq.length() - readLength; i++) {
+				Integer count = sampleCounts.get(seq.substring(i, i + merLength));
+				numMers++;
+				if ((count != null) && (count >= cutoff))
+					numKept++;
+			}
+			assert (numKept >= 0.95 * numMers);
+		}
+	}
+
+}
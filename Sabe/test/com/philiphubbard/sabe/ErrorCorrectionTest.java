@@ -0,0 +1,141 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+
+// Confidence tests for the ErrorCorrection class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class ErrorCorrectionTest {
+
+	public static void test() {
+		System.out.println("Testing ErrorCorrection:");
+		
+		test1();
+		test2();
+		test3();
+		
+		System.out.println("ErrorCorrection passed.");
+	}
+	
+	// The sequence of TipsAndBubblesTest with the specified coverage.
+	
+	private static ArrayList<String> reads(int coverage) {
+		ArrayList<String> reads = new ArrayList<String>();
+		for (int i = 0; i < coverage; i++)
+			reads.add(SEQUENCE);
+		return reads;
+	}
+	
+	// Single substitutions at the start, middle and end of reads are corrected, and 
+	// reads without errors are returned as is.
+	
+	private static void test1() {
+		IntIntMap counts = LocalAssembler.countMers(reads(4), MER_LENGTH, 1);
+		ErrorCorrection correction = 
+				new ErrorCorrection(MER_LENGTH, counts, ErrorCorrection.getMinCount(4));
+		assert (correction.getMinCount() == 2);
+		
+		assert (correction.correct(SEQUENCE) == SEQUENCE);
+		String read = SEQUENCE.substring(3, 20);
+		assert (correction.correct(read) == read);
+		assert (correction.correct("ACG") == "ACG");
+		
+		assert (correction.correct(substitute(SEQUENCE, 14)).equals(SEQUENCE));
+		assert (correction.correct(substitute(SEQUENCE, 0)).equals(SEQUENCE));
+		assert (correction.correct(substitute(SEQUENCE, SEQUENCE.length() - 1)).equals(SEQUENCE));
+		assert (correction.correct(substitute(read, 8)).equals(read));
+		
+		// Two substitutions far enough apart are both corrected, but two in the same 
+		// k-mer make a run of weak k-mers too long for a single substitution.
+		
+		String twice = substitute(substitute(SEQUENCE, 5), 20);
+		assert (correction.correct(twice).equals(SEQUENCE));
+		String adjacent = substitute(substitute(SEQUENCE, 14), 15);
+		assert (correction.correct(adjacent).equals(adjacent));
+		
+		boolean threw = false;
+		try {
+			correction.correct("ACGTNACGT");
+		}
+		catch (IllegalArgumentException exception) {
+			threw = true;
+		}
+		assert (threw);
+	}
+	
+	// The multi-threaded pass corrects reads whose errors are too rare to be solid,
+	// leaves the order of the reads, and so reduces the distinct k-mers.
+	
+	private static void test2() {
+		ArrayList<String> reads = reads(8);
+		for (int i = 0; i < 2; i++) {
+			reads.add(substitute(SEQUENCE, 14));
+			reads.add(SEQUENCE.substring(0, 23) + "G");
+			reads.add("T" + SEQUENCE.substring(7, 20));
+		}
+		
+		for (int numThreads = 1; numThreads <= 3; numThreads++) {
+			ArrayList<String> corrected = ErrorCorrection.correct(reads, MER_LENGTH, 8, numThreads);
+			assert (corrected.size() == reads.size());
+			for (int i = 0; i < 8; i++)
+				assert (corrected.get(i) == reads.get(i));
+			assert (corrected.get(8).equals(SEQUENCE));
+			assert (corrected.get(9).equals(SEQUENCE.substring(0, 24)));
+			assert (corrected.get(10).equals(SEQUENCE.substring(6, 20)));
+			
+			assert (LocalAssembler.countMers(corrected, MER_LENGTH, 1).size() == 
+					SEQUENCE.length() - MER_LENGTH + 1);
+			assert (LocalAssembler.countMers(reads, MER_LENGTH, 1).size() > 
+					SEQUENCE.length() - MER_LENGTH + 1);
+		}
+	}
+	
+	// With correction, LocalAssembler still gives the sequence.
+	
+	private static void test3() {
+		ArrayList<String> reads = reads(4);
+		reads.add(substitute(SEQUENCE, 14));
+		reads.add(substitute(SEQUENCE, 25));
+		
+		LocalAssembler assembler = 
+				new LocalAssembler(TipsAndBubblesTest.VERTEX_MER_LENGTH, 4);
+		assembler.setErrorCorrection(true);
+		ArrayList<String> result = assembler.assemble(reads);
+		assert (result.size() == 1);
+		assert (result.get(0).equals(SEQUENCE));
+	}
+	
+	// Returns the read with the base at the position replaced by a different one.
+	
+	private static String substitute(String read, int position) {
+		char c = (read.charAt(position) == 'A') ? 'C' : 'A';
+		return read.substring(0, position) + c + read.substring(position + 1);
+	}
+	
+	private static final String SEQUENCE = TipsAndBubblesTest.SEQUENCE;
+	private static final int MER_LENGTH = TipsAndBubblesTest.VERTEX_MER_LENGTH + 1;
+
+}
@@ -0,0 +1,111 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Confidence tests for the EulerTour class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class EulerTourTest {
+
+	public static void test() {
+		System.out.println("Testing EulerTour:");
+		
+		test1();
+		test2();
+		
+		System.out.println("EulerTour passed.");
+	}
+	
+	private static void test1() {
+		
+		// A path from 0 to 5 with a single repeat 1 -> 2, whose loop-back path is
+		// 2 -> 3 -> 4 -> 1.  There is only one Euler path:
+		// 0 -> 1 -> 2 -> 3 -> 4 -> 1 -> 2 -> 5.
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(6);
+		builder.addEdge(0, 1);
+		builder.addEdge(1, 2, 2);
+		builder.addEdge(2, 5);
+		builder.addEdge(2, 3);
+		builder.addEdge(3, 4);
+		builder.addEdge(4, 1);
+		CompactDigraph graph = builder.build();
+		
+		int[] expected = { 0, 1, 2, 3, 4, 1, 2, 5 };
+		
+		EulerTour tour = new EulerTour(graph);
+		int[] path = tour.findPath(0);
+		assert (Arrays.equals(path, expected));
+		assert (tour.getNumEdgesUsed() == 7);
+		assert (tour.getUnusedStart() == -1);
+		
+		// Visiting the transpose from the end of the path produces the same path
+		// in forward order.
+		
+		EulerTour transposeTour = new EulerTour(graph.transpose());
+		final ArrayList<Integer> visited = new ArrayList<Integer>();
+		int n = transposeTour.visitPath(5, new EulerTour.Visitor() {
+			public void visit(int vertex) {
+				visited.add(vertex);
+			}
+		});
+		assert (n == expected.length);
+		for (int i = 0; i < expected.length; i++)
+			assert (visited.get(i) == expected[i]);
+		
+		// After a reset, the same path is found again.
+		
+		tour.reset();
+		assert (Arrays.equals(tour.findPath(0), expected));
+	}
+	
+	private static void test2() {
+		
+		// Two separate parts: a path 0 -> 1 -> 2, and a cycle 3 -> 4 -> 3.
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(5);
+		builder.addEdge(0, 1);
+		builder.addEdge(1, 2);
+		builder.addEdge(3, 4);
+		builder.addEdge(4, 3);
+		CompactDigraph graph = builder.build();
+		
+		EulerTour tour = new EulerTour(graph);
+		assert (Arrays.equals(tour.findPath(0), new int[] { 0, 1, 2 }));
+		
+		int start = tour.getUnusedStart();
+		assert (start == 3);
+		assert (Arrays.equals(tour.findPath(start), new int[] { 3, 4, 3 }));
+		assert (tour.getUnusedStart() == -1);
+		assert (tour.getNumEdgesUsed() == 4);
+		
+		// A vertex with no unused edges is a path by itself.
+		
+		assert (Arrays.equals(tour.findPath(2), new int[] { 2 }));
+	}
+
+}
@@ -0,0 +1,90 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.Arrays;
+
+// Confidence tests for the IntIntMap class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class IntIntMapTest {
+
+	public static void test() {
+		System.out.println("Testing IntIntMap:");
+		
+		IntIntMap map = new IntIntMap(4);
+		assert (map.size() == 0);
+		assert (map.get(0) == IntIntMap.NOT_FOUND);
+		
+		map.put(0, 10);
+		map.put(Mer.toInt("ACGTACGTACGTACG"), 11);
+		map.put(-7, 12);
+		assert (map.size() == 3);
+		assert (map.get(0) == 10);
+		assert (map.get(Mer.toInt("ACGTACGTACGTACG")) == 11);
+		assert (map.get(-7) == 12);
+		assert (!map.containsKey(1));
+		
+		map.put(0, 0);
+		assert (map.size() == 3);
+		assert (map.get(0) == 0);
+		
+		// Enough entries to make the map grow several times, with keys that differ
+		// only in their high bits.
+		
+		int n = 10000;
+		for (int i = 0; i < n; i++)
+			map.put(i << 16, i);
+		assert (map.size() == n + 2);
+		for (int i = 0; i < n; i++)
+			assert (map.get(i << 16) == i);
+		assert (map.get(-7) == 12);
+		
+		boolean threw = false;
+		try {
+			map.put(1, -1);
+		}
+		catch (IllegalArgumentException exception) {
+			threw = true;
+		}
+		assert (threw);
+		
+		// Adding to a missing key puts the amount, and getKeys() returns every key once.
+		
+		IntIntMap counts = new IntIntMap(2);
+		for (int i = 0; i < 100; i++)
+			counts.add(i % 7, 1);
+		assert (counts.size() == 7);
+		assert (counts.get(0) == 15);
+		assert (counts.get(6) == 14);
+		int[] keys = counts.getKeys();
+		Arrays.sort(keys);
+		assert (keys.length == 7);
+		for (int i = 0; i < 7; i++)
+			assert (keys[i] == i);
+		
+		System.out.println("IntIntMap passed.");
+	}
+
+}
@@ -0,0 +1,122 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+
+import org.apache.hadoop.io.Text;
+
+// Confidence tests for the LocalAssembler class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class LocalAssemblerTest {
+
+	public static void test() {
+		System.out.println("Testing LocalAssembler:");
+		
+		test1();
+		test2();
+		test3();
+		test4();
+		
+		System.out.println("LocalAssembler passed.");
+	}
+	
+	// The reads of MRAssemblerTest2, with errors and single repeats, should give the
+	// same sequence as MRAssembler does, with any number of threads.
+	
+	private static void test1() {
+		StringBuilder input = new StringBuilder();
+		for (Text piece : MRAssemblerTest2.getReads())
+			input.append(piece.toString());
+		ArrayList<String> reads = new ArrayList<String>();
+		for (String read : input.toString().split("\n"))
+			reads.add(read);
+		
+		for (int numThreads = 1; numThreads <= 4; numThreads++) {
+			LocalAssembler assembler = 
+					new LocalAssembler(MRAssemblerTest2.MER_LENGTH, MRAssemblerTest2.COVERAGE);
+			assembler.setNumThreads(numThreads);
+			ArrayList<String> result = assembler.assemble(reads);
+			assert (result.size() == 1);
+			assert (result.get(0).equals(MRAssemblerTest2.EXPECTED));
+		}
+	}
+	
+	// With the removal of tips and bubbles, the reads of TipsAndBubblesTest give the
+	// error-free sequence, while without it, the errors give extra sequences.
+	
+	private static void test2() {
+		ArrayList<String> reads = TipsAndBubblesTest.errorReads();
+		
+		LocalAssembler assembler = new LocalAssembler(TipsAndBubblesTest.VERTEX_MER_LENGTH,
+				TipsAndBubblesTest.COVERAGE);
+		assert (assembler.assemble(reads).size() > 1);
+		
+		assembler.setTipsAndBubbles(true);
+		ArrayList<String> result = assembler.assemble(reads);
+		assert (result.size() == 1);
+		assert (result.get(0).equals(TipsAndBubblesTest.SEQUENCE));
+	}
+	
+	// Reads with characters other than "A", "C", "G" and "T" are rejected, and no 
+	// reads give no sequences.
+	
+	private static void test3() {
+		LocalAssembler assembler = new LocalAssembler(4, 1);
+		
+		ArrayList<String> reads = new ArrayList<String>();
+		assert (assembler.assemble(reads).isEmpty());
+		
+		reads.add("ACGTNACGT");
+		boolean threw = false;
+		try {
+			assembler.assemble(reads);
+		}
+		catch (IllegalArgumentException exception) {
+			threw = true;
+		}
+		assert (threw);
+	}
+	
+	// LocalAssembler discards edges, not vertices, with low multiples.  An error read
+	// whose k-mer "GCAT" joins two correct (k-1)-mers, "GCA" and "CAT", adds an edge 
+	// with multiple one between vertices that are kept, and only that edge is 
+	// discarded, so the sequence is still assembled in one piece.
+	
+	private static void test4() {
+		String sequence = "ACGGTCATTGCAGTAC";
+		ArrayList<String> reads = new ArrayList<String>();
+		for (int i = 0; i < 4; i++)
+			reads.add(sequence);
+		reads.add("TTGCAT");
+		
+		LocalAssembler assembler = new LocalAssembler(3, 4);
+		ArrayList<String> result = assembler.assemble(reads);
+		assert (result.size() == 1);
+		assert (result.get(0).equals(sequence));
+	}
+
+}
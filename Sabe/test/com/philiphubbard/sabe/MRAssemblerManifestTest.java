@@ -0,0 +1,161 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FilterFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counters;
+
+// Confidence tests for the MRAssemblerManifest class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class MRAssemblerManifestTest {
+
+	public static void test() {
+		System.out.println("Testing MRAssemblerManifest:");
+		
+		try {
+			Configuration conf = new Configuration();
+			FileSystem fileSystem = FileSystem.getLocal(conf);
+			
+			Path tmpPath = new Path("sabe.MRAssemblerManifestTest");
+			if (fileSystem.exists(tmpPath))
+				fileSystem.delete(tmpPath, true);
+			MRAssemblerManifest.delete(fileSystem, tmpPath);
+			
+			MRAssemblerManifest empty = MRAssemblerManifest.read(fileSystem, tmpPath);
+			assert (empty.getEntries().isEmpty());
+			assert (empty.getLast(MRAssemblerManifest.Stage.BUILD) == null);
+			
+			MRAssemblerManifest manifest = new MRAssemblerManifest(fileSystem, tmpPath);
+			
+			Counters buildCounters = new Counters();
+			buildCounters.findCounter("sabe", "records").setValue(17);
+			manifest.record(MRAssemblerManifest.Stage.BUILD, 0, tmpPath, buildCounters);
+			
+			Counters compressCounters = new Counters();
+			compressCounters.findCounter("sabe", "compressions").setValue(5);
+			manifest.record(MRAssemblerManifest.Stage.COMPRESS_ITERATION, 1, 
+					new Path(tmpPath, "chainCompress0"), compressCounters);
+			compressCounters.findCounter("sabe", "compressions").setValue(3);
+			manifest.record(MRAssemblerManifest.Stage.COMPRESS_ITERATION, 2, 
+					new Path(tmpPath, "chainCompress1"), compressCounters);
+			
+			MRAssemblerManifest reread = MRAssemblerManifest.read(fileSystem, tmpPath);
+			assert (reread.getEntries().size() == 3);
+			
+			MRAssemblerManifest.Entry build = reread.getLast(MRAssemblerManifest.Stage.BUILD);
+			assert (build.getIteration() == 0);
+			assert (build.getPath().equals(fileSystem.makeQualified(tmpPath)));
+			assert (build.getCounters().get("sabe:records") == 17);
+			
+			MRAssemblerManifest.Entry last = 
+					reread.getLast(MRAssemblerManifest.Stage.COMPRESS_ITERATION);
+			assert (last.getIteration() == 2);
+			assert (last.getPath().getName().equals("chainCompress1"));
+			assert (last.getCounters().get("sabe:compressions") == 3);
+			
+			assert (reread.getLast(MRAssemblerManifest.Stage.COMPRESS) == null);
+			
+			// A failure after the old manifest is deleted but before the new one is 
+			// renamed into place leaves only the temporary file, which is used instead.
+			
+			Path manifestPath = MRAssemblerManifest.getPath(tmpPath);
+			Path writePath = manifestPath.suffix(".tmp");
+			fileSystem.rename(manifestPath, writePath);
+			
+			MRAssemblerManifest recovered = MRAssemblerManifest.read(fileSystem, tmpPath);
+			assert (recovered.getEntries().size() == 3);
+			assert (recovered.getLast(MRAssemblerManifest.Stage.COMPRESS_ITERATION)
+					.getIteration() == 2);
+			
+			// A failure while writing the temporary file the first time leaves an 
+			// incomplete temporary file and no manifest.
+			
+			fileSystem.delete(writePath, false);
+			FSDataOutputStream out = fileSystem.create(writePath, true);
+			out.writeBytes("BUILD\t0\t");
+			out.close();
+			
+			MRAssemblerManifest incomplete = MRAssemblerManifest.read(fileSystem, tmpPath);
+			assert (incomplete.getEntries().isEmpty());
+			
+			// Vertex construction deletes the temporary directory before its job runs.
+			// If the job then fails, the stages before it are still in the manifest.
+			
+			MRAssemblerManifest.delete(fileSystem, tmpPath);
+			MRAssemblerManifest before = new MRAssemblerManifest(fileSystem, tmpPath);
+			fileSystem.mkdirs(tmpPath);
+			
+			Counters normalizeCounters = new Counters();
+			normalizeCounters.findCounter(MRDigitalNormalization.Counter.ACCEPTED).setValue(11);
+			before.record(MRAssemblerManifest.Stage.NORMALIZE, 0, 
+					tmpPath.suffix(".normalized"), normalizeCounters);
+			
+			fileSystem.delete(tmpPath, true);
+			
+			MRAssemblerManifest after = MRAssemblerManifest.read(fileSystem, tmpPath);
+			assert (after.getLast(MRAssemblerManifest.Stage.BUILD) == null);
+			MRAssemblerManifest.Entry normalized = 
+					after.getLast(MRAssemblerManifest.Stage.NORMALIZE);
+			assert (normalized != null);
+			assert (normalized.getPath().getName().equals(tmpPath.getName() + ".normalized"));
+			assert (normalized.getCounters().size() == 1);
+			
+			// A rename that fails is reported, and leaves the complete temporary file.
+			
+			FileSystem noRenames = new FilterFileSystem(fileSystem) {
+				@Override
+				public boolean rename(Path src, Path dst) {
+					return false;
+				}
+			};
+			MRAssemblerManifest unrenamed = new MRAssemblerManifest(noRenames, tmpPath);
+			boolean threw = false;
+			try {
+				unrenamed.record(MRAssemblerManifest.Stage.BUILD, 0, tmpPath, null);
+			}
+			catch (IOException exception) {
+				threw = true;
+			}
+			assert (threw);
+			assert (MRAssemblerManifest.read(fileSystem, tmpPath).getEntries().size() == 1);
+			
+			MRAssemblerManifest.delete(fileSystem, tmpPath);
+			assert (!fileSystem.exists(MRAssemblerManifest.getPath(tmpPath)));
+		}
+		catch (IOException exception) {
+			System.out.println(exception.getMessage());
+			assert (false);
+		}
+		
+		System.out.println("MRAssemblerManifest passed.");
+	}
+
+}
@@ -63,6 +63,22 @@ public class MRAssemblerTest2 {
 		if (fileSystem.exists(path))
 			fileSystem.delete(path, true);
 		
+		FSDataOutputStream out = fileSystem.create(path);
+		for (Text read : getReads()) {
+			byte[] bytes = read.copyBytes();
+			for (byte b : bytes)
+				out.write(b);
+		}
+		out.close();
+		
+		fileSystem.close();
+	}
+	
+	// The contents of the input file, as a list of pieces that are concatenated.  
+	// Pieces without a final newline join with the next piece to form one read.
+	// Also used by LocalAssemblerTest.
+	
+	static ArrayList<Text> getReads() {
 		ArrayList<Text> reads = new ArrayList<Text>();
 		
 		// The expected result:
@@ -107,16 +123,8 @@ public class MRAssemblerTest2 {
 		reads.add(new Text("GGACGATCTCCTCT\n"));
 		// Error: CG at index 10 transposed to GC
 		reads.add(new Text("GACCCATCATCGAAATTCC\n"));
-
-		FSDataOutputStream out = fileSystem.create(path);
-		for (Text read : reads) {
-			byte[] bytes = read.copyBytes();
-			for (byte b : bytes)
-				out.write(b);
-		}
-		out.close();
 		
-		fileSystem.close();
+		return reads;
 	}
 
 	private static void verifyTest(Configuration conf) throws IOException {
@@ -125,12 +133,10 @@ public class MRAssemblerTest2 {
 		BufferedReader reader = new BufferedReader(new InputStreamReader(output));
 
 		String actual = reader.readLine();
-		final String expected = 
-				"CCCTTTCTGTTGACCCATCATTGTTTAGTAACCCGCGGGATGCCTGGCAGACCCGCGGGACGATCTCCTCTGACCCATCATCGAAATTCC";
 		
-		System.out.println(expected);
+		System.out.println(EXPECTED);
 		
-		if (!actual.equals(expected))
+		if (!actual.equals(EXPECTED))
 			throw new IOException("Test failed with incorrect result:\n" + actual);
 		
 		reader.close();
@@ -147,8 +153,10 @@ public class MRAssemblerTest2 {
 		fileSystem.close();
 	}
 	
-	private static final int MER_LENGTH = 6;
-	private static final int COVERAGE = 5;
+	static final int MER_LENGTH = 6;
+	static final int COVERAGE = 5;
+	static final String EXPECTED = 
+			"CCCTTTCTGTTGACCCATCATTGTTTAGTAACCCGCGGGATGCCTGGCAGACCCGCGGGACGATCTCCTCTGACCCATCATCGAAATTCC";
 
 	private static String testInput = new String("MRAssemblerTest_in.txt");
 	private static String testOutput = new String("MRAssemblerTest_out");
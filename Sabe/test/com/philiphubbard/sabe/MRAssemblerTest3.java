@@ -0,0 +1,130 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.IOException; 
+import java.util.ArrayList;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+
+// A sample driver application for running the MRAssembler class with Hadoop on 
+// two samples at once, sharing the MapReduce jobs.  The first sample is the data
+// of MRAssemblerTest2, with errors and single repeats, and the second is a shorter
+// sequence without errors.  The run uses its own temporary directory.
+
+public class MRAssemblerTest3 {
+	
+	public static void main(String[] args) 
+			throws IOException, ClassNotFoundException, InterruptedException {
+		Configuration conf = new Configuration();
+		
+		setupTest(conf);
+		
+		MRAssembler assembler = 
+				new MRAssembler(MRAssemblerTest2.MER_LENGTH, MRAssemblerTest2.COVERAGE);
+		assembler.setTmpPath(new Path("sabe.MRAssemblerTest3Tmp"));
+		assembler.run(testInputs, testOutputs);
+		
+		verifyTest(conf);
+		cleanupTest(conf);
+		
+		System.exit(0);
+	}
+	
+	private static void setupTest(Configuration conf) throws IOException {
+		FileSystem fileSystem = FileSystem.get(conf);
+		
+		ArrayList<Text> reads1 = new ArrayList<Text>();
+		for (int i = 0; i < MRAssemblerTest2.COVERAGE; i++)
+			reads1.add(new Text(EXPECTED1 + "\n"));
+		
+		writeReads(fileSystem, testInputs[0], MRAssemblerTest2.getReads());
+		writeReads(fileSystem, testInputs[1], reads1);
+		
+		fileSystem.close();
+	}
+	
+	private static void writeReads(FileSystem fileSystem, Path path, ArrayList<Text> reads) 
+			throws IOException {
+		if (fileSystem.exists(path))
+			fileSystem.delete(path, true);
+		
+		FSDataOutputStream out = fileSystem.create(path);
+		for (Text read : reads) {
+			byte[] bytes = read.copyBytes();
+			for (byte b : bytes)
+				out.write(b);
+		}
+		out.close();
+	}
+
+	private static void verifyTest(Configuration conf) throws IOException {
+		FileSystem fileSystem = FileSystem.get(conf);
+		
+		verifyOutput(fileSystem, testOutputs[0], MRAssemblerTest2.EXPECTED);
+		verifyOutput(fileSystem, testOutputs[1], EXPECTED1);
+		
+		System.out.println("Test succeeded.");
+	}
+	
+	private static void verifyOutput(FileSystem fileSystem, Path path, String expected) 
+			throws IOException {
+		FSDataInputStream output = fileSystem.open(path);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(output));
+
+		String actual = reader.readLine();
+		
+		System.out.println(expected);
+		
+		if (!actual.equals(expected))
+			throw new IOException("Test failed with incorrect result:\n" + actual);
+		
+		reader.close();
+	}
+
+	private static void cleanupTest(Configuration conf) throws IOException {
+		FileSystem fileSystem = FileSystem.get(conf);
+		
+		for (int i = 0; i < testInputs.length; i++) {
+			fileSystem.delete(testInputs[i], true);
+			fileSystem.delete(testOutputs[i], true);
+		}
+		
+		fileSystem.close();
+	}
+	
+	private static final String EXPECTED1 = "TTAGGCATCCGAAGTCTGACTTCAGAAGCTAGC";
+
+	private static Path[] testInputs = new Path[] { 
+		new Path("MRAssemblerTest3_in0.txt"), new Path("MRAssemblerTest3_in1.txt") };
+	private static Path[] testOutputs = new Path[] { 
+		new Path("MRAssemblerTest3_out0"), new Path("MRAssemblerTest3_out1") };
+}
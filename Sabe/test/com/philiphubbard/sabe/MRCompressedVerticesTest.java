@@ -0,0 +1,167 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+
+import com.philiphubbard.digraph.MRVertex;
+
+// Confidence tests for the MRCompressedVertices class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class MRCompressedVerticesTest {
+
+	public static void test() {
+		System.out.println("Testing MRCompressedVertices:");
+		
+		try {
+			Configuration config = new Configuration();
+			config.setInt(MRMerVertex.CONFIG_MER_LENGTH, 3);
+			FileSystem fileSystem = FileSystem.getLocal(config);
+			
+			Path dirPath = new Path("sabe.MRCompressedVerticesTest");
+			if (fileSystem.exists(dirPath))
+				fileSystem.delete(dirPath, true);
+			Path branchPath = new Path(dirPath, "branch");
+			Path chainPath = new Path(dirPath, "chain");
+			
+			// ACG -> CGT -> GTA, with CGT and GTA compressed, and a second edge
+			// ACG -> CGT.
+			
+			MRMerVertex v1 = new MRMerVertex(Mer.toInt("ACG"), config);
+			v1.addEdgeTo(Mer.toInt("CGT"));
+			v1.addEdgeTo(Mer.toInt("CGT"));
+			
+			MRMerVertex v2 = new MRMerVertex(Mer.toInt("CGT"), config);
+			MRMerVertex v3 = new MRMerVertex(Mer.toInt("GTA"), config);
+			v2.addEdgeTo(Mer.toInt("GTA"));
+			v3.addEdgeTo(Mer.toInt("TAC"));
+			v2.compressChain(v3);
+			
+			MRMerVertex v4 = new MRMerVertex(Mer.toInt("TAC"), config);
+			
+			writePart(fileSystem, config, new Path(branchPath, "part-r-00000"), v1);
+			writePart(fileSystem, config, new Path(chainPath, "part-r-00000"), v2);
+			writePart(fileSystem, config, new Path(chainPath, "part-r-00001"), v4);
+			writePart(fileSystem, config, new Path(chainPath, "_ignored"), v1);
+			
+			MRCompressedVertices vertices = 
+					MRCompressedVertices.read(config, fileSystem, branchPath, chainPath);
+			
+			assert (vertices.size() == 3);
+			assert (vertices.getNumEdges() == 3);
+			
+			HashMap<Integer, Integer> rows = new HashMap<Integer, Integer>();
+			for (int row = 0; row < vertices.size(); row++)
+				rows.put(vertices.getId(row), row);
+			
+			int r1 = rows.get(Mer.toInt("ACG"));
+			assert (vertices.getEdgeEnd(r1) - vertices.getEdgeBegin(r1) == 2);
+			assert (vertices.getEdgeTo(vertices.getEdgeBegin(r1)) == Mer.toInt("CGT"));
+			assert (vertices.getMerString(r1) == null);
+			
+			int r2 = rows.get(Mer.toInt("CGT"));
+			assert (vertices.getEdgeEnd(r2) - vertices.getEdgeBegin(r2) == 1);
+			assert (vertices.getEdgeTo(vertices.getEdgeBegin(r2)) == Mer.toInt("TAC"));
+			assert (vertices.getMerString(r2).toDisplayString().equals("CGTA"));
+			
+			int r4 = rows.get(Mer.toInt("TAC"));
+			assert (vertices.getEdgeEnd(r4) == vertices.getEdgeBegin(r4));
+			
+			fileSystem.delete(dirPath, true);
+		}
+		catch (IOException exception) {
+			System.out.println(exception.getMessage());
+			assert (false);
+		}
+		
+		testSplitSamples();
+		
+		System.out.println("MRCompressedVertices passed.");
+	}
+	
+	// Vertices with sample indices in their IDs are split by sample, with the indices
+	// removed from the IDs and the edges.
+	
+	private static void testSplitSamples() {
+		int merLength = 3;
+		int sample2 = 2 << (2 * merLength);
+		
+		assert (MRBuildMerVertices.getMaxSamples(merLength) == 1 << 25);
+		assert (MRBuildMerVertices.getMaxSamples(15) == 2);
+		assert (MRBuildMerVertices.getSample(Mer.toInt("CGT") | sample2, merLength) == 2);
+		assert (MRBuildMerVertices.getMer(Mer.toInt("CGT") | sample2, merLength) == 
+				Mer.toInt("CGT"));
+		
+		MRCompressedVertices vertices = new MRCompressedVertices(1);
+		vertices.add(Mer.toInt("ACG") | sample2, true, false, false, 
+				new int[] { Mer.toInt("CGT") | sample2, Mer.toInt("CGT") | sample2 }, 2, null);
+		vertices.add(Mer.toInt("ACG"), true, false, false, 
+				new int[] { Mer.toInt("CGA") }, 1, null);
+		vertices.add(Mer.toInt("CGT") | sample2, false, true, false, new int[0], 0, 
+				new MerString(Mer.toInt("CGT"), merLength));
+		vertices.add(Mer.toInt("CGA"), false, true, false, new int[0], 0, null);
+		
+		ArrayList<MRCompressedVertices> samples = vertices.splitSamples(merLength, 3);
+		assert (samples.size() == 3);
+		assert (samples.get(0).size() == 2);
+		assert (samples.get(1).size() == 0);
+		assert (samples.get(2).size() == 2);
+		
+		MRCompressedVertices two = samples.get(2);
+		assert (two.getId(0) == Mer.toInt("ACG"));
+		assert (two.getIsSource(0));
+		assert (two.getEdgeEnd(0) - two.getEdgeBegin(0) == 2);
+		assert (two.getEdgeTo(two.getEdgeBegin(0)) == Mer.toInt("CGT"));
+		assert (two.getId(1) == Mer.toInt("CGT"));
+		assert (two.getIsSink(1));
+		assert (two.getMerString(1).toDisplayString().equals("CGT"));
+		
+		MRCompressedVertices zero = samples.get(0);
+		assert (zero.getId(0) == Mer.toInt("ACG"));
+		assert (zero.getEdgeTo(zero.getEdgeBegin(0)) == Mer.toInt("CGA"));
+		assert (zero.getMerString(1) == null);
+	}
+	
+	private static void writePart(FileSystem fileSystem, Configuration config, Path path, 
+			MRMerVertex vertex) throws IOException {
+		SequenceFile.Writer writer = SequenceFile.createWriter(config, 
+				SequenceFile.Writer.file(fileSystem.makeQualified(path)),
+				SequenceFile.Writer.keyClass(IntWritable.class), 
+				SequenceFile.Writer.valueClass(BytesWritable.class));
+		writer.append(new IntWritable(vertex.getId()), 
+				vertex.toWritable(MRVertex.EdgeFormat.EDGES_TO));
+		writer.close();
+	}
+
+}
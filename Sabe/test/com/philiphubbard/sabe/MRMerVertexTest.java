@@ -23,6 +23,7 @@
 package com.philiphubbard.sabe;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.BytesWritable;
@@ -101,6 +102,11 @@ public class MRMerVertexTest {
 			BytesWritable t1_4 = mv1.toWritable(MRVertex.EdgeFormat.EDGES_TO);
 			MRMerVertex mv1b = new MRMerVertex(t1_4, config);
 			
+			// A vertex that is read in and written out again writes the same bytes.
+			
+			BytesWritable t1_4a = mv1b.toWritable(MRVertex.EdgeFormat.EDGES_TO);
+			assert (Arrays.equals(t1_4a.copyBytes(), t1_4.copyBytes()));
+			
 			assert (mv1b.equals(mv1));
 			assert (mv1b.getMerString().equals(ms1_4));
 			
@@ -115,6 +121,13 @@ public class MRMerVertexTest {
 			MRMerVertex mv10a = new MRMerVertex(t10a, config);
 			
 			assert (mv10.equals(mv10a));
+			
+			// An unmerged vertex writes no MerString, but reconstructs it from the ID.
+			
+			assert (mv10.getMergedMerString() == null);
+			assert (mv10a.getMergedMerString() == null);
+			assert (mv10.getMerString().toDisplayString().equals("TCG"));
+			assert (mv10a.getMerString().toDisplayString().equals("TCG"));
 
 			int m11 = Mer.toInt("CGA");
 			MRMerVertex mv11 = new MRMerVertex(m11, config);
@@ -127,6 +140,24 @@ public class MRMerVertexTest {
 			MRMerVertex mv10b = new MRMerVertex(t10b, config);
 			
 			assert (mv10.equals(mv10b));
+			
+			// Merging a vertex that was read in, with a MerString from the bytes.
+			
+			MRMerVertex mv10c = new MRMerVertex(t10b, config);
+			MRMerVertex mv12 = new MRMerVertex(Mer.toInt("GAG"), config);
+			mv12.addEdgeTo(Mer.toInt("AGT"));
+			mv10c.compressChain(mv12);
+			assert (mv10c.getMerString().toDisplayString().equals("TCGAG"));
+			
+			MRMerVertex mv10d = new MRMerVertex(mv10c.toWritable(MRVertex.EdgeFormat.EDGES_TO), config);
+			MRMerVertex mv13 = new MRMerVertex(Mer.toInt("ATC"), config);
+			mv13.addEdgeTo(Mer.toInt("TCG"));
+			mv13.compressChain(mv10d);
+			assert (mv13.getMerString().toDisplayString().equals("ATCGAG"));
+			
+			assert (mv10b.getMergedMerString() != null);
+			assert (mv10b.getMerString().toDisplayString().equals("TCGA"));
+			assert (t10b.getLength() > t10a.getLength());
 		}
 		catch (IOException exception) {
 			System.out.println(exception.getMessage());
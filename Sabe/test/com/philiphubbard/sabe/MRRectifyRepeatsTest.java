@@ -0,0 +1,195 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+// Confidence tests for the MRRectifyRepeats class, which run the supersteps in 
+// memory, without Hadoop, with each vertex and message passed through its bytes 
+// as the jobs would do.  Uses assert(), so must be run with a run configuration 
+// that includes "-ea" in the VM arguments.
+
+public class MRRectifyRepeatsTest {
+
+	public static void test() {
+		System.out.println("Testing MRRectifyRepeats:");
+		
+		test1();
+		test2();
+		
+		System.out.println("MRRectifyRepeats passed.");
+	}
+	
+	private static void test1() {
+		
+		// The graph from RepeatsTest.test4, with coverage 3: 1 -> 2 and 3 -> 4 are
+		// single repeats.
+		
+		int coverage = 3;
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(6);
+		builder.addEdge(0, 1, coverage);
+		builder.addEdge(1, 2, 2 * coverage);
+		builder.addEdge(2, 3, coverage);
+		builder.addEdge(3, 4, 2 * coverage);
+		builder.addEdge(4, 3, coverage);
+		builder.addEdge(4, 1, coverage);
+		builder.addEdge(2, 5, coverage);
+		CompactDigraph graph = builder.build();
+		
+		boolean[] isBranch = { false, true, true, true, true, false };
+		
+		TreeMap<Integer, MRRectifyRepeats.Vertex> result = rectify(graph, isBranch, coverage);
+		
+		assert (getMultiple(result, 0, 1) == 1);
+		assert (getMultiple(result, 1, 2) == 2);
+		assert (getMultiple(result, 2, 3) == 1);
+		assert (getMultiple(result, 3, 4) == 2);
+		assert (getMultiple(result, 4, 3) == 1);
+		assert (getMultiple(result, 4, 1) == 1);
+		assert (getMultiple(result, 2, 5) == 1);
+		
+		assert (result.get(0).getStrongComponent() == 0);
+		assert (result.get(5).getStrongComponent() == 5);
+		for (int v = 1; v <= 4; v++)
+			assert (result.get(v).getStrongComponent() == 1);
+	}
+	
+	private static void test2() {
+		
+		// A chain-compressed graph: branches 1, 3 and 5, joined through the chain
+		// vertices 2, 4, 6 and 7.  The chain 1 -> 2 -> 3 is a repeat, with loop-back
+		// path 3 -> 4 -> 1.  The chain 3 -> 6 -> 5 has high multiples but 5 is not
+		// in the same strong component, and the chain 5 -> 7 -> 5 has one low multiple.
+		// The results should match those of Repeats.rectifySingle().
+		
+		int coverage = 2;
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(9);
+		builder.addEdge(0, 1, 2);
+		builder.addEdge(1, 2, 4);
+		builder.addEdge(2, 3, 4);
+		builder.addEdge(3, 4, 2);
+		builder.addEdge(4, 1, 2);
+		builder.addEdge(3, 6, 4);
+		builder.addEdge(6, 5, 4);
+		builder.addEdge(5, 7, 4);
+		builder.addEdge(7, 5, 1);
+		builder.addEdge(5, 8, 2);
+		CompactDigraph graph = builder.build();
+		
+		boolean[] isBranch = { false, true, false, true, false, true, false, false, false };
+		
+		TreeMap<Integer, MRRectifyRepeats.Vertex> result = rectify(graph, isBranch, coverage);
+		
+		Repeats.rectifySingle(graph, coverage, isBranch);
+		
+		for (int v = 0; v < graph.getVertexCapacity(); v++)
+			for (int e = graph.getEdgeBegin(v); e < graph.getEdgeEnd(v); e++)
+				assert (getMultiple(result, v, graph.getEdgeTo(e)) == graph.getEdgeMultiple(e));
+		
+		assert (getMultiple(result, 1, 2) == 2);
+		assert (getMultiple(result, 2, 3) == 2);
+		assert (getMultiple(result, 3, 6) == 1);
+		assert (getMultiple(result, 5, 7) == 1);
+	}
+	
+	// Run the supersteps on the graph, in the order given by MRRectifyRepeats.Schedule,
+	// with the mapper and reducer operations applied directly.
+	
+	private static TreeMap<Integer, MRRectifyRepeats.Vertex> rectify(CompactDigraph graph, 
+			boolean[] isBranch, int coverage) {
+		int minEdgeMultiple = 2 * (int) Math.ceil(coverage / 2.0);
+		
+		TreeMap<Integer, MRRectifyRepeats.Vertex> vertices = 
+				new TreeMap<Integer, MRRectifyRepeats.Vertex>();
+		for (int v = 0; v < graph.getVertexCapacity(); v++) {
+			ArrayList<Integer> edges = new ArrayList<Integer>();
+			for (int e = graph.getEdgeBegin(v); e < graph.getEdgeEnd(v); e++)
+				for (int i = 0; i < graph.getEdgeMultiple(e); i++)
+					edges.add(graph.getEdgeTo(e));
+			int[] edgeArray = new int[edges.size()];
+			for (int i = 0; i < edgeArray.length; i++)
+				edgeArray[i] = edges.get(i);
+			vertices.put(v, new MRRectifyRepeats.Vertex(v, false, edgeArray.length == 0, 
+					isBranch[v], edgeArray, null));
+		}
+		
+		MRRectifyRepeats.Schedule schedule = new MRRectifyRepeats.Schedule();
+		int numSupersteps = 0;
+		while (!schedule.isDone()) {
+			MRRectifyRepeats.Phase phase = schedule.getPhase();
+			boolean isFirst = schedule.getIsFirst();
+			
+			HashMap<Integer, ArrayList<MRRectifyRepeats.Message>> inboxes = 
+					new HashMap<Integer, ArrayList<MRRectifyRepeats.Message>>();
+			for (MRRectifyRepeats.Vertex vertex : vertices.values()) {
+				ArrayList<MRRectifyRepeats.Message> sent = new ArrayList<MRRectifyRepeats.Message>();
+				MRRectifyRepeats.prepare(vertex, phase, isFirst);
+				MRRectifyRepeats.send(vertex, phase, isFirst, sent);
+				for (MRRectifyRepeats.Message message : sent) {
+					if (!inboxes.containsKey(message.to))
+						inboxes.put(message.to, new ArrayList<MRRectifyRepeats.Message>());
+					inboxes.get(message.to).add(new MRRectifyRepeats.Message(message.to, 
+							message.toBytes()));
+				}
+			}
+			
+			int numChanged = 0;
+			int numActive = 0;
+			TreeMap<Integer, MRRectifyRepeats.Vertex> next = 
+					new TreeMap<Integer, MRRectifyRepeats.Vertex>();
+			for (MRRectifyRepeats.Vertex vertex : vertices.values()) {
+				byte[] bytes = vertex.toBytes();
+				MRRectifyRepeats.Vertex copy = new MRRectifyRepeats.Vertex(bytes, bytes.length);
+				ArrayList<MRRectifyRepeats.Message> inbox = inboxes.get(copy.getId());
+				if (inbox == null)
+					inbox = new ArrayList<MRRectifyRepeats.Message>();
+				if (MRRectifyRepeats.receive(copy, phase, isFirst, inbox, minEdgeMultiple))
+					numChanged++;
+				if (copy.isActive())
+					numActive++;
+				next.put(copy.getId(), copy);
+			}
+			vertices = next;
+			
+			schedule.next(numChanged, numActive);
+			numSupersteps++;
+			assert (numSupersteps < 100);
+		}
+		
+		return vertices;
+	}
+	
+	private static int getMultiple(TreeMap<Integer, MRRectifyRepeats.Vertex> vertices,
+			int from, int to) {
+		MRRectifyRepeats.Vertex vertex = vertices.get(from);
+		for (int i = 0; i < vertex.getNumEdges(); i++)
+			if (vertex.getEdgeTo(i) == to)
+				return vertex.getEdgeMultiple(i);
+		return 0;
+	}
+
+}
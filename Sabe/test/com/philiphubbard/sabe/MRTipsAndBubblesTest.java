@@ -0,0 +1,132 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+// Confidence tests for the MRTipsAndBubbles class, which run the supersteps in 
+// memory, without Hadoop, with each vertex and message passed through its bytes 
+// as the jobs would do.  Uses assert(), so must be run with a run configuration 
+// that includes "-ea" in the VM arguments.
+
+public class MRTipsAndBubblesTest {
+
+	public static void test() {
+		System.out.println("Testing MRTipsAndBubbles:");
+		
+		// The graph from TipsAndBubblesTest, with chains compressed.  The result,
+		// compressed again, should match that of TipsAndBubbles.simplify().
+		
+		MRCompressedVertices compressed = TipsAndBubbles.compress(
+				TipsAndBubblesTest.errorGraph(), TipsAndBubblesTest.VERTEX_MER_LENGTH);
+		
+		ArrayList<MRRectifyRepeats.Vertex> records = run(compressed);
+		assert (records.size() == compressed.size() - 3);
+		
+		MRCompressedVertices simplified = 
+				new MRCompressedVertices(Math.max(records.size(), 1));
+		for (MRRectifyRepeats.Vertex record : records) {
+			ArrayList<Integer> edges = new ArrayList<Integer>();
+			for (int i = 0; i < record.getNumEdges(); i++)
+				for (int j = 0; j < record.getEdgeMultiple(i); j++)
+					edges.add(record.getEdgeTo(i));
+			int[] array = new int[edges.size()];
+			for (int i = 0; i < array.length; i++)
+				array[i] = edges.get(i);
+			simplified.add(record.getId(), record.getIsSource(), record.getIsSink(), 
+					record.getIsBranch(), array, array.length, record.getMerString());
+		}
+		simplified = TipsAndBubbles.compress(simplified, TipsAndBubblesTest.VERTEX_MER_LENGTH);
+		
+		MRCompressedVertices expected = TipsAndBubbles.simplify(compressed, 
+				TipsAndBubblesTest.VERTEX_MER_LENGTH, TipsAndBubblesTest.COVERAGE);
+		
+		assert (simplified.size() == 1);
+		assert (expected.size() == 1);
+		assert (simplified.getId(0) == expected.getId(0));
+		assert (simplified.getMerString(0).equals(expected.getMerString(0)));
+		assert (simplified.getMerString(0).toDisplayString().equals(
+				TipsAndBubblesTest.SEQUENCE));
+		
+		System.out.println("MRTipsAndBubbles passed.");
+	}
+	
+	// Run the supersteps on the vertices, with the mapper and reducer operations 
+	// applied directly, and return the final records.
+	
+	private static ArrayList<MRRectifyRepeats.Vertex> run(MRCompressedVertices vertices) {
+		TreeMap<Integer, MRTipsAndBubbles.Vertex> current = 
+				new TreeMap<Integer, MRTipsAndBubbles.Vertex>();
+		for (int row = 0; row < vertices.size(); row++) {
+			int[] edges = new int[vertices.getEdgeEnd(row) - vertices.getEdgeBegin(row)];
+			for (int i = 0; i < edges.length; i++)
+				edges[i] = vertices.getEdgeTo(vertices.getEdgeBegin(row) + i);
+			current.put(vertices.getId(row), 
+					new MRTipsAndBubbles.Vertex(vertices.getId(row), edges, vertices.getMerString(row)));
+		}
+		
+		ArrayList<MRRectifyRepeats.Vertex> result = new ArrayList<MRRectifyRepeats.Vertex>();
+		int numLosers = 0;
+		for (MRTipsAndBubbles.Phase phase : MRTipsAndBubbles.Phase.values()) {
+			HashMap<Integer, ArrayList<MRTipsAndBubbles.Message>> inboxes = 
+					new HashMap<Integer, ArrayList<MRTipsAndBubbles.Message>>();
+			TreeMap<Integer, byte[]> written = new TreeMap<Integer, byte[]>();
+			for (MRTipsAndBubbles.Vertex vertex : current.values()) {
+				ArrayList<MRTipsAndBubbles.Message> sent = new ArrayList<MRTipsAndBubbles.Message>();
+				MRTipsAndBubbles.send(vertex, phase, TipsAndBubblesTest.VERTEX_MER_LENGTH, sent);
+				if ((phase != MRTipsAndBubbles.Phase.REMOVE) || !vertex.getIsLoser())
+					written.put(vertex.getId(), vertex.toBytes());
+				for (MRTipsAndBubbles.Message message : sent) {
+					if (!inboxes.containsKey(message.to))
+						inboxes.put(message.to, new ArrayList<MRTipsAndBubbles.Message>());
+					inboxes.get(message.to).add(new MRTipsAndBubbles.Message(message.to, 
+							message.toBytes()));
+				}
+			}
+			
+			TreeMap<Integer, MRTipsAndBubbles.Vertex> next = 
+					new TreeMap<Integer, MRTipsAndBubbles.Vertex>();
+			for (byte[] bytes : written.values()) {
+				MRTipsAndBubbles.Vertex copy = new MRTipsAndBubbles.Vertex(bytes, bytes.length);
+				ArrayList<MRTipsAndBubbles.Message> inbox = inboxes.get(copy.getId());
+				if (inbox == null)
+					inbox = new ArrayList<MRTipsAndBubbles.Message>();
+				numLosers += MRTipsAndBubbles.receive(copy, phase, inbox, 
+						TipsAndBubblesTest.COVERAGE);
+				if (phase == MRTipsAndBubbles.Phase.REMOVE) {
+					byte[] recordBytes = copy.toRecord().toBytes();
+					result.add(new MRRectifyRepeats.Vertex(recordBytes, recordBytes.length));
+				}
+				next.put(copy.getId(), copy);
+			}
+			current = next;
+		}
+		
+		assert (numLosers == 3);
+		return result;
+	}
+
+}
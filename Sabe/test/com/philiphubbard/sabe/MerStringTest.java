@@ -147,6 +147,12 @@ public class MerStringTest {
 		MerString ms12a = new MerString(b12a);
 		assert (ms12a.toDisplayString().equals(s12));
 		
+		StringBuilder builder = new StringBuilder("GG");
+		ms12.appendDisplayString(builder, 0);
+		assert (builder.toString().equals("GG" + s12));
+		ms11.appendDisplayString(builder, 9);
+		assert (builder.toString().equals("GG" + s12 + "GCA"));
+		
 		System.out.println("MerString passed");
 	}
 }
@@ -0,0 +1,158 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Confidence tests for the QualityFilter class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class QualityFilterTest {
+
+	public static void test() {
+		System.out.println("Testing QualityFilter:");
+		
+		test1();
+		test2();
+		test3();
+		
+		System.out.println("QualityFilter passed.");
+	}
+	
+	// Splitting and trimming single lines.  "I" is quality 40 and "#" is quality 2.
+	
+	private static void test1() {
+		QualityFilter filter = new QualityFilter(20);
+		
+		assert (filter.split("ACGTACGT").equals(Arrays.asList("ACGTACGT")));
+		assert (filter.split("").isEmpty());
+		assert (filter.split("ACGTACGT\tIIIIIIII").equals(Arrays.asList("ACGTACGT")));
+		
+		// A low-quality base in the middle splits the read.
+		
+		assert (filter.split("ACGTACGTAC\tIIII#IIIII").equals(Arrays.asList("ACGT", "CGTAC")));
+		
+		// The tail is trimmed past an isolated good base, but not past a run of good
+		// bases.
+		
+		assert (filter.split("ACGTACGTACG\tIIIII##I###").equals(Arrays.asList("ACGTA")));
+		assert (filter.split("ACGTACGTACG\tIIIII#IIII#").equals(Arrays.asList("ACGTA", "GTAC")));
+		assert (filter.split("ACGT\t####").isEmpty());
+		
+		// With a minimum of 0, the qualities are only removed.
+		
+		assert (new QualityFilter(0).split("ACGT\t####").equals(Arrays.asList("ACGT")));
+		
+		boolean threw = false;
+		try {
+			filter.split("ACGT\tIII");
+		}
+		catch (IllegalArgumentException exception) {
+			threw = true;
+		}
+		assert (threw);
+		
+		ArrayList<String> lines = new ArrayList<String>();
+		lines.add("ACGTACGTAC\tIIII#IIIII");
+		lines.add("TTTT");
+		assert (filter.split(lines).equals(Arrays.asList("ACGT", "CGTAC", "TTTT")));
+	}
+	
+	// Conversion of FASTQ records.
+	
+	private static void test2() {
+		String fastq = "@read1\nACGT\n+\nIIII\n@read2\nGGCCA\n+read2\nII#II\n";
+		StringWriter out = new StringWriter();
+		try {
+			long n = QualityFilter.convertFastq(new BufferedReader(new StringReader(fastq)), out);
+			assert (n == 2);
+		}
+		catch (IOException exception) {
+			assert (false);
+		}
+		assert (out.toString().equals("ACGT\tIIII\nGGCCA\tII#II\n"));
+		
+		boolean threw = false;
+		try {
+			QualityFilter.convertFastq(new BufferedReader(new StringReader("@read1\nACGT\n+\nIII\n")), 
+					new StringWriter());
+		}
+		catch (IOException exception) {
+			threw = true;
+		}
+		assert (threw);
+	}
+	
+	// An error marked by a low quality makes no edges in BasicAssembler or 
+	// LocalAssembler, so the errors of TipsAndBubblesTest leave no tips or bubbles.
+	
+	private static void test3() {
+		String seq = TipsAndBubblesTest.SEQUENCE;
+		ArrayList<String> reads = new ArrayList<String>();
+		for (int i = 0; i < TipsAndBubblesTest.COVERAGE; i++)
+			reads.add(seq + "\t" + qualities(seq.length(), -1));
+		for (int i = 0; i < 2; i++) {
+			reads.add(seq.substring(0, 14) + "G" + seq.substring(15) + "\t" + 
+					qualities(seq.length(), 14));
+			reads.add(seq.substring(0, 23) + "G" + "\t" + qualities(24, 23));
+			reads.add("T" + seq.substring(7, 20) + "\t" + qualities(14, 0));
+		}
+		
+		LocalAssembler assembler = new LocalAssembler(TipsAndBubblesTest.VERTEX_MER_LENGTH,
+				TipsAndBubblesTest.COVERAGE);
+		assert (assembler.assemble(reads).size() > 1);
+		assembler.setMinQuality(20);
+		ArrayList<String> result = assembler.assemble(reads);
+		assert (result.size() == 1);
+		assert (result.get(0).equals(seq));
+		
+		ArrayList<String> basicReads = new ArrayList<String>();
+		basicReads.add(seq + "\t" + qualities(seq.length(), -1));
+		basicReads.add(reads.get(TipsAndBubblesTest.COVERAGE));
+		BasicAssembler basic = new BasicAssembler(TipsAndBubblesTest.VERTEX_MER_LENGTH);
+		basic.addReads(basicReads);
+		assert (basic.assemble().size() > 1);
+		basic.reset();
+		basic.setMinQuality(20);
+		basic.addReads(basicReads);
+		result = basic.assemble();
+		assert (result.size() == 1);
+		assert (result.get(0).equals(seq));
+	}
+	
+	// Returns qualities of 40, except for 2 at the low position.
+	
+	private static String qualities(int length, int low) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < length; i++)
+			builder.append((i == low) ? '#' : 'I');
+		return builder.toString();
+	}
+
+}
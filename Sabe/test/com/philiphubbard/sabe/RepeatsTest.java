@@ -37,6 +37,9 @@ public class RepeatsTest {
 		test1();
 		test2();
 		test3();
+		test4();
+		test5();
+		test6();
 
 		System.out.println("Single repeats passed.");
 	}
@@ -80,6 +83,9 @@ public class RepeatsTest {
 		isBranch[4] = true;
 		isBranch[5] = false;
 		
+		CompactDigraph compact = CompactDigraph.fromBasicDigraph(graph);
+		CompactDigraph parallel = CompactDigraph.fromBasicDigraph(graph);
+		
 		Repeats.rectifySingle(graph, coverage, isBranch);
 		
 		assert (edgesEqual(graph, 0, Arrays.asList(1)));
@@ -89,6 +95,12 @@ public class RepeatsTest {
 		assert (edgesEqual(graph, 4, Arrays.asList(1, 3)));
 		assert (edgesEqual(graph, 5, null));
 		
+		Repeats.rectifySingle(compact, coverage, isBranch);
+		assert (edgesEqual(graph, compact));
+		
+		Repeats.rectifySingleParallel(parallel, coverage, isBranch, 2);
+		assert (edgesEqual(graph, parallel));
+		
 		System.out.println("Single repeats test 1 passed.");
 	}
 
@@ -153,6 +165,9 @@ public class RepeatsTest {
 		isBranch[4] = true;
 		isBranch[5] = false;
 		
+		CompactDigraph compact = CompactDigraph.fromBasicDigraph(graph);
+		CompactDigraph parallel = CompactDigraph.fromBasicDigraph(graph);
+		
 		Repeats.rectifySingle(graph, coverage, isBranch);
 		
 		assert (edgesEqual(graph, 0, Arrays.asList(1)));
@@ -162,6 +177,12 @@ public class RepeatsTest {
 		assert (edgesEqual(graph, 4, Arrays.asList(1, 3)));
 		assert (edgesEqual(graph, 5, null));
 		
+		Repeats.rectifySingle(compact, coverage, isBranch);
+		assert (edgesEqual(graph, compact));
+		
+		Repeats.rectifySingleParallel(parallel, coverage, isBranch, 2);
+		assert (edgesEqual(graph, parallel));
+		
 		System.out.println("Single repeats test 2 passed.");
 	}
 
@@ -330,6 +351,9 @@ public class RepeatsTest {
 		isBranch[15] = false;
 		isBranch[16] = false;
 		
+		CompactDigraph compact = CompactDigraph.fromBasicDigraph(graph);
+		CompactDigraph parallel = CompactDigraph.fromBasicDigraph(graph);
+		
 		Repeats.rectifySingle(graph, coverage, isBranch);
 		
 		assert (edgesEqual(graph, 0, Arrays.asList(1)));
@@ -350,12 +374,165 @@ public class RepeatsTest {
 		assert (edgesEqual(graph, 15, Arrays.asList(16, 16)));
 		assert (edgesEqual(graph, 16, Arrays.asList(8, 8)));
 
+		Repeats.rectifySingle(compact, coverage, isBranch);
+		assert (edgesEqual(graph, compact));
+		
+		Repeats.rectifySingleParallel(parallel, coverage, isBranch, 2);
+		assert (edgesEqual(graph, parallel));
+		
 		System.out.println("Single repeats test 3 passed.");
 	}
 	
 	// Returns true if the specified vertex in the specified graph has edges to the expected
 	// list of vertex IDs, which should be sorted in ascending order.
 	
+	private static void test4() {
+		System.out.println("Single repeats test 4:");
+		
+		// The same graph as in test1, but with deep coverage, built directly as a 
+		// CompactDigraph with each multi-edge stored as one count.
+		
+		int coverage = 61;
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(6);
+		builder.addEdge(0, 1, coverage);
+		builder.addEdge(1, 2, 2 * coverage);
+		builder.addEdge(2, 3, coverage);
+		builder.addEdge(3, 4, 2 * coverage);
+		builder.addEdge(4, 3, coverage);
+		builder.addEdge(4, 1, coverage);
+		builder.addEdge(2, 5, coverage);
+		CompactDigraph graph = builder.build();
+		
+		boolean[] isBranch = { false, true, true, true, true, false };
+		
+		Repeats.rectifySingle(graph, coverage, isBranch);
+		
+		assert (graph.getEdgeMultiple(graph.findEdge(0, 1)) == 1);
+		assert (graph.getEdgeMultiple(graph.findEdge(1, 2)) == 2);
+		assert (graph.getEdgeMultiple(graph.findEdge(2, 3)) == 1);
+		assert (graph.getEdgeMultiple(graph.findEdge(3, 4)) == 2);
+		assert (graph.getEdgeMultiple(graph.findEdge(4, 3)) == 1);
+		assert (graph.getEdgeMultiple(graph.findEdge(4, 1)) == 1);
+		assert (graph.getEdgeMultiple(graph.findEdge(2, 5)) == 1);
+		
+		System.out.println("Single repeats test 4 passed.");
+	}
+	
+	private static void test5() {
+		System.out.println("Single repeats test 5:");
+		
+		// Many copies of the graph from test4, enough that rectifySingleParallel() 
+		// divides the work among several tasks, with the same result as rectifySingle().
+		
+		int coverage = 5;
+		int copies = 2000;
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(6 * copies);
+		boolean[] isBranch = new boolean[6 * copies];
+		for (int i = 0; i < copies; i++) {
+			int b = 6 * i;
+			builder.addEdge(b, b + 1, coverage);
+			builder.addEdge(b + 1, b + 2, 2 * coverage);
+			builder.addEdge(b + 2, b + 3, coverage);
+			builder.addEdge(b + 3, b + 4, (i % 3 == 2) ? coverage : 2 * coverage);
+			builder.addEdge(b + 4, b + 3, coverage);
+			builder.addEdge(b + 4, b + 1, coverage);
+			builder.addEdge(b + 2, b + 5, coverage);
+			for (int j = 1; j <= 4; j++)
+				isBranch[b + j] = true;
+		}
+		CompactDigraph graph = builder.build();
+		CompactDigraph parallel = builder.build();
+		
+		Repeats.rectifySingle(graph, coverage, isBranch);
+		Repeats.rectifySingleParallel(parallel, coverage, isBranch, 4);
+		
+		for (int e = 0; e < graph.getNumEdges(); e++)
+			assert (graph.getEdgeMultiple(e) == parallel.getEdgeMultiple(e));
+		
+		// With the lower edge multiple, 3 -> 4 is not consistent with a repeat.
+		
+		assert (graph.getEdgeMultiple(graph.findEdge(3, 4)) == 2);
+		assert (graph.getEdgeMultiple(graph.findEdge(6 + 3, 6 + 4)) == 2);
+		assert (graph.getEdgeMultiple(graph.findEdge(12 + 3, 12 + 4)) == 1);
+		
+		System.out.println("Single repeats test 5 passed.");
+	}
+	
+	private static void test6() {
+		System.out.println("Single repeats test 6:");
+		
+		// A repeat with three instances, in the path 0 -> 1 -> 2 -> 3 -> 4 -> 1 -> 2 
+		// -> 3 -> 5 -> 1 -> 2 -> 3 -> 6.  The edge multiples of the repeat 1 -> 2 -> 3
+		// are low, so rounding alone would estimate two copies, leaving vertex 1 with 
+		// three copies in and two out.
+		
+		int coverage = 5;
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(7);
+		builder.addEdge(0, 1, coverage);
+		builder.addEdge(1, 2, 12);
+		builder.addEdge(2, 3, 12);
+		builder.addEdge(3, 4, coverage);
+		builder.addEdge(4, 1, coverage);
+		builder.addEdge(3, 5, coverage + 1);
+		builder.addEdge(5, 1, coverage - 1);
+		builder.addEdge(3, 6, coverage);
+		CompactDigraph graph = builder.build();
+		
+		boolean[] isBranch = { false, true, false, true, false, false, false };
+		
+		assert (Repeats.rectifyMultiple(graph, coverage, isBranch) == 5);
+		
+		assert (graph.getEdgeMultiple(graph.findEdge(0, 1)) == 1);
+		assert (graph.getEdgeMultiple(graph.findEdge(1, 2)) == 3);
+		assert (graph.getEdgeMultiple(graph.findEdge(2, 3)) == 3);
+		assert (graph.getEdgeMultiple(graph.findEdge(3, 4)) == 1);
+		assert (graph.getEdgeMultiple(graph.findEdge(4, 1)) == 1);
+		assert (graph.getEdgeMultiple(graph.findEdge(3, 5)) == 1);
+		assert (graph.getEdgeMultiple(graph.findEdge(5, 1)) == 1);
+		assert (graph.getEdgeMultiple(graph.findEdge(3, 6)) == 1);
+		
+		// The graph from test4 has single repeats, which are estimated to have two 
+		// copies, as with rectifySingle().
+		
+		coverage = 61;
+		
+		builder = new CompactDigraph.Builder(6);
+		builder.addEdge(0, 1, coverage);
+		builder.addEdge(1, 2, 2 * coverage);
+		builder.addEdge(2, 3, coverage);
+		builder.addEdge(3, 4, 2 * coverage);
+		builder.addEdge(4, 3, coverage);
+		builder.addEdge(4, 1, coverage);
+		builder.addEdge(2, 5, coverage);
+		graph = builder.build();
+		CompactDigraph single = builder.build();
+		
+		isBranch = new boolean[] { false, true, true, true, true, false };
+		
+		Repeats.rectifyMultiple(graph, coverage, isBranch);
+		Repeats.rectifySingle(single, coverage, isBranch);
+		
+		for (int e = 0; e < graph.getNumEdges(); e++)
+			assert (graph.getEdgeMultiple(e) == single.getEdgeMultiple(e));
+		
+		// A cycle with no branches is one chain.
+		
+		builder = new CompactDigraph.Builder(3);
+		builder.addEdge(0, 1, 3 * coverage);
+		builder.addEdge(1, 2, 3 * coverage);
+		builder.addEdge(2, 0, 3 * coverage);
+		graph = builder.build();
+		
+		assert (Repeats.rectifyMultiple(graph, coverage, new boolean[3]) == 1);
+		for (int e = 0; e < graph.getNumEdges(); e++)
+			assert (graph.getEdgeMultiple(e) == 3);
+		
+		System.out.println("Single repeats test 6 passed.");
+	}
+	
 	private static boolean edgesEqual(BasicDigraph graph, int vertex, List<Integer> expected) {
 		ArrayList<Integer> actual = new ArrayList<Integer>();
 		BasicDigraph.AdjacencyIterator it = graph.createAdjacencyIterator(vertex);
@@ -367,4 +544,19 @@ public class RepeatsTest {
 			return actual.equals(expected);
 	}
 
+	// Returns true if the digraph.BasicDigraph and the CompactDigraph have the same edges
+	// with the same edge multiples.
+	
+	private static boolean edgesEqual(BasicDigraph graph, CompactDigraph compact) {
+		for (int vertex = 0; vertex < graph.getVertexCapacity(); vertex++) {
+			ArrayList<Integer> expected = new ArrayList<Integer>();
+			for (int e = compact.getEdgeBegin(vertex); e < compact.getEdgeEnd(vertex); e++)
+				for (int i = 0; i < compact.getEdgeMultiple(e); i++)
+					expected.add(compact.getEdgeTo(e));
+			if (!edgesEqual(graph, vertex, expected.isEmpty() ? null : expected))
+				return false;
+		}
+		return true;
+	}
+
 }
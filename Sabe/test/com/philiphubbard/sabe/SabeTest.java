@@ -31,9 +31,30 @@ public class SabeTest {
 	public static void main(String[] args) {		
 		MerTest.test();
 		MerStringTest.test();
+		IntIntMapTest.test();
+		CountMinSketchTest.test();
+		CompactDigraphTest.test();
+		CompactStrongComponentsTest.test();
+		EulerTourTest.test();
+		WeakComponentsTest.test();
+		ComponentToursTest.test();
 		BasicAssemblerTest.test();
 		MRMerVertexTest.test();
 		RepeatsTest.test();
+		MRAssemblerManifestTest.test();
+		MRCompressedVerticesTest.test();
+		MRRectifyRepeatsTest.test();
+		TipsAndBubblesTest.test();
+		MRTipsAndBubblesTest.test();
+		LocalAssemblerTest.test();
+		BspEngineTest.test();
+		BspCompressMerChainsTest.test();
+		AutoAssemblerTest.test();
+		BatchAssemblerTest.test();
+		DigitalNormalizationTest.test();
+		ErrorCorrectionTest.test();
+		QualityFilterTest.test();
+		CollapsedReadsTest.test();
 	}
 
 }
@@ -0,0 +1,147 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+
+package com.philiphubbard.sabe;
+
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+// Confidence tests for the TipsAndBubbles class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class TipsAndBubblesTest {
+
+	public static void test() {
+		System.out.println("Testing TipsAndBubbles:");
+		
+		test1();
+		test2();
+		
+		System.out.println("TipsAndBubbles passed.");
+	}
+	
+	// The sequence of the tests, whose 4-mers are all distinct.
+	
+	static final String SEQUENCE = "CTTGCTGTGTCCACCCCATCGGACTGGCATTT";
+	static final int VERTEX_MER_LENGTH = 4;
+	static final int COVERAGE = 4;
+	
+	// Returns the uncompressed graph of the reads: the sequence, with coverage 4, and
+	// two copies each of reads with errors that make a bubble (an error in the middle), 
+	// a tip at a sink (an error at the end) and a tip at a source (an error at the 
+	// start).  The graph has one vertex per 4-mer.
+	
+	static MRCompressedVertices errorGraph() {
+		return graph(errorReads());
+	}
+	
+	// Returns the reads of errorGraph().
+	
+	static ArrayList<String> errorReads() {
+		ArrayList<String> reads = new ArrayList<String>();
+		for (int i = 0; i < COVERAGE; i++)
+			reads.add(SEQUENCE);
+		for (int i = 0; i < 2; i++) {
+			reads.add(SEQUENCE.substring(0, 14) + "G" + SEQUENCE.substring(15));
+			reads.add(SEQUENCE.substring(0, 23) + "G");
+			reads.add("T" + SEQUENCE.substring(7, 20));
+		}
+		return reads;
+	}
+	
+	// Returns the uncompressed graph of the reads.
+	
+	static MRCompressedVertices graph(ArrayList<String> reads) {
+		TreeMap<Integer, ArrayList<Integer>> edges = new TreeMap<Integer, ArrayList<Integer>>();
+		for (String read : reads) {
+			int prev = -1;
+			for (int i = 0; i + VERTEX_MER_LENGTH <= read.length(); i++) {
+				int id = Mer.toInt(read.substring(i, i + VERTEX_MER_LENGTH));
+				if (!edges.containsKey(id))
+					edges.put(id, new ArrayList<Integer>());
+				if (prev != -1)
+					edges.get(prev).add(id);
+				prev = id;
+			}
+		}
+		
+		MRCompressedVertices vertices = new MRCompressedVertices(edges.size());
+		for (int id : edges.keySet()) {
+			ArrayList<Integer> to = edges.get(id);
+			int[] array = new int[to.size()];
+			for (int i = 0; i < array.length; i++)
+				array[i] = to.get(i);
+			vertices.add(id, false, array.length == 0, false, array, array.length, null);
+		}
+		return vertices;
+	}
+	
+	private static void test1() {
+		MRCompressedVertices raw = errorGraph();
+		assert (raw.size() == SEQUENCE.length() - VERTEX_MER_LENGTH + 1 + 6);
+		
+		// Compression alone leaves the branches made by the errors.
+		
+		MRCompressedVertices compressed = TipsAndBubbles.compress(raw, VERTEX_MER_LENGTH);
+		assert (compressed.size() == 8);
+		
+		// With the tips and the bubble removed, the chain compresses to the sequence.
+		
+		MRCompressedVertices simplified = 
+				TipsAndBubbles.simplify(compressed, VERTEX_MER_LENGTH, COVERAGE);
+		assert (simplified.size() == 1);
+		assert (simplified.getIsSource(0));
+		assert (simplified.getIsSink(0));
+		assert (!simplified.getIsBranch(0));
+		assert (simplified.getMerString(0).toDisplayString().equals(SEQUENCE));
+	}
+	
+	private static void test2() {
+		
+		// Without errors, the first vertex has no edges in and is short, but it is the
+		// only vertex with an edge to the second, so it is kept.
+		
+		ArrayList<String> reads = new ArrayList<String>();
+		reads.add(SEQUENCE);
+		MRCompressedVertices simplified = 
+				TipsAndBubbles.simplify(graph(reads), VERTEX_MER_LENGTH, COVERAGE);
+		assert (simplified.size() == 1);
+		assert (simplified.getMerString(0).toDisplayString().equals(SEQUENCE));
+		
+		// Two bubbles with the same multiple are both kept, as is a bubble whose 
+		// multiple is the coverage.
+		
+		reads.clear();
+		for (int i = 0; i < COVERAGE; i++)
+			reads.add(SEQUENCE);
+		for (int i = 0; i < COVERAGE; i++)
+			reads.add(SEQUENCE.substring(0, 14) + "G" + SEQUENCE.substring(15));
+		MRCompressedVertices compressed = 
+				TipsAndBubbles.compress(graph(reads), VERTEX_MER_LENGTH);
+		simplified = TipsAndBubbles.simplify(compressed, VERTEX_MER_LENGTH, COVERAGE);
+		assert (simplified.size() == compressed.size());
+		assert (simplified.getNumEdges() == compressed.getNumEdges());
+	}
+
+}
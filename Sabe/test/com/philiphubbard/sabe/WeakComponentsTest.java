@@ -0,0 +1,80 @@
+// Copyright (c) 2014 Philip M. Hubbard
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+// 
+// http://opensource.org/licenses/MIT
+
+package com.philiphubbard.sabe;
+
+// Confidence tests for the WeakComponents class.
+// Uses assert(), so must be run with a run configuration that includes "-ea" in the 
+// VM arguments.
+
+public class WeakComponentsTest {
+
+	public static void test() {
+		System.out.println("Testing WeakComponents:");
+		
+		// Three parts: a path 0 -> 3 -> 5, a cycle 1 -> 4 -> 1, and vertex 2 with
+		// no edges.  Vertex 6 also has no edges, and is marked as not present.
+		
+		CompactDigraph.Builder builder = new CompactDigraph.Builder(7);
+		builder.addEdge(0, 3);
+		builder.addEdge(5, 3);
+		builder.addEdge(1, 4, 2);
+		builder.addEdge(4, 1);
+		CompactDigraph graph = builder.build();
+		
+		boolean[] isPresent = { true, true, true, true, true, true, false };
+		WeakComponents components = new WeakComponents(graph, isPresent);
+		
+		assert (components.getNumComponents() == 3);
+		assert (components.getComponent(0) == components.getComponent(3));
+		assert (components.getComponent(0) == components.getComponent(5));
+		assert (components.getComponent(1) == components.getComponent(4));
+		assert (components.getComponent(0) != components.getComponent(1));
+		assert (components.getComponent(2) != components.getComponent(0));
+		assert (components.getComponent(2) != components.getComponent(1));
+		assert (components.getComponent(6) == -1);
+		
+		int c = components.getComponent(1);
+		assert (components.getVertexEnd(c) - components.getVertexBegin(c) == 2);
+		
+		// The subgraph of a component has the component's vertices and edges, with
+		// the vertices renumbered by their local indices.
+		
+		CompactDigraph subgraph = components.createSubgraph(c);
+		assert (subgraph.getVertexCapacity() == 2);
+		assert (subgraph.getNumEdges() == 2);
+		int local1 = components.getLocalIndex(1);
+		int local4 = components.getLocalIndex(4);
+		assert (subgraph.getEdgeMultiple(subgraph.findEdge(local1, local4)) == 2);
+		assert (subgraph.getEdgeMultiple(subgraph.findEdge(local4, local1)) == 1);
+		
+		// Edges whose multiple is zero do not connect vertices.
+		
+		graph.setEdgeMultiple(graph.findEdge(5, 3), 0);
+		components = new WeakComponents(graph, null);
+		assert (components.getNumComponents() == 5);
+		assert (components.getComponent(5) != components.getComponent(3));
+		
+		System.out.println("WeakComponents passed.");
+	}
+
+}